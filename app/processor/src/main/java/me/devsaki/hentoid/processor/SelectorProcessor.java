@@ -0,0 +1,350 @@
+package me.devsaki.hentoid.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the code binding the fields annotated with jspoon's @Selector to the contents of an HTML page
+ * <p>
+ * For each package declaring bindable classes (i.e. concrete classes declaring or inheriting annotated fields),
+ * a SelectorBindings class is generated inside the same package, with plain Jsoup calls setting the fields
+ * directly. Annotated fields therefore can't be private.
+ * <p>
+ * Supported annotation attributes : value, attr, defValue
+ * Supported field types : String, Element, List&lt;String&gt;, List&lt;Element&gt;
+ * Anything else is a compilation error rather than a runtime surprise.
+ * <p>
+ * The semantics are those of jspoon :
+ * - String : text of the first selected element, or its attribute designated by attr ("html", "innerHtml"
+ * and "outerHtml" being understood as the element's HTML); defValue if no element is selected
+ * - Element : first selected element
+ * - List : all selected elements, or their text / attribute for List&lt;String&gt;
+ * Fields are left untouched when nothing is selected and no defValue is set.
+ */
+public class SelectorProcessor extends AbstractProcessor {
+
+    private static final String SELECTOR = "pl.droidsonroids.jspoon.annotation.Selector";
+    private static final String JSOUP_ELEMENT = "org.jsoup.nodes.Element";
+    private static final String GENERATED_CLASS = "SelectorBindings";
+
+    private static final Set<String> SUPPORTED_ATTRIBUTES = new HashSet<>();
+
+    static {
+        SUPPORTED_ATTRIBUTES.add("value");
+        SUPPORTED_ATTRIBUTES.add("attr");
+        SUPPORTED_ATTRIBUTES.add("defValue");
+    }
+
+    private enum FieldKind {
+        STRING, ELEMENT, STRING_LIST, ELEMENT_LIST
+    }
+
+    private static class Binding {
+        private final VariableElement field;
+        private final FieldKind kind;
+        private final String query;
+        private final String attr;
+        private final String defValue;
+
+        Binding(VariableElement field, FieldKind kind, String query, String attr, String defValue) {
+            this.field = field;
+            this.kind = kind;
+            this.query = query;
+            this.attr = attr;
+            this.defValue = defValue;
+        }
+    }
+
+    // Packages whose bindings have already been generated
+    private final Set<String> processedPackages = new HashSet<>();
+
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(SELECTOR);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (annotations.isEmpty()) return false;
+
+        // Bindable classes by package, sorted by name for the generated code to be stable
+        Map<String, Map<String, TypeElement>> classesByPackage = new TreeMap<>();
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements()))
+            collectBindableClasses(type, classesByPackage);
+
+        for (Map.Entry<String, Map<String, TypeElement>> entry : classesByPackage.entrySet()) {
+            if (!processedPackages.add(entry.getKey())) continue;
+            generateBindings(entry.getKey(), entry.getValue().values());
+        }
+        return false;
+    }
+
+    private void collectBindableClasses(TypeElement type, Map<String, Map<String, TypeElement>> classesByPackage) {
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements()))
+            collectBindableClasses(nested, classesByPackage);
+
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) return;
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC))
+            return;
+        if (getAnnotatedFields(type).isEmpty()) return;
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        Map<String, TypeElement> classes = classesByPackage.get(packageName);
+        if (null == classes) {
+            classes = new TreeMap<>();
+            classesByPackage.put(packageName, classes);
+        }
+        classes.put(type.getQualifiedName().toString(), type);
+    }
+
+    /**
+     * Get the annotated fields of the given class, inherited ones first
+     */
+    private List<VariableElement> getAnnotatedFields(TypeElement type) {
+        List<VariableElement> result = new ArrayList<>();
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED)
+            result.addAll(getAnnotatedFields((TypeElement) ((DeclaredType) superclass).asElement()));
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements()))
+            if (getSelector(field) != null) result.add(field);
+        return result;
+    }
+
+    private static AnnotationMirror getSelector(Element element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors())
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(SELECTOR))
+                return annotation;
+        return null;
+    }
+
+    private Binding toBinding(TypeElement owner, VariableElement field) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)) {
+            error(field, "@Selector fields must be neither private, static nor final");
+            return null;
+        }
+        String fieldPackage = processingEnv.getElementUtils().getPackageOf(field).getQualifiedName().toString();
+        String ownerPackage = processingEnv.getElementUtils().getPackageOf(owner).getQualifiedName().toString();
+        if (!fieldPackage.equals(ownerPackage) && !modifiers.contains(Modifier.PUBLIC)) {
+            error(field, "@Selector fields inherited from another package must be public");
+            return null;
+        }
+
+        FieldKind kind = getKind(field.asType());
+        if (null == kind) {
+            error(field, "Unsupported @Selector field type : " + field.asType());
+            return null;
+        }
+
+        String query = null;
+        String attr = "";
+        String defValue = null;
+        AnnotationMirror selector = getSelector(field);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : selector.getElementValues().entrySet()) {
+            String name = value.getKey().getSimpleName().toString();
+            if (!SUPPORTED_ATTRIBUTES.contains(name)) {
+                error(field, "Unsupported @Selector attribute : " + name);
+                return null;
+            }
+            String s = String.valueOf(value.getValue().getValue());
+            if (name.equals("value")) query = s;
+            else if (name.equals("attr")) attr = s;
+            else defValue = s;
+        }
+        if (null == query || query.isEmpty()) {
+            error(field, "Empty @Selector query");
+            return null;
+        }
+        return new Binding(field, kind, query, attr, defValue);
+    }
+
+    private FieldKind getKind(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) return null;
+        DeclaredType declaredType = (DeclaredType) type;
+        String name = ((TypeElement) declaredType.asElement()).getQualifiedName().toString();
+
+        if (name.equals(String.class.getName())) return FieldKind.STRING;
+        if (name.equals(JSOUP_ELEMENT)) return FieldKind.ELEMENT;
+        if (name.equals(List.class.getName()) && declaredType.getTypeArguments().size() == 1) {
+            FieldKind itemKind = getKind(declaredType.getTypeArguments().get(0));
+            if (FieldKind.STRING == itemKind) return FieldKind.STRING_LIST;
+            if (FieldKind.ELEMENT == itemKind) return FieldKind.ELEMENT_LIST;
+        }
+        return null;
+    }
+
+    private static boolean hasNoArgConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+                return true;
+        return false;
+    }
+
+    private void generateBindings(String packageName, Iterable<TypeElement> classes) {
+        StringBuilder dispatch = new StringBuilder();
+        StringBuilder methods = new StringBuilder();
+        List<Element> origins = new ArrayList<>();
+
+        for (TypeElement type : classes) {
+            if (!hasNoArgConstructor(type)) {
+                error(type, "Classes with @Selector fields need a non-private no-arg constructor");
+                continue;
+            }
+            List<Binding> bindings = new ArrayList<>();
+            for (VariableElement field : getAnnotatedFields(type)) {
+                Binding binding = toBinding(type, field);
+                if (binding != null) bindings.add(binding);
+            }
+
+            String typeName = getLocalName(packageName, type);
+            String methodName = "bind" + typeName.replace(".", "");
+            origins.add(type);
+
+            dispatch.append("        if (c == ").append(typeName).append(".class) return (T) ")
+                    .append(methodName).append("(root);\n");
+
+            methods.append("\n    private static ").append(typeName).append(" ").append(methodName).append("(Element root) {\n");
+            methods.append("        ").append(typeName).append(" result = new ").append(typeName).append("();\n");
+            methods.append("        Element node;\n");
+            for (Binding b : bindings) appendBinding(methods, b);
+            methods.append("        return result;\n");
+            methods.append("    }\n");
+        }
+
+        String source = "package " + packageName + ";\n" +
+                "\n" +
+                "import org.jsoup.nodes.Element;\n" +
+                "\n" +
+                "import java.util.ArrayList;\n" +
+                "import java.util.List;\n" +
+                "\n" +
+                "/**\n" +
+                " * Binds the @Selector fields of the classes of this package to the contents of an HTML page\n" +
+                " * <p>\n" +
+                " * Generated by " + SelectorProcessor.class.getName() + "; do not edit\n" +
+                " */\n" +
+                "@SuppressWarnings(\"unchecked\")\n" +
+                "public final class " + GENERATED_CLASS + " {\n" +
+                "\n" +
+                "    private " + GENERATED_CLASS + "() {\n" +
+                "        throw new IllegalStateException(\"Utility class\");\n" +
+                "    }\n" +
+                "\n" +
+                "    /**\n" +
+                "     * Create an instance of the given class, with its @Selector fields bound to the given HTML element\n" +
+                "     *\n" +
+                "     * @param c    Class to instantiate; must be a bindable class of this package\n" +
+                "     * @param root Element to run the selectors on (usually the whole document)\n" +
+                "     * @param <T>  Class to instantiate\n" +
+                "     * @return New instance of the given class\n" +
+                "     */\n" +
+                "    public static <T> T bind(Class<T> c, Element root) {\n" +
+                dispatch +
+                "        throw new IllegalArgumentException(\"No @Selector binding for \" + c.getName());\n" +
+                "    }\n" +
+                methods +
+                "\n" +
+                "    private static String value(Element node, String attr) {\n" +
+                "        switch (attr) {\n" +
+                "            case \"\":\n" +
+                "            case \"text\":\n" +
+                "                return node.text();\n" +
+                "            case \"html\":\n" +
+                "            case \"innerHtml\":\n" +
+                "                return node.html();\n" +
+                "            case \"outerHtml\":\n" +
+                "                return node.outerHtml();\n" +
+                "            default:\n" +
+                "                return node.attr(attr);\n" +
+                "        }\n" +
+                "    }\n" +
+                "\n" +
+                "    private static List<String> values(List<Element> nodes, String attr) {\n" +
+                "        List<String> result = new ArrayList<>(nodes.size());\n" +
+                "        for (Element node : nodes) result.add(value(node, attr));\n" +
+                "        return result;\n" +
+                "    }\n" +
+                "}\n";
+
+        try (Writer writer = processingEnv.getFiler()
+                .createSourceFile(packageName + "." + GENERATED_CLASS, origins.toArray(new Element[0]))
+                .openWriter()) {
+            writer.write(source);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Couldn't generate " + packageName + "." + GENERATED_CLASS + " : " + e.getMessage());
+        }
+    }
+
+    private void appendBinding(StringBuilder sb, Binding b) {
+        String field = "result." + b.field.getSimpleName();
+        String query = literal(b.query);
+        String attr = literal(b.attr);
+        switch (b.kind) {
+            case STRING:
+                sb.append("        node = root.selectFirst(").append(query).append(");\n");
+                sb.append("        if (node != null) ").append(field).append(" = value(node, ").append(attr).append(");\n");
+                if (b.defValue != null)
+                    sb.append("        else ").append(field).append(" = ").append(literal(b.defValue)).append(";\n");
+                break;
+            case ELEMENT:
+                sb.append("        node = root.selectFirst(").append(query).append(");\n");
+                sb.append("        if (node != null) ").append(field).append(" = node;\n");
+                break;
+            case STRING_LIST:
+                sb.append("        ").append(field).append(" = values(root.select(").append(query).append("), ").append(attr).append(");\n");
+                break;
+            case ELEMENT_LIST:
+                sb.append("        ").append(field).append(" = root.select(").append(query).append(");\n");
+                break;
+            default:
+                // Can't happen
+        }
+    }
+
+    /**
+     * Name of the given class as seen from the given package (e.g. Outer.Inner)
+     */
+    private static String getLocalName(String packageName, TypeElement type) {
+        String name = type.getQualifiedName().toString();
+        return packageName.isEmpty() ? name : name.substring(packageName.length() + 1);
+    }
+
+    private String literal(String s) {
+        return processingEnv.getElementUtils().getConstantExpression(s);
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -29,9 +29,11 @@
 -verbose
 -optimizations !code/simplification/arithmetic,!field/*,!class/merging/*
 
+# Content parsers are bound by generated code; jspoon (annotations only) isn't shipped
+-dontwarn pl.droidsonroids.jspoon.**
+
 #keep rules
 
--keep class me.devsaki.hentoid.parsers.content.** { *; }
 -keep class me.devsaki.hentoid.json.** { *; }
 -keep class com.bumptech.glide.integration.okhttp3.OkHttpGlideModule
 
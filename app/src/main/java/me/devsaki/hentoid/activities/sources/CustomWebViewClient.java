@@ -31,7 +31,6 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -59,6 +58,7 @@ import me.devsaki.hentoid.enums.Site;
 import me.devsaki.hentoid.enums.StatusContent;
 import me.devsaki.hentoid.parsers.ContentParserFactory;
 import me.devsaki.hentoid.parsers.content.ContentParser;
+import me.devsaki.hentoid.parsers.content.ContentParserBinder;
 import me.devsaki.hentoid.util.AdBlocker;
 import me.devsaki.hentoid.util.ContentHelper;
 import me.devsaki.hentoid.util.Helper;
@@ -71,8 +71,6 @@ import me.devsaki.hentoid.util.image.ImageHelper;
 import me.devsaki.hentoid.util.network.HttpHelper;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
-import pl.droidsonroids.jspoon.HtmlAdapter;
-import pl.droidsonroids.jspoon.Jspoon;
 import timber.log.Timber;
 
 /**
@@ -103,8 +101,8 @@ class CustomWebViewClient extends WebViewClient {
 
     // Results URL rewriter to insert page to seek to
     private BiFunction<Uri, Integer, String> resultsUrlRewriter = null;
-    // Adapter used to parse the HTML code of book gallery pages
-    private final HtmlAdapter<? extends ContentParser> htmlAdapter;
+    // Content parser used to parse the HTML code of book gallery pages
+    private final Class<? extends ContentParser> parserClass;
     // Domain name for which link navigation is restricted
     private final List<String> restrictedDomainNames = new ArrayList<>();
     // Loading state of the current webpage (used for the refresh/stop feature)
@@ -141,9 +139,7 @@ class CustomWebViewClient extends WebViewClient {
         this.site = site;
         this.activity = activity;
 
-        Class<? extends ContentParser> c = ContentParserFactory.getInstance().getContentParserClass(site);
-        final Jspoon jspoon = Jspoon.create();
-        htmlAdapter = jspoon.adapter(c); // Unchecked but alright
+        parserClass = ContentParserFactory.getInstance().getContentParserClass(site);
 
         adBlocker = new AdBlocker(site);
 
@@ -441,7 +437,8 @@ class CustomWebViewClient extends WebViewClient {
     @Nullable
     private WebResourceResponse shouldInterceptRequestInternal(@NonNull final String url,
                                                                @Nullable final Map<String, String> headers) {
-        if ((Preferences.isBrowserAugmented() && adBlocker.isBlocked(url, headers)) || !url.startsWith("http")) {
+        AdBlocker.Verdict verdict = Preferences.isBrowserAugmented() ? adBlocker.examine(url, headers) : null;
+        if ((verdict != null && verdict.isBlocked()) || !url.startsWith("http")) {
             return new WebResourceResponse("text/plain", "utf-8", new ByteArrayInputStream(nothing));
         } else if (isMarkDownloaded() && url.contains("hentoid-checkmark")) {
             return new WebResourceResponse(ImageHelper.MIME_IMAGE_WEBP, "utf-8", new ByteArrayInputStream(checkmark));
@@ -460,7 +457,11 @@ class CustomWebViewClient extends WebViewClient {
                     return parseResponse(url, headers, false, false);
             }
 
-            return null;
+            // Serve the resource the AdBlocker has already downloaded, if any
+            WebResourceResponse resource = (verdict != null && canUseSingleOkHttpRequest()) ? verdict.getResource() : null;
+            // Manually set cookie if present in response header (has to be set manually because we're using OkHttp right now, not the webview)
+            if (resource != null) HttpHelper.setCookiesFromResponse(url, resource);
+            return resource;
         }
     }
 
@@ -592,18 +593,7 @@ class CustomWebViewClient extends WebViewClient {
                 result = HttpHelper.okHttpResponseToWebkitResponse(response, browserStream);
 
                 // Manually set cookie if present in response header (has to be set manually because we're using OkHttp right now, not the webview)
-                if (result.getResponseHeaders().containsKey("set-cookie") || result.getResponseHeaders().containsKey("Set-Cookie")) {
-                    String cookiesStr = result.getResponseHeaders().get("set-cookie");
-                    if (null == cookiesStr)
-                        cookiesStr = result.getResponseHeaders().get("Set-Cookie");
-                    if (cookiesStr != null) {
-                        // Set-cookie might contain multiple cookies to set separated by a line feed (see HttpHelper.getValuesSeparatorFromHttpHeader)
-                        String[] cookieParts = cookiesStr.split("\n");
-                        for (String cookie : cookieParts)
-                            if (!cookie.isEmpty())
-                                HttpHelper.setCookies(urlStr, cookie);
-                    }
-                }
+                HttpHelper.setCookiesFromResponse(urlStr, result);
             } else {
                 parserStream = body.byteStream();
                 result = null; // Default webview behaviour
@@ -611,7 +601,7 @@ class CustomWebViewClient extends WebViewClient {
 
             if (analyzeForDownload) {
                 compositeDisposable.add(
-                        Single.fromCallable(() -> htmlAdapter.fromInputStream(parserStream, new URL(urlStr)).toContent(urlStr))
+                        Single.fromCallable(() -> ContentParserBinder.fromInputStream(parserClass, parserStream, urlStr).toContent(urlStr))
                                 .subscribeOn(Schedulers.computation())
                                 .observeOn(Schedulers.computation())
                                 .map(content -> processContent(content, urlStr, quickDownload))
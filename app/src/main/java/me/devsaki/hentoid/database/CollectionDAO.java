@@ -8,10 +8,7 @@ import androidx.paging.PagedList;
 
 import com.annimon.stream.function.Consumer;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
-
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nullable;
@@ -65,6 +62,8 @@ public interface CollectionDAO {
 
     long insertContentCore(@NonNull final Content content);
 
+    void insertContents(@NonNull final List<Content> contents);
+
     void updateContentStatus(@NonNull final StatusContent updateFrom, @NonNull final StatusContent updateTo);
 
     void deleteContent(@NonNull final Content content);
@@ -154,6 +153,8 @@ public interface CollectionDAO {
 
     List<Long> selectStoredContentIds(boolean nonFavouritesOnly, boolean includeQueued, int orderField, boolean orderDesc);
 
+    List<Long> selectStoredContentIdsFromSites(@NonNull List<Site> sites);
+
     long countStoredContent(boolean nonFavouriteOnly, boolean includeQueued);
 
     List<Content> selectContentWithUnhashedCovers();
@@ -204,6 +205,8 @@ public interface CollectionDAO {
 
     void updateImageFileStatusParamsMimeTypeUriSize(@NonNull ImageFile image);
 
+    void updateImageFileStatusParamsMimeTypeUriSize(@NonNull List<ImageFile> images);
+
     void deleteImageFiles(@NonNull List<ImageFile> imgs);
 
     ImageFile selectImageFile(long id);
@@ -212,17 +215,39 @@ public interface CollectionDAO {
 
     List<ImageFile> selectDownloadedImagesFromContent(long id);
 
-    Map<StatusContent, ImmutablePair<Integer, Long>> countProcessedImagesById(long contentId);
-
-    Map<Site, ImmutablePair<Integer, Long>> selectPrimaryMemoryUsagePerSource();
-
-    Map<Site, ImmutablePair<Integer, Long>> selectExternalMemoryUsagePerSource();
+    /**
+     * Count the images of the given book and sum their size, for each of the given statuses
+     *
+     * @param contentId ID of the book to count images for
+     * @param statuses  Statuses to count images for
+     * @return [0][i] : Number of images with statuses[i]
+     * [1][i] : Total size of images with statuses[i] (bytes)
+     */
+    long[][] countProcessedImagesById(long contentId, @NonNull StatusContent[] statuses);
+
+    /**
+     * Count the books of the primary library and sum their size, for each source
+     *
+     * @return [0][site.ordinal()] : Number of books of the given site
+     * [1][site.ordinal()] : Total size of the books of the given site (bytes)
+     */
+    long[][] selectPrimaryMemoryUsagePerSource();
+
+    /**
+     * Count the books of the external library and sum their size, for each source
+     *
+     * @return [0][site.ordinal()] : Number of books of the given site
+     * [1][site.ordinal()] : Total size of the books of the given site (bytes)
+     */
+    long[][] selectExternalMemoryUsagePerSource();
 
 
     // QUEUE
 
     List<QueueRecord> selectQueue();
 
+    long countQueue();
+
     LiveData<List<QueueRecord>> selectQueueLive();
 
     LiveData<List<QueueRecord>> selectQueueLive(String query);
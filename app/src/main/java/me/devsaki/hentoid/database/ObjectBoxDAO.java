@@ -19,7 +19,6 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nullable;
@@ -86,6 +85,11 @@ public class ObjectBoxDAO implements CollectionDAO {
         return Helper.getListFromPrimitiveArray(db.selectStoredContentQ(nonFavouritesOnly, includeQueued, orderField, orderDesc).build().findIds());
     }
 
+    @Override
+    public List<Long> selectStoredContentIdsFromSites(@NonNull List<Site> sites) {
+        return Helper.getListFromPrimitiveArray(db.selectStoredContentFromSitesQ(sites).findIds());
+    }
+
     @Override
     public long countStoredContent(boolean nonFavouritesOnly, boolean includeQueued) {
         return db.selectStoredContentQ(nonFavouritesOnly, includeQueued, -1, false).build().count();
@@ -322,6 +326,10 @@ public class ObjectBoxDAO implements CollectionDAO {
         return db.insertContentCore(content);
     }
 
+    public void insertContents(@NonNull final List<Content> contents) {
+        db.insertContents(contents);
+    }
+
     public void updateContentStatus(@NonNull final StatusContent updateFrom, @NonNull final StatusContent updateTo) {
         db.updateContentStatus(updateFrom, updateTo);
     }
@@ -657,6 +665,10 @@ public class ObjectBoxDAO implements CollectionDAO {
         db.updateImageFileStatusParamsMimeTypeUriSize(image);
     }
 
+    public void updateImageFileStatusParamsMimeTypeUriSize(@NonNull List<ImageFile> images) {
+        db.updateImageFileStatusParamsMimeTypeUriSize(images);
+    }
+
     public void deleteImageFiles(@NonNull List<ImageFile> imgs) {
         // Delete the page
         db.deleteImageFiles(imgs);
@@ -688,15 +700,15 @@ public class ObjectBoxDAO implements CollectionDAO {
         return db.selectDownloadedImagesFromContentQ(id).find();
     }
 
-    public Map<StatusContent, ImmutablePair<Integer, Long>> countProcessedImagesById(long contentId) {
-        return db.countProcessedImagesById(contentId);
+    public long[][] countProcessedImagesById(long contentId, @NonNull StatusContent[] statuses) {
+        return db.countProcessedImagesById(contentId, statuses);
     }
 
-    public Map<Site, ImmutablePair<Integer, Long>> selectPrimaryMemoryUsagePerSource() {
+    public long[][] selectPrimaryMemoryUsagePerSource() {
         return db.selectPrimaryMemoryUsagePerSource();
     }
 
-    public Map<Site, ImmutablePair<Integer, Long>> selectExternalMemoryUsagePerSource() {
+    public long[][] selectExternalMemoryUsagePerSource() {
         return db.selectExternalMemoryUsagePerSource();
     }
 
@@ -806,6 +818,10 @@ public class ObjectBoxDAO implements CollectionDAO {
         return db.selectQueueRecordsQ(null).find();
     }
 
+    public long countQueue() {
+        return db.selectQueueRecordsQ(null).count();
+    }
+
     public void updateQueue(@NonNull List<QueueRecord> queue) {
         db.updateQueue(queue);
     }
@@ -11,12 +11,10 @@ import com.annimon.stream.Collectors;
 import com.annimon.stream.Stream;
 
 import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.threeten.bp.Instant;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -30,6 +28,7 @@ import io.objectbox.Box;
 import io.objectbox.BoxStore;
 import io.objectbox.Property;
 import io.objectbox.android.AndroidObjectBrowser;
+import io.objectbox.query.PropertyQuery;
 import io.objectbox.query.Query;
 import io.objectbox.query.QueryBuilder;
 import io.objectbox.query.QueryCondition;
@@ -196,6 +195,13 @@ public class ObjectBoxDB {
         return store.boxFor(Content.class).put(content);
     }
 
+    // Insert the given Contents inside a single transaction
+    void insertContents(@NonNull List<Content> contents) {
+        store.runInTx(() -> {
+            for (Content content : contents) insertContent(content);
+        });
+    }
+
     // Faster alternative to insertContent when Content fields only need to be updated
     void updateContentObject(Content content) {
         store.boxFor(Content.class).put(content);
@@ -1201,10 +1207,19 @@ public class ObjectBoxDB {
             img.setMimeType(image.getMimeType());
             img.setFileUri(image.getFileUri());
             img.setSize(image.getSize());
+            img.setEtag(image.getEtag());
+            img.setLastModified(image.getLastModified());
             imgBox.put(img);
         }
     }
 
+    void updateImageFileStatusParamsMimeTypeUriSize(@NonNull List<ImageFile> images) {
+        // Single transaction for the whole list
+        store.runInTx(() -> {
+            for (ImageFile image : images) updateImageFileStatusParamsMimeTypeUriSize(image);
+        });
+    }
+
     void updateImageContentStatus(
             long contentId,
             @Nullable StatusContent updateFrom,
@@ -1227,67 +1242,59 @@ public class ObjectBoxDB {
         }
     }
 
-    // Returns a list of processed images grouped by status, with count and filesize (in bytes)
-    Map<StatusContent, ImmutablePair<Integer, Long>> countProcessedImagesById(long contentId) {
-        QueryBuilder<ImageFile> imgQuery = store.boxFor(ImageFile.class).query();
-        imgQuery.equal(ImageFile_.contentId, contentId);
-        List<ImageFile> images = imgQuery.build().find();
-
-        Map<StatusContent, ImmutablePair<Integer, Long>> result = new EnumMap<>(StatusContent.class);
-        // SELECT field, COUNT(*) GROUP BY (field) is not implemented in ObjectBox v2.3.1
-        // (see https://github.com/objectbox/objectbox-java/issues/422)
-        // => Group by and count have to be done manually (thanks God Stream exists !)
-        // Group and count by type
-        Map<StatusContent, List<ImageFile>> map = Stream.of(images).collect(Collectors.groupingBy(ImageFile::getStatus));
-        if (map != null) {
-            for (Map.Entry<StatusContent, List<ImageFile>> entry : map.entrySet()) {
-                StatusContent t = entry.getKey();
-                int count = 0;
-                long sizeBytes = 0;
-                if (entry.getValue() != null) {
-                    count = entry.getValue().size();
-                    for (ImageFile img : entry.getValue()) sizeBytes += img.getSize();
-                }
-                result.put(t, new ImmutablePair<>(count, sizeBytes));
-            }
+    /**
+     * Count the images of the given book and sum their size, for each of the given statuses
+     * NB : Aggregates are computed by ObjectBox; no ImageFile is loaded
+     *
+     * @param contentId ID of the book to count images for
+     * @param statuses  Statuses to count images for
+     * @return [0][i] : Number of images with statuses[i]
+     * [1][i] : Total size of images with statuses[i] (bytes)
+     */
+    long[][] countProcessedImagesById(long contentId, @NonNull StatusContent[] statuses) {
+        long[][] result = new long[2][statuses.length];
+        Query<ImageFile> query = store.boxFor(ImageFile.class).query()
+                .equal(ImageFile_.contentId, contentId)
+                .equal(ImageFile_.status, 0)
+                .build();
+        PropertyQuery sizeQuery = query.property(ImageFile_.size);
+        for (int i = 0; i < statuses.length; i++) {
+            query.setParameter(ImageFile_.status, statuses[i].getCode());
+            result[0][i] = query.count();
+            result[1][i] = sizeQuery.sum();
         }
-
         return result;
     }
 
-    Map<Site, ImmutablePair<Integer, Long>> selectPrimaryMemoryUsagePerSource() {
+    long[][] selectPrimaryMemoryUsagePerSource() {
         return selectMemoryUsagePerSource(new int[]{StatusContent.DOWNLOADED.getCode(), StatusContent.MIGRATED.getCode()});
     }
 
-    Map<Site, ImmutablePair<Integer, Long>> selectExternalMemoryUsagePerSource() {
+    long[][] selectExternalMemoryUsagePerSource() {
         return selectMemoryUsagePerSource(new int[]{StatusContent.EXTERNAL.getCode()});
     }
 
-    Map<Site, ImmutablePair<Integer, Long>> selectMemoryUsagePerSource(int[] statusCodes) {
-        // Get all downloaded images regardless of the book's status
-        QueryBuilder<Content> query = store.boxFor(Content.class).query();
-        query.in(Content_.status, statusCodes);
-        List<Content> books = query.build().find();
-
-        Map<Site, ImmutablePair<Integer, Long>> result = new EnumMap<>(Site.class);
-        // SELECT field, COUNT(*) GROUP BY (field) is not implemented in ObjectBox v2.3.1
-        // (see https://github.com/objectbox/objectbox-java/issues/422)
-        // => Group by and count have to be done manually (thanks God Stream exists !)
-        // Group and count by type
-        Map<Site, List<Content>> map = Stream.of(books).collect(Collectors.groupingBy(Content::getSite));
-        if (map != null) {
-            for (Map.Entry<Site, List<Content>> entry : map.entrySet()) {
-                Site s = entry.getKey();
-                int count = 0;
-                long size = 0;
-                if (entry.getValue() != null) {
-                    count = entry.getValue().size();
-                    for (Content c : entry.getValue()) size += c.getSize();
-                }
-                result.put(s, new ImmutablePair<>(count, size));
-            }
+    /**
+     * Count the books with the given statuses and sum their size, for each source
+     * NB : Aggregates are computed by ObjectBox; no Content is loaded
+     *
+     * @param statusCodes Codes of the statuses of the books to count
+     * @return [0][site.ordinal()] : Number of books of the given site
+     * [1][site.ordinal()] : Total size of the books of the given site (bytes)
+     */
+    long[][] selectMemoryUsagePerSource(int[] statusCodes) {
+        Site[] sites = Site.values();
+        long[][] result = new long[2][sites.length];
+        Query<Content> query = store.boxFor(Content.class).query()
+                .in(Content_.status, statusCodes)
+                .equal(Content_.site, 0)
+                .build();
+        PropertyQuery sizeQuery = query.property(Content_.size);
+        for (Site s : sites) {
+            query.setParameter(Content_.site, s.getCode());
+            result[0][s.ordinal()] = query.count();
+            result[1][s.ordinal()] = sizeQuery.sum();
         }
-
         return result;
     }
 
@@ -1648,6 +1655,12 @@ public class ObjectBoxDB {
         return query;
     }
 
+    Query<Content> selectStoredContentFromSitesQ(@NonNull List<Site> sites) {
+        int[] siteCodes = new int[sites.size()];
+        for (int i = 0; i < sites.size(); i++) siteCodes[i] = sites.get(i).getCode();
+        return selectStoredContentQ(false, false, -1, false).in(Content_.site, siteCodes).build();
+    }
+
     Query<Content> selectNonHashedContent() {
         QueryBuilder<Content> query = store.boxFor(Content.class).query()
                 .in(Content_.status, new int[]{
@@ -40,6 +40,9 @@ public class ImageFile {
     private String mimeType;
     private long size = 0;
     private long imageHash = 0;
+    // HTTP validators of the downloaded file (ETag and Last-Modified headers); used to revalidate it when redownloading
+    private String etag = "";
+    private String lastModified = "";
 
     // Temporary attributes during SAVED state only; no need to expose them for JSON persistence
     private String downloadParams = "";
@@ -83,6 +86,8 @@ public class ImageFile {
         this.mimeType = img.mimeType;
         this.size = img.size;
         this.imageHash = img.imageHash;
+        this.etag = img.etag;
+        this.lastModified = img.lastModified;
         this.downloadParams = img.downloadParams;
 
         this.uniqueHash = img.uniqueHash;
@@ -279,6 +284,31 @@ public class ImageFile {
         return this;
     }
 
+    public String getEtag() {
+        return StringHelper.protect(etag);
+    }
+
+    public ImageFile setEtag(String etag) {
+        this.etag = etag;
+        return this;
+    }
+
+    public String getLastModified() {
+        return StringHelper.protect(lastModified);
+    }
+
+    public ImageFile setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+        return this;
+    }
+
+    /**
+     * @return True if the downloaded file can be revalidated with a conditional request
+     */
+    public boolean hasValidators() {
+        return !getEtag().isEmpty() || !getLastModified().isEmpty();
+    }
+
     public long getImageHash() {
         return imageHash;
     }
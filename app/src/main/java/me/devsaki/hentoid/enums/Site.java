@@ -70,6 +70,7 @@ public enum Site {
     private boolean useCloudflare = false;
     private int requestsCapPerSecond = -1;
     private int parallelDownloadCap = 0;
+    private int bandwidthCapKbps = 0;
     private int bookCardDepth = 2;
 
     Site(int code,
@@ -160,6 +161,10 @@ public enum Site {
         return parallelDownloadCap;
     }
 
+    public int getBandwidthCapKbps() {
+        return bandwidthCapKbps;
+    }
+
     public int getBookCardDepth() { return bookCardDepth; }
 
     public boolean isVisible() {
@@ -194,6 +199,8 @@ public enum Site {
             parallelDownloadCap = jsonSite.parallelDownloadCap;
         if (jsonSite.requestsCapPerSecond != null)
             requestsCapPerSecond = jsonSite.requestsCapPerSecond;
+        if (jsonSite.bandwidthCapKbps != null)
+            bandwidthCapKbps = jsonSite.bandwidthCapKbps;
         if (jsonSite.bookCardDepth != null)
             bookCardDepth = jsonSite.bookCardDepth;
     }
@@ -16,7 +16,7 @@ public class DownloadEvent {
     @IntDef({Type.EV_PROGRESS, Type.EV_PAUSE, Type.EV_UNPAUSE, Type.EV_CANCEL, Type.EV_COMPLETE, Type.EV_SKIP, Type.EV_PREPARATION, Type.EV_INTERRUPT_CONTENT})
     @Retention(RetentionPolicy.SOURCE)
     public @interface Type {
-        int EV_PROGRESS = 0; // Download progress of current book (always one book at a time)
+        int EV_PROGRESS = 0; // Download progress of current book (1st book being downloaded when several books are downloaded at once)
         int EV_PAUSE = 1; // Queue is paused
         int EV_UNPAUSE = 2; // Queue is unpaused
         int EV_CANCEL = 3; // One book has been "canceled" (ordered to be removed from the queue)
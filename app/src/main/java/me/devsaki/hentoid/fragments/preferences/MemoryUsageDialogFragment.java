@@ -17,13 +17,10 @@ import androidx.documentfile.provider.DocumentFile;
 import androidx.fragment.app.DialogFragment;
 import androidx.fragment.app.FragmentManager;
 
-import com.annimon.stream.Collectors;
+import com.annimon.stream.LongStream;
 import com.annimon.stream.Stream;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
-
 import java.util.List;
-import java.util.Map;
 
 import me.devsaki.hentoid.R;
 import me.devsaki.hentoid.database.CollectionDAO;
@@ -71,8 +68,8 @@ public class MemoryUsageDialogFragment extends DialogFragment {
             deviceTotalBytes = memUsage.getTotalSpaceBytes();
         }
 
-        Map<Site, ImmutablePair<Integer, Long>> primaryMemUsage;
-        Map<Site, ImmutablePair<Integer, Long>> externalMemUsage;
+        long[][] primaryMemUsage;
+        long[][] externalMemUsage;
         CollectionDAO dao = new ObjectBoxDAO(requireContext());
         try {
             primaryMemUsage = dao.selectPrimaryMemoryUsagePerSource();
@@ -80,10 +77,8 @@ public class MemoryUsageDialogFragment extends DialogFragment {
         } finally {
             dao.cleanup();
         }
-        Long hentoidPrimaryUsageBytes = Stream.of(primaryMemUsage.values()).collect(Collectors.summingLong(ImmutablePair::getRight));
-        if (null == hentoidPrimaryUsageBytes) hentoidPrimaryUsageBytes = 0L;
-        Long hentoidExternalUsageBytes = Stream.of(externalMemUsage.values()).collect(Collectors.summingLong(ImmutablePair::getRight));
-        if (null == hentoidExternalUsageBytes) hentoidExternalUsageBytes = 0L;
+        long hentoidPrimaryUsageBytes = LongStream.of(primaryMemUsage[1]).sum();
+        long hentoidExternalUsageBytes = LongStream.of(externalMemUsage[1]).sum();
 
         CircularProgressView donut = requireViewById(rootView, R.id.memory_global_graph);
         donut.setTotalColor(R.color.primary_light);
@@ -109,9 +104,12 @@ public class MemoryUsageDialogFragment extends DialogFragment {
         );
 
         // Sort sources by largest size
-        List<Map.Entry<Site, ImmutablePair<Integer, Long>>> sitesBySize = Stream.of(primaryMemUsage).sortBy(entry -> -entry.getValue().right).toList();
-        for (Map.Entry<Site, ImmutablePair<Integer, Long>> entry : sitesBySize) {
-            addRow(table, entry.getKey().getDescription(), entry.getValue().left + "", FileHelper.formatHumanReadableSize(entry.getValue().right, getResources()));
+        List<Site> sitesBySize = Stream.of(Site.values())
+                .filter(site -> primaryMemUsage[0][site.ordinal()] > 0)
+                .sortBy(site -> -primaryMemUsage[1][site.ordinal()])
+                .toList();
+        for (Site site : sitesBySize) {
+            addRow(table, site.getDescription(), primaryMemUsage[0][site.ordinal()] + "", FileHelper.formatHumanReadableSize(primaryMemUsage[1][site.ordinal()], getResources()));
         }
 
         // Make details fold/unfold
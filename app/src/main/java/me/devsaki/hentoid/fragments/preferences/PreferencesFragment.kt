@@ -108,7 +108,8 @@ class PreferencesFragment : PreferenceFragmentCompat(),
     override fun onSharedPreferenceChanged(sharedPreferences: SharedPreferences, key: String) {
         when (key) {
             Preferences.Key.COLOR_THEME -> onPrefColorThemeChanged()
-            Preferences.Key.DL_THREADS_QUANTITY_LISTS,
+            Preferences.Key.DL_THREADS_QUANTITY_LISTS -> onDownloadThreadsChanged()
+            Preferences.Key.DL_SPEED_CAP -> onDownloadSpeedCapChanged()
             Preferences.Key.APP_PREVIEW,
             Preferences.Key.FORCE_ENGLISH,
             Preferences.Key.ANALYTICS_PREFERENCE -> onPrefRequiringRestartChanged()
@@ -223,6 +224,18 @@ class PreferencesFragment : PreferenceFragmentCompat(),
         ToastHelper.toast(R.string.restart_needed)
     }
 
+    private fun onDownloadThreadsChanged() {
+        // Applied right away to the downloads in progress
+        RequestQueueManager.getInstance(requireContext())
+            .setDownloadThreadCount(requireContext(), Preferences.getDownloadThreadCount())
+    }
+
+    private fun onDownloadSpeedCapChanged() {
+        // Applied right away to the downloads in progress
+        RequestQueueManager.getInstance(requireContext())
+            .setDownloadSpeedCap(Preferences.getDlSpeedCap())
+    }
+
     private fun onHentoidFolderChanged() {
         val storageFolderPref: Preference? =
             findPreference(Preferences.Key.SETTINGS_FOLDER) as Preference?
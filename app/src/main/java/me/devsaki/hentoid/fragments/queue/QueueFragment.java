@@ -83,8 +83,8 @@ import me.devsaki.hentoid.util.ThemeHelper;
 import me.devsaki.hentoid.util.ToastHelper;
 import me.devsaki.hentoid.util.TooltipHelper;
 import me.devsaki.hentoid.util.download.ContentQueueManager;
+import me.devsaki.hentoid.util.download.RequestQueueManager;
 import me.devsaki.hentoid.util.network.DownloadSpeedCalculator;
-import me.devsaki.hentoid.util.network.NetworkHelper;
 import me.devsaki.hentoid.viewholders.ContentItem;
 import me.devsaki.hentoid.viewholders.IDraggableViewHolder;
 import me.devsaki.hentoid.viewholders.ISwipeableViewHolder;
@@ -262,7 +262,7 @@ public class QueueFragment extends Fragment implements ItemTouchCallback, Simple
                 .subscribeOn(Schedulers.computation())
                 .repeat()
                 .observeOn(Schedulers.computation())
-                .map(v -> NetworkHelper.getIncomingNetworkUsage(requireContext()))
+                .map(v -> RequestQueueManager.getInstance(requireContext()).getTrafficMonitor().getBytesReceived())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(this::updateNetworkUsage));
 
@@ -674,8 +674,13 @@ public class QueueFragment extends Fragment implements ItemTouchCallback, Simple
                 if (numberRetries > 0)
                     message.append(" ").append(getResources().getString(R.string.queue_bottom_bar_retry, numberRetries, Preferences.getDlRetriesNumber()));
                 int avgSpeedKbps = (int) downloadSpeedCalculator.getAvgSpeedKbps();
-                if (avgSpeedKbps > 0)
-                    message.append(" @ ").append(getResources().getString(R.string.queue_bottom_bar_speed, avgSpeedKbps));
+                if (avgSpeedKbps > 0) {
+                    int speedCapKbps = RequestQueueManager.getInstance(requireContext()).getBandwidthLimiter().getEffectiveCapKbps(content.getSite());
+                    if (speedCapKbps > 0)
+                        message.append(" @ ").append(getResources().getString(R.string.queue_bottom_bar_speed_capped, avgSpeedKbps, speedCapKbps));
+                    else
+                        message.append(" @ ").append(getResources().getString(R.string.queue_bottom_bar_speed, avgSpeedKbps));
+                }
 
                 queueInfo.setText(message.toString());
                 isPreparingDownload = false;
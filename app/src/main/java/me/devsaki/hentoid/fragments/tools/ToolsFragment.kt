@@ -7,6 +7,9 @@ import androidx.lifecycle.ViewModelProvider
 import androidx.preference.Preference
 import androidx.preference.PreferenceFragmentCompat
 import androidx.preference.PreferenceScreen
+import androidx.work.ExistingWorkPolicy
+import androidx.work.OneTimeWorkRequest
+import androidx.work.WorkManager
 import com.google.android.material.snackbar.BaseTransientBottomBar
 import com.google.android.material.snackbar.Snackbar
 import io.reactivex.android.schedulers.AndroidSchedulers
@@ -18,11 +21,13 @@ import me.devsaki.hentoid.core.clearWebviewCache
 import me.devsaki.hentoid.core.startLocalActivity
 import me.devsaki.hentoid.core.withArguments
 import me.devsaki.hentoid.json.JsonSettings
+import me.devsaki.hentoid.notification.import_.ImportNotificationChannel
 import me.devsaki.hentoid.util.*
 import me.devsaki.hentoid.util.file.FileHelper
 import me.devsaki.hentoid.util.network.WebkitPackageHelper
 import me.devsaki.hentoid.viewmodels.PreferencesViewModel
 import me.devsaki.hentoid.viewmodels.ViewModelFactory
+import me.devsaki.hentoid.workers.MetadataRefreshWorker
 import timber.log.Timber
 import java.io.ByteArrayInputStream
 import java.io.IOException
@@ -33,6 +38,7 @@ import java.nio.charset.StandardCharsets
 class ToolsFragment : PreferenceFragmentCompat() {
 
     private val DUPLICATE_DETECTOR_KEY = "tools_duplicate_detector"
+    private val METADATA_REFRESH_KEY = "tools_metadata_refresh"
     private val EXPORT_LIBRARY = "export_library"
     private val IMPORT_LIBRARY = "import_library"
     private val EXPORT_SETTINGS = "export_settings"
@@ -75,6 +81,10 @@ class ToolsFragment : PreferenceFragmentCompat() {
                 requireContext().startLocalActivity<DuplicateDetectorActivity>()
                 true
             }
+            METADATA_REFRESH_KEY -> {
+                onRefreshMetadata()
+                true
+            }
             EXPORT_LIBRARY -> {
                 MetaExportDialogFragment.invoke(parentFragmentManager)
                 true
@@ -122,6 +132,20 @@ class ToolsFragment : PreferenceFragmentCompat() {
         }
     }
 
+    private fun onRefreshMetadata() {
+        if (MetadataRefreshWorker.isRunning(requireContext())) {
+            ToastHelper.toast(R.string.tools_metadata_refresh_running)
+            return
+        }
+        ImportNotificationChannel.init(requireContext())
+        WorkManager.getInstance(requireContext()).enqueueUniqueWork(
+            R.id.metadata_refresh_service.toString(),
+            ExistingWorkPolicy.KEEP,
+            OneTimeWorkRequest.Builder(MetadataRefreshWorker::class.java).build()
+        )
+        ToastHelper.toast(R.string.tools_metadata_refresh_started)
+    }
+
     private fun onExportSettings() {
         exportDisposable = io.reactivex.Single.fromCallable { getExportedSettings() }
             .subscribeOn(io.reactivex.schedulers.Schedulers.io())
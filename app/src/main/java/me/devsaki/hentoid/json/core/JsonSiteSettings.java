@@ -15,6 +15,7 @@ public class JsonSiteSettings {
         public Boolean useCloudflare = null;
         public Integer parallelDownloadCap = null;
         public Integer requestsCapPerSecond = null;
+        public Integer bandwidthCapKbps = null;
         public Integer bookCardDepth = null;
     }
 }
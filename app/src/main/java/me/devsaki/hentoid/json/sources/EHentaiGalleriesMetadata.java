@@ -25,6 +25,10 @@ public class EHentaiGalleriesMetadata {
         return (gmetadata != null && !gmetadata.isEmpty()) ? gmetadata.get(0).update(content, url, site, updatePages) : new Content();
     }
 
+    public List<EHentaiGalleryMetadata> getGalleries() {
+        return (null == gmetadata) ? Collections.emptyList() : gmetadata;
+    }
+
 
     public static class EHentaiGalleryMetadata {
 
@@ -35,6 +39,16 @@ public class EHentaiGalleriesMetadata {
         private String thumb;
         private String filecount;
         private List<String> tags;
+        // Set instead of the other fields when the gallery couldn't be found
+        private String error;
+
+        public String getGid() {
+            return StringHelper.protect(gid);
+        }
+
+        public boolean isError() {
+            return error != null;
+        }
 
 
         public Content update(@NonNull Content content, @Nonnull String url, @NonNull Site site, boolean updatePages) {
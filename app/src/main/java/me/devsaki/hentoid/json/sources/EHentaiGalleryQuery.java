@@ -1,10 +1,17 @@
 package me.devsaki.hentoid.json.sources;
 
+import androidx.annotation.NonNull;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+
 import java.util.ArrayList;
 import java.util.List;
 
 @SuppressWarnings({"unused, MismatchedQueryAndUpdateOfCollection", "squid:S1172", "squid:S1068"})
 public class EHentaiGalleryQuery {
+    // Maximum number of galleries the API accepts per request
+    public static final int MAX_GALLERIES = 25;
+
     private String method = "gdata";
     private final List<List<String>> gidlist;
     private String namespace = "1";
@@ -16,4 +23,19 @@ public class EHentaiGalleryQuery {
         galleryIds.add(galleryKey);
         gidlist.add(galleryIds);
     }
+
+    /**
+     * @param galleries Galleries to query, as (gallery ID, gallery key) pairs; at most MAX_GALLERIES
+     */
+    public EHentaiGalleryQuery(@NonNull List<ImmutablePair<String, String>> galleries) {
+        if (galleries.size() > MAX_GALLERIES)
+            throw new IllegalArgumentException("Too many galleries : " + galleries.size());
+        gidlist = new ArrayList<>();
+        for (ImmutablePair<String, String> gallery : galleries) {
+            List<String> galleryIds = new ArrayList<>();
+            galleryIds.add(gallery.left);
+            galleryIds.add(gallery.right);
+            gidlist.add(galleryIds);
+        }
+    }
 }
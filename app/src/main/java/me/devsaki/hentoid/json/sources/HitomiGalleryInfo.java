@@ -2,6 +2,7 @@ package me.devsaki.hentoid.json.sources;
 
 import androidx.annotation.NonNull;
 
+import java.util.Collections;
 import java.util.List;
 
 import me.devsaki.hentoid.database.domains.Attribute;
@@ -26,6 +27,7 @@ public class HitomiGalleryInfo {
     private String language_url;
     private List<HitomiArtist> artists;
     private String type;
+    private List<HitomiFile> files;
 
     private static class HitomiParody {
         private String parody;
@@ -61,6 +63,29 @@ public class HitomiGalleryInfo {
         private String artist;
     }
 
+    public static class HitomiFile {
+        private String hash;
+        private String name;
+        private Object haswebp; // Number or boolean, depending on the galleries
+
+        public String getHash() {
+            return StringHelper.protect(hash);
+        }
+
+        public String getName() {
+            return StringHelper.protect(name);
+        }
+
+        public boolean hasWebp() {
+            if (haswebp instanceof Number) return ((Number) haswebp).intValue() > 0;
+            return Boolean.TRUE.equals(haswebp);
+        }
+    }
+
+    public List<HitomiFile> getFiles() {
+        return (null == files) ? Collections.emptyList() : files;
+    }
+
     private void addAttribute(@NonNull AttributeType attributeType, @NonNull String name, @NonNull String url, @NonNull AttributeMap map) {
         Attribute attribute = new Attribute(attributeType, name, url, Site.HITOMI);
         map.add(attribute);
@@ -0,0 +1,28 @@
+package me.devsaki.hentoid.notification.import_
+
+import android.content.Context
+import androidx.core.app.NotificationCompat
+
+import me.devsaki.hentoid.R
+import me.devsaki.hentoid.util.notification.Notification
+
+class MetadataRefreshCompleteNotification(
+    private val booksUpdated: Int,
+    private val booksUnchanged: Int,
+    private val booksKO: Int
+) : Notification {
+
+    override fun onCreateNotification(context: Context): android.app.Notification =
+        NotificationCompat.Builder(context, ImportNotificationChannel.ID)
+            .setSmallIcon(R.drawable.ic_hentoid_shape)
+            .setContentTitle(context.getString(R.string.metadata_refresh_complete))
+            .setContentText(
+                context.getString(
+                    R.string.metadata_refresh_complete_details,
+                    booksUpdated,
+                    booksUnchanged,
+                    booksKO
+                )
+            )
+            .build()
+}
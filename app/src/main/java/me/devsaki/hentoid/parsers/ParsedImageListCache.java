@@ -0,0 +1,251 @@
+package me.devsaki.hentoid.parsers;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.threeten.bp.Instant;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.devsaki.hentoid.BuildConfig;
+import me.devsaki.hentoid.database.domains.ImageFile;
+import me.devsaki.hentoid.enums.StatusContent;
+import me.devsaki.hentoid.util.Helper;
+import me.devsaki.hentoid.util.JsonHelper;
+import me.devsaki.hentoid.util.file.FileHelper;
+import timber.log.Timber;
+
+/**
+ * Persistent cache of the image lists parsed from the sites, keyed by gallery URL
+ * <p>
+ * Avoids running the image list parser again when a book is re-queued, retried or reparsed
+ * shortly after its images have been parsed
+ * <p>
+ * A cached image list is used for one retry only : if pages still fail with it, it is removed
+ * and the next retry parses the gallery again (see recordRetry)
+ * <p>
+ * An entry is only valid for the parser that created it and the version of the app it has been
+ * created with (i.e. parsers are considered to change with each new version of the app)
+ * <p>
+ * NB : Image lists linked to chapters aren't cached, as chapters can't be restored from the cache
+ */
+public class ParsedImageListCache {
+
+    private static final String FOLDER_NAME = "parsed_images";
+    private static final String EXTENSION = ".json";
+
+    // Time to live of the entries; sites tend to rotate their image servers and keys
+    static final long TTL_MS = TimeUnit.HOURS.toMillis(1);
+
+    private ParsedImageListCache() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    @SuppressWarnings({"unused", "FieldMayBeFinal"})
+    private static class Entry {
+        private String galleryUrl;
+        private String parser;
+        private int appVersion;
+        private long timestamp;
+        private boolean retried;
+        private List<Image> images = new ArrayList<>();
+    }
+
+    @SuppressWarnings({"unused", "FieldMayBeFinal"})
+    private static class Image {
+        private Integer order;
+        private String url;
+        private String pageUrl;
+        private String name;
+        private boolean isCover;
+        private StatusContent status;
+        private String mimeType;
+        private String downloadParams;
+        private String backupUrl;
+
+        static Image fromEntity(@NonNull ImageFile img) {
+            Image result = new Image();
+            result.order = img.getOrder();
+            result.url = img.getUrl();
+            result.pageUrl = img.getPageUrl();
+            result.name = img.getName();
+            result.isCover = img.isCover();
+            result.status = img.getStatus();
+            result.mimeType = img.getMimeType();
+            result.downloadParams = img.getDownloadParams();
+            result.backupUrl = img.getBackupUrl();
+            return result;
+        }
+
+        ImageFile toEntity() {
+            ImageFile result = new ImageFile()
+                    .setOrder(order)
+                    .setUrl(url)
+                    .setName(name)
+                    .setIsCover(isCover)
+                    .setStatus(status)
+                    .setMimeType(mimeType)
+                    .setDownloadParams(downloadParams);
+            result.setPageUrl(pageUrl);
+            result.setBackupUrl(backupUrl);
+            return result;
+        }
+    }
+
+    @Nullable
+    private static File getCacheFile(@NonNull Context context, @NonNull String galleryUrl, boolean create) {
+        File folder = new File(context.getCacheDir(), FOLDER_NAME);
+        if (!folder.exists() && (!create || !folder.mkdirs())) return null;
+        return new File(folder, Long.toHexString(Helper.hash64(galleryUrl.getBytes(StandardCharsets.UTF_8))) + EXTENSION);
+    }
+
+    /**
+     * Get the cached image list of the given gallery
+     *
+     * @param context    Context to use
+     * @param galleryUrl URL of the gallery to get the image list for
+     * @param parser     Parser that would parse the image list of the gallery
+     * @param nbPages    Number of pages of the gallery, according to its latest parsing; 0 if unknown
+     * @return Cached image list of the given gallery; null if it isn't cached, expired or obsolete
+     */
+    @Nullable
+    public static List<ImageFile> get(@NonNull Context context, @NonNull String galleryUrl, @NonNull Class<?> parser, int nbPages) {
+        return get(context, galleryUrl, parser, nbPages, Instant.now().toEpochMilli());
+    }
+
+    @Nullable
+    static List<ImageFile> get(@NonNull Context context, @NonNull String galleryUrl, @NonNull Class<?> parser, int nbPages, long nowMs) {
+        File file = getCacheFile(context, galleryUrl, false);
+        if (null == file) return null;
+        Entry entry = readEntry(file, galleryUrl);
+        if (null == entry) return null;
+        if (!parser.getName().equals(entry.parser)
+                || entry.appVersion != BuildConfig.VERSION_CODE
+                || nowMs - entry.timestamp > TTL_MS) {
+            FileHelper.removeFile(file);
+            return null;
+        }
+
+        List<ImageFile> result = new ArrayList<>();
+        int nbCachedPages = 0;
+        for (Image img : entry.images) {
+            result.add(img.toEntity());
+            if (!img.isCover) nbCachedPages++;
+        }
+        // The gallery has changed since it has been parsed (e.g. pages added by the uploader)
+        if (nbPages > 0 && nbPages != nbCachedPages) {
+            FileHelper.removeFile(file);
+            return null;
+        }
+        Timber.d("Image list of %s found in cache (%d images)", galleryUrl, result.size());
+        return result;
+    }
+
+    /**
+     * Cache the given image list of the given gallery
+     *
+     * @param context    Context to use
+     * @param galleryUrl URL of the gallery the image list has been parsed from
+     * @param parser     Parser that has parsed the image list
+     * @param images     Image list to cache
+     */
+    public static void put(@NonNull Context context, @NonNull String galleryUrl, @NonNull Class<?> parser, @NonNull List<ImageFile> images) {
+        put(context, galleryUrl, parser, images, Instant.now().toEpochMilli());
+    }
+
+    static void put(@NonNull Context context, @NonNull String galleryUrl, @NonNull Class<?> parser, @NonNull List<ImageFile> images, long nowMs) {
+        for (ImageFile img : images)
+            if (img.getLinkedChapter() != null) return;
+
+        File file = getCacheFile(context, galleryUrl, true);
+        if (null == file) return;
+
+        Entry entry = new Entry();
+        entry.galleryUrl = galleryUrl;
+        entry.parser = parser.getName();
+        entry.appVersion = BuildConfig.VERSION_CODE;
+        entry.timestamp = nowMs;
+        for (ImageFile img : images) entry.images.add(Image.fromEntity(img));
+
+        if (writeEntry(file, entry)) purgeExpired(context, nowMs);
+    }
+
+    /**
+     * Record that the pages of the given gallery are about to be retried because some of them have failed
+     * <p>
+     * The cached image list is kept for the first retry; it is removed if pages have to be retried again,
+     * as the URLs it contains are then likely to be the cause of the failures
+     *
+     * @param context    Context to use
+     * @param galleryUrl URL of the gallery whose pages are about to be retried
+     */
+    public static void recordRetry(@NonNull Context context, @NonNull String galleryUrl) {
+        File file = getCacheFile(context, galleryUrl, false);
+        if (null == file) return;
+        Entry entry = readEntry(file, galleryUrl);
+        if (null == entry) return;
+
+        if (entry.retried) {
+            Timber.d("Image list of %s has already been retried; removing it from cache", galleryUrl);
+            FileHelper.removeFile(file);
+        } else {
+            entry.retried = true;
+            if (!writeEntry(file, entry)) FileHelper.removeFile(file);
+        }
+    }
+
+    /**
+     * Remove the cached image list of the given gallery
+     *
+     * @param context    Context to use
+     * @param galleryUrl URL of the gallery to remove the image list for
+     */
+    public static void invalidate(@NonNull Context context, @NonNull String galleryUrl) {
+        File file = getCacheFile(context, galleryUrl, false);
+        if (file != null && file.exists()) FileHelper.removeFile(file);
+    }
+
+    @Nullable
+    private static Entry readEntry(@NonNull File file, @NonNull String galleryUrl) {
+        if (!file.exists()) return null;
+
+        Entry result;
+        try (InputStream input = new FileInputStream(file)) {
+            result = JsonHelper.jsonToObject(FileHelper.readStreamAsString(input), Entry.class);
+        } catch (IOException | RuntimeException e) {
+            Timber.w(e, "Cached image list of %s couldn't be read", galleryUrl);
+            FileHelper.removeFile(file);
+            return null;
+        }
+        if (null == result || !galleryUrl.equals(result.galleryUrl)) return null; // Hash collision
+        return result;
+    }
+
+    private static boolean writeEntry(@NonNull File file, @NonNull Entry entry) {
+        try {
+            FileHelper.writeAtomically(file, JsonHelper.serializeToJson(entry, Entry.class).getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException e) {
+            Timber.w(e, "Image list of %s couldn't be cached", entry.galleryUrl);
+            return false;
+        }
+    }
+
+    private static void purgeExpired(@NonNull Context context, long nowMs) {
+        File folder = new File(context.getCacheDir(), FOLDER_NAME);
+        File[] files = folder.listFiles();
+        if (null == files) return;
+        long limit = nowMs - TTL_MS;
+        for (File f : files)
+            if (f.lastModified() < limit) FileHelper.removeFile(f);
+    }
+}
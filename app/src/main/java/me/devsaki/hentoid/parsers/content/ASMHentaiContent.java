@@ -20,23 +20,23 @@ import pl.droidsonroids.jspoon.annotation.Selector;
 
 public class ASMHentaiContent extends BaseContentParser {
     @Selector(value = "div.cover a", attr = "href", defValue = "")
-    private String galleryUrl;
+    String galleryUrl;
     @Selector(value = "div.cover a img")
-    private Element cover;
+    Element cover;
     @Selector(value = "div.info h1:first-child", defValue = NO_TITLE)
-    private String title;
+    String title;
     @Selector("div.pages h3")
-    private List<String> pages;
+    List<String> pages;
     @Selector(value = "div.info div.tags a[href^='/artist']")
-    private List<Element> artists;
+    List<Element> artists;
     @Selector(value = "div.info div.tags a[href^='/tag']")
-    private List<Element> tags;
+    List<Element> tags;
     @Selector(value = "div.info div.tags a[href^='/parod']")
-    private List<Element> series;
+    List<Element> series;
     @Selector(value = "div.info div.tags a[href^='/character']")
-    private List<Element> characters;
+    List<Element> characters;
     @Selector(value = "div.info div.tags a[href^='/language']")
-    private List<Element> languages;
+    List<Element> languages;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
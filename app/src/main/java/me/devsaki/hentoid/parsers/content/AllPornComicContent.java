@@ -25,20 +25,20 @@ import timber.log.Timber;
 
 public class AllPornComicContent extends BaseContentParser {
     @Selector(value = "head [property=og:image]", attr = "content", defValue = "")
-    private String coverUrl;
+    String coverUrl;
     @Selector(value = "head [property=og:title]", attr = "content", defValue = "")
-    private String title;
+    String title;
     @Selector(value = "head script.yoast-schema-graph")
-    private Element metadata;
+    Element metadata;
 
     @Selector(value = ".post-content a[href*='characters']")
-    private List<Element> characterTags;
+    List<Element> characterTags;
     @Selector(value = ".post-content a[href*='series']")
-    private List<Element> seriesTags;
+    List<Element> seriesTags;
     @Selector(value = ".post-content a[href*='porncomic-artist']")
-    private List<Element> artistsTags;
+    List<Element> artistsTags;
     @Selector(value = ".post-content a[href*='porncomic-genre']")
-    private List<Element> tags;
+    List<Element> tags;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
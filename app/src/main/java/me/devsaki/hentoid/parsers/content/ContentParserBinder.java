@@ -0,0 +1,48 @@
+package me.devsaki.hentoid.parsers.content;
+
+import androidx.annotation.NonNull;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Builds content parsers from the HTML code of book gallery pages
+ * <p>
+ * The @Selector fields of the parsers are bound by SelectorBindings, which is generated at build time
+ * from these annotations by the :app:processor module; no reflection is involved
+ */
+public class ContentParserBinder {
+
+    private ContentParserBinder() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Parse the given HTML stream into a new content parser of the given class
+     *
+     * @param c       Class of the content parser to create
+     * @param input   HTML stream to parse
+     * @param baseUri URL the HTML has been retrieved from; used to resolve relative links
+     * @param <T>     Class of the content parser to create
+     * @return New content parser of the given class, bound to the given HTML
+     * @throws IOException If the given stream couldn't be read
+     */
+    public static <T extends ContentParser> T fromInputStream(@NonNull Class<T> c, @NonNull InputStream input, @NonNull String baseUri) throws IOException {
+        return fromDocument(c, Jsoup.parse(input, null, baseUri));
+    }
+
+    /**
+     * Create a new content parser of the given class, bound to the given HTML document
+     *
+     * @param c   Class of the content parser to create
+     * @param doc HTML document to bind the content parser to
+     * @param <T> Class of the content parser to create
+     * @return New content parser of the given class, bound to the given document
+     */
+    public static <T extends ContentParser> T fromDocument(@NonNull Class<T> c, @NonNull Document doc) {
+        return SelectorBindings.bind(c, doc);
+    }
+}
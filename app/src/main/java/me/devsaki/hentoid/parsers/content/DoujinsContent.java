@@ -22,15 +22,15 @@ import pl.droidsonroids.jspoon.annotation.Selector;
 
 public class DoujinsContent extends BaseContentParser {
     @Selector(value = ".folder-title a")
-    private List<Element> breadcrumbs;
+    List<Element> breadcrumbs;
     @Selector("img.doujin")
-    private List<Element> images;
+    List<Element> images;
     @Selector(value = "a[href*='/artists/']")
-    private List<Element> artists;
+    List<Element> artists;
     @Selector(value = "a[href*='/searches?tag_id=']") // To deduplicate
-    private List<Element> tags;
+    List<Element> tags;
     @Selector(value = "#content .folder-message")
-    private List<Element> contentInfo;
+    List<Element> contentInfo;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
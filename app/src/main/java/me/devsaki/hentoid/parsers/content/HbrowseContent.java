@@ -21,9 +21,9 @@ import pl.droidsonroids.jspoon.annotation.Selector;
 
 public class HbrowseContent extends BaseContentParser {
     @Selector("head script")
-    private List<Element> scripts;
+    List<Element> scripts;
     @Selector("table.listTable tr")
-    private List<Element> information;
+    List<Element> information;
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
         content.setSite(Site.HBROWSE);
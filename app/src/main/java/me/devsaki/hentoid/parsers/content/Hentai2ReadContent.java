@@ -32,16 +32,16 @@ public class Hentai2ReadContent extends BaseContentParser {
     private static final Pattern GALLERY_PATTERN = Pattern.compile(Hentai2ReadActivity.GALLERY_PATTERN);
 
     @Selector(value = "div.img-container img[src*=cover]")
-    private Element cover;
+    Element cover;
     @Selector(value = "span[property^=name]")
-    private List<Element> title;
+    List<Element> title;
     @Selector("ul.list li")
-    private List<Element> properties;
+    List<Element> properties;
     @Selector(value = "li.dropdown a[data-mid]", attr = "data-mid", defValue = "")
-    private String uniqueId;
+    String uniqueId;
 
     @Selector(value = "script")
-    private List<Element> scripts;
+    List<Element> scripts;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
@@ -20,15 +20,15 @@ import pl.droidsonroids.jspoon.annotation.Selector;
 
 public class HentaifoxContent extends BaseContentParser {
     @Selector(value = ".cover img")
-    private Element cover;
+    Element cover;
     @Selector(value = ".info h1", defValue = "")
-    private String title;
+    String title;
     @Selector(".info")
-    private Element information;
+    Element information;
     @Selector(value = ".g_thumb img")
-    private List<Element> thumbs;
+    List<Element> thumbs;
     @Selector(value = "body script")
-    private List<Element> scripts;
+    List<Element> scripts;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
@@ -19,21 +19,21 @@ import pl.droidsonroids.jspoon.annotation.Selector;
 
 public class ImhentaiContent extends BaseContentParser {
     @Selector(value = "div.left_cover img")
-    private Element cover;
+    Element cover;
     @Selector(value = "div.right_details h1", defValue = "")
-    private String title;
+    String title;
     @Selector(value = "li.pages", defValue = "")
-    private String pages;
+    String pages;
     @Selector(value = "ul.galleries_info a[href*='/artist']")
-    private List<Element> artists;
+    List<Element> artists;
     @Selector(value = "ul.galleries_info a[href*='/group']")
-    private List<Element> circles;
+    List<Element> circles;
     @Selector(value = "ul.galleries_info a[href*='/tag']")
-    private List<Element> tags;
+    List<Element> tags;
     @Selector(value = "ul.galleries_info a[href*='/language']")
-    private List<Element> languages;
+    List<Element> languages;
     @Selector(value = "ul.galleries_info a[href*='/category']")
-    private List<Element> categories;
+    List<Element> categories;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
@@ -28,18 +28,18 @@ public class Manhwa18Content extends BaseContentParser {
     private static final Pattern GALLERY_PATTERN = Pattern.compile(Manhwa18Activity.GALLERY_PATTERN);
 
     @Selector(value = ".series-cover div div", attr = "style", defValue = "")
-    private String cover;
+    String cover;
     @Selector(value = ".series-name a")
-    private Element title;
+    Element title;
     @Selector(value = ".series-information a[href*=tac-gia]")
-    private List<Element> artists;
+    List<Element> artists;
     @Selector(value = ".series-information a[href*=genre]")
-    private List<Element> tags;
+    List<Element> tags;
 
     @Selector(value = "head [property=og:title]", attr = "content", defValue = "")
-    private String chapterTitle;
+    String chapterTitle;
     @Selector(value = "#chapter-content img")
-    private List<Element> chapterImgs;
+    List<Element> chapterImgs;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
@@ -32,20 +32,20 @@ public class ManhwaContent extends BaseContentParser {
     private static final Pattern GALLERY_PATTERN = Pattern.compile(ManhwaActivity.GALLERY_PATTERN);
 
     @Selector(value = "head [property=og:image]", attr = "content")
-    private String coverUrl;
+    String coverUrl;
     @Selector(value = ".breadcrumb a")
-    private List<Element> breadcrumbs;
+    List<Element> breadcrumbs;
     @Selector(value = "head script.yoast-schema-graph")
-    private Element metadata;
+    Element metadata;
     @Selector(value = ".author-content a")
-    private List<Element> author;
+    List<Element> author;
     @Selector(value = ".artist-content a")
-    private List<Element> artist;
+    List<Element> artist;
 
     @Selector(value = "#chapter-heading")
-    private Element chapterTitle;
+    Element chapterTitle;
     @Selector(value = ".reading-content img")
-    private List<Element> chapterImgs;
+    List<Element> chapterImgs;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
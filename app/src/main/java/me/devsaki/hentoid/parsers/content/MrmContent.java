@@ -22,19 +22,19 @@ import pl.droidsonroids.jspoon.annotation.Selector;
 
 public class MrmContent extends BaseContentParser {
     @Selector(value = "article h1", defValue = "")
-    private String title;
+    String title;
     @Selector(value = "time.entry-time", attr = "datetime", defValue = "")
-    private String uploadDate;
+    String uploadDate;
     @Selector(".entry-header .entry-meta .entry-categories a")
-    private List<Element> categories;
+    List<Element> categories;
     @Selector(value = ".entry-header .entry-terms a[href*='/lang/']")
-    private List<Element> languages;
+    List<Element> languages;
     @Selector(value = ".entry-header .entry-terms a[href*='/genre/']")
-    private List<Element> genres;
+    List<Element> genres;
     @Selector(value = ".entry-header .entry-tags a[href*='/tag/']")
-    private List<Element> tags;
+    List<Element> tags;
     @Selector(value = ".entry-content img")
-    private List<Element> images;
+    List<Element> images;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
@@ -23,24 +23,24 @@ import timber.log.Timber;
 
 public class MultpornContent extends BaseContentParser {
     @Selector(value = "head link[rel=shortlink]", attr = "href", defValue = "")
-    private String shortlink;
+    String shortlink;
     @Selector(value = "#page-title", defValue = "")
-    private String title;
+    String title;
     @Selector(value = "head meta[name=dcterms.date]", attr = "content", defValue = "")
-    private String publishingDate;
+    String publishingDate;
     @Selector(value = "head script")
-    private List<Element> headScripts;
+    List<Element> headScripts;
 
     @Selector(value = ".links a[href^='/characters']")
-    private List<Element> characterTags;
+    List<Element> characterTags;
     @Selector(value = ".links a[href^='/hentai']")
-    private List<Element> seriesTags1;
+    List<Element> seriesTags1;
     @Selector(value = ".links a[href^='/comics']")
-    private List<Element> seriesTags2;
+    List<Element> seriesTags2;
     @Selector(value = ".links a[href^='/authors']")
-    private List<Element> artistsTags;
+    List<Element> artistsTags;
     @Selector(value = ".links a[href^='/category']")
-    private List<Element> tags;
+    List<Element> tags;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
@@ -27,9 +27,9 @@ import timber.log.Timber;
 
 public class MusesContent extends BaseContentParser {
     @Selector(value = ".top-menu-breadcrumb a")
-    private List<Element> breadcrumbs;
+    List<Element> breadcrumbs;
     @Selector(value = ".gallery a")
-    private List<Element> thumbLinks;
+    List<Element> thumbLinks;
 
     private static final List<String> nonLegitPublishers = new ArrayList<>();
     private static final List<String> publishersWithAuthors = new ArrayList<>();
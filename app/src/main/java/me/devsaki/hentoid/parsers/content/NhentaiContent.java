@@ -24,34 +24,34 @@ import pl.droidsonroids.jspoon.annotation.Selector;
 public class NhentaiContent extends BaseContentParser {
 
     @Selector(value = "#bigcontainer #cover a", attr = "href", defValue = "")
-    private String galleryUrl;
+    String galleryUrl;
     @Selector(value = "#cover img")
-    private Element cover;
+    Element cover;
     @Selector(value = "head [property=og:title]", attr = "content", defValue = "")
-    private String title;
+    String title;
     // Fallback value for title (see #449)
     @Selector(value = "#info h1", defValue = NO_TITLE)
-    private String titleAlt;
+    String titleAlt;
     @Selector(value = "#tags time", attr = "datetime", defValue = "")
-    private String uploadDate;
+    String uploadDate;
 
     @Selector(value = "#info a[href*='/artist']")
-    private List<Element> artists;
+    List<Element> artists;
     @Selector(value = "#info a[href^='/group/']")
-    private List<Element> circles;
+    List<Element> circles;
     @Selector(value = "#info a[href*='/tag']")
-    private List<Element> tags;
+    List<Element> tags;
     @Selector(value = "#info a[href*='/parody']")
-    private List<Element> series;
+    List<Element> series;
     @Selector(value = "#info a[href*='/character']")
-    private List<Element> characters;
+    List<Element> characters;
     @Selector(value = "#info a[href*='/language']")
-    private List<Element> languages;
+    List<Element> languages;
     @Selector(value = "#info a[href*='/category']")
-    private List<Element> categories;
+    List<Element> categories;
 
     @Selector(value = "#thumbnail-container img[data-src]")
-    private List<Element> thumbs;
+    List<Element> thumbs;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
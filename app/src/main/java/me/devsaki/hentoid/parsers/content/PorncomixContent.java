@@ -26,20 +26,20 @@ import timber.log.Timber;
 
 public class PorncomixContent extends BaseContentParser {
     @Selector(value = "head [property=og:image]", attr = "content", defValue = "")
-    private String coverUrl;
+    String coverUrl;
     @Selector(value = "head [property=og:title]", attr = "content", defValue = "")
-    private String title;
+    String title;
     @Selector(value = "head script.yoast-schema-graph")
-    private Element metadata;
+    Element metadata;
 
     @Selector(value = ".wp-manga-tags-list a[href*='tag']")
-    private List<Element> mangaTags;
+    List<Element> mangaTags;
     @Selector(value = ".item-tags a[href*='tag']")
-    private List<Element> galleryTags;
+    List<Element> galleryTags;
     @Selector(value = ".bb-tags a[href*='label']")
-    private List<Element> zoneTags;
+    List<Element> zoneTags;
     @Selector(value = ".video-tags a[href*='tag']")
-    private List<Element> bestTags;
+    List<Element> bestTags;
 
     /*
     @Selector(value = "#single-pager")
@@ -51,13 +51,13 @@ public class PorncomixContent extends BaseContentParser {
      */
 
     @Selector(value = ".reading-content script")
-    private Element mangaPagesContainer;
+    Element mangaPagesContainer;
     @Selector(value = "#dgwt-jg-2 a")
-    private List<Element> galleryPages; // same for zone
+    List<Element> galleryPages; // same for zone
     @Selector(value = ".unite-gallery img")
-    private List<Element> galleryPages2;
+    List<Element> galleryPages2;
     @Selector(value = "#gallery-2 a")
-    private List<Element> bestPages;
+    List<Element> bestPages;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
@@ -21,25 +21,25 @@ import pl.droidsonroids.jspoon.annotation.Selector;
 
 public class PururinContent extends BaseContentParser {
     @Selector(value = "head [property=og:image]", attr = "content")
-    private String coverUrl;
+    String coverUrl;
     @Selector(value = "div.title", defValue = "")
-    private List<String> title;
+    List<String> title;
     @Selector("table.table-gallery-info tr td")
-    private List<String> pages;
+    List<String> pages;
     @Selector(value = "table.table-gallery-info a[href*='/tags/artist']")
-    private List<Element> artists;
+    List<Element> artists;
     @Selector(value = "table.table-gallery-info a[href*='/tags/circle']")
-    private List<Element> circles;
+    List<Element> circles;
     @Selector(value = "table.table-gallery-info a[href*='/tags/content']")
-    private List<Element> tags;
+    List<Element> tags;
     @Selector(value = "table.table-gallery-info a[href*='/tags/parody']")
-    private List<Element> series;
+    List<Element> series;
     @Selector(value = "table.table-gallery-info a[href*='/tags/character']")
-    private List<Element> characters;
+    List<Element> characters;
     @Selector(value = "table.table-gallery-info a[href*='/tags/language']")
-    private List<Element> languages;
+    List<Element> languages;
     @Selector(value = "table.table-gallery-info a[href*='/tags/category']")
-    private List<Element> categories;
+    List<Element> categories;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
@@ -22,27 +22,27 @@ import pl.droidsonroids.jspoon.annotation.Selector;
 
 public class TsuminoContent extends BaseContentParser {
     @Selector(value = "div.book-page-cover a", attr = "href", defValue = "")
-    private String galleryUrl;
+    String galleryUrl;
     @Selector(value = "img.book-page-image")
-    private Element cover;
+    Element cover;
     @Selector(value = "div#Title", defValue = "")
-    private String title;
+    String title;
     @Selector(value = "div#Uploaded", defValue = "")
-    private String uploadDate;
+    String uploadDate;
     @Selector(value = "div#Pages", defValue = "")
-    private String pages;
+    String pages;
     @Selector(value = "div#Artist a")
-    private List<Element> artists;
+    List<Element> artists;
     @Selector(value = "div#Group a")
-    private List<Element> circles;
+    List<Element> circles;
     @Selector(value = "div#Tag a")
-    private List<Element> tags;
+    List<Element> tags;
     @Selector(value = "div#Parody a")
-    private List<Element> series;
+    List<Element> series;
     @Selector(value = "div#Character a")
-    private List<Element> characters;
+    List<Element> characters;
     @Selector(value = "div#Category a")
-    private List<Element> categories;
+    List<Element> categories;
 
 
     public Content update(@NonNull final Content content, @Nonnull String url, boolean updateImages) {
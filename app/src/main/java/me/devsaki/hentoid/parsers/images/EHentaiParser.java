@@ -26,6 +26,8 @@ import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
 import me.devsaki.hentoid.database.domains.Chapter;
 import me.devsaki.hentoid.database.domains.Content;
 import me.devsaki.hentoid.database.domains.ImageFile;
@@ -50,6 +52,14 @@ public class EHentaiParser implements ImageListParser {
 
     private static final String LIMIT_509_URL = "/509.gif";
 
+    // Elements the image pages and the multipage viewer are read until
+    private static final String DISPLAYED_IMAGE_CSS = "img#img";
+    private static final String BACKUP_LINK_CSS = "#loadfail";
+    private static final String MPV_SCRIPT_CSS = "script:containsData(pagecount)";
+
+    // Default number of gallery index pages fetched at the same time
+    private static final int INDEX_PAGES_PARALLELISM = 4;
+
     private final ParseProgress progress = new ParseProgress();
 
     static class MpvInfo {
@@ -214,13 +224,8 @@ public class EHentaiParser implements ImageListParser {
 
         fetchPageUrls(galleryDoc, pageUrls);
 
-        if (nbGalleryPages > 1) {
-            for (int i = 1; i < nbGalleryPages && !progress.isProcessHalted(); i++) {
-                Document pageDoc = getOnlineDocument(content.getGalleryUrl() + "/?p=" + i, headers, useHentoidAgent, useWebviewAgent);
-                if (pageDoc != null) fetchPageUrls(pageDoc, pageUrls);
-                progress.advance();
-            }
-        }
+        if (nbGalleryPages > 1)
+            pageUrls.addAll(fetchIndexPagesUrls(content, nbGalleryPages, headers, useHentoidAgent, useWebviewAgent, progress));
 
         // 3- Open all pages and
         //    - grab the URL of the displayed image
@@ -235,6 +240,59 @@ public class EHentaiParser implements ImageListParser {
         return result;
     }
 
+    /**
+     * Fetch the URLs of the pages listed on the index pages of the given gallery, except the 1st index page
+     * <p>
+     * Index pages are fetched in parallel, up to the parallel download cap of the site
+     *
+     * @param content        Gallery to fetch the index pages of
+     * @param nbGalleryPages Number of index pages of the gallery
+     * @param progress       Progress to report to; fetching stops when its process is halted
+     * @return URLs of the pages listed on the index pages, in the order of the gallery
+     * @throws IOException If an index page couldn't be fetched
+     */
+    private static List<String> fetchIndexPagesUrls(
+            @NonNull Content content,
+            int nbGalleryPages,
+            @NonNull final List<Pair<String, String>> headers,
+            boolean useHentoidAgent,
+            boolean useWebviewAgent,
+            @NonNull ParseProgress progress) throws IOException {
+        int parallelism = INDEX_PAGES_PARALLELISM;
+        if (content.getSite().getParallelDownloadCap() > 0)
+            parallelism = Math.min(parallelism, content.getSite().getParallelDownloadCap());
+
+        List<String> result = new ArrayList<>();
+        try {
+            // concatMapEager runs the fetches concurrently but emits their results in the order of the index pages
+            Iterable<List<String>> indexPages = Observable.range(1, nbGalleryPages - 1)
+                    .takeWhile(i -> !progress.isProcessHalted())
+                    .concatMapEager(i -> Observable.fromCallable(() -> fetchIndexPageUrls(content.getGalleryUrl() + "/?p=" + i, headers, useHentoidAgent, useWebviewAgent, progress))
+                            .subscribeOn(Schedulers.io()), parallelism, 1)
+                    .blockingIterable();
+            for (List<String> urls : indexPages) result.addAll(urls);
+        } catch (RuntimeException e) {
+            // Blocking operators wrap checked exceptions
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw e;
+        }
+        return result;
+    }
+
+    private static List<String> fetchIndexPageUrls(
+            @NonNull String url,
+            @NonNull final List<Pair<String, String>> headers,
+            boolean useHentoidAgent,
+            boolean useWebviewAgent,
+            @NonNull ParseProgress progress) throws IOException {
+        List<String> result = new ArrayList<>();
+        if (progress.isProcessHalted()) return result;
+        Document pageDoc = getOnlineDocument(url, headers, useHentoidAgent, useWebviewAgent);
+        if (pageDoc != null) fetchPageUrls(pageDoc, result);
+        progress.advance();
+        return result;
+    }
+
     static void fetchPageUrls(@Nonnull Document doc, List<String> pageUrls) {
         Elements imageLinks = doc.select(".gdtm a"); // Normal thumbs
         if (imageLinks.isEmpty())
@@ -245,7 +303,7 @@ public class EHentaiParser implements ImageListParser {
     }
 
     static String getDisplayedImageUrl(@Nonnull Document doc) {
-        Elements elements = doc.select("img#img");
+        Elements elements = doc.select(DISPLAYED_IMAGE_CSS);
         if (!elements.isEmpty()) {
             Element e = elements.first();
             if (e != null) return ParseHelper.getImgSrc(e);
@@ -261,7 +319,7 @@ public class EHentaiParser implements ImageListParser {
     static Optional<String> getBackupPageUrl(@NonNull Document doc, @NonNull String queryUrl) {
         // "Click here if the image fails loading" link
         // -> add backup info to the image's downloadParams
-        Elements elements = doc.select("#loadfail");
+        Elements elements = doc.select(BACKUP_LINK_CSS);
         if (!elements.isEmpty()) {
             Element e = elements.first();
             if (e != null) {
@@ -288,7 +346,7 @@ public class EHentaiParser implements ImageListParser {
                                 boolean useHentoidAgent,
                                 boolean useWebviewAgent) throws IOException {
         MpvInfo result = null;
-        Document doc = getOnlineDocument(url, headers, useHentoidAgent, useWebviewAgent);
+        Document doc = getOnlineDocument(url, headers, useHentoidAgent, useWebviewAgent, MPV_SCRIPT_CSS);
         if (doc != null) {
             List<Element> scripts = doc.select("script");
             for (Element script : scripts) {
@@ -327,7 +385,7 @@ public class EHentaiParser implements ImageListParser {
             int maxPages,
             Chapter chapter) throws Exception {
         List<Pair<String, String>> reqHeaders = HttpHelper.webkitRequestHeadersToOkHttpHeaders(requestHeaders, url);
-        Document doc = getOnlineDocument(url, reqHeaders, site.useHentoidAgent(), site.useWebviewAgent());
+        Document doc = getOnlineDocument(url, reqHeaders, site.useHentoidAgent(), site.useWebviewAgent(), DISPLAYED_IMAGE_CSS);
         if (doc != null) {
             String imageUrl = getDisplayedImageUrl(doc).toLowerCase();
             // If we have the 509.gif picture, it means the bandwidth limit for e-h has been reached
@@ -357,7 +415,8 @@ public class EHentaiParser implements ImageListParser {
     }
 
     static ImmutablePair<String, Optional<String>> parseImagePageClassic(@NonNull String url, @NonNull List<Pair<String, String>> requestHeaders, @NonNull final Site site) throws IOException, LimitReachedException, EmptyResultException {
-        Document doc = getOnlineDocument(url, requestHeaders, site.useHentoidAgent(), site.useWebviewAgent());
+        // The backup link comes after the displayed image
+        Document doc = getOnlineDocument(url, requestHeaders, site.useHentoidAgent(), site.useWebviewAgent(), BACKUP_LINK_CSS);
         if (doc != null) {
             String imageUrl = getDisplayedImageUrl(doc).toLowerCase();
             // If we have the 509.gif picture, it means the bandwidth limit for e-h has been reached
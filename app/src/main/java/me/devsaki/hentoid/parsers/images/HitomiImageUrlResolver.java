@@ -0,0 +1,151 @@
+package me.devsaki.hentoid.parsers.images;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.util.Pair;
+
+import org.threeten.bp.Instant;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import me.devsaki.hentoid.enums.Site;
+import me.devsaki.hentoid.json.sources.HitomiGalleryInfo;
+import me.devsaki.hentoid.util.exception.EmptyResultException;
+import me.devsaki.hentoid.util.network.HttpHelper;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Computes the URLs of the pictures of Hitomi galleries without running the site's JS
+ * <p>
+ * Ports hitomi.la's url_from_url_from_hash (common.js), using the routing parameters of gg.js :
+ * - m : subdomain of the image server, according to the hash of the picture
+ * - b : path prefix, regenerated regularly by the site
+ * - s : folder, according to the hash of the picture
+ * <p>
+ * gg.js is parsed rather than evaluated; any unexpected structure makes the resolution fail,
+ * in which case the site's JS has to be used instead
+ */
+class HitomiImageUrlResolver {
+
+    private static final String GG_URL = "https://ltn.hitomi.la/gg.js";
+    // gg.js is regenerated by the site every now and then
+    private static final long GG_REFRESH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Pattern GG_DEFAULT_PATTERN = Pattern.compile("var o = (\\d)");
+    private static final Pattern GG_CASE_PATTERN = Pattern.compile("case (\\d+):");
+    private static final Pattern GG_CASE_VALUE_PATTERN = Pattern.compile("o = (\\d); break;");
+    private static final Pattern GG_B_PATTERN = Pattern.compile("b: '(\\d+/)'");
+    private static final Pattern HASH_PATTERN = Pattern.compile("([0-9a-f]{2})([0-9a-f])$");
+
+    private static GgParams ggParams = null;
+    private static long ggTimestamp = 0;
+
+    private HitomiImageUrlResolver() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Routing parameters of gg.js
+     */
+    static class GgParams {
+        // Value of m for the listed cases
+        private final Set<Integer> cases;
+        private final int caseValue;
+        // Value of m for the other cases
+        private final int defaultValue;
+        private final String b;
+
+        GgParams(@NonNull Set<Integer> cases, int caseValue, int defaultValue, @NonNull String b) {
+            this.cases = cases;
+            this.caseValue = caseValue;
+            this.defaultValue = defaultValue;
+            this.b = b;
+        }
+
+        int m(int g) {
+            return cases.contains(g) ? caseValue : defaultValue;
+        }
+    }
+
+    /**
+     * Compute the URLs of the pictures of the given gallery
+     *
+     * @param galleryInfo Gallery to compute the picture URLs for
+     * @return URLs of the pictures of the given gallery, in the order of the gallery
+     * @throws IOException          If gg.js couldn't be retrieved
+     * @throws EmptyResultException If gg.js or the gallery have an unexpected structure
+     */
+    static List<String> getImageUrls(@NonNull HitomiGalleryInfo galleryInfo) throws IOException, EmptyResultException {
+        return getImageUrls(galleryInfo, getGgParams());
+    }
+
+    static List<String> getImageUrls(@NonNull HitomiGalleryInfo galleryInfo, @NonNull GgParams gg) throws EmptyResultException {
+        List<String> result = new ArrayList<>();
+        for (HitomiGalleryInfo.HitomiFile file : galleryInfo.getFiles()) {
+            if (file.hasWebp()) result.add(getImageUrl(gg, file.getHash(), "webp", "webp", "a"));
+            else {
+                String name = file.getName();
+                result.add(getImageUrl(gg, file.getHash(), "images", name.substring(name.lastIndexOf('.') + 1), "b"));
+            }
+        }
+        return result;
+    }
+
+    private static String getImageUrl(@NonNull GgParams gg, @NonNull String hash, @NonNull String dir, @NonNull String ext, @NonNull String base) throws EmptyResultException {
+        Matcher m = HASH_PATTERN.matcher(hash);
+        if (!m.find()) throw new EmptyResultException("Unexpected picture hash : " + hash);
+        int g = Integer.parseInt(m.group(2) + m.group(1), 16);
+        String subdomain = (char) ('a' + gg.m(g)) + base;
+        return "https://" + subdomain + ".hitomi.la/" + dir + "/" + gg.b + g + "/" + hash + "." + ext;
+    }
+
+    private static synchronized GgParams getGgParams() throws IOException, EmptyResultException {
+        long now = Instant.now().toEpochMilli();
+        if (ggParams != null && now - ggTimestamp < GG_REFRESH_INTERVAL_MS) return ggParams;
+
+        List<Pair<String, String>> headers = new ArrayList<>();
+        headers.add(new Pair<>(HttpHelper.HEADER_REFERER_KEY, Site.HITOMI.getUrl()));
+        Response response = HttpHelper.getOnlineResourceFast(GG_URL, headers, Site.HITOMI.useMobileAgent(), Site.HITOMI.useHentoidAgent(), Site.HITOMI.useWebviewAgent());
+        ResponseBody body = response.body();
+        if (null == body) throw new IOException("Empty body");
+
+        ggParams = parseGgJs(body.string());
+        ggTimestamp = now;
+        return ggParams;
+    }
+
+    /**
+     * Parse the routing parameters of the given gg.js script
+     *
+     * @param js Contents of gg.js
+     * @return Routing parameters of the given script
+     * @throws EmptyResultException If the given script has an unexpected structure
+     */
+    static GgParams parseGgJs(@NonNull String js) throws EmptyResultException {
+        Integer defaultValue = findInt(GG_DEFAULT_PATTERN, js);
+        Integer caseValue = findInt(GG_CASE_VALUE_PATTERN, js);
+        Matcher bMatcher = GG_B_PATTERN.matcher(js);
+        if (null == defaultValue || null == caseValue || !bMatcher.find())
+            throw new EmptyResultException("Unexpected gg.js structure");
+
+        Set<Integer> cases = new HashSet<>();
+        Matcher m = GG_CASE_PATTERN.matcher(js);
+        while (m.find()) cases.add(Integer.parseInt(m.group(1)));
+
+        return new GgParams(cases, caseValue, defaultValue, bMatcher.group(1));
+    }
+
+    @Nullable
+    private static Integer findInt(@NonNull Pattern pattern, @NonNull String s) {
+        Matcher m = pattern.matcher(s);
+        return m.find() ? Integer.parseInt(m.group(1)) : null;
+    }
+}
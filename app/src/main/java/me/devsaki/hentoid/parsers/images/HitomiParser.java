@@ -65,10 +65,45 @@ public class HitomiParser extends BaseImageListParser {
         if (null == body) throw new IOException("Empty body");
         String galleryInfo = body.string();
 
-        updateContentInfo(onlineContent, galleryInfo);
+        HitomiGalleryInfo gallery = parseGalleryInfo(galleryInfo);
+        gallery.updateContent(onlineContent);
         onlineContent.setUpdatedProperties(true);
 
         // Get pages URL
+        List<String> imageUrls;
+        try {
+            imageUrls = HitomiImageUrlResolver.getImageUrls(gallery);
+        } catch (IOException | EmptyResultException e) {
+            Timber.w(e, "Pages of %s couldn't be resolved; using the site's scripts instead", pageUrl);
+            imageUrls = getImageUrlsWithWebview(pageUrl, galleryInfo, webview);
+            if (null == imageUrls) return result;
+        }
+
+        if (imageUrls != null && !imageUrls.isEmpty()) {
+            onlineContent.setCoverImageUrl(imageUrls.get(0));
+            result.add(ImageFile.newCover(imageUrls.get(0), StatusContent.SAVED));
+            int order = 1;
+            for (String s : imageUrls) {
+                ImageFile img = ParseHelper.urlToImageFile(s, order++, imageUrls.size(), StatusContent.SAVED);
+                img.setDownloadParams(downloadParamsStr);
+                result.add(img);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Compute the URLs of the pictures of the given gallery by running the site's scripts on a WebView
+     *
+     * @param pageUrl     URL of the reader page of the gallery
+     * @param galleryInfo Gallery information script, as served by the site
+     * @param webview     WebView to use; a new one is created if null
+     * @return URLs of the pictures of the given gallery, in the order of the gallery; null if the process has been halted
+     * @throws Exception If the URLs couldn't be computed
+     */
+    @Nullable
+    private List<String> getImageUrlsWithWebview(@NonNull String pageUrl, @NonNull String galleryInfo, @Nullable WebView webview) throws Exception {
         final AtomicBoolean done = new AtomicBoolean(false);
         final AtomicReference<String> imagesStr = new AtomicReference<>();
         Handler handler = new Handler(Looper.getMainLooper());
@@ -88,26 +123,14 @@ public class HitomiParser extends BaseImageListParser {
         do {
             Helper.pause(1000);
         } while (!done.get() && !processHalted.get() && remainingIterations-- > 0);
-        if (processHalted.get()) return result;
+        if (processHalted.get()) return null;
 
         String jsResult = imagesStr.get();
         if (null == jsResult)
             throw new EmptyResultException("Unable to detect pages (empty result)");
 
         jsResult = jsResult.replace("\"[", "[").replace("]\"", "]").replace("\\\"", "\"");
-        List<String> imageUrls = JsonHelper.jsonToObject(jsResult, JsonHelper.LIST_STRINGS);
-        if (imageUrls != null && !imageUrls.isEmpty()) {
-            onlineContent.setCoverImageUrl(imageUrls.get(0));
-            result.add(ImageFile.newCover(imageUrls.get(0), StatusContent.SAVED));
-            int order = 1;
-            for (String s : imageUrls) {
-                ImageFile img = ParseHelper.urlToImageFile(s, order++, imageUrls.size(), StatusContent.SAVED);
-                img.setDownloadParams(downloadParamsStr);
-                result.add(img);
-            }
-        }
-
-        return result;
+        return JsonHelper.jsonToObject(jsResult, JsonHelper.LIST_STRINGS);
     }
 
     // TODO doc
@@ -127,13 +150,19 @@ public class HitomiParser extends BaseImageListParser {
         return sb.toString().replace("$galleryInfo", galleryInfo);
     }
 
-    // TODO doc
-    private void updateContentInfo(@NonNull Content content, @NonNull String galleryInfoStr) throws Exception {
+    /**
+     * Parse the given gallery information script, as served by the site
+     *
+     * @param galleryInfoStr Gallery information script to parse
+     * @return Gallery information
+     * @throws IOException If the given script has an unexpected structure
+     */
+    private HitomiGalleryInfo parseGalleryInfo(@NonNull String galleryInfoStr) throws IOException {
         int firstBrace = galleryInfoStr.indexOf("{");
         int lastBrace = galleryInfoStr.lastIndexOf("}");
+        if (firstBrace < 0 || lastBrace < firstBrace) throw new IOException("Unexpected gallery information");
         String galleryJson = galleryInfoStr.substring(firstBrace, lastBrace + 1);
-        HitomiGalleryInfo galleryInfo = JsonHelper.jsonToObject(galleryJson, HitomiGalleryInfo.class);
-        galleryInfo.updateContent(content);
+        return JsonHelper.jsonToObject(galleryJson, HitomiGalleryInfo.class);
     }
 
     @Override
@@ -1,6 +1,7 @@
 package me.devsaki.hentoid.parsers.images;
 
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import me.devsaki.hentoid.parsers.ParseHelper;
 
@@ -8,7 +9,7 @@ class ParseProgress {
 
     private long contentId;
     private long storedId;
-    private int currentStep;
+    private final AtomicInteger currentStep = new AtomicInteger(0);
     private int maxSteps;
     private boolean hasStarted = false;
     private final AtomicBoolean processHalted = new AtomicBoolean(false);
@@ -16,9 +17,9 @@ class ParseProgress {
     void start(long contentId, long storedId, int maxSteps) {
         this.contentId = contentId;
         this.storedId = storedId;
-        currentStep = 0;
+        currentStep.set(0);
         this.maxSteps = maxSteps;
-        ParseHelper.signalProgress(contentId, storedId, currentStep, maxSteps);
+        ParseHelper.signalProgress(contentId, storedId, 0, maxSteps);
         hasStarted = true;
     }
 
@@ -34,8 +35,9 @@ class ParseProgress {
         processHalted.set(true);
     }
 
+    // May be called from concurrent threads
     void advance() {
-        ParseHelper.signalProgress(contentId, storedId, ++currentStep, maxSteps);
+        ParseHelper.signalProgress(contentId, storedId, currentStep.incrementAndGet(), maxSteps);
     }
 
     void complete() {
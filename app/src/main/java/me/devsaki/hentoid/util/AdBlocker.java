@@ -1,19 +1,26 @@
 package me.devsaki.hentoid.util;
 
 import android.os.Looper;
+import android.webkit.WebResourceResponse;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.util.Pair;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.regex.Pattern;
 
 import me.devsaki.hentoid.BuildConfig;
@@ -21,6 +28,8 @@ import me.devsaki.hentoid.R;
 import me.devsaki.hentoid.core.HentoidApp;
 import me.devsaki.hentoid.enums.Site;
 import me.devsaki.hentoid.util.network.HttpHelper;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import timber.log.Timber;
@@ -30,22 +39,31 @@ public class AdBlocker {
 
     // List of blocked URLs (ads or annoying images) -- will be replaced by a blank stream
     // Universal lists (applied to all sites)
-    private static final Set<String> universalUrlBlacklist = new HashSet<>();
-    private static final Set<String> universalUrlWhitelist = new HashSet<>();
-    // Local lists (applied to current site)
-    private final Set<String> localUrlBlacklist = Collections.synchronizedSet(new HashSet<>());
-    private final Set<String> localUrlWhitelist = Collections.synchronizedSet(new HashSet<>());
-    private final Set<Pattern> jsUrlPatternWhitelist = Collections.synchronizedSet(new HashSet<>());
-    private final Set<String> jsContentBlacklist = Collections.synchronizedSet(new HashSet<>());
+    private static final MultiSubstringMatcher universalUrlBlacklist;
+    private static final MultiSubstringMatcher universalUrlWhitelist;
+    // Local lists (applied to current site); only accessed by writers, under the AdBlocker's lock
+    private final Set<String> localUrlBlacklist = new HashSet<>();
+    private final Set<String> localUrlWhitelist = new HashSet<>();
+    private final List<String> jsUrlPatternWhitelist = new ArrayList<>();
+    // Compiled versions of the local lists, rebuilt each time the lists change; read without locking
+    private volatile MultiSubstringMatcher localUrlBlacklistMatcher = MultiSubstringMatcher.empty();
+    private volatile MultiSubstringMatcher localUrlWhitelistMatcher = MultiSubstringMatcher.empty();
+    private volatile Pattern jsUrlPatternWhitelistMatcher = null;
 
-    private final Set<String> jsBlacklistCache = Collections.synchronizedSet(new HashSet<>());
+    // Keywords that block the grey JS files (i.e. neither whitelisted nor blacklisted) containing them
+    private final Set<String> jsContentBlacklist = new HashSet<>();
+    private volatile MultiSubstringMatcher jsContentBlacklistMatcher = MultiSubstringMatcher.empty();
+    private volatile long jsContentRulesHash = 0;
+
+    // Grey files being downloaded for inspection, by key
+    private final ConcurrentHashMap<String, FutureTask<Inspection>> inspections = new ConcurrentHashMap<>();
 
 
     static {
         String[] appUrlBlacklist = HentoidApp.getInstance().getResources().getStringArray(R.array.blocked_domains);
-        universalUrlBlacklist.addAll(Arrays.asList(appUrlBlacklist));
+        universalUrlBlacklist = MultiSubstringMatcher.compile(Arrays.asList(appUrlBlacklist));
         String[] appUrlWhitelist = HentoidApp.getInstance().getResources().getStringArray(R.array.allowed_domains);
-        universalUrlWhitelist.addAll(Arrays.asList(appUrlWhitelist));
+        universalUrlWhitelist = MultiSubstringMatcher.compile(Arrays.asList(appUrlWhitelist));
     }
 
 
@@ -61,20 +79,14 @@ public class AdBlocker {
      */
     private boolean isUrlBlacklisted(@NonNull String url) {
         // First search into the local list...
-        synchronized (localUrlBlacklist) {
-            for (String s : localUrlBlacklist) {
-                if (url.contains(s)) {
-                    if (BuildConfig.DEBUG) Timber.v("Blacklisted URL blocked (local) : %s", url);
-                    return true;
-                }
-            }
+        if (localUrlBlacklistMatcher.matches(url)) {
+            if (BuildConfig.DEBUG) Timber.v("Blacklisted URL blocked (local) : %s", url);
+            return true;
         }
         // ...then into the universal list
-        for (String s : universalUrlBlacklist) {
-            if (url.contains(s)) {
-                if (BuildConfig.DEBUG) Timber.v("Blacklisted URL blocked (global) : %s", url);
-                return true;
-            }
+        if (universalUrlBlacklist.matches(url)) {
+            if (BuildConfig.DEBUG) Timber.v("Blacklisted URL blocked (global) : %s", url);
+            return true;
         }
         return false;
     }
@@ -87,30 +99,20 @@ public class AdBlocker {
      */
     private boolean isUrlWhitelisted(@NonNull String url) {
         // First search into the local simple list...
-        synchronized (localUrlWhitelist) {
-            for (String s : localUrlWhitelist) {
-                if (url.contains(s)) {
-                    if (BuildConfig.DEBUG) Timber.v("Whitelisted URL (local) : %s", url);
-                    return true;
-                }
-            }
+        if (localUrlWhitelistMatcher.matches(url)) {
+            if (BuildConfig.DEBUG) Timber.v("Whitelisted URL (local) : %s", url);
+            return true;
         }
         // ...then into the global simple list...
-        for (String s : universalUrlWhitelist) {
-            if (url.contains(s)) {
-                if (BuildConfig.DEBUG) Timber.v("Whitelisted URL (global) : %s", url);
-                return true;
-            }
+        if (universalUrlWhitelist.matches(url)) {
+            if (BuildConfig.DEBUG) Timber.v("Whitelisted URL (global) : %s", url);
+            return true;
         }
         // ...then into the js pattern list (more costly)
-        synchronized (jsUrlPatternWhitelist) {
-            for (Pattern p : jsUrlPatternWhitelist) {
-                Matcher matcher = p.matcher(url);
-                if (matcher.find()) {
-                    if (BuildConfig.DEBUG) Timber.v("Whitelisted URL (pattern) : %s", url);
-                    return true;
-                }
-            }
+        Pattern p = jsUrlPatternWhitelistMatcher;
+        if (p != null && p.matcher(url).find()) {
+            if (BuildConfig.DEBUG) Timber.v("Whitelisted URL (pattern) : %s", url);
+            return true;
         }
         return false;
     }
@@ -120,8 +122,9 @@ public class AdBlocker {
      *
      * @param filter Filter to addAll to local blacklist
      */
-    public void addToUrlBlacklist(String... filter) {
-        Collections.addAll(localUrlBlacklist, filter);
+    public synchronized void addToUrlBlacklist(String... filter) {
+        if (Collections.addAll(localUrlBlacklist, filter))
+            localUrlBlacklistMatcher = MultiSubstringMatcher.compile(localUrlBlacklist);
     }
 
     /**
@@ -129,8 +132,9 @@ public class AdBlocker {
      *
      * @param filter Filter to addAll to local whitelist
      */
-    public void addToJsUrlWhitelist(String... filter) {
-        Collections.addAll(localUrlWhitelist, filter);
+    public synchronized void addToJsUrlWhitelist(String... filter) {
+        if (Collections.addAll(localUrlWhitelist, filter))
+            localUrlWhitelistMatcher = MultiSubstringMatcher.compile(localUrlWhitelist);
     }
 
     /**
@@ -138,8 +142,17 @@ public class AdBlocker {
      *
      * @param pattern Pattern to add
      */
-    public void addJsUrlPatternWhitelist(@NonNull final String pattern) {
-        jsUrlPatternWhitelist.add(Pattern.compile(pattern));
+    public synchronized void addJsUrlPatternWhitelist(@NonNull final String pattern) {
+        Pattern.compile(pattern); // Fail early on invalid patterns
+        jsUrlPatternWhitelist.add(pattern);
+
+        // Combine all patterns into a single one to scan URLs only once
+        StringBuilder sb = new StringBuilder();
+        for (String p : jsUrlPatternWhitelist) {
+            if (sb.length() > 0) sb.append('|');
+            sb.append("(?:").append(p).append(')');
+        }
+        jsUrlPatternWhitelistMatcher = Pattern.compile(sb.toString());
     }
 
     /**
@@ -147,8 +160,14 @@ public class AdBlocker {
      *
      * @param sequence Sequence to add to the Javascript content blacklist
      */
-    public void addJsContentBlacklist(@NonNull final String sequence) {
-        jsContentBlacklist.add(sequence);
+    public synchronized void addJsContentBlacklist(@NonNull final String sequence) {
+        if (!jsContentBlacklist.add(sequence)) return;
+        jsContentBlacklistMatcher = MultiSubstringMatcher.compile(jsContentBlacklist);
+
+        // Cached verdicts are only valid for the keywords they have been given with
+        StringBuilder sb = new StringBuilder();
+        for (String s : new TreeSet<>(jsContentBlacklist)) sb.append(s).append('\n');
+        jsContentRulesHash = Helper.hash64(sb.toString().getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -159,67 +178,197 @@ public class AdBlocker {
      * @return True if the resource is blocked; false if not
      */
     public boolean isBlocked(@NonNull final String url, @Nullable final Map<String, String> headers) {
+        return examine(url, headers).isBlocked();
+    }
+
+    /**
+     * Examine the resource at the given URL according to the current adblock settings
+     *
+     * @param url     Url to examine
+     * @param headers HTTP request headers to use
+     * @return Verdict on the resource, including its contents if they had to be downloaded to be examined
+     */
+    public Verdict examine(@NonNull final String url, @Nullable final Map<String, String> headers) {
         final String cleanUrl = url.toLowerCase();
 
         // 1- Accept whitelisted JS files
-        if (isUrlWhitelisted(cleanUrl)) return false;
+        if (isUrlWhitelisted(cleanUrl)) return Verdict.ALLOWED;
 
-        // 2- Process usual blacklist and cached dynamic blacklist
-        if (isUrlBlacklisted(cleanUrl)) return true;
-        if (jsBlacklistCache.contains(cleanUrl)) {
-            if (BuildConfig.DEBUG)
-                Timber.v("Blacklisted file BLOCKED (jsBlacklistCache) : %s", cleanUrl);
-            return true;
-        }
+        // 2- Process usual blacklist
+        if (isUrlBlacklisted(cleanUrl)) return Verdict.BLOCKED;
 
         // 3- Accept non-JS files that are not blacklisted
         String extension = HttpHelper.getExtensionFromUri(cleanUrl);
         boolean isJs = (extension.equals("js") || extension.isEmpty()); // Obvious js and hidden js
-        if (!isJs) return false;
+        if (!isJs) return Verdict.ALLOWED;
 
         // If no grey list has been defined...
-        if (jsContentBlacklist.isEmpty()) {
+        MultiSubstringMatcher greyList = jsContentBlacklistMatcher;
+        if (greyList.isEmpty()) {
             // ...be lenient if there's no local whitelist set (vanilla adblocker); block instead as it has not been explicitly whitelisted
-            return (localUrlWhitelist.size() + jsUrlPatternWhitelist.size() > 0);
+            return (!localUrlWhitelistMatcher.isEmpty() || jsUrlPatternWhitelistMatcher != null) ? Verdict.BLOCKED : Verdict.ALLOWED;
         }
 
-
         // 4- If a grey list has been defined, block them if they _contain_ keywords
-        if (Looper.getMainLooper().getThread() != Thread.currentThread()) { // No network call on UI thread
-            Timber.d(">> examining grey file : %s", url);
-            try {
-                List<Pair<String, String>> requestHeadersList = HttpHelper.webkitRequestHeadersToOkHttpHeaders(headers, url);
-                Response response = HttpHelper.getOnlineResourceFast(url, requestHeadersList, site.useMobileAgent(), site.useHentoidAgent(), site.useWebviewAgent());
-                if (response.code() >= 400) {
-                    Timber.d(">> grey file KO (%d) : %s", response.code(), url);
-                    return false; // Better safe than sorry
-                }
-
-                ResponseBody body = response.body();
-                if (null == body) throw new IOException("Empty body");
-                Timber.d(">> grey file downloaded : %s", url);
-
-                String jsBody = body.string().toLowerCase();
-                synchronized (jsContentBlacklist) {
-                    for (String s : jsContentBlacklist)
-                        if (jsBody.contains(s)) {
-                            Timber.d(">> grey file %s BLOCKED", url);
-                            jsBlacklistCache.add(cleanUrl);
-                            return true;
-                        }
-                }
-            } catch (IOException e) {
-                Timber.d(e, ">> I/O issue while retrieving %s", url);
-            } catch (IllegalArgumentException iae) {
-                Timber.e(iae);
-                return true; // Avoid feeding malformed URLs to Chromium on older Androids (crash reported on Lollipop)
+        if (Looper.getMainLooper().getThread() == Thread.currentThread())
+            return Verdict.ALLOWED; // No network call on UI thread
+
+        // URLs are case-sensitive; the lowercased URL is only used for matching
+        final String key = site.getCode() + " " + url;
+        final long rules = jsContentRulesHash;
+        final JsVerdictCache.Entry verdict = JsVerdictCache.getInstance(HentoidApp.getInstance()).get(key, rules);
+        if (verdict != null && verdict.isFresh()) {
+            if (BuildConfig.DEBUG)
+                Timber.v("Grey file %s (cached verdict) : %s", verdict.isBlocked() ? "BLOCKED" : "ALLOWED", cleanUrl);
+            return verdict.isBlocked() ? Verdict.BLOCKED : Verdict.ALLOWED;
+        }
+
+        // Download the file once, whatever the number of concurrent requests for it
+        final boolean isServable = extension.equals("js");
+        FutureTask<Inspection> task = new FutureTask<>(() -> inspect(url, headers, key, rules, greyList, verdict, isServable));
+        FutureTask<Inspection> inspection = inspections.putIfAbsent(key, task);
+        if (null == inspection) {
+            inspection = task;
+            task.run();
+            inspections.remove(key, task);
+        }
+        try {
+            return inspection.get().toVerdict();
+        } catch (ExecutionException e) {
+            Timber.w(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Accept non-blocked (=grey) JS files
+        return Verdict.ALLOWED;
+    }
+
+    /**
+     * Download the given grey file and look for blacklisted keywords inside
+     *
+     * @param url       Url of the file
+     * @param headers   HTTP request headers to use
+     * @param key       Key of the file inside the verdict cache
+     * @param rules     Hash of the keywords to look for
+     * @param greyList  Keywords to look for
+     * @param lastKnown Previous verdict on the file, to be revalidated; null if none
+     * @param servable  True if the downloaded file can be served to the WebView (i.e. it is a real JS file)
+     * @return Result of the inspection
+     */
+    private Inspection inspect(
+            @NonNull final String url,
+            @Nullable final Map<String, String> headers,
+            @NonNull final String key,
+            long rules,
+            @NonNull final MultiSubstringMatcher greyList,
+            @Nullable final JsVerdictCache.Entry lastKnown,
+            boolean servable) {
+        Timber.d(">> examining grey file : %s", url);
+        JsVerdictCache cache = JsVerdictCache.getInstance(HentoidApp.getInstance());
+        try {
+            List<Pair<String, String>> requestHeadersList = new ArrayList<>();
+            // The WebView's own conditions would prevent the file from being downloaded; use the last known version's instead
+            for (Pair<String, String> header : HttpHelper.webkitRequestHeadersToOkHttpHeaders(headers, url))
+                if (header.first != null && !header.first.equalsIgnoreCase(HttpHelper.HEADER_IF_NONE_MATCH) && !header.first.equalsIgnoreCase(HttpHelper.HEADER_IF_MODIFIED_SINCE))
+                    requestHeadersList.add(header);
+            if (lastKnown != null && !lastKnown.getEtag().isEmpty())
+                requestHeadersList.add(new Pair<>(HttpHelper.HEADER_IF_NONE_MATCH, lastKnown.getEtag()));
+
+            Response response = HttpHelper.getOnlineResourceFast(url, requestHeadersList, site.useMobileAgent(), site.useHentoidAgent(), site.useWebviewAgent());
+            if (304 == response.code() && lastKnown != null) {
+                response.close();
+                Timber.d(">> grey file unchanged : %s", url);
+                cache.touch(key);
+                return lastKnown.isBlocked() ? Inspection.BLOCKED : Inspection.ALLOWED;
+            }
+            if (response.code() >= 300) {
+                response.close();
+                Timber.d(">> grey file KO (%d) : %s", response.code(), url);
+                return Inspection.ALLOWED; // Better safe than sorry
+            }
+
+            ResponseBody body = response.body();
+            if (null == body) throw new IOException("Empty body");
+            MediaType contentType = body.contentType();
+            byte[] bytes = body.bytes();
+            Timber.d(">> grey file downloaded : %s", url);
+
+            String jsBody = new String(bytes, (null == contentType) ? StandardCharsets.UTF_8 : contentType.charset(StandardCharsets.UTF_8)).toLowerCase();
+            String etag = StringHelper.protect(response.header(HttpHelper.HEADER_ETAG));
+            String keyword = greyList.find(jsBody);
+            if (keyword != null) {
+                Timber.d(">> grey file %s BLOCKED (%s)", url, keyword);
+                cache.put(key, rules, true, etag);
+                return Inspection.BLOCKED;
             }
-            // Don't whitelist the site root as it will auto-whitelist every file hosted there
-            if (!cleanUrl.equals(site.getUrl().toLowerCase())) addToJsUrlWhitelist(cleanUrl);
             Timber.d(">> grey file %s ALLOWED", url);
+            cache.put(key, rules, false, etag);
+            // A redirected file has to be requested by the WebView itself for it to know its actual location
+            if (!servable || !response.request().url().equals(HttpUrl.get(url))) return Inspection.ALLOWED;
+            return new Inspection(false, response, bytes);
+        } catch (IOException e) {
+            Timber.d(e, ">> I/O issue while retrieving %s", url);
+            return Inspection.ALLOWED;
+        } catch (IllegalArgumentException iae) {
+            Timber.e(iae);
+            return Inspection.BLOCKED; // Avoid feeding malformed URLs to Chromium on older Androids (crash reported on Lollipop)
         }
+    }
 
-        // Accept non-blocked (=grey) JS files
-        return false;
+    /**
+     * Result of the inspection of a grey file, shared by all the requests that have been waiting for it
+     */
+    private static class Inspection {
+        static final Inspection ALLOWED = new Inspection(false, null, null);
+        static final Inspection BLOCKED = new Inspection(true, null, null);
+
+        private final boolean blocked;
+        // Downloaded file; null if it hasn't been downloaded
+        private final Response response;
+        private final byte[] body;
+
+        Inspection(boolean blocked, @Nullable Response response, @Nullable byte[] body) {
+            this.blocked = blocked;
+            this.response = response;
+            this.body = body;
+        }
+
+        Verdict toVerdict() {
+            if (blocked) return Verdict.BLOCKED;
+            if (null == response || null == body) return Verdict.ALLOWED;
+            // Each request gets its own stream
+            return new Verdict(false, HttpHelper.okHttpResponseToWebkitResponse(response, new ByteArrayInputStream(body)));
+        }
+    }
+
+    /**
+     * Verdict of the AdBlocker on a resource
+     */
+    public static class Verdict {
+        static final Verdict ALLOWED = new Verdict(false, null);
+        static final Verdict BLOCKED = new Verdict(true, null);
+
+        private final boolean blocked;
+        private final WebResourceResponse resource;
+
+        Verdict(boolean blocked, @Nullable WebResourceResponse resource) {
+            this.blocked = blocked;
+            this.resource = resource;
+        }
+
+        public boolean isBlocked() {
+            return blocked;
+        }
+
+        /**
+         * Get the resource as it has been downloaded to be examined
+         * NB : Serve it to the WebView instead of letting it download the resource again
+         *
+         * @return Resource as it has been downloaded to be examined; null if it hasn't been downloaded
+         */
+        @Nullable
+        public WebResourceResponse getResource() {
+            return resource;
+        }
     }
 }
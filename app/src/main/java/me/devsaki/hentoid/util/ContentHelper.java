@@ -33,13 +33,14 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 
@@ -70,8 +71,11 @@ import me.devsaki.hentoid.events.ProcessEvent;
 import me.devsaki.hentoid.json.JsonContent;
 import me.devsaki.hentoid.json.JsonContentCollection;
 import me.devsaki.hentoid.parsers.ContentParserFactory;
+import me.devsaki.hentoid.parsers.ParsedImageListCache;
 import me.devsaki.hentoid.parsers.content.ContentParser;
+import me.devsaki.hentoid.parsers.content.ContentParserBinder;
 import me.devsaki.hentoid.parsers.images.ImageListParser;
+import me.devsaki.hentoid.util.download.DownloadJournal;
 import me.devsaki.hentoid.util.exception.ContentNotProcessedException;
 import me.devsaki.hentoid.util.exception.EmptyResultException;
 import me.devsaki.hentoid.util.exception.FileNotProcessedException;
@@ -87,8 +91,6 @@ import me.devsaki.hentoid.util.string_similarity.Cosine;
 import me.devsaki.hentoid.util.string_similarity.StringSimilarity;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
-import pl.droidsonroids.jspoon.HtmlAdapter;
-import pl.droidsonroids.jspoon.Jspoon;
 import timber.log.Timber;
 
 /**
@@ -391,6 +393,8 @@ public final class ContentHelper {
         // Remove from DB
         // NB : start with DB to have a LiveData feedback, because file removal can take much time
         dao.deleteContent(content);
+        // Remove the download journal left behind by an unfinished download
+        DownloadJournal.delete(context, content.getId());
 
         if (content.isArchive()) { // Remove an archive
             DocumentFile archive = FileHelper.getFileFromSingleUriString(context, content.getStorageUri());
@@ -444,6 +448,8 @@ public final class ContentHelper {
 
             // Remove from queue
             dao.deleteQueue(content);
+            // The download won't be resumed; remove its journal
+            DownloadJournal.delete(context, content.getId());
         }
 
         // Remove content itself
@@ -1127,10 +1133,7 @@ public final class ContentHelper {
         if (null == body) return Optional.empty();
 
         Class<? extends ContentParser> c = ContentParserFactory.getInstance().getContentParserClass(site);
-        final Jspoon jspoon = Jspoon.create();
-        HtmlAdapter<? extends ContentParser> htmlAdapter = jspoon.adapter(c); // Unchecked but alright
-
-        ContentParser contentParser = htmlAdapter.fromInputStream(body.byteStream(), new URL(url));
+        ContentParser contentParser = ContentParserBinder.fromInputStream(c, body.byteStream(), url);
         Content newContent = contentParser.toContent(url);
 
         if (newContent.getStatus() != null && newContent.getStatus().equals(StatusContent.IGNORED)) {
@@ -1184,10 +1187,7 @@ public final class ContentHelper {
         if (null == body) return Optional.empty();
 
         Class<? extends ContentParser> c = ContentParserFactory.getInstance().getContentParserClass(content.getSite());
-        final Jspoon jspoon = Jspoon.create();
-        HtmlAdapter<? extends ContentParser> htmlAdapter = jspoon.adapter(c); // Unchecked but alright
-
-        ContentParser contentParser = htmlAdapter.fromInputStream(body.byteStream(), new URL(url));
+        ContentParser contentParser = ContentParserBinder.fromInputStream(c, body.byteStream(), url);
         Content newContent = contentParser.update(content, url, true);
 
         if (newContent.getStatus() != null && newContent.getStatus().equals(StatusContent.IGNORED)) {
@@ -1211,10 +1211,14 @@ public final class ContentHelper {
     /**
      * Query source to fetch all image file names and URLs of a given book
      *
-     * @param content Book whose pages to retrieve
+     * NB : Recently parsed lists of pages are reused; see ParsedImageListCache
+     *
+     * @param context           Context to use
+     * @param content           Book whose pages to retrieve
+     * @param targetImageStatus Status to set on the retrieved pages
      * @return List of pages with original URLs and file name
      */
-    public static List<ImageFile> fetchImageURLs(@NonNull Content content, @NonNull StatusContent targetImageStatus) throws Exception {
+    public static List<ImageFile> fetchImageURLs(@NonNull Context context, @NonNull Content content, @NonNull StatusContent targetImageStatus) throws Exception {
         List<ImageFile> imgs;
 
         // If content doesn't have any download parameters, get them from the cookie manager
@@ -1228,13 +1232,18 @@ public final class ContentHelper {
             }
         }
 
-        // Use ImageListParser to query the source
+        // Use ImageListParser to query the source, unless its results are already known
         ImageListParser parser = ContentParserFactory.getInstance().getImageListParser(content);
-        imgs = parser.parseImageList(content);
+        imgs = ParsedImageListCache.get(context, content.getGalleryUrl(), parser.getClass(), content.getQtyPages());
+        if (null == imgs) {
+            imgs = parser.parseImageList(content);
 
-        // If no images found, or just the cover, image detection has failed
-        if (imgs.isEmpty() || (1 == imgs.size() && imgs.get(0).isCover()))
-            throw new EmptyResultException();
+            // If no images found, or just the cover, image detection has failed
+            if (imgs.isEmpty() || (1 == imgs.size() && imgs.get(0).isCover()))
+                throw new EmptyResultException();
+
+            ParsedImageListCache.put(context, content.getGalleryUrl(), parser.getClass(), imgs);
+        }
 
         // Add the content's download params to the images only if they have missing information
         contentDownloadParamsStr = content.getDownloadParams();
@@ -1273,20 +1282,32 @@ public final class ContentHelper {
      * <p>
      * Caution : exec time is long
      *
-     * @param context Context to use
-     * @param content Content to remove files from
+     * @param context           Context to use
+     * @param content           Content to remove files from
+     * @param removeJson        True to remove the JSON file
+     * @param keepCover         True to keep the cover thumbnail
+     * @param keepRevalidatable True to keep the pages that can be revalidated when redownloading (see ImageFile.hasValidators)
      */
     public static void purgeFiles(
             @NonNull final Context context,
             @NonNull final Content content,
             boolean removeJson,
-            boolean keepCover) {
+            boolean keepCover,
+            boolean keepRevalidatable) {
         DocumentFile bookFolder = FileHelper.getFolderFromTreeUriString(context, content.getStorageUri());
         if (bookFolder != null) {
+            Set<String> keptUris = new HashSet<>();
+            List<ImageFile> images = content.getImageFiles();
+            if (keepRevalidatable && images != null)
+                for (ImageFile img : images)
+                    if (img.hasValidators() && !img.getFileUri().isEmpty())
+                        keptUris.add(img.getFileUri());
+
             List<DocumentFile> files = FileHelper.listFiles(context, bookFolder, displayName -> !keepCover || !displayName.startsWith(Consts.THUMB_FILE_NAME));
             if (!files.isEmpty())
                 for (DocumentFile file : files)
-                    if (removeJson || !HttpHelper.getExtensionFromUri(file.getUri().toString()).toLowerCase().endsWith("json"))
+                    if ((removeJson || !HttpHelper.getExtensionFromUri(file.getUri().toString()).toLowerCase().endsWith("json"))
+                            && !keptUris.contains(file.getUri().toString()))
                         file.delete();
         }
     }
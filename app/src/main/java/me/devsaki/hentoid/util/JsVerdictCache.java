@@ -0,0 +1,179 @@
+package me.devsaki.hentoid.util;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.threeten.bp.Instant;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.schedulers.Schedulers;
+import me.devsaki.hentoid.util.file.FileHelper;
+import timber.log.Timber;
+
+/**
+ * Persistent cache of the verdicts of the AdBlocker on the Javascript files it had to download
+ * to look for blacklisted keywords (grey files)
+ * <p>
+ * Verdicts are kept for the most recently used files only (LRU), and survive app restarts
+ * - A verdict is only valid for the keywords it has been given with
+ * - Fresh verdicts are used as is; older verdicts have to be revalidated against the ETag of the file
+ * <p>
+ * Changes are written to disk in the background, a few seconds after they happen
+ */
+class JsVerdictCache {
+
+    private static final String FILE_NAME = "adblock_js_verdicts.json";
+    static final int MAX_ENTRIES = 2000;
+    // Verdicts are used without asking the server during that time
+    private static final long FRESHNESS_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long SAVE_DELAY_MS = 5000;
+
+    private static JsVerdictCache instance;
+
+    private final File file;
+    // Least recently used entries first
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private boolean savePending = false;
+
+
+    @SuppressWarnings({"unused", "FieldMayBeFinal"})
+    static class Entry {
+        private String key;
+        private boolean blocked;
+        private String etag;
+        private long rules;
+        private long timestamp;
+
+        boolean isBlocked() {
+            return blocked;
+        }
+
+        @NonNull
+        String getEtag() {
+            return StringHelper.protect(etag);
+        }
+
+        boolean isFresh() {
+            return Instant.now().toEpochMilli() - timestamp < FRESHNESS_MS;
+        }
+    }
+
+    @SuppressWarnings({"unused", "FieldMayBeFinal"})
+    private static class Entries {
+        private List<Entry> entries = new ArrayList<>();
+    }
+
+
+    private JsVerdictCache(@NonNull Context context) {
+        this(new File(context.getCacheDir(), FILE_NAME));
+    }
+
+    JsVerdictCache(@NonNull File file) {
+        this.file = file;
+        load();
+    }
+
+    static synchronized JsVerdictCache getInstance(@NonNull Context context) {
+        if (null == instance) instance = new JsVerdictCache(context.getApplicationContext());
+        return instance;
+    }
+
+    /**
+     * Get the verdict on the given file
+     *
+     * @param key   Key of the file
+     * @param rules Hash of the keywords the file is examined with
+     * @return Verdict on the given file; null if there's none for the given keywords
+     */
+    @Nullable
+    synchronized Entry get(@NonNull String key, long rules) {
+        Entry result = entries.get(key);
+        if (result != null && result.rules != rules) {
+            entries.remove(key);
+            scheduleSave();
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Record the verdict on the given file
+     *
+     * @param key     Key of the file
+     * @param rules   Hash of the keywords the file has been examined with
+     * @param blocked True if the file is blocked; false if it is allowed
+     * @param etag    ETag of the examined version of the file; empty if none
+     */
+    synchronized void put(@NonNull String key, long rules, boolean blocked, @NonNull String etag) {
+        Entry entry = new Entry();
+        entry.key = key;
+        entry.rules = rules;
+        entry.blocked = blocked;
+        entry.etag = etag;
+        entry.timestamp = Instant.now().toEpochMilli();
+        entries.put(key, entry);
+        scheduleSave();
+    }
+
+    /**
+     * Make the verdict on the given file fresh again (e.g. when the server confirms the file hasn't changed)
+     *
+     * @param key Key of the file
+     */
+    synchronized void touch(@NonNull String key) {
+        Entry entry = entries.get(key);
+        if (null == entry) return;
+        entry.timestamp = Instant.now().toEpochMilli();
+        scheduleSave();
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+        try (InputStream input = new FileInputStream(file)) {
+            Entries saved = JsonHelper.jsonToObject(FileHelper.readStreamAsString(input), Entries.class);
+            if (saved != null)
+                for (Entry e : saved.entries) if (e.key != null) entries.put(e.key, e);
+            Timber.d("%d JS verdicts loaded", entries.size());
+        } catch (IOException | RuntimeException e) {
+            Timber.w(e, "JS verdicts couldn't be read");
+            FileHelper.removeFile(file);
+        }
+    }
+
+    private void scheduleSave() {
+        if (savePending) return;
+        savePending = true;
+        Schedulers.io().scheduleDirect(this::save, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void save() {
+        Entries toSave = new Entries();
+        synchronized (this) {
+            savePending = false;
+            toSave.entries.addAll(entries.values());
+        }
+
+        try {
+            FileHelper.writeAtomically(file, JsonHelper.serializeToJson(toSave, Entries.class).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Timber.w(e, "JS verdicts couldn't be saved");
+        }
+    }
+}
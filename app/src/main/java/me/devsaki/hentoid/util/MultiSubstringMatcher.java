@@ -0,0 +1,171 @@
+package me.devsaki.hentoid.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable Aho-Corasick automaton finding any of a set of substrings inside a text in a single pass
+ * <p>
+ * Equivalent to calling text.contains(pattern) for every pattern, in O(text length) whatever the number
+ * of patterns. Being immutable, it can be used by any number of threads without locking.
+ */
+public final class MultiSubstringMatcher {
+
+    private static final MultiSubstringMatcher EMPTY = compile(new ArrayList<>());
+
+    // Transitions of each state, as sorted characters and the matching target states
+    private final char[][] transitionChars;
+    private final int[][] transitionTargets;
+    // Failure link of each state (longest proper suffix of the state that is also a state)
+    private final int[] failures;
+    // Index of a pattern ending at each state, directly or through its failure links; -1 if none
+    private final int[] outputs;
+    private final String[] patterns;
+
+    private MultiSubstringMatcher(char[][] transitionChars, int[][] transitionTargets, int[] failures, int[] outputs, String[] patterns) {
+        this.transitionChars = transitionChars;
+        this.transitionTargets = transitionTargets;
+        this.failures = failures;
+        this.outputs = outputs;
+        this.patterns = patterns;
+    }
+
+    public static MultiSubstringMatcher empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Build a matcher for the given patterns
+     *
+     * @param patterns Substrings to look for
+     * @return Matcher for the given patterns
+     */
+    public static MultiSubstringMatcher compile(@NonNull Collection<String> patterns) {
+        // 1- Trie of the patterns
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        outputs.add(-1);
+
+        String[] patternArray = patterns.toArray(new String[0]);
+        for (int p = 0; p < patternArray.length; p++) {
+            int state = 0;
+            for (char c : patternArray[p].toCharArray()) {
+                Integer next = trie.get(state).get(c);
+                if (null == next) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    outputs.add(-1);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            if (outputs.get(state) < 0) outputs.set(state, p);
+        }
+
+        // 2- Failure links, breadth-first so that the links of shorter states are known first
+        int nbStates = trie.size();
+        int[] failures = new int[nbStates];
+        int[] outputArray = new int[nbStates];
+        for (int i = 0; i < nbStates; i++) outputArray[i] = outputs.get(i);
+
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : trie.get(0).values()) {
+            failures[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> transition : trie.get(state).entrySet()) {
+                int child = transition.getValue();
+                int fallback = failures[state];
+                Integer target = trie.get(fallback).get(transition.getKey());
+                while (null == target && fallback != 0) {
+                    fallback = failures[fallback];
+                    target = trie.get(fallback).get(transition.getKey());
+                }
+                failures[child] = (null == target) ? 0 : target;
+                // A state matches if any of its suffixes does
+                if (outputArray[child] < 0) outputArray[child] = outputArray[failures[child]];
+                queue.add(child);
+            }
+        }
+
+        // 3- Compact representation
+        char[][] transitionChars = new char[nbStates][];
+        int[][] transitionTargets = new int[nbStates][];
+        for (int i = 0; i < nbStates; i++) {
+            Map<Character, Integer> transitions = trie.get(i); // Sorted by character
+            transitionChars[i] = new char[transitions.size()];
+            transitionTargets[i] = new int[transitions.size()];
+            int j = 0;
+            for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                transitionChars[i][j] = transition.getKey();
+                transitionTargets[i][j] = transition.getValue();
+                j++;
+            }
+        }
+        return new MultiSubstringMatcher(transitionChars, transitionTargets, failures, outputArray, patternArray);
+    }
+
+    /**
+     * Indicate if the given text contains any of the patterns of the matcher
+     *
+     * @param text Text to look into
+     * @return True if the given text contains any of the patterns of the matcher
+     */
+    public boolean matches(@NonNull CharSequence text) {
+        return find(text) != null;
+    }
+
+    /**
+     * Find the first pattern of the matcher that appears inside the given text
+     *
+     * @param text Text to look into
+     * @return First pattern found when reading the given text; null if none has been found
+     */
+    @Nullable
+    public String find(@NonNull CharSequence text) {
+        if (outputs[0] >= 0) return patterns[outputs[0]]; // Empty pattern
+        if (1 == outputs.length) return null; // No pattern
+
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next = getTransition(state, c);
+            while (next < 0 && state != 0) {
+                state = failures[state];
+                next = getTransition(state, c);
+            }
+            state = Math.max(next, 0);
+            if (outputs[state] >= 0) return patterns[outputs[state]];
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return 0 == patterns.length;
+    }
+
+    private int getTransition(int state, char c) {
+        char[] chars = transitionChars[state];
+        // Binary search; most states have a single transition
+        int low = 0;
+        int high = chars.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (chars[mid] < c) low = mid + 1;
+            else if (chars[mid] > c) high = mid - 1;
+            else return transitionTargets[state][mid];
+        }
+        return -1;
+    }
+}
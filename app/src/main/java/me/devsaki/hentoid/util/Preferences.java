@@ -422,6 +422,19 @@ public final class Preferences {
                 Default.DL_THREADS_QUANTITY + "") + "");
     }
 
+    public static int getDownloadParallelBooks() {
+        return Integer.parseInt(sharedPreferences.getString(Key.DL_PARALLEL_BOOKS,
+                Default.DL_PARALLEL_BOOKS + "") + "");
+    }
+
+    public static int getDlSpeedCap() {
+        return Integer.parseInt(sharedPreferences.getString(Key.DL_SPEED_CAP, Integer.toString(Default.DL_SPEED_CAP)) + "");
+    }
+
+    public static int getUgoiraFormat() {
+        return Integer.parseInt(sharedPreferences.getString(Key.DL_UGOIRA_FORMAT, Integer.toString(Default.DL_UGOIRA_FORMAT)) + "");
+    }
+
     static int getFolderTruncationNbChars() {
         return Integer.parseInt(sharedPreferences.getString(Key.FOLDER_TRUNCATION_LISTS,
                 Default.FOLDER_TRUNCATION + "") + "");
@@ -949,6 +962,9 @@ public final class Preferences {
         static final String DL_BLOCKED_TAGS = "pref_dl_blocked_tags";
         static final String DL_BLOCKED_TAG_BEHAVIOUR = "pref_dl_blocked_tags_behaviour";
         public static final String DL_THREADS_QUANTITY_LISTS = "pref_dl_threads_quantity_lists";
+        static final String DL_PARALLEL_BOOKS = "pref_dl_parallel_books";
+        static final String DL_UGOIRA_FORMAT = "pref_dl_ugoira_format";
+        public static final String DL_SPEED_CAP = "pref_dl_speed_cap";
         public static final String ACTIVE_SITES = "active_sites";
         static final String LOCK_ON_APP_RESTORE = "pref_lock_on_app_restore";
         static final String LOCK_TIMER = "pref_lock_timer";
@@ -1013,6 +1029,9 @@ public final class Preferences {
         static final int BROWSER_DNS_OVER_HTTPS = -1; // No DNS
         static final boolean BROWSER_NHENTAI_INVISIBLE_BLACKLIST = false;
         static final int DL_THREADS_QUANTITY = Constant.DOWNLOAD_THREAD_COUNT_AUTO;
+        static final int DL_PARALLEL_BOOKS = 1;
+        static final int DL_UGOIRA_FORMAT = Constant.UGOIRA_FORMAT_GIF;
+        static final int DL_SPEED_CAP = Constant.DL_SPEED_CAP_NONE;
         static final int FOLDER_TRUNCATION = Constant.TRUNCATE_FOLDER_100;
         static final boolean VIEWER_RESUME_LAST_LEFT = true;
         static final boolean VIEWER_KEEP_SCREEN_ON = true;
@@ -1121,6 +1140,11 @@ public final class Preferences {
         public static final int DL_TAG_BLOCKING_BEHAVIOUR_DONT_QUEUE = 0;
         public static final int DL_TAG_BLOCKING_BEHAVIOUR_QUEUE_ERROR = 1;
 
+        public static final int UGOIRA_FORMAT_GIF = 0;
+        public static final int UGOIRA_FORMAT_WEBP = 1;
+
+        public static final int DL_SPEED_CAP_NONE = 0;
+
         public static final int DL_ACTION_DL_PAGES = 0;
         public static final int DL_ACTION_STREAM = 1;
 
@@ -0,0 +1,101 @@
+package me.devsaki.hentoid.util.download;
+
+/**
+ * Concurrency limit that adapts itself to the observed behaviour of a host
+ * (AIMD : additive increase, multiplicative decrease)
+ * <p>
+ * - The limit starts low and grows by one unit for each successful request (slow start) until
+ * the first sign of congestion; it then grows by one unit per [limit] successful requests
+ * - Throttling signals (HTTP 429 / 503, timeouts) halve the limit
+ * - Responses getting significantly slower than the fastest observed ones reduce the limit by a quarter
+ * <p>
+ * The limit always stays between 1 and [maxLimit]; decreases happen at most once per [DECREASE_COOLDOWN_MS]
+ * so that the requests that were already running when congestion was detected don't bring the limit down to 1
+ */
+public class AimdConcurrencyLimit {
+
+    private static final int INITIAL_LIMIT = 2;
+    private static final double THROTTLE_DECREASE_FACTOR = 0.5;
+    private static final double LATENCY_DECREASE_FACTOR = 0.75;
+    // Smoothed latency above [LATENCY_TOLERANCE x best smoothed latency] = congestion
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final long DECREASE_COOLDOWN_MS = 2000;
+
+    private int maxLimit;
+    private double limit;
+    private boolean slowStart = true;
+
+    private double smoothedLatencyMs = -1;
+    private double bestLatencyMs = Double.MAX_VALUE;
+    private long lastDecreaseMs = Long.MIN_VALUE / 2;
+
+    /**
+     * @param maxLimit Upper bound of the limit
+     */
+    public AimdConcurrencyLimit(int maxLimit) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.min(INITIAL_LIMIT, this.maxLimit);
+    }
+
+    /**
+     * Change the upper bound of the limit
+     *
+     * @param maxLimit Upper bound of the limit
+     */
+    public synchronized void setMaxLimit(int maxLimit) {
+        this.maxLimit = Math.max(1, maxLimit);
+        limit = Math.min(limit, this.maxLimit);
+    }
+
+    /**
+     * @return Current number of allowed parallel requests
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Record a successful request
+     *
+     * @param latencyMs  Time the host took to answer the request (ms)
+     * @param nbInFlight Number of requests that were running when the request completed, itself included
+     * @param nowMs      Current timestamp (ms)
+     */
+    public synchronized void onSuccess(long latencyMs, int nbInFlight, long nowMs) {
+        if (latencyMs >= 0) {
+            smoothedLatencyMs = (smoothedLatencyMs < 0) ? latencyMs : smoothedLatencyMs + LATENCY_SMOOTHING * (latencyMs - smoothedLatencyMs);
+            bestLatencyMs = Math.min(bestLatencyMs, smoothedLatencyMs);
+            if (smoothedLatencyMs > bestLatencyMs * LATENCY_TOLERANCE) {
+                // Host got slower on its own; use its new latency as a reference
+                if ((int) limit <= 1) bestLatencyMs = smoothedLatencyMs;
+                else decrease(LATENCY_DECREASE_FACTOR, nowMs);
+                return;
+            }
+        }
+        // No point in raising the limit when it isn't reached
+        if (nbInFlight < (int) limit) return;
+
+        if (slowStart) limit += 1;
+        else limit += 1.0 / limit;
+        limit = Math.min(limit, maxLimit);
+    }
+
+    /**
+     * Record a sign of throttling (HTTP 429 / 503, timeout)
+     *
+     * @param nowMs Current timestamp (ms)
+     */
+    public synchronized void onThrottled(long nowMs) {
+        decrease(THROTTLE_DECREASE_FACTOR, nowMs);
+    }
+
+    private void decrease(double factor, long nowMs) {
+        slowStart = false;
+        if (nowMs - lastDecreaseMs < DECREASE_COOLDOWN_MS) return;
+        lastDecreaseMs = nowMs;
+        limit = Math.max(1, Math.floor(limit * factor));
+        // Latencies observed under the previous limit aren't relevant anymore
+        smoothedLatencyMs = -1;
+    }
+}
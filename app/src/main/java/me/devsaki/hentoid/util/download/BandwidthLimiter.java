@@ -0,0 +1,157 @@
+package me.devsaki.hentoid.util.download;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.threeten.bp.Instant;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import me.devsaki.hentoid.enums.Site;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Cap of the download bandwidth, globally and per site
+ * <p>
+ * Bytes are accounted as they are read from the response bodies (token bucket on bytes);
+ * the reading thread is held back whenever the cap is exceeded, which slows the transfer down
+ * at the TCP level without wasting the bytes that have already been received
+ * <p>
+ * Requests are associated to their site through the Site tag of the OkHttp request
+ */
+public class BandwidthLimiter implements Interceptor {
+
+    // Cap of all downloads combined (KBps; 0 = not capped)
+    private volatile int globalCapKbps = 0;
+    private volatile TokenBucket globalBucket = null;
+    // Cap per site
+    private final Map<Site, TokenBucket> siteBuckets = new ConcurrentHashMap<>();
+
+
+    /**
+     * Set the cap of all downloads combined
+     *
+     * @param capKbps Cap to use (KBps); 0 or less for no cap
+     */
+    public void setGlobalCap(int capKbps) {
+        globalCapKbps = Math.max(0, capKbps);
+        globalBucket = updateBucket(globalBucket, capKbps);
+    }
+
+    /**
+     * Set the cap of the downloads of the given site
+     *
+     * @param site    Site to set the cap for
+     * @param capKbps Cap to use (KBps); 0 or less for no cap
+     */
+    public void setSiteCap(@NonNull Site site, int capKbps) {
+        TokenBucket bucket = updateBucket(siteBuckets.get(site), capKbps);
+        if (null == bucket) siteBuckets.remove(site);
+        else siteBuckets.put(site, bucket);
+    }
+
+    /**
+     * Get the cap that applies to the downloads of the given site
+     *
+     * @param site Site to get the cap for
+     * @return Cap that applies to the downloads of the given site (KBps); 0 if not capped
+     */
+    public int getEffectiveCapKbps(@NonNull Site site) {
+        int siteCap = Math.max(0, site.getBandwidthCapKbps());
+        int result = globalCapKbps;
+        if (siteCap > 0 && (0 == result || siteCap < result)) result = siteCap;
+        return result;
+    }
+
+    @Nullable
+    private static TokenBucket updateBucket(@Nullable TokenBucket bucket, int capKbps) {
+        if (capKbps <= 0) return null;
+        long bytesPerSecond = capKbps * 1024L;
+        // Allow bursts of up to one second worth of bytes
+        if (null == bucket) return new TokenBucket(bytesPerSecond, bytesPerSecond, Instant.now().toEpochMilli());
+        bucket.setRate(bytesPerSecond, bytesPerSecond);
+        return bucket;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        ResponseBody body = response.body();
+        if (null == body) return response;
+        Site site = chain.request().tag(Site.class);
+        return response.newBuilder().body(new ThrottledResponseBody(body, site)).build();
+    }
+
+    /**
+     * Account the given number of bytes; wait if the caps are exceeded
+     *
+     * @param site    Site the bytes have been downloaded from; null if unknown
+     * @param nbBytes Number of bytes to account
+     * @throws InterruptedIOException If the thread has been interrupted while waiting
+     */
+    private void throttle(@Nullable Site site, long nbBytes) throws InterruptedIOException {
+        long nowMs = Instant.now().toEpochMilli();
+        long delayMs = 0;
+        TokenBucket bucket = globalBucket;
+        if (bucket != null) delayMs = bucket.consume(nbBytes, nowMs);
+        if (site != null) {
+            bucket = siteBuckets.get(site);
+            if (bucket != null) delayMs = Math.max(delayMs, bucket.consume(nbBytes, nowMs));
+        }
+        if (delayMs <= 0) return;
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttling");
+        }
+    }
+
+    /**
+     * Response body whose reading speed is capped
+     */
+    private class ThrottledResponseBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        ThrottledResponseBody(@NonNull ResponseBody delegate, @Nullable Site site) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+                    long nbRead = super.read(sink, byteCount);
+                    if (nbRead > 0) throttle(site, nbRead);
+                    return nbRead;
+                }
+            });
+        }
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @NonNull
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
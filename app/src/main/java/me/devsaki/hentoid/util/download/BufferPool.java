@@ -0,0 +1,51 @@
+package me.devsaki.hentoid.util.download;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Pool of fixed-size byte buffers used to stream downloaded data to storage
+ * <p>
+ * Buffers are recycled between requests so that the memory used by a download
+ * doesn't depend on the size of the downloaded resource
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final ArrayBlockingQueue<byte[]> buffers;
+
+    /**
+     * @param bufferSize Size of each buffer, in bytes
+     * @param maxPooled  Maximum number of buffers kept in the pool when they're not in use
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        buffers = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * Get a buffer from the pool; a new one is created if the pool is empty
+     * NB : Buffers are not cleared between uses
+     *
+     * @return Buffer of the pool's buffer size
+     */
+    public byte[] acquire() {
+        byte[] result = buffers.poll();
+        return (null == result) ? new byte[bufferSize] : result;
+    }
+
+    /**
+     * Give the given buffer back to the pool
+     * NB : If the pool is full, the buffer is left to the garbage collector
+     *
+     * @param buffer Buffer to give back
+     */
+    public void release(@NonNull byte[] buffer) {
+        if (buffer.length == bufferSize) buffers.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
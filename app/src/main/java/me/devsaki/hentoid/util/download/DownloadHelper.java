@@ -1,23 +1,37 @@
 package me.devsaki.hentoid.util.download;
 
+import android.content.Context;
+import android.webkit.MimeTypeMap;
+
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.util.Pair;
+import androidx.documentfile.provider.DocumentFile;
 
 import com.annimon.stream.function.Consumer;
+import com.annimon.stream.function.Supplier;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import me.devsaki.hentoid.database.domains.ImageFile;
 import me.devsaki.hentoid.enums.Site;
+import me.devsaki.hentoid.util.JsonHelper;
 import me.devsaki.hentoid.util.file.FileHelper;
 import me.devsaki.hentoid.util.image.ImageHelper;
 import me.devsaki.hentoid.util.StringHelper;
@@ -33,12 +47,25 @@ import timber.log.Timber;
  */
 public class DownloadHelper {
 
+    // Extension of the file containing the data of an unfinished download
+    private static final String PART_FILE_EXT = ".part";
+    // Extension of the file containing the metadata needed to resume an unfinished download
+    private static final String PART_METADATA_EXT = ".part.json";
+
+    private static final String PART_KEY_URL = "url";
+    private static final String PART_KEY_ETAG = "etag";
+    private static final String PART_KEY_LAST_MODIFIED = "lastModified";
+
     private DownloadHelper() {
         throw new IllegalStateException("Utility class");
     }
 
     /**
      * Download the given resource to the given disk location
+     * <p>
+     * The resource is downloaded to a partial file that is kept when the download is interrupted or fails;
+     * the next download of the same URL to the same location resumes from the last downloaded byte
+     * using an HTTP range request, provided the server has given a validator (ETag / Last-Modified) for the resource
      *
      * @param site              Site to use params for
      * @param url               URL to download from
@@ -47,7 +74,7 @@ public class DownloadHelper {
      * @param targetFolder      Folder where to save the downloaded resource
      * @param targetFileName    Name of the file to save the downloaded resource
      * @param forceMimeType     Forced mime-type of the downloaded resource (null for auto-set)
-     * @param interruptDownload Used to interrupt the download whenever the value switches to true. If that happens, the file will be deleted.
+     * @param interruptDownload Used to interrupt the download whenever the value switches to true. If that happens, the partial file is kept to resume the download later.
      * @param notifyProgress    Consumer called with the download progress %
      * @return Pair containing
      * - Left : Downloaded file
@@ -69,37 +96,81 @@ public class DownloadHelper {
         if (interruptDownload.get())
             throw new DownloadInterruptedException("Download interrupted");
 
-        Timber.d("CACHE DOWNLOADING %d %s", resourceId, url);
-        Response response = HttpHelper.getOnlineResourceFast(url, requestHeaders, site.useMobileAgent(), site.useHentoidAgent(), site.useWebviewAgent());
+        File partFile = new File(targetFolder, targetFileName + PART_FILE_EXT);
+        File partMetadataFile = new File(targetFolder, targetFileName + PART_METADATA_EXT);
+
+        // Resume the previous download of the same resource, if any
+        List<Pair<String, String>> headers = (null == requestHeaders) ? new ArrayList<>() : new ArrayList<>(requestHeaders);
+        long offset = 0;
+        String validator = getPartialDownloadValidator(partMetadataFile, url);
+        if (!validator.isEmpty() && partFile.length() > 0) {
+            offset = partFile.length();
+            headers.add(new Pair<>(HttpHelper.HEADER_RANGE, "bytes=" + offset + "-"));
+            headers.add(new Pair<>(HttpHelper.HEADER_IF_RANGE, validator));
+        }
+
+        Timber.d("CACHE DOWNLOADING %d %s (from byte %d)", resourceId, url, offset);
+        Response response = HttpHelper.getOnlineResourceFast(url, headers, site.useMobileAgent(), site.useHentoidAgent(), site.useWebviewAgent());
         Timber.d("CACHE DOWNLOADING %d - RESPONSE %s", resourceId, response.code());
-        if (response.code() >= 300) throw new IOException("Network error " + response.code());
+        if (response.code() >= 300) {
+            response.close();
+            // The partial file doesn't match the resource anymore
+            if (416 == response.code()) removePartialDownload(partFile, partMetadataFile);
+            throw new IOException("Network error " + response.code());
+        }
 
         ResponseBody body = response.body();
-        if (null == body)
+        if (null == body) {
+            response.close();
             throw new IOException("Could not read response : empty body for " + url);
+        }
+
+        // The server sends the whole resource if it has changed or if it doesn't support ranges
+        boolean isResumed = offset > 0 && 206 == response.code()
+                && StringHelper.protect(response.header(HttpHelper.HEADER_CONTENT_RANGE)).startsWith("bytes " + offset + "-");
+        if (206 == response.code() && !isResumed) {
+            // Partial content that doesn't follow the partial file : start over without any range
+            response.close();
+            removePartialDownload(partFile, partMetadataFile);
+            if (offset > 0)
+                return downloadToFile(site, url, resourceId, requestHeaders, targetFolder, targetFileName, forceMimeType, interruptDownload, notifyProgress);
+            throw new IOException("Unexpected partial content received from " + url);
+        }
+        if (!isResumed) {
+            offset = 0;
+            // Memorize the validator of the resource to be able to resume its download later
+            if (!savePartialDownloadMetadata(partMetadataFile, url, response))
+                FileHelper.removeFile(partMetadataFile);
+        }
 
         long size = body.contentLength();
         if (size < 1) size = 1;
+        size += offset;
 
         String mimeType = StringHelper.protect(forceMimeType);
+        byte[] buffer = new byte[FileHelper.FILE_IO_BUFFER_SIZE];
 
-        File targetFile = new File(targetFolder, targetFileName);
-        if (!targetFile.exists() && !targetFile.createNewFile())
-            throw new IOException("Could not create file " + targetFile.getPath());
+        // Read mime-type from the already downloaded part if not forced
+        if (isResumed && mimeType.isEmpty()) {
+            try (InputStream in = new FileInputStream(partFile)) {
+                int len = in.read(buffer);
+                if (len > 0) mimeType = ImageHelper.getMimeTypeFromPictureBinary(buffer, len);
+            }
+        }
 
-        Timber.d("WRITING CACHED DOWNLOAD %d TO %s (size %.2f KB)", resourceId, targetFile.getAbsolutePath(), size / 1024.0);
-        byte[] buffer = new byte[FileHelper.FILE_IO_BUFFER_SIZE];
+        Timber.d("WRITING CACHED DOWNLOAD %d TO %s (size %.2f KB)", resourceId, partFile.getAbsolutePath(), size / 1024.0);
         int len;
-        long processed = 0;
+        long processed = offset;
         int iteration = 0;
-        try (InputStream in = body.byteStream(); OutputStream out = FileHelper.getOutputStream(targetFile)) {
+        try (InputStream in = body.byteStream(); OutputStream out = FileHelper.getOutputStream(partFile, isResumed)) {
             while ((len = in.read(buffer)) > -1) {
                 if (interruptDownload.get()) break;
                 processed += len;
                 // Read mime-type on the fly if not forced
                 if (0 == iteration && mimeType.isEmpty()) {
-                    mimeType = ImageHelper.getMimeTypeFromPictureBinary(buffer);
+                    mimeType = ImageHelper.getMimeTypeFromPictureBinary(buffer, len);
                     if (mimeType.isEmpty() || mimeType.equals(ImageHelper.MIME_IMAGE_GENERIC)) {
+                        removePartialDownload(partFile, partMetadataFile);
                         String message = String.format(Locale.ENGLISH, "Invalid mime-type received from %s (size=%.2f)", url, size / 1024.0);
                         throw new UnsupportedContentException(message);
                     }
@@ -108,16 +179,261 @@ public class DownloadHelper {
                     notifyProgress.accept((processed * 100f) / size);
                 out.write(buffer, 0, len);
             }
-            if (!interruptDownload.get()) {
-                if (notifyProgress != null) notifyProgress.accept(100f);
-                out.flush();
-                Timber.d("CACHED DOWNLOAD %d [%s] WRITTEN TO %s (%.2f KB)", resourceId, mimeType, targetFile.getAbsolutePath(), targetFile.length() / 1024.0);
-                return new ImmutablePair<>(targetFile, mimeType);
+            out.flush();
+        }
+
+        if (!interruptDownload.get()) {
+            File targetFile = new File(targetFolder, targetFileName);
+            if (targetFile.exists()) FileHelper.removeFile(targetFile);
+            if (!partFile.renameTo(targetFile))
+                throw new IOException("Could not create file " + targetFile.getPath());
+            FileHelper.removeFile(partMetadataFile);
+
+            if (notifyProgress != null) notifyProgress.accept(100f);
+            Timber.d("CACHED DOWNLOAD %d [%s] WRITTEN TO %s (%.2f KB)", resourceId, mimeType, targetFile.getAbsolutePath(), targetFile.length() / 1024.0);
+            return new ImmutablePair<>(targetFile, mimeType);
+        }
+
+        // Keep the downloaded part if the download can be resumed later
+        if (!partMetadataFile.exists()) FileHelper.removeFile(partFile);
+        throw new DownloadInterruptedException("Download interrupted");
+    }
+
+    /**
+     * Create the given file in the given destination folder, and stream the given response body to it
+     * <p>
+     * NB : Only the first chunk of the body is held in memory to determine the type of the image;
+     * the rest is copied to the file chunk by chunk using a pooled buffer
+     *
+     * @param context       Context to use
+     * @param img           ImageFile that is being processed; its mime-type and size are updated
+     * @param dir           Destination folder
+     * @param contentType   Content type of the image (because some sources don't serve images with extensions)
+     * @param body          Body of the response containing the image
+     * @param bufferPool    Pool of the buffers to use
+     * @param isInterrupted Tells if the download has been interrupted; checked between chunks
+     * @return Saved file; null if the destination folder doesn't exist anymore
+     * @throws IOException,UnsupportedContentException,DownloadInterruptedException if anything goes wrong
+     */
+    @Nullable
+    public static DocumentFile saveImage(
+            @NonNull Context context,
+            @NonNull ImageFile img,
+            @NonNull DocumentFile dir,
+            @Nullable String contentType,
+            @NonNull InputStream body,
+            @NonNull BufferPool bufferPool,
+            @NonNull Supplier<Boolean> isInterrupted) throws IOException, UnsupportedContentException, DownloadInterruptedException {
+
+        if (!dir.exists()) {
+            // NB : Should not raise an exception here because that's what happens when some previously queued downloads are completed
+            // after a queued book has been manually deleted (and its folder with it)
+            Timber.w("saveImage : Directory %s does not exist - image not saved", dir.getUri().toString());
+            return null;
+        }
+
+        byte[] buffer = bufferPool.acquire();
+        try {
+            // Read the first chunk of the body to detect the type of the image
+            int headLength = readHead(body, buffer);
+            boolean isComplete = headLength < buffer.length; // The whole body fits in the first chunk
+
+            // Determine the extension of the file
+            String fileExt = null;
+            String mimeType = null;
+
+            // Check for picture validity if it's < 1KB (might be plain text or HTML if things have gone wrong... or a small GIF! )
+            if (isComplete && headLength < 1024) {
+                mimeType = ImageHelper.getMimeTypeFromPictureBinary(buffer, headLength);
+                if (mimeType.isEmpty() || mimeType.equals(ImageHelper.MIME_IMAGE_GENERIC)) {
+                    Timber.i("Small non-image data received from %s", img.getUrl());
+                    throw new UnsupportedContentException(String.format("Small non-image data received from %s - data not processed", img.getUrl()));
+                }
+                fileExt = FileHelper.getExtensionFromMimeType(mimeType);
+            }
+
+            // Use the Content-type contained in the HTTP headers of the response
+            if (null != contentType) {
+                mimeType = HttpHelper.cleanContentType(contentType).first;
+                // Ignore neutral binary content-type
+                if (!contentType.equalsIgnoreCase(FileHelper.DEFAULT_MIME_TYPE)) {
+                    fileExt = FileHelper.getExtensionFromMimeType(contentType);
+                    Timber.v("Using content-type %s to determine file extension -> %s", contentType, fileExt);
+                }
+            }
+            // Content-type has not been useful to determine the extension => See if the URL contains an extension
+            if (null == fileExt || fileExt.isEmpty() || fileExt.equalsIgnoreCase("bin")) {
+                fileExt = HttpHelper.getExtensionFromUri(img.getUrl());
+                mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(fileExt);
+                Timber.v("Using url to determine file extension (content-type was %s) for %s -> %s", contentType, img.getUrl(), fileExt);
+            }
+            // No extension detected in the URL => Read binary header of the file to detect known formats
+            // If PNG, peek into the file to see if it is an animated PNG or not (no other way to do that)
+            if (fileExt.isEmpty() || fileExt.equals("png")) {
+                mimeType = ImageHelper.getMimeTypeFromPictureBinary(buffer, headLength);
+                fileExt = FileHelper.getExtensionFromMimeType(mimeType);
+                Timber.v("Reading headers to determine file extension for %s -> %s (from detected mime-type %s)", img.getUrl(), fileExt, mimeType);
+            }
+            // If all else fails, fall back to jpg as default
+            if (null == fileExt || fileExt.isEmpty()) {
+                fileExt = "jpg";
+                mimeType = ImageHelper.MIME_IMAGE_JPEG;
+                Timber.d("Using default extension for %s -> %s", img.getUrl(), fileExt);
+            }
+            if (null == mimeType) mimeType = ImageHelper.MIME_IMAGE_GENERIC;
+            img.setMimeType(mimeType);
+
+            if (!ImageHelper.isImageExtensionSupported(fileExt))
+                throw new UnsupportedContentException(String.format("Unsupported extension %s for %s - data not processed", fileExt, img.getUrl()));
+
+            return writeImage(context, img, dir, img.getName() + "." + fileExt, mimeType, buffer, headLength, body, isInterrupted);
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Fill the given buffer with the first bytes of the given stream
+     *
+     * @param in     Stream to read
+     * @param buffer Buffer to fill
+     * @return Number of bytes read; lower than the size of the buffer if the end of the stream has been reached
+     * @throws IOException If something goes wrong while reading the stream
+     */
+    private static int readHead(@NonNull InputStream in, @NonNull byte[] buffer) throws IOException {
+        int offset = 0;
+        int len;
+        while (offset < buffer.length && (len = in.read(buffer, offset, buffer.length - offset)) > -1)
+            offset += len;
+        return offset;
+    }
+
+    /**
+     * Create the given file in the given destination folder, and write the given stream to it
+     *
+     * @param context       Context to use
+     * @param img           ImageFile that is being processed; its size is updated with the number of written bytes
+     * @param dir           Destination folder
+     * @param fileName      Name of the file to write (with the extension)
+     * @param mimeType      Mime-type of the image
+     * @param buffer        Buffer to use; contains the first bytes of the image
+     * @param headLength    Number of bytes of the image already read into the buffer
+     * @param body          Stream to read the remaining bytes of the image from
+     * @param isInterrupted Tells if the download has been interrupted; checked between chunks
+     * @throws IOException                  IOException if image cannot be saved at given location
+     * @throws DownloadInterruptedException If the download has been interrupted while writing the file
+     */
+    private static DocumentFile writeImage(
+            @NonNull Context context,
+            @NonNull ImageFile img,
+            @NonNull DocumentFile dir,
+            @NonNull String fileName,
+            @NonNull String mimeType,
+            @NonNull byte[] buffer,
+            int headLength,
+            @NonNull InputStream body,
+            @NonNull Supplier<Boolean> isInterrupted) throws IOException, DownloadInterruptedException {
+        DocumentFile file = FileHelper.findOrCreateDocumentFile(context, dir, mimeType, fileName);
+        if (null == file)
+            throw new IOException(String.format("Failed to create document %s under %s", fileName, dir.getUri().toString()));
+
+        long size = headLength;
+        boolean interrupted = false;
+        // Use the file's Uri so that plain (non-SAF) folders are written to directly
+        try (OutputStream out = FileHelper.getOutputStream(context, file.getUri())) {
+            if (null == out)
+                throw new IOException(String.format("Failed to open document %s under %s", fileName, dir.getUri().toString()));
+            out.write(buffer, 0, headLength);
+            if (headLength == buffer.length) { // There's more to read
+                int len;
+                while ((len = body.read(buffer)) > -1) {
+                    if (isInterrupted.get()) {
+                        interrupted = true;
+                        break;
+                    }
+                    out.write(buffer, 0, len);
+                    size += len;
+                }
             }
+            out.flush();
         }
         // Remove the remaining file chunk if download has been interrupted
-        FileHelper.removeFile(targetFile);
-        throw new DownloadInterruptedException("Download interrupted");
+        if (interrupted) {
+            FileHelper.removeFile(context, file.getUri());
+            throw new DownloadInterruptedException("Download interrupted");
+        }
+        img.setSize(size);
+        return file;
+    }
+
+
+    /**
+     * Get the validator to use to resume the partial download described by the given metadata file
+     *
+     * @param metadataFile Metadata file of the partial download
+     * @param url          URL of the resource to download
+     * @return Validator to use as an If-Range header value; empty string if the partial download can't be resumed
+     */
+    private static String getPartialDownloadValidator(@NonNull File metadataFile, @NonNull String url) {
+        if (!metadataFile.exists()) return "";
+        try {
+            Map<String, String> metadata = JsonHelper.jsonToObject(FileUtils.readFileToString(metadataFile, StandardCharsets.UTF_8), JsonHelper.MAP_STRINGS);
+            if (null == metadata || !url.equals(metadata.get(PART_KEY_URL))) return "";
+            // Weak ETags can't be used for range requests
+            String etag = StringHelper.protect(metadata.get(PART_KEY_ETAG));
+            if (!etag.isEmpty() && !etag.startsWith("W/")) return etag;
+            return StringHelper.protect(metadata.get(PART_KEY_LAST_MODIFIED));
+        } catch (IOException e) {
+            Timber.d(e);
+            return "";
+        }
+    }
+
+    /**
+     * Save the metadata needed to resume the download of the resource of the given response
+     *
+     * @param metadataFile Metadata file of the partial download
+     * @param url          URL of the resource to download
+     * @param response     Response containing the resource to download
+     * @return True if the metadata has been saved; false if the download of the resource can't be resumed
+     */
+    private static boolean savePartialDownloadMetadata(@NonNull File metadataFile, @NonNull String url, @NonNull Response response) {
+        String etag = StringHelper.protect(response.header(HttpHelper.HEADER_ETAG));
+        String lastModified = StringHelper.protect(response.header(HttpHelper.HEADER_LAST_MODIFIED));
+        if ((etag.isEmpty() || etag.startsWith("W/")) && lastModified.isEmpty()) return false;
+
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put(PART_KEY_URL, url);
+        metadata.put(PART_KEY_ETAG, etag);
+        metadata.put(PART_KEY_LAST_MODIFIED, lastModified);
+        try {
+            FileUtils.writeStringToFile(metadataFile, JsonHelper.serializeToJson(metadata, JsonHelper.MAP_STRINGS), StandardCharsets.UTF_8);
+            return true;
+        } catch (IOException e) {
+            Timber.d(e);
+            return false;
+        }
+    }
+
+    private static void removePartialDownload(@NonNull File partFile, @NonNull File metadataFile) {
+        FileHelper.removeFile(partFile);
+        FileHelper.removeFile(metadataFile);
+    }
+
+    /**
+     * Remove all files of the given folder, except unfinished downloads that can be resumed later
+     *
+     * @param folder Folder to clean up
+     */
+    public static void removeAllButPartialDownloads(@NonNull File folder) {
+        File[] files = folder.listFiles();
+        if (null == files) return;
+        for (File f : files) {
+            String name = f.getName();
+            if (name.endsWith(PART_FILE_EXT) || name.endsWith(PART_METADATA_EXT)) continue;
+            if (f.isDirectory()) FileUtils.deleteQuietly(f);
+            else FileHelper.removeFile(f);
+        }
     }
 
     /**
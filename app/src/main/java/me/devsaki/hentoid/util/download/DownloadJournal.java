@@ -0,0 +1,245 @@
+package me.devsaki.hentoid.util.download;
+
+import android.content.Context;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import me.devsaki.hentoid.database.domains.ImageFile;
+import me.devsaki.hentoid.util.file.FileHelper;
+import timber.log.Timber;
+
+/**
+ * Append-only journal of the page downloads of a book
+ * <p>
+ * Each line records the outcome of the download of a page, followed by the checksum of the line :
+ * - D [imageId] [size] [mimeType] [fileUri] #[crc32] : page is saved
+ * - E [imageId] #[crc32] : page has failed
+ * <p>
+ * Lines are handed to the OS as soon as they're recorded, so that they survive the app being killed.
+ * Replaying the journal gives the latest known state of each page, which allows an interrupted download
+ * to resume without relying on DB updates that might not have been written yet.
+ * Lines that don't match their checksum (e.g. truncated when the app has been killed while writing them) are ignored.
+ * <p>
+ * NB : Recording methods never fail; the journal is a best-effort safety net
+ */
+public class DownloadJournal implements Closeable {
+
+    private static final String FOLDER_NAME = "download_journal";
+    private static final String EXTENSION = ".log";
+    private static final String CHECKSUM_SEPARATOR = " #";
+
+    @IntDef({State.DONE, State.FAILED})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface State {
+        int DONE = 0;
+        int FAILED = 1;
+    }
+
+    private final long contentId;
+    private final Writer writer;
+    private boolean closed = false;
+
+
+    private DownloadJournal(long contentId, @NonNull Writer writer) {
+        this.contentId = contentId;
+        this.writer = writer;
+    }
+
+    @Nullable
+    private static File getJournalFile(@NonNull Context context, long contentId, boolean create) {
+        File folder = new File(context.getFilesDir(), FOLDER_NAME);
+        if (!folder.exists() && (!create || !folder.mkdirs())) return null;
+        return new File(folder, contentId + EXTENSION);
+    }
+
+    /**
+     * Open the journal of the given book for writing; new records are appended to existing ones
+     *
+     * @param context   Context to use
+     * @param contentId ID of the book to open the journal for
+     * @return Journal of the given book; null if it couldn't be opened
+     */
+    @Nullable
+    public static DownloadJournal open(@NonNull Context context, long contentId) {
+        File file = getJournalFile(context, contentId, true);
+        if (null == file) return null;
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+            return new DownloadJournal(contentId, writer);
+        } catch (IOException e) {
+            Timber.w(e, "Download journal of content %s couldn't be opened", contentId);
+            return null;
+        }
+    }
+
+    /**
+     * Delete the journal of the given book
+     *
+     * @param context   Context to use
+     * @param contentId ID of the book to delete the journal for
+     */
+    public static void delete(@NonNull Context context, long contentId) {
+        File file = getJournalFile(context, contentId, false);
+        if (file != null && file.exists()) FileHelper.removeFile(file);
+    }
+
+    /**
+     * Replay the journal of the given book
+     *
+     * @param context   Context to use
+     * @param contentId ID of the book to replay the journal for
+     * @return Latest known state of the pages of the given book, indexed by image ID; null if the book has no journal
+     */
+    @Nullable
+    public static Map<Long, Entry> replay(@NonNull Context context, long contentId) {
+        File file = getJournalFile(context, contentId, false);
+        if (null == file || !file.exists()) return null;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            return replay(reader, contentId);
+        } catch (IOException e) {
+            Timber.w(e);
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Replay the journal read from the given reader
+     *
+     * @param reader    Reader to read the journal from
+     * @param contentId ID of the book the journal belongs to
+     * @return Latest known state of the pages, indexed by image ID
+     * @throws IOException If the journal couldn't be read
+     */
+    static Map<Long, Entry> replay(@NonNull BufferedReader reader, long contentId) throws IOException {
+        Map<Long, Entry> result = new HashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String record = checkRecord(line);
+            if (null == record) {
+                Timber.d("Download journal of content %s : skipping corrupted line %s", contentId, line);
+                continue;
+            }
+            String[] parts = record.split(" ", 5);
+            try {
+                if ("D".equals(parts[0]) && 5 == parts.length)
+                    result.put(Long.parseLong(parts[1]), new Entry(State.DONE, Long.parseLong(parts[2]), parts[3], parts[4]));
+                else if ("E".equals(parts[0]) && 2 == parts.length)
+                    result.put(Long.parseLong(parts[1]), new Entry(State.FAILED, 0, "", ""));
+                else
+                    Timber.d("Download journal of content %s : skipping unknown line %s", contentId, line);
+            } catch (NumberFormatException e) {
+                Timber.d("Download journal of content %s : skipping corrupted line %s", contentId, line);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check the given line against its checksum
+     *
+     * @param line Line to check
+     * @return Record contained in the given line; null if the line is incomplete or corrupted
+     */
+    @Nullable
+    private static String checkRecord(@NonNull String line) {
+        int separatorIndex = line.lastIndexOf(CHECKSUM_SEPARATOR);
+        if (separatorIndex < 1) return null;
+        String record = line.substring(0, separatorIndex);
+        String checksum = line.substring(separatorIndex + CHECKSUM_SEPARATOR.length());
+        return checksum.equals(computeChecksum(record)) ? record : null;
+    }
+
+    private static String computeChecksum(@NonNull String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Format the given record as a journal line
+     *
+     * @param record Record to format
+     * @return Journal line containing the given record and its checksum
+     */
+    static String toLine(@NonNull String record) {
+        return record + CHECKSUM_SEPARATOR + computeChecksum(record) + "\n";
+    }
+
+    /**
+     * Record the given page as saved
+     *
+     * @param img Page to record
+     */
+    public synchronized void recordDone(@NonNull ImageFile img) {
+        write(toLine("D " + img.getId() + " " + img.getSize() + " " + img.getMimeType().replace(' ', '_') + " " + img.getFileUri()));
+    }
+
+    /**
+     * Record the given page as failed
+     *
+     * @param imageId ID of the page to record
+     */
+    public synchronized void recordFailed(long imageId) {
+        write(toLine("E " + imageId));
+    }
+
+    private void write(@NonNull String line) {
+        if (closed) return;
+        try {
+            writer.write(line);
+            writer.flush();
+        } catch (IOException e) {
+            Timber.w(e, "Download journal of content %s couldn't be written", contentId);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Timber.w(e);
+        }
+    }
+
+    /**
+     * Latest known state of a page
+     */
+    public static class Entry {
+        public final @State
+        int state;
+        // Only relevant for DONE pages
+        public final long size;
+        public final String mimeType;
+        public final String fileUri;
+
+        Entry(@State int state, long size, @NonNull String mimeType, @NonNull String fileUri) {
+            this.state = state;
+            this.size = size;
+            this.mimeType = mimeType;
+            this.fileUri = fileUri;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package me.devsaki.hentoid.util.download;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.devsaki.hentoid.database.domains.Content;
+import timber.log.Timber;
+
+/**
+ * In-memory download progress of a book
+ * <p>
+ * Counters are updated as soon as each page is processed, so that the progress
+ * of a download can be followed without querying the database
+ */
+public class DownloadProgress {
+
+    private final Content content;
+    private final int totalPages;
+
+    private final AtomicInteger pagesOK;
+    private final AtomicInteger pagesKO;
+    private final AtomicLong downloadedBytes;
+
+    // Timestamp of the last time progress has been published (ms)
+    private final AtomicLong lastPublishMs = new AtomicLong(0);
+    // Used to signal the completion of the download
+    private final Object completionLock = new Object();
+
+    /**
+     * @param content         Book being downloaded
+     * @param totalPages      Number of pages to download
+     * @param pagesOK         Number of pages already downloaded successfully (e.g. when resuming a download)
+     * @param pagesKO         Number of pages already downloaded with errors (e.g. when resuming a download)
+     * @param downloadedBytes Size of the pages already downloaded successfully (bytes)
+     */
+    public DownloadProgress(@NonNull Content content, int totalPages, int pagesOK, int pagesKO, long downloadedBytes) {
+        this.content = content;
+        this.totalPages = totalPages;
+        this.pagesOK = new AtomicInteger(pagesOK);
+        this.pagesKO = new AtomicInteger(pagesKO);
+        this.downloadedBytes = new AtomicLong(downloadedBytes);
+    }
+
+    /**
+     * Record the processing of a page
+     *
+     * @param success   True if the page has been downloaded successfully; false if it has failed
+     * @param sizeBytes Size of the downloaded page (bytes)
+     */
+    public void recordPage(boolean success, long sizeBytes) {
+        if (success) {
+            pagesOK.incrementAndGet();
+            downloadedBytes.addAndGet(sizeBytes);
+        } else {
+            pagesKO.incrementAndGet();
+        }
+        if (isDone()) {
+            synchronized (completionLock) {
+                completionLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until all pages have been processed, or until the given delay has elapsed
+     *
+     * @param timeoutMs Maximum delay to wait (ms)
+     */
+    public void awaitCompletion(long timeoutMs) {
+        synchronized (completionLock) {
+            if (isDone()) return;
+            try {
+                completionLock.wait(timeoutMs);
+            } catch (InterruptedException e) {
+                Timber.d(e);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Indicate if progress can be published at the given time, considering the given minimum interval between publications
+     * NB : Returns true only once per interval, whatever the number of calling threads
+     *
+     * @param nowMs         Current timestamp (ms)
+     * @param minIntervalMs Minimum interval between two publications (ms)
+     * @return True if progress can be published
+     */
+    public boolean tryStartPublishing(long nowMs, long minIntervalMs) {
+        long last = lastPublishMs.get();
+        return nowMs - last >= minIntervalMs && lastPublishMs.compareAndSet(last, nowMs);
+    }
+
+    public boolean isDone() {
+        return pagesOK.get() + pagesKO.get() >= totalPages;
+    }
+
+    /**
+     * Estimate the size of the whole book using the size of the pages that have already been downloaded
+     *
+     * @return Estimated size of the book (MB); -1 if there isn't enough data for an estimation
+     */
+    public double getEstimatedBookSizeMB() {
+        int progress = getProgress();
+        if (pagesOK.get() > 3 && progress > 0 && totalPages > 0)
+            return getDownloadedMB() / (progress * 1.0 / totalPages);
+        return -1;
+    }
+
+    public double getDownloadedMB() {
+        return downloadedBytes.get() / (1024.0 * 1024);
+    }
+
+    public Content getContent() {
+        return content;
+    }
+
+    public int getTotalPages() {
+        return totalPages;
+    }
+
+    public int getPagesOK() {
+        return pagesOK.get();
+    }
+
+    public int getPagesKO() {
+        return pagesKO.get();
+    }
+
+    public int getProgress() {
+        return pagesOK.get() + pagesKO.get();
+    }
+
+    public long getDownloadedBytes() {
+        return downloadedBytes.get();
+    }
+}
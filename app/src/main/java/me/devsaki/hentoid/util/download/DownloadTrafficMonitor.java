@@ -0,0 +1,246 @@
+package me.devsaki.hentoid.util.download;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.threeten.bp.Instant;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import timber.log.Timber;
+
+/**
+ * Accounting of the network traffic of the downloads, globally and per host
+ * <p>
+ * - Bytes are counted as they are read from the network (network interceptor), so that the
+ * progress of large files is visible while they are being downloaded
+ * - Time to first byte, duration and outcome of each request are recorded from OkHttp's call events
+ * <p>
+ * Only the traffic of the client this monitor is attached to is accounted, unlike the device-wide
+ * traffic stats that also include other apps' traffic
+ */
+public class DownloadTrafficMonitor implements EventListener.Factory, Interceptor {
+
+    // Number of bytes received since the monitor has been created
+    private final AtomicLong bytesReceived = new AtomicLong(0);
+    // Timestamp of the latest received byte (ms)
+    private final AtomicLong lastActivityMs = new AtomicLong(0);
+    // Number of requests being executed
+    private final AtomicInteger nbRunningCalls = new AtomicInteger(0);
+    // Statistics per host
+    private final Map<String, HostStats> hostStats = new ConcurrentHashMap<>();
+
+
+    /**
+     * @return Number of bytes received since the monitor has been created
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * @return Timestamp of the latest received byte (ms); 0 if nothing has been received yet
+     */
+    public long getLastActivityMs() {
+        return lastActivityMs.get();
+    }
+
+    /**
+     * @return Number of requests being executed
+     */
+    public int getNbRunningCalls() {
+        return nbRunningCalls.get();
+    }
+
+    /**
+     * @return Statistics of every host requests have been made to, by host
+     */
+    @NonNull
+    public Map<String, HostStats> getHostStats() {
+        return Collections.unmodifiableMap(hostStats);
+    }
+
+    private HostStats getOrCreateHostStats(@NonNull String host) {
+        HostStats result = hostStats.get(host);
+        if (null == result) {
+            HostStats newStats = new HostStats();
+            result = hostStats.putIfAbsent(host, newStats);
+            if (null == result) result = newStats;
+        }
+        return result;
+    }
+
+    private void recordBytes(@NonNull HostStats stats, long nbBytes) {
+        long now = Instant.now().toEpochMilli();
+        bytesReceived.addAndGet(nbBytes);
+        lastActivityMs.set(now);
+        stats.bytesReceived.addAndGet(nbBytes);
+        stats.lastActivityMs = now;
+    }
+
+    @NonNull
+    @Override
+    public EventListener create(@NonNull Call call) {
+        return new CallListener(call.request().url().host());
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        ResponseBody body = response.body();
+        if (null == body) return response;
+        HostStats stats = getOrCreateHostStats(chain.request().url().host());
+        return response.newBuilder().body(new CountingResponseBody(body, stats)).build();
+    }
+
+    /**
+     * Network statistics of a single host
+     */
+    public static class HostStats {
+        private final AtomicLong bytesReceived = new AtomicLong(0);
+        private final AtomicInteger nbSucceeded = new AtomicInteger(0);
+        private final AtomicInteger nbFailed = new AtomicInteger(0);
+        private final AtomicLong totalTtfbMs = new AtomicLong(0);
+        private final AtomicInteger nbTtfb = new AtomicInteger(0);
+        private final AtomicLong totalDurationMs = new AtomicLong(0);
+        private volatile long lastActivityMs = 0;
+
+        public long getBytesReceived() {
+            return bytesReceived.get();
+        }
+
+        public int getNbSucceeded() {
+            return nbSucceeded.get();
+        }
+
+        public int getNbFailed() {
+            return nbFailed.get();
+        }
+
+        public long getLastActivityMs() {
+            return lastActivityMs;
+        }
+
+        /**
+         * @return Average time to first byte of the requests (ms); -1 if unknown
+         */
+        public long getAvgTtfbMs() {
+            int nb = nbTtfb.get();
+            return (0 == nb) ? -1 : totalTtfbMs.get() / nb;
+        }
+
+        /**
+         * @return Average duration of the successful requests (ms), body included; -1 if unknown
+         */
+        public long getAvgDurationMs() {
+            int nb = nbSucceeded.get();
+            return (0 == nb) ? -1 : totalDurationMs.get() / nb;
+        }
+    }
+
+    /**
+     * Listener of the events of a single request
+     */
+    private class CallListener extends EventListener {
+        private final String host;
+        private long startMs;
+        private long ttfbMs = -1;
+        private long bodyBytes = 0;
+
+        CallListener(@NonNull String host) {
+            this.host = host;
+        }
+
+        @Override
+        public void callStart(@NonNull Call call) {
+            startMs = Instant.now().toEpochMilli();
+            nbRunningCalls.incrementAndGet();
+        }
+
+        @Override
+        public void responseHeadersStart(@NonNull Call call) {
+            // Redirects trigger several responses; the 1st one is the relevant one
+            if (ttfbMs < 0) {
+                ttfbMs = Instant.now().toEpochMilli() - startMs;
+                HostStats stats = getOrCreateHostStats(host);
+                stats.totalTtfbMs.addAndGet(ttfbMs);
+                stats.nbTtfb.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void responseBodyEnd(@NonNull Call call, long byteCount) {
+            bodyBytes += byteCount;
+        }
+
+        @Override
+        public void callEnd(@NonNull Call call) {
+            long durationMs = Instant.now().toEpochMilli() - startMs;
+            nbRunningCalls.decrementAndGet();
+            HostStats stats = getOrCreateHostStats(host);
+            stats.nbSucceeded.incrementAndGet();
+            stats.totalDurationMs.addAndGet(durationMs);
+            Timber.v("Traffic ::: %s - %d bytes; TTFB %d ms; duration %d ms", call.request().url(), bodyBytes, ttfbMs, durationMs);
+        }
+
+        @Override
+        public void callFailed(@NonNull Call call, @NonNull IOException ioe) {
+            nbRunningCalls.decrementAndGet();
+            getOrCreateHostStats(host).nbFailed.incrementAndGet();
+            Timber.v("Traffic ::: %s - failed after %d bytes : %s", call.request().url(), bodyBytes, ioe.getMessage());
+        }
+    }
+
+    /**
+     * Response body that records the bytes it reads
+     */
+    private class CountingResponseBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        CountingResponseBody(@NonNull ResponseBody delegate, @NonNull HostStats stats) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+                    long nbRead = super.read(sink, byteCount);
+                    if (nbRead > 0) recordBytes(stats, nbRead);
+                    return nbRead;
+                }
+            });
+        }
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @NonNull
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package me.devsaki.hentoid.util.download;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.schedulers.Schedulers;
+import me.devsaki.hentoid.database.CollectionDAO;
+import me.devsaki.hentoid.database.domains.ImageFile;
+import timber.log.Timber;
+
+/**
+ * Write-behind buffer for the properties of downloaded images
+ * <p>
+ * Updated images are kept in memory and written to the DB in a single transaction as soon as
+ * [maxItems] of them have piled up, or [maxDelayMs] after the first of them has been buffered
+ * <p>
+ * NB : Anything that reads image properties from the DB must call flush first
+ */
+public class ImageFileWriteBuffer {
+
+    private final CollectionDAO dao;
+    private final int maxItems;
+    private final long maxDelayMs;
+
+    // Images waiting to be written, in the order they have been updated
+    private final List<ImageFile> pendingImages = new ArrayList<>();
+    // Scheduled flush of the pending images
+    private Disposable scheduledFlush = Disposables.disposed();
+
+    /**
+     * @param dao        DAO to write images with
+     * @param maxItems   Number of buffered images that triggers a flush
+     * @param maxDelayMs Maximum time an image can stay in the buffer (ms)
+     */
+    public ImageFileWriteBuffer(@NonNull CollectionDAO dao, int maxItems, long maxDelayMs) {
+        this.dao = dao;
+        this.maxItems = Math.max(1, maxItems);
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * Buffer the status, download parameters, mime-type, URI and size of the given image
+     *
+     * @param img Image to write
+     */
+    public synchronized void add(@NonNull ImageFile img) {
+        pendingImages.add(img);
+        if (pendingImages.size() >= maxItems) {
+            flush();
+        } else if (1 == pendingImages.size()) {
+            scheduledFlush = Completable.timer(maxDelayMs, TimeUnit.MILLISECONDS, Schedulers.io())
+                    .subscribe(this::flush, Timber::e);
+        }
+    }
+
+    /**
+     * Write all buffered images to the DB right away
+     * NB : Writing is done while holding the buffer's lock, so that the DB is up to date when this method returns
+     */
+    public synchronized void flush() {
+        scheduledFlush.dispose();
+        if (pendingImages.isEmpty()) return;
+
+        List<ImageFile> images = new ArrayList<>(pendingImages);
+        pendingImages.clear();
+        dao.updateImageFileStatusParamsMimeTypeUriSize(images);
+        Timber.v("Image buffer ::: %d images written", images.size());
+    }
+}
@@ -1,34 +1,74 @@
 package me.devsaki.hentoid.util.download;
 
-import com.android.volley.VolleyError;
+import android.net.Uri;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+
 import com.annimon.stream.function.Consumer;
 
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.util.Map;
 import java.util.Objects;
 
+import me.devsaki.hentoid.enums.Site;
+import me.devsaki.hentoid.util.StringHelper;
+
 /**
  * Download request
  */
 public class RequestOrder {
 
-    private final int method;
+    public enum HttpMethod {
+        GET, HEAD
+    }
+
+    /**
+     * Priority lanes of the requests; lower value = higher priority
+     * Waiting requests of a lane aren't executed while requests of a higher-priority lane are running
+     */
+    @IntDef({Priority.INTERACTIVE, Priority.PREVIEW, Priority.BACKGROUND})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Priority {
+        int INTERACTIVE = 0; // Pages the user is waiting for (e.g. reader)
+        int PREVIEW = 1; // Covers and thumbnails
+        int BACKGROUND = 2; // Download queue
+    }
+
+    public static final int NB_PRIORITIES = 3;
+
+    private final HttpMethod method;
     private final String url;
+    private final String host;
+    private final Site site;
+    private final @Priority
+    int priority;
+    private final long groupId;
     private final Map<String, String> headers;
     private final boolean useHentoidAgent;
     private final boolean useWebviewAgent;
-    private final Consumer<Map.Entry<byte[], Map<String, String>>> parseListener;
-    private final Consumer<VolleyError> errorListener;
+    private final Consumer<Map.Entry<InputStream, Map<String, String>>> parseListener;
+    private final Consumer<NetworkError> errorListener;
 
     public RequestOrder(
-            int method,
+            @NonNull HttpMethod method,
             String url,
+            @NonNull Site site,
+            @Priority int priority,
+            long groupId,
             Map<String, String> headers,
             boolean useHentoidAgent,
             boolean useWebviewAgent,
-            Consumer<Map.Entry<byte[], Map<String, String>>> parseListener,
-            Consumer<VolleyError> errorListener) {
+            Consumer<Map.Entry<InputStream, Map<String, String>>> parseListener,
+            Consumer<NetworkError> errorListener) {
         this.method = method;
         this.url = url;
+        this.host = StringHelper.protect(Uri.parse(url).getHost());
+        this.site = site;
+        this.priority = priority;
+        this.groupId = groupId;
         this.headers = headers;
         this.useHentoidAgent = useHentoidAgent;
         this.useWebviewAgent = useWebviewAgent;
@@ -36,7 +76,7 @@ public class RequestOrder {
         this.errorListener = errorListener;
     }
 
-    public int getMethod() {
+    public HttpMethod getMethod() {
         return method;
     }
 
@@ -44,6 +84,26 @@ public class RequestOrder {
         return url;
     }
 
+    public String getHost() {
+        return host;
+    }
+
+    public Site getSite() {
+        return site;
+    }
+
+    public @Priority
+    int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return ID of the group of requests the request belongs to (e.g. ID of the book whose page is downloaded); 0 if none
+     */
+    public long getGroupId() {
+        return groupId;
+    }
+
     public Map<String, String> getHeaders() {
         return headers;
     }
@@ -56,11 +116,11 @@ public class RequestOrder {
         return useWebviewAgent;
     }
 
-    public Consumer<Map.Entry<byte[], Map<String, String>>> getParseListener() {
+    public Consumer<Map.Entry<InputStream, Map<String, String>>> getParseListener() {
         return parseListener;
     }
 
-    public Consumer<VolleyError> getErrorListener() {
+    public Consumer<NetworkError> getErrorListener() {
         return errorListener;
     }
 
@@ -77,4 +137,32 @@ public class RequestOrder {
     public int hashCode() {
         return Objects.hash(url, method);
     }
+
+    /**
+     * Error that happened while executing a request
+     */
+    public static class NetworkError {
+
+        @IntDef({Type.TIMEOUT, Type.NO_CONNECTION, Type.AUTH_FAILURE, Type.SERVER, Type.NETWORK, Type.PARSE})
+        @Retention(RetentionPolicy.SOURCE)
+        public @interface Type {
+            int TIMEOUT = 0; // Connection or read timeout
+            int NO_CONNECTION = 1; // Host can't be reached
+            int AUTH_FAILURE = 2; // HTTP 401 and 403
+            int SERVER = 3; // Other HTTP error codes
+            int NETWORK = 4; // Other I/O errors
+            int PARSE = 5; // Error while processing the response
+        }
+
+        public final @Type
+        int type;
+        public final int statusCode;    // HTTP status code; -1 if no response has been received
+        public final String message;
+
+        public NetworkError(@Type int type, int statusCode, String message) {
+            this.type = type;
+            this.statusCode = statusCode;
+            this.message = message;
+        }
+    }
 }
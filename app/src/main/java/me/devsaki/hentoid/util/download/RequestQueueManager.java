@@ -2,73 +2,116 @@ package me.devsaki.hentoid.util.download;
 
 import android.app.ActivityManager;
 import android.content.Context;
-import android.net.Uri;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.toolbox.BasicNetwork;
-import com.android.volley.toolbox.DiskBasedCache;
-import com.android.volley.toolbox.Volley;
 import com.google.firebase.crashlytics.FirebaseCrashlytics;
 
 import org.threeten.bp.Instant;
 
-import java.io.File;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import io.reactivex.Completable;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.schedulers.Schedulers;
-import me.devsaki.hentoid.util.Helper;
+import me.devsaki.hentoid.enums.Site;
 import me.devsaki.hentoid.util.Preferences;
+import me.devsaki.hentoid.util.network.HttpHelper;
 import me.devsaki.hentoid.util.network.OkHttpClientSingleton;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.Headers;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 import timber.log.Timber;
 
 /**
- * Manager class for image download queue (Volley)
+ * Manager class for image download queue (OkHttp)
+ * <p>
+ * Requests are scheduled per host : each host has its own waiting queue and number of parallel
+ * downloads, so that a slow or throttled host doesn't hold the requests of other hosts back
+ * <p>
+ * The limits of the sites (number of parallel downloads, request rate) are shared by all their
+ * hosts, as some sites spread their pictures over multiple servers
+ * <p>
+ * The number of parallel downloads of each host adapts itself to the way the host answers
+ * (see AimdConcurrencyLimit); the download thread count chosen by the user is its upper bound
+ * <p>
+ * The download bandwidth can be capped globally and per site (see BandwidthLimiter)
+ * <p>
+ * Requests are executed asynchronously by a dedicated OkHttp client, whose connections are
+ * reused (and multiplexed when the host supports HTTP/2) between requests to the same host
+ * <p>
+ * Requests belong to priority lanes (see RequestOrder.Priority) : waiting requests of a lane are
+ * held back as long as requests of a higher-priority lane are running, including requests executed
+ * outside of the queue that have been declared with enterLane (e.g. pages the reader is waiting for)
  */
 @SuppressWarnings("squid:S3077")
 // https://stackoverflow.com/questions/11639746/what-is-the-point-of-making-the-singleton-instance-volatile-while-using-double-l
-public class RequestQueueManager implements RequestQueue.RequestEventListener {
+public class RequestQueueManager {
     private static volatile RequestQueueManager mInstance;
     private static final int CONNECT_TIMEOUT_MS = 4000;
     private static final int IO_TIMEOUT_MS = 15000;
-
-    // Volley download request queue
-    private RequestQueue mRequestQueue;
-    // Maximum number of allowed parallel download threads (-1 = not capped)
-    private int downloadThreadCap = -1;
-    // Actual number of allowed parallel download threads
-    private int downloadThreadCount = 0;
-    // Maximum number of allowed requests per second (-1 = not capped)
-    private int nbRequestsPerSecond = -1;
+    private static final int MAX_TIMEOUT_RETRIES = 1;
+    // Required to pass through cloudflare filtering on some sites
+    private static final String ACCEPT_IMAGES = "image/jpeg,image/png,image/avif,image/webp,image/apng,image/svg+xml,image/*,*/*";
+
+    // OkHttp client dedicated to downloads
+    private volatile OkHttpClient client;
+    // Accounting of the traffic of the downloads
+    private final DownloadTrafficMonitor trafficMonitor = new DownloadTrafficMonitor();
+    // Cap of the download bandwidth
+    private final BandwidthLimiter bandwidthLimiter = new BandwidthLimiter();
+    // Number of parallel downloads; also the default number of parallel downloads per host
+    private volatile int downloadThreadCount;
     // Used when waiting between requests
     private final CompositeDisposable waitDisposable = new CompositeDisposable();
 
-    // Requests waiting to be executed
-    private final LinkedList<RequestOrder> waitingRequestQueue = new LinkedList<>();
-    // Requests being currently executed
-    private final Set<RequestOrder> currentRequests = new HashSet<>();
-
-    // Measurement of the number of requests per second
-    private final Queue<Long> previousRequestsTimestamps = new LinkedList<>();
-
-    // True if the queue is being initialized
-    private final AtomicInteger ignorableErrors = new AtomicInteger(0);
+    // Requests waiting to be executed, per host
+    private final Map<String, HostQueue> hostQueues = new ConcurrentHashMap<>();
+    // Limits shared by all the hosts of each site
+    private final Map<Site, SiteLimits> siteLimits = new ConcurrentHashMap<>();
+    // Requests being currently executed, by call
+    // NB : Keyed by call rather than by order, as distinct orders can target the same URL (e.g. retries, different lanes)
+    private final Map<Call, RequestOrder> currentRequests = new ConcurrentHashMap<>();
+    // Calls whose response is currently being processed
+    private final Set<Call> deliveringCalls = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // Number of running requests per priority lane, queued or not
+    private final AtomicIntegerArray nbRunningPerLane = new AtomicIntegerArray(RequestOrder.NB_PRIORITIES);
 
 
     private RequestQueueManager(Context context) {
-        downloadThreadCount = getPreferredThreadCount(context);
+        downloadThreadCount = getPreferredThreadCount(context, Preferences.getDownloadThreadCount());
         FirebaseCrashlytics crashlytics = FirebaseCrashlytics.getInstance();
         crashlytics.setCustomKey("Download thread count", downloadThreadCount);
 
-        init(context, downloadThreadCount, CONNECT_TIMEOUT_MS, IO_TIMEOUT_MS, true, false);
+        bandwidthLimiter.setGlobalCap(Preferences.getDlSpeedCap());
+        client = buildClient(downloadThreadCount, trafficMonitor, bandwidthLimiter);
     }
 
     /**
@@ -87,74 +130,68 @@ public class RequestQueueManager implements RequestQueue.RequestEventListener {
     }
 
     /**
-     * Initialize the Volley request queue
+     * Build the OkHttp client used to download images
+     * NB : The client has its own dispatcher to be able to set the number of parallel downloads
+     * without affecting the other network operations of the app
      *
-     * @param ctx              Context to use
-     * @param connectTimeoutMs Connect timeout to use (ms)
-     * @param ioTimeoutMs      I/O timeout to use (ms)
-     */
-    private void init(Context ctx, int connectTimeoutMs, int ioTimeoutMs) { // This is the safest code, as it relies on standard Volley interface
-        if (mRequestQueue == null) {
-            mRequestQueue = Volley.newRequestQueue(ctx.getApplicationContext(), new VolleyOkHttp3Stack(connectTimeoutMs, ioTimeoutMs));
-            mRequestQueue.addRequestEventListener(this);
-        }
+     * @param nbDlThreads      Number of parallel downloads to use
+     * @param trafficMonitor   Monitor to account the traffic of the client with
+     * @param bandwidthLimiter Limiter to cap the bandwidth of the client with
+     * @return New OkHttp client
+     */
+    private static OkHttpClient buildClient(
+            int nbDlThreads,
+            @NonNull DownloadTrafficMonitor trafficMonitor,
+            @NonNull BandwidthLimiter bandwidthLimiter) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(nbDlThreads);
+        dispatcher.setMaxRequestsPerHost(nbDlThreads);
+        return OkHttpClientSingleton.getInstance(CONNECT_TIMEOUT_MS, IO_TIMEOUT_MS, true).newBuilder()
+                .dispatcher(dispatcher)
+                .cache(null) // Downloaded pictures are saved right away; there's no point in caching them
+                .eventListenerFactory(trafficMonitor)
+                .addNetworkInterceptor(trafficMonitor)
+                .addNetworkInterceptor(bandwidthLimiter)
+                .build();
     }
 
     /**
-     * Initialize the Volley request queue using the given number of parallel downloads
-     *
-     * @param ctx              Context to use
-     * @param nbDlThreads      Number of parallel downloads to use; -1 to use automated recommendation
-     * @param connectTimeoutMs Connect timeout to use (ms)
-     * @param ioTimeoutMs      I/O timeout to use (ms)
-     * @param cancelQueue      True if queued requests should be canceled; false if it should be kept intact
-     * @param resetOkHttp      If true, also reset the underlying OkHttp connections
-     */
-    private void init(Context ctx, int nbDlThreads, int connectTimeoutMs, int ioTimeoutMs, boolean cancelQueue, boolean resetOkHttp) {
-        Timber.d("Init using %d Dl threads", nbDlThreads);
-        if (mRequestQueue != null) {
-            mRequestQueue.removeRequestEventListener(this);
-            if (cancelQueue) cancelQueue();
-            mRequestQueue.stop();
-            mRequestQueue = null;
-        }
-
-        if (resetOkHttp) {
-            ignorableErrors.set(getNbActiveRequests());
-            OkHttpClientSingleton.reset();
-        }
+     * @return Accounting of the traffic of the downloads
+     */
+    public DownloadTrafficMonitor getTrafficMonitor() {
+        return trafficMonitor;
+    }
 
-        mRequestQueue = createRequestQueue(ctx, nbDlThreads, connectTimeoutMs, ioTimeoutMs);
-        mRequestQueue.addRequestEventListener(this);
-        mRequestQueue.start();
+    /**
+     * @return Cap of the download bandwidth
+     */
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
     }
 
     /**
-     * Initialize the Volley request queue using the given number of parallel downloads
+     * Change the cap of the bandwidth of all downloads combined
+     * NB : Takes effect right away, including for the downloads in progress
      *
-     * @param ctx         Context to use
-     * @param nbDlThreads Number of parallel downloads to use; -1 to use automated recommendation
-     * @param cancelQueue True if queued requests should be canceled; false if it should be kept intact
+     * @param capKbps Cap to use (KBps); DL_SPEED_CAP_NONE for no cap
      */
-    public void initUsingDownloadThreadCount(@NonNull Context ctx, int nbDlThreads, boolean cancelQueue) {
-        downloadThreadCap = nbDlThreads;
-        downloadThreadCount = nbDlThreads;
-        if (-1 == downloadThreadCap) downloadThreadCount = getPreferredThreadCount(ctx);
-        init(ctx, downloadThreadCount, CONNECT_TIMEOUT_MS, IO_TIMEOUT_MS, cancelQueue, false);
+    public void setDownloadSpeedCap(int capKbps) {
+        Timber.d("Using a download speed cap of %d KBps", capKbps);
+        bandwidthLimiter.setGlobalCap(capKbps);
     }
 
     /**
-     * Return the number of parallel downloads (download thread count) chosen by the user
+     * Return the number of parallel downloads (download thread count) to use
      *
-     * @param context Context to use
-     * @return Number of parallel downloads (download thread count) chosen by the user
+     * @param context     Context to use
+     * @param threadCount Number of parallel downloads chosen by the user
+     * @return Number of parallel downloads (download thread count) to use
      */
-    private static int getPreferredThreadCount(Context context) {
-        int result = Preferences.getDownloadThreadCount();
-        if (result == Preferences.Constant.DOWNLOAD_THREAD_COUNT_AUTO) {
-            result = getSuggestedThreadCount(context);
+    private static int getPreferredThreadCount(Context context, int threadCount) {
+        if (threadCount == Preferences.Constant.DOWNLOAD_THREAD_COUNT_AUTO) {
+            return getSuggestedThreadCount(context);
         }
-        return result;
+        return threadCount;
     }
 
     /**
@@ -189,70 +226,100 @@ public class RequestQueueManager implements RequestQueue.RequestEventListener {
     }
 
     /**
-     * Reset the entire queue
+     * Change the number of parallel downloads
+     * NB : Takes effect right away, including for the requests that are already queued
      *
-     * @param ctx         Context to use
-     * @param resetOkHttp If true, also reset the underlying OkHttp connections
+     * @param context     Context to use
+     * @param threadCount Number of parallel downloads to use; DOWNLOAD_THREAD_COUNT_AUTO to use automated recommendation
      */
-    public void resetRequestQueue(@NonNull Context ctx, boolean resetOkHttp) {
-        init(ctx, downloadThreadCount, CONNECT_TIMEOUT_MS, IO_TIMEOUT_MS, false, resetOkHttp);
-        // Requeue interrupted requests
-        synchronized (currentRequests) {
-            Timber.d("resetRequestQueue :: Requeuing %d requests", currentRequests.size());
-            for (RequestOrder order : currentRequests) executeRequest(order);
+    public void setDownloadThreadCount(@NonNull Context context, int threadCount) {
+        downloadThreadCount = getPreferredThreadCount(context, threadCount);
+        Timber.d("Using %d Dl threads", downloadThreadCount);
+
+        Dispatcher dispatcher = client.dispatcher();
+        dispatcher.setMaxRequests(downloadThreadCount);
+        dispatcher.setMaxRequestsPerHost(downloadThreadCount);
+        for (HostQueue hostQueue : hostQueues.values()) {
+            Site site = hostQueue.site;
+            if (site != null) applyLimits(hostQueue, site);
         }
         refill();
     }
 
     /**
-     * Restart the current request queue (cancel, then re-execute all pending requests)
+     * Reset the entire queue : requests that are waiting for a response are executed again
+     * NB : Requests whose response is being processed are left untouched
+     *
+     * @param ctx         Context to use
+     * @param resetOkHttp If true, also reset the underlying OkHttp connections
      */
-    public void restartRequestQueue() {
-        if (mRequestQueue != null) {
-            mRequestQueue.removeRequestEventListener(this); // Prevent interrupted requests from messing with downloads
-            mRequestQueue.cancelAll(request -> true);
-            mRequestQueue.addRequestEventListener(this);
-            synchronized (currentRequests) {
-                // Requeue interrupted requests
-                for (RequestOrder order : currentRequests)
-                    executeRequest(order);
+    public void resetRequestQueue(@NonNull Context ctx, boolean resetOkHttp) {
+        List<RequestOrder> interruptedRequests = new ArrayList<>();
+        for (Map.Entry<Call, RequestOrder> entry : currentRequests.entrySet()) {
+            Call call = entry.getKey();
+            if (deliveringCalls.contains(call)) continue;
+            // Removing the call first prevents its cancellation from being processed as an error
+            if (currentRequests.remove(call, entry.getValue())) {
+                call.cancel();
+                interruptedRequests.add(entry.getValue());
             }
-            refill();
         }
+
+        if (resetOkHttp) {
+            OkHttpClient previousClient = client;
+            OkHttpClientSingleton.reset();
+            client = buildClient(downloadThreadCount, trafficMonitor, bandwidthLimiter);
+            previousClient.dispatcher().executorService().shutdown();
+        }
+
+        // Requeue interrupted requests
+        Timber.d("resetRequestQueue :: Requeuing %d requests", interruptedRequests.size());
+        for (RequestOrder order : interruptedRequests) executeRequest(order, 0);
+        refill();
     }
 
     /**
      * Cancel the app's request queue : cancel all requests remaining in the queue
      */
     public void cancelQueue() {
-        mRequestQueue.cancelAll(request -> true);
-        synchronized (waitingRequestQueue) {
-            waitingRequestQueue.clear();
-        }
-        synchronized (currentRequests) {
-            currentRequests.clear();
+        hostQueues.clear();
+        siteLimits.clear();
+        for (Map.Entry<Call, RequestOrder> entry : currentRequests.entrySet()) {
+            if (currentRequests.remove(entry.getKey(), entry.getValue())) {
+                nbRunningPerLane.decrementAndGet(entry.getValue().getPriority());
+                entry.getKey().cancel();
+            }
         }
-        ignorableErrors.set(0);
         waitDisposable.clear();
         Timber.d("RequestQueue ::: canceled");
     }
 
-    // Freely inspired by inner workings of Volley.java and RequestQueue.java; to be watched closely as Volley evolves
-    private RequestQueue createRequestQueue(Context ctx, int nbDlThreads, int connectTimeoutMs, int ioTimeoutMs) {
-        BasicNetwork network = new BasicNetwork(new VolleyOkHttp3Stack(connectTimeoutMs, ioTimeoutMs));
-        DiskBasedCache.FileSupplier cacheSupplier =
-                new DiskBasedCache.FileSupplier() {
-                    private File cacheDir = null;
-
-                    @Override
-                    public File get() {
-                        if (cacheDir == null) {
-                            cacheDir = new File(ctx.getCacheDir(), "volley"); // NB : this is dirty, as this value is supposed to be private in Volley.java
-                        }
-                        return cacheDir;
+    /**
+     * Cancel the requests of the given group (waiting and running), leaving the other requests untouched
+     *
+     * @param groupId ID of the group whose requests to cancel (see RequestOrder.getGroupId)
+     */
+    public void cancelRequests(long groupId) {
+        int nbCanceled = 0;
+        for (HostQueue hostQueue : hostQueues.values())
+            for (Queue<RequestOrder> lane : hostQueue.waitingRequests) {
+                Iterator<RequestOrder> iterator = lane.iterator();
+                while (iterator.hasNext())
+                    if (iterator.next().getGroupId() == groupId) {
+                        iterator.remove();
+                        nbCanceled++;
                     }
-                };
-        return new RequestQueue(new DiskBasedCache(cacheSupplier), network, nbDlThreads);
+            }
+        for (Map.Entry<Call, RequestOrder> entry : currentRequests.entrySet()) {
+            if (entry.getValue().getGroupId() != groupId) continue;
+            // Removing the call first prevents its cancellation from being processed as an error
+            if (currentRequests.remove(entry.getKey(), entry.getValue())) {
+                entry.getKey().cancel();
+                releaseHostSlot(entry.getValue());
+                nbCanceled++;
+            }
+        }
+        Timber.d("RequestQueue ::: %d requests of group %d canceled", nbCanceled, groupId);
     }
 
     /**
@@ -260,170 +327,469 @@ public class RequestQueueManager implements RequestQueue.RequestEventListener {
      *
      * @param order Request to add to the queue
      */
-    public void queueRequest(RequestOrder order) {
-        long now = Instant.now().toEpochMilli();
-        if (getAllowedNewRequests(now) > 0) executeRequest(order, now);
-        else {
-            synchronized (waitingRequestQueue) {
-                waitingRequestQueue.add(order);
-                Timber.d("Waiting requests queue ::: added new request - current total %d", waitingRequestQueue.size());
-            }
-        }
+    public void queueRequest(@NonNull RequestOrder order) {
+        HostQueue hostQueue = getHostQueue(order.getHost());
+        applyLimits(hostQueue, order.getSite());
+        hostQueue.waitingRequests.get(order.getPriority()).add(order);
+        Timber.d("Waiting requests queue ::: added new request for host %s - current total %d", hostQueue.host, hostQueue.getNbWaiting());
+        dispatch(hostQueue);
     }
 
     /**
-     * Get the number of new requests that can be executed at the given timestamp
-     * This method is where the number of parallel downloads and the download rate limitations
-     * are actually used
+     * Declare a request executed outside of the queue with the given priority
+     * (e.g. a page the reader downloads by itself because the user is waiting for it)
+     * <p>
+     * Until the returned handle is closed, waiting requests of lower priority aren't executed;
+     * those that are already running are left to complete
      *
-     * @param now Timestamp to consider
-     * @return Number of new requests that can be executed at the given timestamp
-     */
-    private int getAllowedNewRequests(long now) {
-        int remainingSlots = downloadThreadCount - getNbActiveRequests();
-        if (0 == remainingSlots) return 0;
-
-        if (nbRequestsPerSecond > -1) {
-            synchronized (previousRequestsTimestamps) {
-                boolean polled;
-                do {
-                    polled = false;
-                    Long earliestRequestTimestamp = previousRequestsTimestamps.peek();
-                    if (null == earliestRequestTimestamp) break; // Empty collection
-                    if (now - earliestRequestTimestamp > 1000) {
-                        previousRequestsTimestamps.poll();
-                        polled = true;
-                    }
-                } while (polled);
+     * @param priority Priority of the request
+     * @return Handle to close when the request is completed
+     */
+    public Closeable enterLane(@RequestOrder.Priority int priority) {
+        nbRunningPerLane.incrementAndGet(priority);
+        AtomicBoolean closed = new AtomicBoolean(false);
+        return () -> {
+            if (closed.compareAndSet(false, true)) leaveLane(priority);
+        };
+    }
 
-                int nbRequestsLastSecond = previousRequestsTimestamps.size();
-                return Math.min(remainingSlots, nbRequestsPerSecond - nbRequestsLastSecond);
-            }
-        } else return remainingSlots;
+    private void leaveLane(@RequestOrder.Priority int priority) {
+        // Lower lanes might have been held back by the lane that has just been freed
+        if (0 == nbRunningPerLane.decrementAndGet(priority) && priority < RequestOrder.Priority.BACKGROUND)
+            refill();
     }
 
     /**
-     * Refill the queue with the allowed number of requests
+     * Indicate whether waiting requests of the given lane are held back by running requests of a higher-priority lane
+     *
+     * @param priority Priority lane to test
+     * @return True if requests of the given lane can't be executed for now
      */
-    private void refill() {
-        if (getNbActiveRequests() < downloadThreadCount) {
-            waitDisposable.add(Completable.fromRunnable(this::doRefill)
-                    .subscribeOn(Schedulers.computation())
-                    .observeOn(Schedulers.computation())
-                    .subscribe(Helper.EMPTY_ACTION, Timber::e)
-            );
+    private boolean isPreempted(@RequestOrder.Priority int priority) {
+        for (int lane = 0; lane < priority; lane++)
+            if (nbRunningPerLane.get(lane) > 0) return true;
+        return false;
+    }
+
+    /**
+     * Get the queue of the given host; create it if it doesn't exist
+     *
+     * @param host Host to get the queue for
+     * @return Queue of the given host
+     */
+    private HostQueue getHostQueue(@NonNull String host) {
+        HostQueue result = hostQueues.get(host);
+        if (null == result) {
+            HostQueue newQueue = new HostQueue(host);
+            result = hostQueues.putIfAbsent(host, newQueue);
+            if (null == result) result = newQueue;
         }
+        return result;
     }
 
     /**
-     * Refill the queue with the allowed number of requests
+     * Get the limits of the given site; create them if they don't exist
+     *
+     * @param site Site to get the limits for
+     * @return Limits of the given site
      */
-    private synchronized void doRefill() {
-        long now = Instant.now().toEpochMilli();
-        int allowedNewRequests = getAllowedNewRequests(now);
-        while (0 == allowedNewRequests && 0 == getNbActiveRequests()) { // Dry queue
-            Helper.pause(250);
-            now = Instant.now().toEpochMilli();
-            allowedNewRequests = getAllowedNewRequests(now);
+    private SiteLimits getSiteLimits(@NonNull Site site) {
+        SiteLimits result = siteLimits.get(site);
+        if (null == result) {
+            SiteLimits newLimits = new SiteLimits();
+            result = siteLimits.putIfAbsent(site, newLimits);
+            if (null == result) result = newLimits;
         }
+        return result;
+    }
 
-        if (allowedNewRequests > 0) {
-            for (int i = 0; i < allowedNewRequests; i++) {
-                synchronized (waitingRequestQueue) {
-                    if (waitingRequestQueue.isEmpty()) break;
-                    RequestOrder o = waitingRequestQueue.removeFirst();
-                    if (o != null) executeRequest(o, now);
+    /**
+     * Apply the download constraints of the given site to the given host queue
+     * This method is where the number of parallel downloads, the download rate and the bandwidth limitations are set
+     *
+     * @param hostQueue Host queue to set constraints for
+     * @param site      Site to get the constraints from
+     */
+    private void applyLimits(@NonNull HostQueue hostQueue, @NonNull Site site) {
+        hostQueue.site = site;
+
+        // A single host can't go beyond the limit of its site
+        int parallelDownloads = downloadThreadCount;
+        if (site.getParallelDownloadCap() > 0)
+            parallelDownloads = Math.min(parallelDownloads, site.getParallelDownloadCap());
+        hostQueue.concurrencyLimit.setMaxLimit(parallelDownloads);
+
+        // Limits of the site, all hosts combined
+        SiteLimits limits = getSiteLimits(site);
+        limits.maxParallelDownloads = (site.getParallelDownloadCap() > 0) ? site.getParallelDownloadCap() : Integer.MAX_VALUE;
+
+        int nbRequestsPerSecond = site.getRequestsCapPerSecond();
+        if (nbRequestsPerSecond > 0) {
+            TokenBucket rateLimiter = limits.rateLimiter;
+            if (null == rateLimiter)
+                limits.rateLimiter = new TokenBucket(nbRequestsPerSecond, nbRequestsPerSecond, Instant.now().toEpochMilli());
+            else
+                rateLimiter.setRate(nbRequestsPerSecond, nbRequestsPerSecond);
+        } else {
+            limits.rateLimiter = null;
+        }
+
+        bandwidthLimiter.setSiteCap(site, site.getBandwidthCapKbps());
+    }
+
+    /**
+     * Refill all host queues with the allowed number of requests
+     */
+    private void refill() {
+        for (HostQueue hostQueue : hostQueues.values()) dispatch(hostQueue);
+    }
+
+    /**
+     * Refill the host queues of the given site with the allowed number of requests
+     *
+     * @param site Site whose host queues to refill
+     */
+    private void refill(@NonNull Site site) {
+        for (HostQueue hostQueue : hostQueues.values())
+            if (site.equals(hostQueue.site)) dispatch(hostQueue);
+    }
+
+    /**
+     * Execute as many waiting requests of the given host as its constraints allow
+     * <p>
+     * No lock is involved : only one thread at a time drains a given host queue;
+     * calls made while it is busy are counted so that it drains the queue again before leaving
+     *
+     * @param hostQueue Host queue to dispatch
+     */
+    private void dispatch(@NonNull HostQueue hostQueue) {
+        if (hostQueue.dispatchCounter.getAndIncrement() > 0) return;
+
+        int missed = 1;
+        do {
+            drain(hostQueue);
+            missed = hostQueue.dispatchCounter.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Execute waiting requests of the given host until one of its constraints is reached
+     * NB : Must only be called by dispatch
+     *
+     * @param hostQueue Host queue to drain
+     */
+    private void drain(@NonNull HostQueue hostQueue) {
+        while (hostQueue.nbActiveRequests.get() < hostQueue.concurrencyLimit.getLimit()) {
+            Queue<RequestOrder> lane = getNextLane(hostQueue);
+            if (null == lane) return;
+            // Only the current thread polls the queue; the next request can't change in between
+            RequestOrder next = lane.peek();
+            if (null == next) return;
+
+            // Limits of the site, shared with its other hosts
+            // NB : The host queue is dispatched again when a request of the site completes
+            SiteLimits limits = getSiteLimits(next.getSite());
+            if (!limits.tryAcquire()) return;
+            TokenBucket rateLimiter = limits.rateLimiter;
+            if (rateLimiter != null) {
+                long delayMs = rateLimiter.tryConsume(1, Instant.now().toEpochMilli());
+                if (delayMs > 0) {
+                    limits.nbActiveRequests.decrementAndGet();
+                    scheduleDispatch(hostQueue, delayMs);
+                    return;
                 }
             }
+            RequestOrder order = lane.poll();
+            hostQueue.nbActiveRequests.incrementAndGet();
+            nbRunningPerLane.incrementAndGet(order.getPriority());
+            executeRequest(order, 0);
+            Timber.d("Requests queue ::: request executed for host %s - current total (%d active + %d waiting)", hostQueue.host, hostQueue.nbActiveRequests.get(), hostQueue.getNbWaiting());
         }
     }
 
     /**
-     * Execute the given request order now
+     * Get the highest-priority lane of the given host that has waiting requests
      *
-     * @param order Request order to execute
+     * @param hostQueue Host queue to get the lane from
+     * @return Highest-priority lane of the given host that has waiting requests; null if there's none, or if it is preempted
      */
-    private void executeRequest(@NonNull RequestOrder order) {
-        executeRequest(order, Instant.now().toEpochMilli());
+    @Nullable
+    private Queue<RequestOrder> getNextLane(@NonNull HostQueue hostQueue) {
+        for (int priority = 0; priority < RequestOrder.NB_PRIORITIES; priority++) {
+            Queue<RequestOrder> lane = hostQueue.waitingRequests.get(priority);
+            if (lane.isEmpty()) continue;
+            return isPreempted(priority) ? null : lane;
+        }
+        return null;
     }
 
     /**
-     * Execute the given request order at the given timestamp
+     * Dispatch the given host queue again after the given delay
+     * NB : Only one delayed dispatch is scheduled per host at any given time
      *
-     * @param order Request order to execute
-     * @param now   Tiemstamp to record the execution for
+     * @param hostQueue Host queue to dispatch
+     * @param delayMs   Delay to wait before dispatching (ms)
      */
-    private void executeRequest(@NonNull RequestOrder order, long now) {
-        synchronized (currentRequests) {
-            currentRequests.add(order);
+    private void scheduleDispatch(@NonNull HostQueue hostQueue, long delayMs) {
+        if (!hostQueue.isDispatchScheduled.compareAndSet(false, true)) return;
+        waitDisposable.add(Completable.timer(delayMs, TimeUnit.MILLISECONDS, Schedulers.computation())
+                .subscribe(
+                        () -> {
+                            hostQueue.isDispatchScheduled.set(false);
+                            dispatch(hostQueue);
+                        },
+                        Timber::e)
+        );
+    }
+
+    /**
+     * Execute the given request order now
+     *
+     * @param order   Request order to execute
+     * @param attempt Number of times the request has already been tried
+     */
+    private void executeRequest(@NonNull RequestOrder order, int attempt) {
+        Request request;
+        try {
+            request = buildRequest(order);
+        } catch (IllegalArgumentException e) { // Malformed URL
+            Timber.w(e);
+            order.getErrorListener().accept(new RequestOrder.NetworkError(RequestOrder.NetworkError.Type.NETWORK, -1, e.getMessage()));
+            releaseHostSlot(order);
+            return;
         }
-        mRequestQueue.add(new InputStreamVolleyRequest<>(order));
-        if (nbRequestsPerSecond > -1) {
-            synchronized (previousRequestsTimestamps) {
-                previousRequestsTimestamps.add(now);
+
+        Call call = client.newCall(request);
+        currentRequests.put(call, order);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                onCallFailure(order, call, e, attempt);
             }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                onCallResponse(order, call, response);
+            }
+        });
+    }
+
+    private static Request buildRequest(@NonNull RequestOrder order) {
+        Request.Builder builder = new Request.Builder().url(order.getUrl());
+        builder.header(HttpHelper.HEADER_USER_AGENT, HttpHelper.getMobileUserAgent(order.isUseHentoidAgent(), order.isUseWebviewAgent()));
+        builder.header("Accept", ACCEPT_IMAGES);
+        for (Map.Entry<String, String> entry : order.getHeaders().entrySet()) {
+            String value = (null == entry.getValue()) ? "" : entry.getValue();
+            builder.header(entry.getKey(), value);
         }
-        synchronized (waitingRequestQueue) {
-            Timber.d("Requests queue ::: request executed for host %s - current total (%d active + %d waiting)", Uri.parse(order.getUrl()).getHost(), getNbActiveRequests(), waitingRequestQueue.size());
-        }
+        builder.method(order.getMethod().name(), null);
+        builder.tag(Site.class, order.getSite()); // Used by BandwidthLimiter
+        return builder.build();
     }
 
     /**
-     * Generic handler called when a request is completed
-     * NB1 : This method is run on the app's main thread
-     * NB2 : This method is run _after_ the Request's onError handler
+     * Handler called when a request has received a response
+     * NB : This method is run on one of OkHttp's dispatcher threads
      *
-     * @param request Completed request
-     */
-    public void onRequestFinished(Request<?> request) {
-        // No lost requests when force-restarting the queue
-        if (!popIgnorableErrors()) {
-            synchronized (currentRequests) {
-                // Tag _is_ the original RequestOrder
-                //noinspection SuspiciousMethodCalls
-                currentRequests.remove(request.getTag());
-                Timber.v("Global requests queue ::: request removed for host %s - current total %s", Uri.parse(request.getUrl()).getHost(), getNbActiveRequests());
+     * @param order    Request order the response has been received for
+     * @param call     Call that has received the response
+     * @param response Received response
+     */
+    private void onCallResponse(@NonNull RequestOrder order, @NonNull Call call, @NonNull Response response) {
+        try (Response r = response) {
+            // Canceled or reset call
+            if (!currentRequests.containsKey(call)) return;
+
+            onHostAnswered(order, r);
+
+            ResponseBody body = r.body();
+            if (r.code() >= 300 || null == body) {
+                @RequestOrder.NetworkError.Type int type = (401 == r.code() || 403 == r.code()) ? RequestOrder.NetworkError.Type.AUTH_FAILURE : RequestOrder.NetworkError.Type.SERVER;
+                order.getErrorListener().accept(new RequestOrder.NetworkError(type, r.code(), "HTTP " + r.code() + " " + r.message()));
+                return;
             }
-        } else {
-            Timber.v("Global requests queue ::: no request removed for host %s due to ignorable errors - current total %s", Uri.parse(request.getUrl()).getHost(), getNbActiveRequests());
+
+            // Stream the body of the response to the download callback routine
+            deliveringCalls.add(call);
+            try (InputStream in = body.byteStream()) {
+                order.getParseListener().accept(new AbstractMap.SimpleEntry<>(in, toHeaderMap(r.headers())));
+            } catch (IOException e) {
+                Timber.d(e); // Closing the stream has failed
+            } catch (RuntimeException e) {
+                Timber.w(e);
+                order.getErrorListener().accept(new RequestOrder.NetworkError(RequestOrder.NetworkError.Type.PARSE, r.code(), e.getMessage()));
+            } finally {
+                deliveringCalls.remove(call);
+            }
+        } finally {
+            onRequestFinished(order, call);
         }
+    }
 
-        if (!waitingRequestQueue.isEmpty()) {
-            refill();
-        } else { // No more requests to add
-            waitDisposable.clear();
+    /**
+     * Feed the concurrency limit of the host of the given request with the given response
+     *
+     * @param order    Request order the response has been received for
+     * @param response Received response
+     */
+    private void onHostAnswered(@NonNull RequestOrder order, @NonNull Response response) {
+        HostQueue hostQueue = hostQueues.get(order.getHost());
+        if (null == hostQueue) return;
+
+        long nowMs = Instant.now().toEpochMilli();
+        int previousLimit = hostQueue.concurrencyLimit.getLimit();
+        if (429 == response.code() || 503 == response.code()) {
+            hostQueue.concurrencyLimit.onThrottled(nowMs);
+        } else if (response.isSuccessful()) {
+            // Time to first byte; doesn't depend on the size of the downloaded file
+            long latencyMs = response.receivedResponseAtMillis() - response.sentRequestAtMillis();
+            hostQueue.concurrencyLimit.onSuccess(latencyMs, hostQueue.nbActiveRequests.get(), nowMs);
         }
+        int newLimit = hostQueue.concurrencyLimit.getLimit();
+        if (newLimit != previousLimit)
+            Timber.d("Requests queue ::: parallel downloads for host %s : %d -> %d", hostQueue.host, previousLimit, newLimit);
     }
 
-    public void setNbRequestsPerSecond(int value) {
-        nbRequestsPerSecond = value;
+    /**
+     * Handler called when a request has failed to receive a response
+     * NB : This method is run on one of OkHttp's dispatcher threads
+     *
+     * @param order   Request order that has failed
+     * @param call    Call that has failed
+     * @param e       Cause of the failure
+     * @param attempt Number of times the request had already been tried
+     */
+    private void onCallFailure(@NonNull RequestOrder order, @NonNull Call call, @NonNull IOException e, int attempt) {
+        try {
+            // Canceled or reset call
+            if (!currentRequests.containsKey(call)) return;
+
+            @RequestOrder.NetworkError.Type int type;
+            if (e instanceof SocketTimeoutException) {
+                if (attempt < MAX_TIMEOUT_RETRIES) {
+                    Timber.d("Timeout; retrying %s", order.getUrl());
+                    // The new call takes over the slot of the failed call
+                    if (currentRequests.remove(call, order)) executeRequest(order, attempt + 1);
+                    return;
+                }
+                type = RequestOrder.NetworkError.Type.TIMEOUT;
+                HostQueue hostQueue = hostQueues.get(order.getHost());
+                if (hostQueue != null) hostQueue.concurrencyLimit.onThrottled(Instant.now().toEpochMilli());
+            } else if (e instanceof UnknownHostException || e instanceof ConnectException || e instanceof NoRouteToHostException) {
+                type = RequestOrder.NetworkError.Type.NO_CONNECTION;
+            } else {
+                type = RequestOrder.NetworkError.Type.NETWORK;
+            }
+            order.getErrorListener().accept(new RequestOrder.NetworkError(type, -1, e.getMessage()));
+        } finally {
+            onRequestFinished(order, call);
+        }
     }
 
-    public int getDownloadThreadCap() {
-        return downloadThreadCap;
+    /**
+     * Generic handler called when a request is completed
+     * NB : This method is run _after_ the RequestOrder's handlers
+     *
+     * @param order Completed request
+     * @param call  Call that has completed the request
+     */
+    private void onRequestFinished(@NonNull RequestOrder order, @NonNull Call call) {
+        // Requests that have been canceled, reset or retried don't count anymore
+        if (currentRequests.remove(call, order)) releaseHostSlot(order);
+
+        if (currentRequests.isEmpty() && isWaitingQueueEmpty()) waitDisposable.clear();
     }
 
-    private int getNbActiveRequests() {
-        synchronized (currentRequests) {
-            return currentRequests.size();
+    /**
+     * Free the slot used by the given request in its host queue, and execute the next waiting request
+     *
+     * @param order Completed request
+     */
+    private void releaseHostSlot(@NonNull RequestOrder order) {
+        HostQueue hostQueue = hostQueues.get(order.getHost());
+        if (hostQueue != null) {
+            hostQueue.nbActiveRequests.decrementAndGet();
+            Timber.v("Global requests queue ::: request removed for host %s - current total %s", hostQueue.host, hostQueue.nbActiveRequests.get());
+        }
+        SiteLimits limits = siteLimits.get(order.getSite());
+        if (limits != null) limits.nbActiveRequests.decrementAndGet();
+
+        if (0 == nbRunningPerLane.decrementAndGet(order.getPriority()) && order.getPriority() < RequestOrder.Priority.BACKGROUND)
+            refill(); // Lower lanes of all hosts might have been held back
+        else {
+            if (hostQueue != null) dispatch(hostQueue);
+            refill(order.getSite()); // Other hosts of the site might have been held back by its limits
         }
     }
 
-    public boolean hasRemainingIgnorableErrors() {
-        return ignorableErrors.get() > 0;
+    private boolean isWaitingQueueEmpty() {
+        for (HostQueue hostQueue : hostQueues.values())
+            if (hostQueue.getNbWaiting() > 0) return false;
+        return true;
     }
 
-    private boolean popIgnorableErrors() {
-        if (ignorableErrors.get() > 0) {
-            ignorableErrors.getAndDecrement();
-            return true;
-        } else return false;
+    private static Map<String, String> toHeaderMap(@NonNull Headers responseHeaders) {
+        Map<String, String> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0, len = responseHeaders.size(); i < len; i++)
+            result.put(responseHeaders.name(i), responseHeaders.value(i));
+        return result;
     }
 
-    @Override
-    public void onRequestEvent(Request<?> request, int event) {
-        if (event == RequestQueue.RequestEvent.REQUEST_FINISHED) {
-            onRequestFinished(request); // https://github.com/google/volley/issues/403
+    /**
+     * Download queue and constraints of a single host
+     */
+    private static class HostQueue {
+        private final String host;
+        // Requests waiting to be executed, per priority lane
+        private final List<Queue<RequestOrder>> waitingRequests = new ArrayList<>(RequestOrder.NB_PRIORITIES);
+        // Number of requests being currently executed
+        private final AtomicInteger nbActiveRequests = new AtomicInteger(0);
+        // Number of dispatch calls pending; used to serialize dispatching without locking
+        private final AtomicInteger dispatchCounter = new AtomicInteger(0);
+        // True if a delayed dispatch is already scheduled
+        private final AtomicBoolean isDispatchScheduled = new AtomicBoolean(false);
+        // Site whose constraints have been applied last
+        private volatile Site site = null;
+        // Number of allowed parallel downloads
+        // NB : Upper bound is set by applyLimits
+        private final AimdConcurrencyLimit concurrencyLimit = new AimdConcurrencyLimit(Integer.MAX_VALUE);
+
+        HostQueue(@NonNull String host) {
+            this.host = host;
+            for (int i = 0; i < RequestOrder.NB_PRIORITIES; i++)
+                waitingRequests.add(new ConcurrentLinkedQueue<>());
+        }
+
+        int getNbWaiting() {
+            int result = 0;
+            for (Queue<RequestOrder> lane : waitingRequests) result += lane.size();
+            return result;
+        }
+    }
+
+    /**
+     * Limits shared by all the hosts of a single site
+     */
+    private static class SiteLimits {
+        // Number of requests of the site being currently executed, all hosts combined
+        private final AtomicInteger nbActiveRequests = new AtomicInteger(0);
+        // Number of allowed parallel downloads (Integer.MAX_VALUE = not capped)
+        private volatile int maxParallelDownloads = Integer.MAX_VALUE;
+        // Limiter of the number of requests per second (null = not capped)
+        private volatile TokenBucket rateLimiter = null;
+
+        /**
+         * Take a slot for a new request if the site has any left
+         *
+         * @return True if a slot has been taken; false if the site has reached its limit
+         */
+        boolean tryAcquire() {
+            int nbActive;
+            do {
+                nbActive = nbActiveRequests.get();
+                if (nbActive >= maxParallelDownloads) return false;
+            } while (!nbActiveRequests.compareAndSet(nbActive, nbActive + 1));
+            return true;
         }
     }
 }
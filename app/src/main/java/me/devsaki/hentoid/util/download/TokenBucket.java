@@ -0,0 +1,85 @@
+package me.devsaki.hentoid.util.download;
+
+/**
+ * Token bucket used to cap the rate of an operation
+ * <p>
+ * The bucket holds up to [capacity] tokens and is refilled continuously at [ratePerSecond] tokens per second;
+ * each operation consumes tokens and has to wait when there aren't enough of them left
+ */
+public class TokenBucket {
+
+    private long capacity;
+    private double ratePerMs;
+
+    private double tokens;
+    private long lastRefillMs;
+
+    /**
+     * @param capacity      Maximum number of tokens the bucket can hold (i.e. maximum burst)
+     * @param ratePerSecond Number of tokens added to the bucket every second
+     * @param nowMs         Current timestamp (ms)
+     */
+    public TokenBucket(long capacity, double ratePerSecond, long nowMs) {
+        this.capacity = Math.max(1, capacity);
+        this.ratePerMs = ratePerSecond / 1000.0;
+        this.tokens = this.capacity;
+        this.lastRefillMs = nowMs;
+    }
+
+    /**
+     * Change the capacity and refill rate of the bucket
+     * NB : Tokens already in the bucket are kept, within the limit of the new capacity
+     *
+     * @param capacity      Maximum number of tokens the bucket can hold (i.e. maximum burst)
+     * @param ratePerSecond Number of tokens added to the bucket every second
+     */
+    public synchronized void setRate(long capacity, double ratePerSecond) {
+        this.capacity = Math.max(1, capacity);
+        this.ratePerMs = ratePerSecond / 1000.0;
+        tokens = Math.min(tokens, this.capacity);
+    }
+
+    /**
+     * Try to consume the given number of tokens
+     *
+     * @param nbTokens Number of tokens to consume
+     * @param nowMs    Current timestamp (ms)
+     * @return 0 if the tokens have been consumed; if not, delay (ms) to wait before enough tokens are available
+     */
+    public synchronized long tryConsume(long nbTokens, long nowMs) {
+        refill(nowMs);
+        // Requests larger than the bucket can still go through once it's full
+        double needed = Math.min(nbTokens, capacity);
+        if (tokens >= needed) {
+            tokens -= nbTokens;
+            return 0;
+        }
+        if (ratePerMs <= 0) return Long.MAX_VALUE;
+        return Math.max(1, (long) Math.ceil((needed - tokens) / ratePerMs));
+    }
+
+    /**
+     * Consume the given number of tokens, even if there aren't enough of them left
+     * Missing tokens are taken from future refills, so that callers consuming after the operation
+     * (e.g. after reading bytes) can wait for the right amount of time
+     *
+     * @param nbTokens Number of tokens to consume
+     * @param nowMs    Current timestamp (ms)
+     * @return 0 if there were enough tokens; if not, delay (ms) to wait before the missing tokens are refilled
+     */
+    public synchronized long consume(long nbTokens, long nowMs) {
+        refill(nowMs);
+        tokens -= nbTokens;
+        if (tokens >= 0) return 0;
+        if (ratePerMs <= 0) return Long.MAX_VALUE;
+        return Math.max(1, (long) Math.ceil(-tokens / ratePerMs));
+    }
+
+    private void refill(long nowMs) {
+        long elapsed = nowMs - lastRefillMs;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * ratePerMs);
+            lastRefillMs = nowMs;
+        }
+    }
+}
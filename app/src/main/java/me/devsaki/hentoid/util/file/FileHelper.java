@@ -292,6 +292,40 @@ public class FileHelper {
         return FileUtils.openOutputStream(target);
     }
 
+    /**
+     * Create an OutputStream opened the given file
+     *
+     * @param target File to open the OutputStream on
+     * @param append True to write at the end of the existing file; false to truncate the file to the length of the written data
+     * @return New OutputStream opened on the given file
+     */
+    public static OutputStream getOutputStream(@NonNull final File target, boolean append) throws IOException {
+        return FileUtils.openOutputStream(target, append);
+    }
+
+    /**
+     * Replace the contents of the given file with the given data
+     * NB : Data is written to a temporary file first, that then replaces the target, so that the
+     * target is either left untouched or completely written
+     *
+     * @param target File to write
+     * @param data   Data to write
+     * @throws IOException If the data couldn't be written; the target is left untouched
+     */
+    public static void writeAtomically(@NonNull final File target, @NonNull final byte[] data) throws IOException {
+        File tmpFile = new File(target.getParentFile(), target.getName() + ".tmp");
+        try (OutputStream output = getOutputStream(tmpFile)) {
+            output.write(data);
+        } catch (IOException e) {
+            removeFile(tmpFile);
+            throw e;
+        }
+        if (!tmpFile.renameTo(target)) {
+            removeFile(tmpFile);
+            throw new IOException("Could not replace " + target.getAbsolutePath());
+        }
+    }
+
     /**
      * Create an OutputStream for the given file
      * NB : File length will be truncated to the length of the written data
@@ -0,0 +1,181 @@
+package me.devsaki.hentoid.util.image;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Animated WEBP encoder
+ * <p>
+ * Each frame is compressed as a still WEBP picture by Android's own encoder, then muxed into
+ * the animation container (VP8X + ANIM + ANMF chunks) written straight to the target file.
+ * Only the frame being encoded is held in memory.
+ * <p>
+ * See https://developers.google.com/speed/webp/docs/riff_container
+ */
+public class AnimatedWebpEncoder implements Closeable {
+
+    private static final int HEADER_SIZE = 44; // RIFF header + VP8X chunk + ANIM chunk
+    private static final int FLAG_ALPHA = 0x10;
+    private static final int FLAG_ANIMATION = 0x02;
+    private static final int MAX_24_BITS = 0xFFFFFF;
+
+    private final RandomAccessFile file;
+    private final int quality;
+
+    private int canvasWidth = 0;
+    private int canvasHeight = 0;
+    private boolean hasAlpha = false;
+    private boolean closed = false;
+
+
+    /**
+     * @param target  File to write the animation to; overwritten if it exists
+     * @param quality Quality of the frames (0-100)
+     * @throws IOException If the target file can't be written
+     */
+    public AnimatedWebpEncoder(@NonNull File target, int quality) throws IOException {
+        this.file = new RandomAccessFile(target, "rw");
+        this.quality = quality;
+        file.setLength(0);
+        // Placeholder; written for good when the encoder is closed
+        file.write(new byte[HEADER_SIZE]);
+    }
+
+    /**
+     * Add the given frame to the animation
+     *
+     * @param frame      Frame to add
+     * @param durationMs Display duration of the frame (ms)
+     * @throws IOException If the frame can't be compressed or written
+     */
+    @SuppressWarnings("deprecation")
+    public void addFrame(@NonNull Bitmap frame, int durationMs) throws IOException {
+        Bitmap.CompressFormat format = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+        ByteArrayOutputStream still = new ByteArrayOutputStream();
+        if (!frame.compress(format, quality, still))
+            throw new IOException("Frame couldn't be compressed");
+        addFrame(still.toByteArray(), frame.getWidth(), frame.getHeight(), durationMs);
+    }
+
+    /**
+     * Add the given still WEBP picture to the animation
+     *
+     * @param stillWebp  Still WEBP picture to add
+     * @param width      Width of the picture
+     * @param height     Height of the picture
+     * @param durationMs Display duration of the picture (ms)
+     * @throws IOException If the picture isn't a WEBP picture or can't be written
+     */
+    void addFrame(@NonNull byte[] stillWebp, int width, int height, int durationMs) throws IOException {
+        if (closed) throw new IOException("Encoder is closed");
+        if (stillWebp.length < 12 || !"RIFF".equals(fourCC(stillWebp, 0)) || !"WEBP".equals(fourCC(stillWebp, 8)))
+            throw new IOException("Not a WEBP picture");
+
+        // Keep the bitstream chunks of the picture; the animation has its own metadata
+        ByteArrayOutputStream frameData = new ByteArrayOutputStream(stillWebp.length);
+        int pos = 12;
+        while (pos + 8 <= stillWebp.length) {
+            String chunkId = fourCC(stillWebp, pos);
+            long chunkSize = readLE32(stillWebp, pos + 4);
+            int paddedSize = (int) (chunkSize + (chunkSize & 1));
+            if (pos + 8 + paddedSize > stillWebp.length) throw new IOException("Truncated WEBP picture");
+            switch (chunkId) {
+                case "ALPH":
+                case "VP8L":
+                    hasAlpha = true;
+                    frameData.write(stillWebp, pos, 8 + paddedSize);
+                    break;
+                case "VP8 ":
+                    frameData.write(stillWebp, pos, 8 + paddedSize);
+                    break;
+                default:
+                    // Irrelevant for animation frames
+            }
+            pos += 8 + paddedSize;
+        }
+        if (0 == frameData.size()) throw new IOException("No image data found in WEBP picture");
+
+        canvasWidth = Math.max(canvasWidth, width);
+        canvasHeight = Math.max(canvasHeight, height);
+
+        byte[] header = new byte[24];
+        writeFourCC(header, 0, "ANMF");
+        writeLE32(header, 4, 16L + frameData.size());
+        writeLE24(header, 8, 0); // X offset / 2
+        writeLE24(header, 11, 0); // Y offset / 2
+        writeLE24(header, 14, width - 1);
+        writeLE24(header, 17, height - 1);
+        writeLE24(header, 20, Math.min(Math.max(durationMs, 0), MAX_24_BITS));
+        header[23] = 0x02; // Don't blend with the previous frame; don't dispose
+        file.write(header);
+        file.write(frameData.toByteArray());
+    }
+
+    /**
+     * Finalize the animation and close the target file
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            long fileSize = file.length();
+
+            byte[] header = new byte[HEADER_SIZE];
+            writeFourCC(header, 0, "RIFF");
+            writeLE32(header, 4, fileSize - 8);
+            writeFourCC(header, 8, "WEBP");
+
+            writeFourCC(header, 12, "VP8X");
+            writeLE32(header, 16, 10);
+            header[20] = (byte) (FLAG_ANIMATION | (hasAlpha ? FLAG_ALPHA : 0));
+            writeLE24(header, 24, Math.max(canvasWidth, 1) - 1);
+            writeLE24(header, 27, Math.max(canvasHeight, 1) - 1);
+
+            writeFourCC(header, 30, "ANIM");
+            writeLE32(header, 34, 6);
+            writeLE32(header, 38, 0xFFFFFFFFL); // White background
+            // Bytes 42-43 : loop count = 0 (infinite)
+
+            file.seek(0);
+            file.write(header);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static String fourCC(@NonNull byte[] data, int offset) {
+        return new String(data, offset, 4, StandardCharsets.US_ASCII);
+    }
+
+    private static void writeFourCC(@NonNull byte[] data, int offset, @NonNull String fourCC) {
+        System.arraycopy(fourCC.getBytes(StandardCharsets.US_ASCII), 0, data, offset, 4);
+    }
+
+    private static long readLE32(@NonNull byte[] data, int offset) {
+        return (data[offset] & 0xFFL)
+                | (data[offset + 1] & 0xFFL) << 8
+                | (data[offset + 2] & 0xFFL) << 16
+                | (data[offset + 3] & 0xFFL) << 24;
+    }
+
+    private static void writeLE32(@NonNull byte[] data, int offset, long value) {
+        writeLE24(data, offset, (int) (value & MAX_24_BITS));
+        data[offset + 3] = (byte) (value >> 24);
+    }
+
+    private static void writeLE24(@NonNull byte[] data, int offset, int value) {
+        data[offset] = (byte) value;
+        data[offset + 1] = (byte) (value >> 8);
+        data[offset + 2] = (byte) (value >> 16);
+    }
+}
@@ -15,20 +15,32 @@ import android.net.Uri;
 import androidx.annotation.ColorInt;
 import androidx.annotation.DrawableRes;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
+import androidx.core.util.Pair;
 
 import com.waynejo.androidndkgif.GifEncoder;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+import me.devsaki.hentoid.util.exception.DownloadInterruptedException;
 import me.devsaki.hentoid.util.file.FileHelper;
 import me.devsaki.hentoid.util.Helper;
 import timber.log.Timber;
@@ -92,7 +104,19 @@ public final class ImageHelper {
      * @return MIME-type of the given binary data; empty string if not supported
      */
     public static String getMimeTypeFromPictureBinary(byte[] binary) {
-        if (binary.length < 12) return "";
+        return getMimeTypeFromPictureBinary(binary, binary.length);
+    }
+
+    /**
+     * Determine the MIME-type of the given binary data if it's a picture
+     * NB : Only the first bytes of the given array are considered
+     *
+     * @param binary Picture binary data to determine the MIME-type for
+     * @param length Number of bytes of the given array to consider
+     * @return MIME-type of the given binary data; empty string if not supported
+     */
+    public static String getMimeTypeFromPictureBinary(byte[] binary, int length) {
+        if (length < 12) return "";
 
         // In Java, byte type is signed !
         // => Converting all raw values to byte to be sure they are evaluated as expected
@@ -100,9 +124,9 @@ public final class ImageHelper {
             return MIME_IMAGE_JPEG;
         else if ((byte) 0x89 == binary[0] && (byte) 0x50 == binary[1] && (byte) 0x4E == binary[2]) {
             // Detect animated PNG : To be recognized as APNG an 'acTL' chunk must appear in the stream before any 'IDAT' chunks
-            int acTlPos = FileHelper.findSequencePosition(binary, 0, "acTL".getBytes(CHARSET_LATIN_1), (int) (binary.length * 0.2));
+            int acTlPos = FileHelper.findSequencePosition(binary, 0, "acTL".getBytes(CHARSET_LATIN_1), (int) (length * 0.2));
             if (acTlPos > -1) {
-                long idatPos = FileHelper.findSequencePosition(binary, acTlPos, "IDAT".getBytes(CHARSET_LATIN_1), (int) (binary.length * 0.1));
+                long idatPos = FileHelper.findSequencePosition(binary, acTlPos, "IDAT".getBytes(CHARSET_LATIN_1), (int) (length * 0.1));
                 if (idatPos > -1) return MIME_IMAGE_APNG;
             }
             return MIME_IMAGE_PNG;
@@ -267,45 +291,113 @@ public final class ImageHelper {
         }
     }
 
-    public static Uri assembleGif(
-            @NonNull Context context,
-            @NonNull File folder, // GIF encoder only work with paths...
-            @NonNull List<ImmutablePair<Uri, Integer>> frames) throws IOException, IllegalArgumentException {
+    /**
+     * Assemble an animation from the frames contained in the given ZIP archive
+     * <p>
+     * Frames are decoded straight from the archive stream and handed to the encoder one at a time, without
+     * extracting them. Frames stored out of display order are kept in memory (compressed) until their turn comes.
+     *
+     * @param archive      ZIP archive containing the frames
+     * @param frames       File name and display duration (ms) of the frames, in display order
+     * @param targetFolder Folder to create the animation in
+     * @param asWebp       True to create an animated WEBP; false to create an animated GIF
+     * @param interrupt    Interrupt flag; assembly stops with a DownloadInterruptedException when it is set
+     * @return Created animation file
+     * @throws IOException                  If the archive can't be read or the animation can't be written
+     * @throws DownloadInterruptedException If the interrupt flag has been set during assembly
+     */
+    public static File assembleAnimationFromArchive(
+            @NonNull File archive,
+            @NonNull List<Pair<String, Integer>> frames,
+            @NonNull File targetFolder,
+            boolean asWebp,
+            @Nullable AtomicBoolean interrupt) throws IOException, DownloadInterruptedException {
         if (frames.isEmpty()) throw new IllegalArgumentException("No frames given");
 
-        int width;
-        int height;
-        try (InputStream is = FileHelper.getInputStream(context, frames.get(0).left)) {
-            Bitmap b = BitmapFactory.decodeStream(is);
-            width = b.getWidth();
-            height = b.getHeight();
+        Map<String, Integer> frameIndexes = new HashMap<>();
+        for (int i = 0; i < frames.size(); i++) frameIndexes.put(frames.get(i).first, i);
+
+        File target = new File(targetFolder, asWebp ? "tmp.webp" : "tmp.gif");
+        AnimationWriter writer = new AnimationWriter(target, asWebp);
+        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new FileInputStream(archive), FileHelper.FILE_IO_BUFFER_SIZE)); AnimationWriter w = writer) {
+            Map<Integer, byte[]> pendingFrames = new HashMap<>();
+            int nextIndex = 0;
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null && nextIndex < frames.size()) {
+                if (interrupt != null && interrupt.get())
+                    throw new DownloadInterruptedException("Animation assembly interrupted");
+                if (entry.isDirectory()) continue;
+
+                String name = entry.getName();
+                Integer index = frameIndexes.get(name.substring(name.lastIndexOf('/') + 1));
+                if (null == index || index < nextIndex) continue;
+
+                if (index == nextIndex) {
+                    w.addFrame(BitmapFactory.decodeStream(zis), frames.get(index).second);
+                    nextIndex++;
+                    // Frames that were waiting for this one
+                    byte[] pending;
+                    while ((pending = pendingFrames.remove(nextIndex)) != null) {
+                        w.addFrame(BitmapFactory.decodeByteArray(pending, 0, pending.length), frames.get(nextIndex).second);
+                        nextIndex++;
+                    }
+                } else {
+                    pendingFrames.put(index, IOUtils.toByteArray(zis));
+                }
+            }
+            // Frames missing from the archive are skipped
+            for (int i = nextIndex; i < frames.size(); i++) {
+                byte[] pending = pendingFrames.remove(i);
+                if (pending != null)
+                    w.addFrame(BitmapFactory.decodeByteArray(pending, 0, pending.length), frames.get(i).second);
+            }
         }
+        if (0 == writer.nbFrames) throw new IOException("No frame could be decoded from " + archive.getName());
 
-        String path = new File(folder, "tmp.gif").getAbsolutePath();
-        GifEncoder gifEncoder = new GifEncoder();
-        try {
-            gifEncoder.init(width, height, path, GifEncoder.EncodingType.ENCODING_TYPE_NORMAL_LOW_MEMORY);
-
-            for (ImmutablePair<Uri, Integer> frame : frames) {
-                try (InputStream is = FileHelper.getInputStream(context, frame.left)) {
-                    final BitmapFactory.Options options = new BitmapFactory.Options();
-                    options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        return target;
+    }
 
-                    Bitmap b = BitmapFactory.decodeStream(is, null, options);
-                    if (null == b) continue;
+    /**
+     * Common front-end to the animation encoders
+     * NB : The encoder is initialized with the dimensions of the first frame
+     */
+    private static class AnimationWriter implements Closeable {
+        private final File target;
+        private final boolean asWebp;
+        private GifEncoder gifEncoder = null;
+        private AnimatedWebpEncoder webpEncoder = null;
+        private int nbFrames = 0;
+
+        AnimationWriter(@NonNull File target, boolean asWebp) {
+            this.target = target;
+            this.asWebp = asWebp;
+        }
 
-                    try {
-                        gifEncoder.encodeFrame(b, 100);
-                    } finally {
-                        b.recycle();
+        void addFrame(@Nullable Bitmap frame, int durationMs) throws IOException {
+            if (null == frame) return; // Frame couldn't be decoded
+            try {
+                if (asWebp) {
+                    if (null == webpEncoder) webpEncoder = new AnimatedWebpEncoder(target, 90);
+                    webpEncoder.addFrame(frame, durationMs);
+                } else {
+                    if (null == gifEncoder) {
+                        gifEncoder = new GifEncoder();
+                        // GIF encoder only works with paths...
+                        gifEncoder.init(frame.getWidth(), frame.getHeight(), target.getAbsolutePath(), GifEncoder.EncodingType.ENCODING_TYPE_NORMAL_LOW_MEMORY);
                     }
+                    gifEncoder.encodeFrame(frame, durationMs);
                 }
+                nbFrames++;
+            } finally {
+                frame.recycle();
             }
-        } finally {
-            gifEncoder.close();
         }
 
-        return Uri.fromFile(new File(path));
+        @Override
+        public void close() throws IOException {
+            if (gifEncoder != null) gifEncoder.close();
+            if (webpEncoder != null) webpEncoder.close();
+        }
     }
 
     /**
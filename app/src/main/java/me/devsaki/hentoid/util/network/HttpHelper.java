@@ -12,9 +12,14 @@ import androidx.core.util.Pair;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -40,6 +45,8 @@ import timber.log.Timber;
 public class HttpHelper {
 
     static final int DEFAULT_REQUEST_TIMEOUT = 30000; // 30 seconds
+    // Size of the received part of an HTML resource the 1st search for a targeted element is performed on (chars)
+    private static final int PARTIAL_PARSE_MIN_SIZE = 16 * 1024;
 
     // Keywords of the HTTP protocol
     public static final String HEADER_ACCEPT_KEY = "accept";
@@ -47,6 +54,13 @@ public class HttpHelper {
     public static final String HEADER_REFERER_KEY = "referer";
     public static final String HEADER_CONTENT_TYPE = "Content-Type";
     public static final String HEADER_USER_AGENT = "User-Agent";
+    public static final String HEADER_RANGE = "Range";
+    public static final String HEADER_IF_RANGE = "If-Range";
+    public static final String HEADER_CONTENT_RANGE = "Content-Range";
+    public static final String HEADER_ETAG = "ETag";
+    public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
 
     public static final String POST_MIME_TYPE = "application/x-www-form-urlencoded";
 
@@ -97,7 +111,28 @@ public class HttpHelper {
     @Nullable
     public static Document getOnlineDocument(String url, List<Pair<String, String>> headers, boolean useHentoidAgent, boolean useWebviewAgent) throws IOException {
         ResponseBody resource = getOnlineResource(url, headers, true, useHentoidAgent, useWebviewAgent).body();
-        if (resource != null) return Jsoup.parse(resource.string());
+        if (resource != null) return parseDocument(resource, url);
+        return null;
+    }
+
+    /**
+     * Read an HTML resource from the given URL, using the given headers and agent and retrieve it as a Document
+     * Reading stops as soon as an element matching the given selector has been entirely received;
+     * the rest of the resource is then ignored
+     * <p>
+     * NB : The resulting Document is truncated; only use it to read the targeted elements and the ones before them
+     *
+     * @param url             URL to read the resource from
+     * @param headers         Headers to use when building the request
+     * @param useHentoidAgent True if the Hentoid User-Agent has to be used; false if a neutral User-Agent has to be used
+     * @param targetSelector  CSS selector of the element to look for
+     * @return HTML resource read from the given URL represented as a Document
+     * @throws IOException in case something bad happens when trying to access the online resource
+     */
+    @Nullable
+    public static Document getOnlineDocument(String url, List<Pair<String, String>> headers, boolean useHentoidAgent, boolean useWebviewAgent, @NonNull String targetSelector) throws IOException {
+        ResponseBody resource = getOnlineResource(url, headers, true, useHentoidAgent, useWebviewAgent).body();
+        if (resource != null) return parseDocument(resource, url, targetSelector);
         return null;
     }
 
@@ -110,11 +145,82 @@ public class HttpHelper {
             @NonNull final String mimeType) throws IOException {
         ResponseBody resource = postOnlineResource(url, headers, true, useHentoidAgent, useWebviewAgent, body, mimeType).body();
         if (resource != null) {
-            return Jsoup.parse(resource.string());
+            return parseDocument(resource, url);
         }
         return null;
     }
 
+    /**
+     * Parse the given HTML resource as it is being received
+     * Charset is read from the Content-Type header, or detected by the parser if the header doesn't specify it
+     *
+     * @param resource Resource to parse
+     * @param baseUri  URI the resource has been read from
+     * @return Given resource represented as a Document
+     * @throws IOException in case something bad happens when reading the resource
+     */
+    public static Document parseDocument(@NonNull ResponseBody resource, @NonNull String baseUri) throws IOException {
+        Charset charset = getCharset(resource);
+        try (InputStream input = resource.byteStream()) {
+            return Jsoup.parse(input, (null == charset) ? null : charset.name(), baseUri);
+        }
+    }
+
+    /**
+     * Parse the given HTML resource as it is being received, until an element matching the given selector has been entirely received
+     * <p>
+     * The received part is parsed each time its size doubles, which keeps the total cost within
+     * twice the cost of parsing the whole resource
+     *
+     * @param resource       Resource to parse
+     * @param baseUri        URI the resource has been read from
+     * @param targetSelector CSS selector of the element to look for
+     * @return Received part of the given resource represented as a Document
+     * @throws IOException in case something bad happens when reading the resource
+     */
+    public static Document parseDocument(@NonNull ResponseBody resource, @NonNull String baseUri, @NonNull String targetSelector) throws IOException {
+        Charset charset = getCharset(resource);
+        if (null == charset) charset = StandardCharsets.UTF_8;
+
+        StringBuilder html = new StringBuilder();
+        char[] buffer = new char[FileHelper.FILE_IO_BUFFER_SIZE];
+        int nextCheckSize = PARTIAL_PARSE_MIN_SIZE;
+        try (Reader reader = new InputStreamReader(resource.byteStream(), charset)) {
+            int nbRead;
+            while ((nbRead = reader.read(buffer)) > -1) {
+                html.append(buffer, 0, nbRead);
+                if (html.length() >= nextCheckSize) {
+                    Document doc = Jsoup.parse(html.toString(), baseUri);
+                    // Closing the reader drops the rest of the resource
+                    if (hasCompleteElement(doc, targetSelector)) return doc;
+                    nextCheckSize = html.length() * 2;
+                }
+            }
+        }
+        return Jsoup.parse(html.toString(), baseUri);
+    }
+
+    /**
+     * Indicate if the 1st element matching the given selector is complete, i.e. if the parser has read past its end
+     *
+     * @param doc      Partial document to search
+     * @param selector CSS selector of the element to look for
+     * @return True if the 1st element matching the given selector is complete; false if it hasn't been found or is incomplete
+     */
+    private static boolean hasCompleteElement(@NonNull Document doc, @NonNull String selector) {
+        Element target = doc.selectFirst(selector);
+        if (null == target) return false;
+        // An element that is still open when the input ends is, or contains, the last parsed element
+        Element lastElement = doc.getAllElements().last();
+        return lastElement != null && lastElement != target && !lastElement.parents().contains(target);
+    }
+
+    @Nullable
+    private static Charset getCharset(@NonNull ResponseBody resource) {
+        MediaType contentType = resource.contentType();
+        return (null == contentType) ? null : contentType.charset();
+    }
+
     /**
      * Read a resource from the given URL with HTTP GET, using the given headers and agent
      *
@@ -372,6 +478,26 @@ public class HttpHelper {
         return TextUtils.join("; ", namesToSet);
     }
 
+    /**
+     * Set the cookies the given response asks for (Set-Cookie header) for the given URL
+     * NB : Only needed when the response is served to the WebView by OkHttp
+     *
+     * @param url      Url the response has been received from
+     * @param response Response to set the cookies of
+     */
+    public static void setCookiesFromResponse(@NonNull String url, @NonNull WebResourceResponse response) {
+        Map<String, String> headers = response.getResponseHeaders();
+        if (null == headers) return;
+        String cookiesStr = headers.get("set-cookie");
+        if (null == cookiesStr) cookiesStr = headers.get("Set-Cookie");
+        if (null == cookiesStr) return;
+
+        // Set-cookie might contain multiple cookies to set separated by a line feed (see HttpHelper.getValuesSeparatorFromHttpHeader)
+        String[] cookieParts = cookiesStr.split("\n");
+        for (String cookie : cookieParts)
+            if (!cookie.isEmpty()) setCookies(url, cookie);
+    }
+
     /**
      * Set session cookies for the given URL, keeping existing cookies if they are still active
      *
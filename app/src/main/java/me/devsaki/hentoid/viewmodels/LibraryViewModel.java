@@ -64,6 +64,7 @@ import me.devsaki.hentoid.enums.Grouping;
 import me.devsaki.hentoid.enums.Site;
 import me.devsaki.hentoid.enums.StatusContent;
 import me.devsaki.hentoid.events.ProcessEvent;
+import me.devsaki.hentoid.parsers.ParsedImageListCache;
 import me.devsaki.hentoid.util.file.ArchiveHelper;
 import me.devsaki.hentoid.util.ContentHelper;
 import me.devsaki.hentoid.util.file.FileHelper;
@@ -662,7 +663,8 @@ public class LibraryViewModel extends AndroidViewModel {
                                 Content content = c.get();
                                 // Non-blocking performance bottleneck; run in a dedicated worker
                                 // TODO if the purge is extremely long, that worker might still be working while downloads are happening on these same books
-                                if (reparseImages) purgeItem(content, false);
+                                // Pages that can be revalidated are kept to avoid downloading them again if they haven't changed
+                                if (reparseImages) purgeItem(content, false, true);
                                 dao.addContentToQueue(
                                         content, targetImageStatus, position, -1,
                                         ContentQueueManager.getInstance().isQueueActive(getApplication()));
@@ -771,7 +773,8 @@ public class LibraryViewModel extends AndroidViewModel {
                                 } else {
                                     Content reparsedContent = newContent.getRight().get();
                                     // Reparse pages
-                                    List<ImageFile> newImages = ContentHelper.fetchImageURLs(reparsedContent, StatusContent.ONLINE);
+                                    ParsedImageListCache.recordRetry(getApplication(), reparsedContent.getGalleryUrl());
+                                    List<ImageFile> newImages = ContentHelper.fetchImageURLs(getApplication(), reparsedContent, StatusContent.ONLINE);
                                     reparsedContent.setImageFiles(newImages);
                                     // Associate new pages' cover with current cover file (that won't be deleted)
                                     reparsedContent.getCover().setStatus(StatusContent.DOWNLOADED).setFileUri(c.getCover().getFileUri());
@@ -787,7 +790,7 @@ public class LibraryViewModel extends AndroidViewModel {
                                 Content dbContent = dao.selectContent(c.get().getId());
                                 if (null == dbContent) return;
                                 // Non-blocking performance bottleneck; scheduled in a dedicated worker
-                                purgeItem(c.get(), true);
+                                purgeItem(c.get(), true, false);
                                 dbContent.setDownloadMode(Content.DownloadMode.STREAM);
                                 List<ImageFile> imgs = dbContent.getImageFiles();
                                 if (imgs != null) {
@@ -858,10 +861,11 @@ public class LibraryViewModel extends AndroidViewModel {
         workManager.getWorkInfoByIdLiveData(request.getId()).observeForever(workInfoObserver);
     }
 
-    public void purgeItem(@NonNull final Content content, boolean keepCover) {
+    public void purgeItem(@NonNull final Content content, boolean keepCover, boolean keepRevalidatable) {
         DeleteData.Builder builder = new DeleteData.Builder();
         builder.setContentPurgeIds(Stream.of(content).map(Content::getId).toList());
         builder.setContentPurgeKeepCovers(keepCover);
+        builder.setContentPurgeKeepRevalidatable(keepRevalidatable);
 
         WorkManager workManager = WorkManager.getInstance(getApplication());
         workManager.enqueueUniqueWork(
@@ -260,6 +260,8 @@ public class QueueViewModel extends AndroidViewModel {
     private void purgeItem(@NonNull Content content) {
         DeleteData.Builder builder = new DeleteData.Builder();
         builder.setContentPurgeIds(Stream.of(content).map(Content::getId).toList());
+        // Pages that can be revalidated are kept to avoid downloading them again if they haven't changed
+        builder.setContentPurgeKeepRevalidatable(true);
 
         WorkManager workManager = WorkManager.getInstance(getApplication());
         workManager.enqueueUniqueWork(
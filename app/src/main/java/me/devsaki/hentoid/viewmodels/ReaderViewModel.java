@@ -24,6 +24,7 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.greenrobot.eventbus.EventBus;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -70,6 +71,8 @@ import me.devsaki.hentoid.util.StringHelper;
 import me.devsaki.hentoid.util.ToastHelper;
 import me.devsaki.hentoid.util.download.ContentQueueManager;
 import me.devsaki.hentoid.util.download.DownloadHelper;
+import me.devsaki.hentoid.util.download.RequestOrder;
+import me.devsaki.hentoid.util.download.RequestQueueManager;
 import me.devsaki.hentoid.util.exception.DownloadInterruptedException;
 import me.devsaki.hentoid.util.exception.EmptyResultException;
 import me.devsaki.hentoid.util.exception.LimitReachedException;
@@ -1268,34 +1271,37 @@ public class ReaderViewModel extends AndroidViewModel {
                     headers.add(new Pair<>(HttpHelper.HEADER_REFERER_KEY, content.getReaderUrl())); // Useful for Hitomi and Toonily
 
                     ImmutablePair<File, String> result;
-                    if (img.needsPageParsing()) {
-                        // Get cookies from the app jar
-                        String cookieStr = HttpHelper.getCookies(img.getPageUrl());
-                        // If nothing found, peek from the site
-                        if (cookieStr.isEmpty())
-                            cookieStr = HttpHelper.peekCookies(img.getPageUrl());
-                        if (!cookieStr.isEmpty())
-                            headers.add(new Pair<>(HttpHelper.HEADER_COOKIE_KEY, cookieStr));
-                        result = downloadPictureFromPage(content, img, pageIndex, headers, targetFolder, targetFileName, stopDownload);
-                    } else {
-                        // Get cookies from the app jar
-                        String cookieStr = HttpHelper.getCookies(img.getUrl());
-                        // If nothing found, peek from the site
-                        if (cookieStr.isEmpty())
-                            cookieStr = HttpHelper.peekCookies(content.getGalleryUrl());
-                        if (!cookieStr.isEmpty())
-                            headers.add(new Pair<>(HttpHelper.HEADER_COOKIE_KEY, cookieStr));
-                        result = DownloadHelper.downloadToFile(
-                                content.getSite(),
-                                img.getUrl(),
-                                pageIndex,
-                                headers,
-                                targetFolder,
-                                targetFileName,
-                                null,
-                                stopDownload,
-                                f -> notifyDownloadProgress(f, pageIndex)
-                        );
+                    // Hold the download queue back while the user is waiting for the page
+                    try (Closeable lane = RequestQueueManager.getInstance(getApplication()).enterLane(RequestOrder.Priority.INTERACTIVE)) {
+                        if (img.needsPageParsing()) {
+                            // Get cookies from the app jar
+                            String cookieStr = HttpHelper.getCookies(img.getPageUrl());
+                            // If nothing found, peek from the site
+                            if (cookieStr.isEmpty())
+                                cookieStr = HttpHelper.peekCookies(img.getPageUrl());
+                            if (!cookieStr.isEmpty())
+                                headers.add(new Pair<>(HttpHelper.HEADER_COOKIE_KEY, cookieStr));
+                            result = downloadPictureFromPage(content, img, pageIndex, headers, targetFolder, targetFileName, stopDownload);
+                        } else {
+                            // Get cookies from the app jar
+                            String cookieStr = HttpHelper.getCookies(img.getUrl());
+                            // If nothing found, peek from the site
+                            if (cookieStr.isEmpty())
+                                cookieStr = HttpHelper.peekCookies(content.getGalleryUrl());
+                            if (!cookieStr.isEmpty())
+                                headers.add(new Pair<>(HttpHelper.HEADER_COOKIE_KEY, cookieStr));
+                            result = DownloadHelper.downloadToFile(
+                                    content.getSite(),
+                                    img.getUrl(),
+                                    pageIndex,
+                                    headers,
+                                    targetFolder,
+                                    targetFileName,
+                                    null,
+                                    stopDownload,
+                                    f -> notifyDownloadProgress(f, pageIndex)
+                            );
+                        }
                     }
                     targetFile = result.left;
                     mimeType = result.right;
@@ -1323,7 +1329,7 @@ public class ReaderViewModel extends AndroidViewModel {
      * @param requestHeaders    HTTP request headers to use
      * @param targetFolder      Folder where to save the downloaded resource
      * @param targetFileName    Name of the file to save the downloaded resource
-     * @param interruptDownload Used to interrupt the download whenever the value switches to true. If that happens, the file will be deleted.
+     * @param interruptDownload Used to interrupt the download whenever the value switches to true. If that happens, the partial file is kept to resume the download later.
      * @return Pair containing
      * - Left : Downloaded file
      * - Right : Detected mime-type of the downloades resource
@@ -40,6 +40,7 @@ public abstract class BaseDeleteWorker extends BaseWorker {
     private final long[] contentIds;
     private final long[] contentPurgeIds;
     private final boolean contentPurgeKeepCovers;
+    private final boolean contentPurgeKeepRevalidatable;
     private final long[] groupIds;
     private final long[] queueIds;
     private final int deleteMax;
@@ -60,6 +61,7 @@ public abstract class BaseDeleteWorker extends BaseWorker {
         long[] askedContentIds = inputData.getContentIds();
         contentPurgeIds = inputData.getContentPurgeIds();
         contentPurgeKeepCovers = inputData.getContentPurgeKeepCovers();
+        contentPurgeKeepRevalidatable = inputData.getContentPurgeKeepRevalidatable();
         groupIds = inputData.getGroupIds();
         queueIds = inputData.getQueueIds();
         isDeleteGroupsOnly = inputData.isDeleteGroupsOnly();
@@ -97,7 +99,7 @@ public abstract class BaseDeleteWorker extends BaseWorker {
 
         // First chain contents, then groups (to be sure to delete empty groups only)
         if (contentIds.length > 0) removeContentList(contentIds);
-        if (contentPurgeIds.length > 0) purgeContentList(contentPurgeIds, contentPurgeKeepCovers);
+        if (contentPurgeIds.length > 0) purgeContentList(contentPurgeIds, contentPurgeKeepCovers, contentPurgeKeepRevalidatable);
         if (groupIds.length > 0) removeGroups(groupIds, isDeleteGroupsOnly);
         if (queueIds.length > 0) removeQueue(queueIds);
 
@@ -146,7 +148,7 @@ public abstract class BaseDeleteWorker extends BaseWorker {
         }
     }
 
-    private void purgeContentList(long[] ids, boolean keepCovers) {
+    private void purgeContentList(long[] ids, boolean keepCovers, boolean keepRevalidatable) {
         List<Content> contents = dao.selectContent(ids);
 
         // Flag the content as "being deleted" (triggers blink animation; lock operations)
@@ -154,7 +156,7 @@ public abstract class BaseDeleteWorker extends BaseWorker {
 
         // Purge them
         for (Content c : contents) {
-            purgeContent(c, keepCovers);
+            purgeContent(c, keepCovers, keepRevalidatable);
             flagContentDelete(c, false);
             if (isStopped()) break;
         }
@@ -163,12 +165,14 @@ public abstract class BaseDeleteWorker extends BaseWorker {
     /**
      * Purge the given content
      *
-     * @param content Content to be purged
+     * @param content           Content to be purged
+     * @param keepCovers        True to keep the cover thumbnail
+     * @param keepRevalidatable True to keep the pages that can be revalidated when redownloading (see ImageFile.hasValidators)
      */
-    private void purgeContent(@NonNull final Content content, boolean keepCovers) {
+    private void purgeContent(@NonNull final Content content, boolean keepCovers, boolean keepRevalidatable) {
         progressItem(content, true);
         try {
-            ContentHelper.purgeFiles(getApplicationContext(), content, false, keepCovers);
+            ContentHelper.purgeFiles(getApplicationContext(), content, false, keepCovers, keepRevalidatable);
             trace(Log.INFO, "Purged item: %s.", content.getTitle());
         } catch (Exception e) {
             nbError++;
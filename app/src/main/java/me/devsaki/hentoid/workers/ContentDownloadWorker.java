@@ -3,7 +3,6 @@ package me.devsaki.hentoid.workers;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.net.Uri;
-import android.webkit.MimeTypeMap;
 
 import androidx.annotation.NonNull;
 import androidx.core.util.Pair;
@@ -11,17 +10,10 @@ import androidx.documentfile.provider.DocumentFile;
 import androidx.work.Data;
 import androidx.work.WorkerParameters;
 
-import com.android.volley.AuthFailureError;
-import com.android.volley.NetworkError;
-import com.android.volley.NoConnectionError;
-import com.android.volley.ParseError;
-import com.android.volley.Request;
-import com.android.volley.ServerError;
-import com.android.volley.TimeoutError;
-import com.android.volley.VolleyError;
 import com.annimon.stream.Optional;
 import com.annimon.stream.Stream;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
@@ -29,12 +21,19 @@ import org.threeten.bp.Instant;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nullable;
@@ -66,19 +65,26 @@ import me.devsaki.hentoid.notification.download.DownloadProgressNotification;
 import me.devsaki.hentoid.notification.download.DownloadSuccessNotification;
 import me.devsaki.hentoid.notification.download.DownloadWarningNotification;
 import me.devsaki.hentoid.parsers.ContentParserFactory;
+import me.devsaki.hentoid.parsers.ParsedImageListCache;
 import me.devsaki.hentoid.parsers.images.ImageListParser;
 import me.devsaki.hentoid.util.ContentHelper;
 import me.devsaki.hentoid.util.Helper;
 import me.devsaki.hentoid.util.JsonHelper;
 import me.devsaki.hentoid.util.Preferences;
 import me.devsaki.hentoid.util.StringHelper;
+import me.devsaki.hentoid.util.download.BufferPool;
 import me.devsaki.hentoid.util.download.ContentQueueManager;
 import me.devsaki.hentoid.util.download.DownloadHelper;
+import me.devsaki.hentoid.util.download.DownloadJournal;
+import me.devsaki.hentoid.util.download.DownloadProgress;
+import me.devsaki.hentoid.util.download.DownloadTrafficMonitor;
+import me.devsaki.hentoid.util.download.ImageFileWriteBuffer;
 import me.devsaki.hentoid.util.download.RequestOrder;
 import me.devsaki.hentoid.util.download.RequestQueueManager;
 import me.devsaki.hentoid.util.exception.AccountException;
 import me.devsaki.hentoid.util.exception.CaptchaException;
 import me.devsaki.hentoid.util.exception.ContentNotProcessedException;
+import me.devsaki.hentoid.util.exception.DownloadInterruptedException;
 import me.devsaki.hentoid.util.exception.EmptyResultException;
 import me.devsaki.hentoid.util.exception.LimitReachedException;
 import me.devsaki.hentoid.util.exception.PreparationInterruptedException;
@@ -99,18 +105,42 @@ public class ContentDownloadWorker extends BaseWorker {
         CONTENT_FOUND, CONTENT_SKIPPED, CONTENT_FAILED, QUEUE_END
     }
 
+    /**
+     * Book whose images have been parsed and whose folder has been created
+     */
+    private static class PreparedDownload {
+        private final Content content;
+        private final DocumentFile dir;
+        private final List<ImageFile> images;
+
+        PreparedDownload(@NonNull Content content, @NonNull DocumentFile dir, @NonNull List<ImageFile> images) {
+            this.content = content;
+            this.dir = dir;
+            this.images = images;
+        }
+    }
+
     private static final int IDLE_THRESHOLD = 20; // seconds; should be higher than the connect + I/O timeout defined in RequestQueueManager
     private static final int LOW_NETWORK_THRESHOLD = 10; // KBps
+    private static final int MAX_POOLED_BUFFERS = 8; // Enough to cover the highest download thread count
+    private static final int PROGRESS_PUBLISH_INTERVAL_MS = 500;
+    private static final int IMAGE_WRITE_BATCH_SIZE = 50;
+    private static final int IMAGE_WRITE_MAX_DELAY_MS = 1000;
 
     // DAO is full scope to avoid putting try / finally's everywhere and be sure to clear it upon worker stop
     private final CollectionDAO dao;
+    // Batches the updates of downloaded images into as few DB transactions as possible
+    private final ImageFileWriteBuffer imageWriteBuffer;
 
-    // True if a Cancel event has been processed; false by default
+    // True if the whole download has been canceled (e.g. worker stopped); false by default
     private final AtomicBoolean downloadCanceled = new AtomicBoolean(false);
-    // True if a Skip event has been processed; false by default
-    private final AtomicBoolean downloadSkipped = new AtomicBoolean(false);
-    // downloadCanceled || downloadSkipped
+    // True if every book has to stop downloading; false by default
     private final AtomicBoolean downloadInterrupted = new AtomicBoolean(false);
+    // Interruption flags of the books being prepared or downloaded, indexed by book ID
+    // NB : Canceling or skipping a book only interrupts that book; the others go on downloading
+    private final Map<Long, AtomicBoolean> bookInterruptions = new ConcurrentHashMap<>();
+    // IDs of the books whose interruption is a cancellation (as opposed to a skip)
+    private final Set<Long> canceledBooks = Collections.newSetFromMap(new ConcurrentHashMap<>());
     private boolean isCloudFlareBlocked;
 
     private final NotificationManager userActionNotificationManager;
@@ -119,6 +149,20 @@ public class ContentDownloadWorker extends BaseWorker {
 
     // Download speed calculator
     private final DownloadSpeedCalculator downloadSpeedCalculator = new DownloadSpeedCalculator();
+    // Latest average download speed
+    private volatile int avgSpeedKbps = 0;
+    // Progress of the books being downloaded, in the order they have been started
+    private final List<DownloadProgress> activeDownloads = new CopyOnWriteArrayList<>();
+    // Size of the queue when the books being downloaded have last been checked against it; -1 if unknown
+    private long checkedQueueSize = -1;
+    // Image list of the next book of the queue, parsed ahead while other books are downloading
+    // Left : Book the image list has been parsed with; Right : Parsed image list
+    private Future<ImmutablePair<Content, List<ImageFile>>> imageListAhead = null;
+    private long imageListAheadContentId = -1;
+    // Journals of the books being downloaded, indexed by book ID
+    private final Map<Long, DownloadJournal> journals = new ConcurrentHashMap<>();
+    // Buffers used to stream downloaded images to storage
+    private final BufferPool bufferPool = new BufferPool(FileHelper.FILE_IO_BUFFER_SIZE, MAX_POOLED_BUFFERS);
 
 
     public ContentDownloadWorker(
@@ -128,6 +172,7 @@ public class ContentDownloadWorker extends BaseWorker {
 
         EventBus.getDefault().register(this);
         dao = new ObjectBoxDAO(context);
+        imageWriteBuffer = new ImageFileWriteBuffer(dao, IMAGE_WRITE_BATCH_SIZE, IMAGE_WRITE_MAX_DELAY_MS);
 
         requestQueueManager = RequestQueueManager.getInstance(context);
         userActionNotificationManager = new NotificationManager(context, R.id.user_action_notification);
@@ -142,14 +187,19 @@ public class ContentDownloadWorker extends BaseWorker {
     @Override
     void onInterrupt() {
         requestQueueManager.cancelQueue();
+        imageWriteBuffer.flush();
         downloadCanceled.set(true);
         downloadInterrupted.set(true);
+        for (AtomicBoolean interruption : bookInterruptions.values()) interruption.set(true);
     }
 
     @Override
     void onClear() {
         EventBus.getDefault().unregister(this);
         compositeDisposable.clear();
+        cancelImageListAhead();
+        imageWriteBuffer.flush();
+        closeJournals();
 
         if (dao != null) dao.cleanup();
     }
@@ -170,39 +220,96 @@ public class ContentDownloadWorker extends BaseWorker {
             return;
         }
 
-        ImmutablePair<QueuingResult, Content> result = downloadFirstInQueue();
-        while (!result.left.equals(QueuingResult.QUEUE_END)) {
-            if (result.left.equals(QueuingResult.CONTENT_FOUND)) watchProgress(result.right);
-            result = downloadFirstInQueue();
-        }
+        int maxParallelBooks = Math.max(1, Preferences.getDownloadParallelBooks());
+        do {
+            fillDownloadSlots(maxParallelBooks);
+            if (!activeDownloads.isEmpty()) watchProgress();
+        } while (!activeDownloads.isEmpty());
+        cancelImageListAhead();
         notificationManager.cancel();
     }
 
     /**
-     * Start the download of the 1st book of the download queue
+     * Start the download of the next books of the download queue until the given number of books are downloading
+     * then start parsing the image list of the following book while these are downloading
      * NB : This method is not only called the 1st time the queue is awakened,
-     * but also after every book has finished downloading
+     * but also every time books have finished downloading
      *
-     * @return Pair containing
-     * - Left : Result of the processing
-     * - Right : 1st book of the download queue; null if no book is available to download
+     * @param maxParallelBooks Maximum number of books to download at the same time
      */
-    @SuppressLint({"TimberExceptionLogging", "TimberArgCount"})
-    @NonNull
-    private ImmutablePair<QueuingResult, Content> downloadFirstInQueue() {
-        final String CONTENT_PART_IMAGE_LIST = "Image list";
+    private void fillDownloadSlots(int maxParallelBooks) {
+        QueuingResult result = QueuingResult.CONTENT_FOUND;
+        while (activeDownloads.size() < maxParallelBooks) {
+            result = downloadNextInQueue();
+            if (result.equals(QueuingResult.QUEUE_END)) break;
+        }
 
-        Context context = getApplicationContext();
+        // Parse the image list of the next book ahead of the end of the current downloads
+        // NB : Nothing is recorded until the book actually starts downloading (see prepareDownload)
+        if (!result.equals(QueuingResult.QUEUE_END) && null == imageListAhead && !downloadInterrupted.get()) {
+            ImmutablePair<QueuingResult, Content> next = selectNextInQueue(true);
+            if (next.left.equals(QueuingResult.CONTENT_FOUND)) {
+                final Content nextContent = next.right;
+                List<ImageFile> images = nextContent.getImageFiles();
+                if (null == images) images = Collections.emptyList();
+                final int nbErrors = countErrors(images);
+                if (needsImageListParsing(nextContent.getSite(), images, nbErrors)) {
+                    imageListAheadContentId = nextContent.getId();
+                    imageListAhead = Single.fromCallable(() -> new ImmutablePair<>(nextContent, fetchImageList(nextContent, nbErrors > 0)))
+                            .subscribeOn(Schedulers.io())
+                            .toFuture();
+                }
+            }
+        }
+    }
 
+    /**
+     * Start the download of the next book of the download queue
+     *
+     * @return Result of the processing
+     */
+    @NonNull
+    private QueuingResult downloadNextInQueue() {
         EventBus.getDefault().post(DownloadEvent.fromPreparationStep(DownloadEvent.Step.INIT));
 
-        // Clear previously created requests
-        compositeDisposable.clear();
+        // No book is downloading => start afresh
+        if (activeDownloads.isEmpty()) {
+            // Clear previously created requests
+            compositeDisposable.clear();
+            isCloudFlareBlocked = false;
+        }
+
+        // The whole download has been stopped
+        if (downloadInterrupted.get()) return QueuingResult.QUEUE_END;
+
+        QueuingResult result = checkDownloadConditions();
+        if (!result.equals(QueuingResult.CONTENT_FOUND)) return result;
+
+        ImmutablePair<QueuingResult, Content> next = selectNextInQueue(false);
+        if (!next.left.equals(QueuingResult.CONTENT_FOUND)) return next.left;
+
+        // Previous interruptions of that book (e.g. skipped earlier) don't apply anymore
+        resetBookInterruption(next.right.getId());
+
+        ImmutablePair<QueuingResult, PreparedDownload> prepared = prepareDownload(next.right, takeImageListAhead(next.right.getId()));
+        if (!prepared.left.equals(QueuingResult.CONTENT_FOUND)) return prepared.left;
+
+        return startDownload(prepared.right);
+    }
+
+    /**
+     * Check if the conditions to download books are met (queue status, connectivity, download folder, storage space)
+     *
+     * @return CONTENT_FOUND if books can be downloaded; QUEUE_END if not
+     */
+    @NonNull
+    private QueuingResult checkDownloadConditions() {
+        Context context = getApplicationContext();
 
         // Check if queue has been paused
         if (ContentQueueManager.getInstance().isQueuePaused()) {
             Timber.i("Queue is paused. Download aborted.");
-            return new ImmutablePair<>(QueuingResult.QUEUE_END, null);
+            return QueuingResult.QUEUE_END;
         }
 
         @NetworkHelper.Connectivity int connectivity = NetworkHelper.getConnectivity(context);
@@ -210,58 +317,79 @@ public class ContentDownloadWorker extends BaseWorker {
         if (NetworkHelper.Connectivity.NO_INTERNET == connectivity) {
             Timber.i("No internet connection available. Queue paused.");
             EventBus.getDefault().post(DownloadEvent.fromPauseMotive(DownloadEvent.Motive.NO_INTERNET));
-            return new ImmutablePair<>(QueuingResult.QUEUE_END, null);
+            return QueuingResult.QUEUE_END;
         }
 
         // Check for wifi if wifi-only mode is on
         if (Preferences.isQueueWifiOnly() && NetworkHelper.Connectivity.WIFI != connectivity) {
             Timber.i("No wi-fi connection available. Queue paused.");
             EventBus.getDefault().post(DownloadEvent.fromPauseMotive(DownloadEvent.Motive.NO_WIFI));
-            return new ImmutablePair<>(QueuingResult.QUEUE_END, null);
+            return QueuingResult.QUEUE_END;
         }
 
         // Check for download folder existence, available free space and credentials
         if (Preferences.getStorageUri().trim().isEmpty()) {
             Timber.i("No download folder set"); // May happen if user has skipped it during the intro
             EventBus.getDefault().post(DownloadEvent.fromPauseMotive(DownloadEvent.Motive.NO_DOWNLOAD_FOLDER));
-            return new ImmutablePair<>(QueuingResult.QUEUE_END, null);
+            return QueuingResult.QUEUE_END;
         }
 
         DocumentFile rootFolder = FileHelper.getFolderFromTreeUriString(context, Preferences.getStorageUri());
         if (null == rootFolder) {
             Timber.i("Download folder has not been found. Please select it again."); // May happen if the folder has been moved or deleted after it has been selected
             EventBus.getDefault().post(DownloadEvent.fromPauseMotive(DownloadEvent.Motive.DOWNLOAD_FOLDER_NOT_FOUND));
-            return new ImmutablePair<>(QueuingResult.QUEUE_END, null);
+            return QueuingResult.QUEUE_END;
         }
 
         if (!FileHelper.isUriPermissionPersisted(context.getContentResolver(), rootFolder.getUri())) {
             Timber.i("Insufficient credentials on download folder. Please select it again.");
             EventBus.getDefault().post(DownloadEvent.fromPauseMotive(DownloadEvent.Motive.DOWNLOAD_FOLDER_NO_CREDENTIALS));
-            return new ImmutablePair<>(QueuingResult.QUEUE_END, null);
+            return QueuingResult.QUEUE_END;
         }
 
         long spaceLeftBytes = new FileHelper.MemoryUsageFigures(context, rootFolder).getfreeUsageBytes();
         if (spaceLeftBytes < 2L * 1024 * 1024) {
             Timber.i("Device very low on storage space (<2 MB). Queue paused.");
             EventBus.getDefault().post(DownloadEvent.fromPauseMotive(DownloadEvent.Motive.NO_STORAGE, spaceLeftBytes));
-            return new ImmutablePair<>(QueuingResult.QUEUE_END, null);
+            return QueuingResult.QUEUE_END;
         }
 
-        // Work on first item of queue
+        return QueuingResult.CONTENT_FOUND;
+    }
 
-        // Check if there is a first item to process
+    /**
+     * Select the first book of the download queue that isn't being downloaded yet
+     *
+     * @param readOnly True to leave the queue untouched (e.g. when looking ahead);
+     *                 books that can't be downloaded are then left for the actual selection to remove
+     * @return Pair containing
+     * - Left : Result of the processing
+     * - Right : Selected book; null if no book is available to download
+     */
+    @NonNull
+    private ImmutablePair<QueuingResult, Content> selectNextInQueue(boolean readOnly) {
+        // Check if there is an item to process
         List<QueueRecord> queue = dao.selectQueue();
-        if (queue.isEmpty()) {
-            Timber.i("Queue is empty. Download aborted.");
+        int index = 0;
+        while (index < queue.size() && getActiveDownload(queue.get(index).getContent().getTargetId()) != null)
+            index++;
+        if (index >= queue.size()) {
+            Timber.i("No more books to download in the queue.");
             return new ImmutablePair<>(QueuingResult.QUEUE_END, null);
         }
 
-        Content content = queue.get(0).getContent().getTarget();
+        Content content = queue.get(index).getContent().getTarget();
+        if (readOnly) {
+            if (null == content || StatusContent.DOWNLOADED == content.getStatus())
+                return new ImmutablePair<>(QueuingResult.CONTENT_SKIPPED, null);
+            return new ImmutablePair<>(QueuingResult.CONTENT_FOUND, content);
+        }
 
         if (null == content) {
             Timber.i("Content is unavailable. Download aborted.");
-            dao.deleteQueue(0);
-            content = new Content().setId(queue.get(0).getContent().getTargetId()); // Must supply content ID to the event for the UI to update properly
+            content = new Content().setId(queue.get(index).getContent().getTargetId()); // Must supply content ID to the event for the UI to update properly
+            dao.deleteQueue(index);
+            DownloadJournal.delete(getApplicationContext(), content.getId());
             EventBus.getDefault().post(new DownloadEvent(content, DownloadEvent.Type.EV_COMPLETE, 0, 0, 0, 0));
             notificationManager.notify(new DownloadErrorNotification());
             return new ImmutablePair<>(QueuingResult.CONTENT_SKIPPED, null);
@@ -269,27 +397,166 @@ public class ContentDownloadWorker extends BaseWorker {
 
         if (StatusContent.DOWNLOADED == content.getStatus()) {
             Timber.i("Content is already downloaded. Download aborted.");
-            dao.deleteQueue(0);
+            dao.deleteQueue(index);
+            DownloadJournal.delete(getApplicationContext(), content.getId());
             EventBus.getDefault().post(new DownloadEvent(content, DownloadEvent.Type.EV_COMPLETE, 0, 0, 0, 0));
             notificationManager.notify(new DownloadErrorNotification(content));
             return new ImmutablePair<>(QueuingResult.CONTENT_SKIPPED, null);
         }
 
-        downloadCanceled.set(false);
-        downloadSkipped.set(false);
-        downloadInterrupted.set(false);
-        isCloudFlareBlocked = false;
+        return new ImmutablePair<>(QueuingResult.CONTENT_FOUND, content);
+    }
+
+    /**
+     * Take the parsing of the image list that has been run ahead, if it concerns the given book
+     * NB : A parsing that concerns another book (e.g. the queue has been reordered) is discarded
+     *
+     * @param contentId ID of the book to get the parsing for
+     * @return Parsing of the image list of the given book; null if it hasn't been run ahead
+     */
+    @Nullable
+    private Future<ImmutablePair<Content, List<ImageFile>>> takeImageListAhead(long contentId) {
+        if (imageListAheadContentId != contentId) {
+            if (imageListAhead != null) Timber.d("Discarding the image list of another book");
+            cancelImageListAhead();
+            return null;
+        }
+        Future<ImmutablePair<Content, List<ImageFile>>> result = imageListAhead;
+        imageListAhead = null;
+        imageListAheadContentId = -1;
+        return result;
+    }
+
+    private void cancelImageListAhead() {
+        if (imageListAhead != null) imageListAhead.cancel(true);
+        imageListAhead = null;
+        imageListAheadContentId = -1;
+    }
+
+    /**
+     * Wait for the given parsing of an image list that has been run ahead to complete
+     *
+     * @param imageList Parsing to wait for
+     * @return Pair containing
+     * - Left : Book the image list has been parsed with
+     * - Right : Parsed image list
+     * @throws Exception The exception the parsing has failed with
+     */
+    private static ImmutablePair<Content, List<ImageFile>> getImageListAhead(@NonNull Future<ImmutablePair<Content, List<ImageFile>>> imageList) throws Exception {
+        try {
+            return imageList.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Parse the image list of the given book from the site
+     * NB : Nothing is recorded in DB; can be run ahead of the download of the book
+     *
+     * @param content   Book whose image list to parse
+     * @param hasErrors True if the book has pages in ERROR state
+     * @return Parsed image list
+     * @throws Exception If the image list couldn't be parsed
+     */
+    private List<ImageFile> fetchImageList(@NonNull Content content, boolean hasErrors) throws Exception {
+        // Pages are re-parsed because they have failed; the cached URLs are only trusted for one retry
+        if (hasErrors) ParsedImageListCache.recordRetry(getApplicationContext(), content.getGalleryUrl());
+        StatusContent targetImageStatus = (content.getDownloadMode() == Content.DownloadMode.DOWNLOAD) ? StatusContent.SAVED : StatusContent.ONLINE;
+        return ContentHelper.fetchImageURLs(getApplicationContext(), content, targetImageStatus);
+    }
+
+    /**
+     * Indicate if the image list of a book has to be parsed from the site
+     * - Case 1 : If no image is present => parse all images
+     * - Case 2 : If all images are in ERROR state => re-parse all images
+     * - Case 3 : If some images are in ERROR state and the site has backup URLs
+     * => re-parse images with ERROR state using their order as reference
+     *
+     * @param site     Site of the book
+     * @param images   Current images of the book
+     * @param nbErrors Number of images in ERROR state
+     * @return True if the image list of the book has to be parsed
+     */
+    private static boolean needsImageListParsing(@NonNull Site site, @NonNull List<ImageFile> images, int nbErrors) {
+        return images.isEmpty()
+                || nbErrors == images.size()
+                || (nbErrors > 0 && site.hasBackupURLs());
+    }
+
+    private static int countErrors(@NonNull List<ImageFile> images) {
+        int result = 0;
+        for (ImageFile img : images) if (img.getStatus().equals(StatusContent.ERROR)) result++;
+        return result;
+    }
+
+    /**
+     * Mark the pages that the journal has recorded as saved as downloaded (in DB and in memory)
+     * NB : Pages whose file is missing or empty are left to be downloaded again
+     *
+     * @param images  Pages of the book to recover
+     * @param journal Replayed journal of the book
+     */
+    private void recoverFromJournal(@NonNull List<ImageFile> images, @NonNull Map<Long, DownloadJournal.Entry> journal) {
+        List<ImageFile> recovered = new ArrayList<>();
+        for (ImageFile img : images) {
+            DownloadJournal.Entry entry = journal.get(img.getId());
+            if (entry != null && DownloadJournal.State.DONE == entry.state && !img.getStatus().equals(StatusContent.DOWNLOADED)) {
+                // The file might have been removed or truncated since
+                long fileSize = FileHelper.fileSizeFromUri(getApplicationContext(), Uri.parse(entry.fileUri));
+                if (fileSize <= 0 || (entry.size > 0 && fileSize != entry.size)) {
+                    Timber.d("Journal : file of page %s is missing or incomplete", img.getId());
+                    continue;
+                }
+                img.setStatus(StatusContent.DOWNLOADED);
+                img.setFileUri(entry.fileUri);
+                img.setSize(entry.size);
+                img.setMimeType(entry.mimeType);
+                img.setDownloadParams("");
+                recovered.add(img);
+            }
+        }
+        if (!recovered.isEmpty()) {
+            dao.updateImageFileStatusParamsMimeTypeUriSize(recovered);
+            Timber.i("%d pages recovered from the download journal", recovered.size());
+        }
+    }
+
+    private void closeJournal(long contentId, boolean delete) {
+        DownloadJournal journal = journals.remove(contentId);
+        if (journal != null) journal.close();
+        if (delete) DownloadJournal.delete(getApplicationContext(), contentId);
+    }
+
+    private void closeJournals() {
+        for (DownloadJournal journal : journals.values()) journal.close();
+        journals.clear();
+    }
+
+    /**
+     * Prepare the download of the given book : parse its images and create its folder
+     * NB : Only run when the book is about to be downloaded; what is run ahead is limited to parsing its image list
+     *
+     * @param content        Book to prepare
+     * @param imageListAhead Parsing of the image list of the book that has been run ahead; null if none
+     * @return Pair containing
+     * - Left : Result of the processing
+     * - Right : Book ready to be downloaded; null if it can't be downloaded
+     */
+    @SuppressLint({"TimberExceptionLogging", "TimberArgCount"})
+    @NonNull
+    private ImmutablePair<QueuingResult, PreparedDownload> prepareDownload(@NonNull Content content, @Nullable Future<ImmutablePair<Content, List<ImageFile>>> imageListAhead) {
+        final String CONTENT_PART_IMAGE_LIST = "Image list";
+
         @Content.DownloadMode int downloadMode = content.getDownloadMode();
         dao.deleteErrorRecords(content.getId());
 
         // == PREPARATION PHASE ==
-        // Parse images from the site (using image list parser)
-        //   - Case 1 : If no image is present => parse all images
-        //   - Case 2 : If all images are in ERROR state => re-parse all images
-        //   - Case 3 : If some images are in ERROR state and the site has backup URLs
-        //     => re-parse images with ERROR state using their order as reference
+        // Parse images from the site (using image list parser) when needed (see needsImageListParsing)
         boolean hasError = false;
-        int nbErrors = 0;
+        Set<String> revalidatableUris = Collections.emptySet();
 
         EventBus.getDefault().post(DownloadEvent.fromPreparationStep(DownloadEvent.Step.PROCESS_IMG));
 
@@ -299,18 +566,27 @@ public class ContentDownloadWorker extends BaseWorker {
         else
             images = new ArrayList<>(images); // Safe copy of the original list
 
-        for (ImageFile img : images) if (img.getStatus().equals(StatusContent.ERROR)) nbErrors++;
+        // Recover the pages the journal knows about, in case the previous download has been interrupted (e.g. app killed)
+        Map<Long, DownloadJournal.Entry> journal = DownloadJournal.replay(getApplicationContext(), content.getId());
+        if (journal != null) recoverFromJournal(images, journal);
+
+        int nbErrors = countErrors(images);
         StatusContent targetImageStatus = (downloadMode == Content.DownloadMode.DOWNLOAD) ? StatusContent.SAVED : StatusContent.ONLINE;
 
-        if (images.isEmpty()
-                || nbErrors == images.size()
-                || (nbErrors > 0 && content.getSite().hasBackupURLs())
-        ) {
+        if (needsImageListParsing(content.getSite(), images, nbErrors)) {
             EventBus.getDefault().post(DownloadEvent.fromPreparationStep(DownloadEvent.Step.FETCH_IMG));
             try {
-                List<ImageFile> newImages = ContentHelper.fetchImageURLs(content, targetImageStatus);
+                // Use the image list that has been parsed ahead, if any
+                ImmutablePair<Content, List<ImageFile>> parsed = (imageListAhead != null) ? getImageListAhead(imageListAhead) : null;
+                if (null == parsed)
+                    parsed = new ImmutablePair<>(content, fetchImageList(content, nbErrors > 0));
+                List<ImageFile> newImages = parsed.right;
                 // Cases 1 and 2 : Replace existing images with the parsed images
-                if (images.isEmpty() || nbErrors == images.size()) images = newImages;
+                if (images.isEmpty() || nbErrors == images.size()) {
+                    // Files of the existing images that haven't been purged (e.g. redownload from scratch) can be revalidated
+                    revalidatableUris = carryOverRevalidatableFiles(images, newImages);
+                    images = newImages;
+                }
                 // Case 3 : Replace images in ERROR state with the parsed images at the same position
                 if (nbErrors > 0 && content.getSite().hasBackupURLs()) {
                     for (int i = 0; i < images.size(); i++) {
@@ -323,7 +599,7 @@ public class ContentDownloadWorker extends BaseWorker {
                     }
                 }
 
-                if (content.isUpdatedProperties()) dao.insertContent(content);
+                if (parsed.left.isUpdatedProperties()) dao.insertContent(parsed.left);
 
                 // Manually insert new images (without using insertContent)
                 dao.replaceImageList(content.getId(), images);
@@ -369,12 +645,12 @@ public class ContentDownloadWorker extends BaseWorker {
         if (hasError) {
             moveToErrors(content.getId());
             EventBus.getDefault().post(new DownloadEvent(content, DownloadEvent.Type.EV_COMPLETE, 0, 0, 0, 0));
-            return new ImmutablePair<>(QueuingResult.CONTENT_FAILED, content);
+            return new ImmutablePair<>(QueuingResult.CONTENT_FAILED, null);
         }
 
         // In case the download has been canceled while in preparation phase
         // NB : No log of any sort because this is normal behaviour
-        if (downloadInterrupted.get())
+        if (isBookInterrupted(content.getId()))
             return new ImmutablePair<>(QueuingResult.CONTENT_SKIPPED, null);
 
         EventBus.getDefault().post(DownloadEvent.fromPreparationStep(DownloadEvent.Step.PREPARE_FOLDER));
@@ -395,7 +671,7 @@ public class ContentDownloadWorker extends BaseWorker {
             // => Create all images, flag them as failed as well as the book
             dao.updateImageContentStatus(content.getId(), targetImageStatus, StatusContent.ERROR);
             completeDownload(content.getId(), content.getTitle(), 0, images.size(), 0);
-            return new ImmutablePair<>(QueuingResult.CONTENT_FAILED, content);
+            return new ImmutablePair<>(QueuingResult.CONTENT_FAILED, null);
         }
 
         // Folder creation succeeds -> memorize its path
@@ -403,15 +679,11 @@ public class ContentDownloadWorker extends BaseWorker {
         // Set QtyPages if the content parser couldn't do it (certain sources only)
         // Don't count the cover thumbnail in the number of pages
         if (0 == content.getQtyPages()) content.setQtyPages(images.size() - 1);
-        content.setStatus(StatusContent.DOWNLOADING);
         // Mark the cover for downloading when saving a streamed book
         if (downloadMode == Content.DownloadMode.STREAM)
             content.getCover().setStatus(StatusContent.SAVED);
         dao.insertContent(content);
 
-        HentoidApp.trackDownloadEvent("Added");
-        Timber.i("Downloading '%s' [%s]", content.getTitle(), content.getId());
-
         // Wait until the end of purge if the content is being purged (e.g. redownload from scratch)
         boolean isBeingDeleted = content.isBeingDeleted();
         if (isBeingDeleted)
@@ -422,34 +694,116 @@ public class ContentDownloadWorker extends BaseWorker {
             if (null == content)
                 return new ImmutablePair<>(QueuingResult.CONTENT_SKIPPED, null);
             Helper.pause(1000);
-            if (downloadInterrupted.get()) break;
+            if (isBookInterrupted(content.getId())) break;
         }
-        if (isBeingDeleted && !downloadInterrupted.get())
+        if (isBeingDeleted && !isBookInterrupted(content.getId()))
             Timber.d("Purge completed; resuming download");
 
+        if (!revalidatableUris.isEmpty()) checkRevalidatableFiles(dir, images, revalidatableUris);
+
+        return new ImmutablePair<>(QueuingResult.CONTENT_FOUND, new PreparedDownload(content, dir, images));
+    }
+
+    /**
+     * Let the given new pages reuse the files of the given old pages they correspond to,
+     * when these files can be revalidated (see ImageFile.hasValidators)
+     * The new pages will then be downloaded with conditional requests that don't transfer
+     * the files again if they haven't changed on the site
+     *
+     * @param oldImages Old pages of the book
+     * @param newImages New pages of the book, freshly parsed from the site
+     * @return URIs of the files of the old pages that have been kept for revalidation; empty if none
+     */
+    private static Set<String> carryOverRevalidatableFiles(@NonNull List<ImageFile> oldImages, @NonNull List<ImageFile> newImages) {
+        Map<Integer, ImageFile> revalidatableImages = new HashMap<>();
+        Set<String> revalidatableUris = new HashSet<>();
+        for (ImageFile img : oldImages)
+            if (img.hasValidators() && !img.getFileUri().isEmpty()) {
+                revalidatableImages.put(img.getOrder(), img);
+                revalidatableUris.add(img.getFileUri());
+            }
+        if (revalidatableImages.isEmpty()) return Collections.emptySet();
+
+        int nbCarriedOver = 0;
+        for (ImageFile newImg : newImages) {
+            ImageFile oldImg = revalidatableImages.get(newImg.getOrder());
+            if (null == oldImg || oldImg.isCover() != newImg.isCover()) continue;
+            // Image URLs of pages that need parsing are only known once they're parsed
+            boolean isSamePage = newImg.needsPageParsing() ? newImg.getPageUrl().equals(oldImg.getPageUrl()) : newImg.getUrl().equals(oldImg.getUrl());
+            if (!isSamePage) continue;
+            newImg.setFileUri(oldImg.getFileUri())
+                    .setEtag(oldImg.getEtag())
+                    .setLastModified(oldImg.getLastModified())
+                    .setMimeType(oldImg.getMimeType())
+                    .setSize(oldImg.getSize());
+            nbCarriedOver++;
+        }
+        Timber.d("%d pages out of %d will be revalidated", nbCarriedOver, newImages.size());
+        return revalidatableUris;
+    }
+
+    /**
+     * Make sure the files the given pages are about to revalidate still exist, and remove the files
+     * that have been kept for revalidation but aren't used anymore
+     * NB : Other files of the book folder are left untouched
+     *
+     * @param dir               Folder of the book
+     * @param images            Pages of the book
+     * @param revalidatableUris URIs of the files that have been kept for revalidation
+     */
+    private void checkRevalidatableFiles(@NonNull DocumentFile dir, @NonNull List<ImageFile> images, @NonNull Set<String> revalidatableUris) {
+        Set<String> usedUris = new HashSet<>();
+        for (ImageFile img : images) if (!img.getFileUri().isEmpty()) usedUris.add(img.getFileUri());
+
+        Set<String> existingUris = new HashSet<>();
+        for (DocumentFile file : FileHelper.listFiles(getApplicationContext(), dir, null)) {
+            String uri = file.getUri().toString();
+            if (usedUris.contains(uri)) existingUris.add(uri);
+            else if (revalidatableUris.contains(uri)) file.delete();
+        }
+
+        // Files that have disappeared have to be downloaded again
+        for (ImageFile img : images)
+            if (!img.getFileUri().isEmpty() && !existingUris.contains(img.getFileUri()))
+                img.setFileUri("").setEtag("").setLastModified("");
+    }
+
+    /**
+     * Start the download of the given prepared book
+     *
+     * @param prepared Book to download
+     * @return Result of the processing
+     */
+    @NonNull
+    private QueuingResult startDownload(@NonNull PreparedDownload prepared) {
+        Context context = getApplicationContext();
+        Content content = prepared.content;
+        DocumentFile dir = prepared.dir;
+        List<ImageFile> images = prepared.images;
+        @Content.DownloadMode int downloadMode = content.getDownloadMode();
 
         // == DOWNLOAD PHASE ==
 
         EventBus.getDefault().post(DownloadEvent.fromPreparationStep(DownloadEvent.Step.PREPARE_DOWNLOAD));
 
-        // Set up downloader constraints
-        if (content.getSite().getParallelDownloadCap() > 0 &&
-                (requestQueueManager.getDownloadThreadCap() > content.getSite().getParallelDownloadCap()
-                        || -1 == requestQueueManager.getDownloadThreadCap())
-        ) {
-            Timber.d("Setting parallel downloads count to %s", content.getSite().getParallelDownloadCap());
-            requestQueueManager.initUsingDownloadThreadCount(getApplicationContext(), content.getSite().getParallelDownloadCap(), true);
-        }
-        if (0 == content.getSite().getParallelDownloadCap() && requestQueueManager.getDownloadThreadCap() > -1) {
-            Timber.d("Resetting parallel downloads count to default");
-            requestQueueManager.initUsingDownloadThreadCount(getApplicationContext(), -1, true);
-        }
-        requestQueueManager.setNbRequestsPerSecond(content.getSite().getRequestsCapPerSecond());
+        // NB : Downloader constraints (parallel downloads, requests per second) are set per host
+        // by RequestQueueManager using the site of each request
 
         // In case the download has been canceled while in preparation phase
         // NB : No log of any sort because this is normal behaviour
-        if (downloadInterrupted.get())
-            return new ImmutablePair<>(QueuingResult.CONTENT_SKIPPED, null);
+        if (isBookInterrupted(content.getId()))
+            return QueuingResult.CONTENT_SKIPPED;
+
+        content.setStatus(StatusContent.DOWNLOADING);
+        dao.insertContentCore(content);
+
+        HentoidApp.trackDownloadEvent("Added");
+        Timber.i("Downloading '%s' [%s]", content.getTitle(), content.getId());
+
+        // Progress counters and journal have to be ready before the 1st request completes
+        activeDownloads.add(initProgress(content));
+        DownloadJournal journal = DownloadJournal.open(context, content.getId());
+        if (journal != null) journals.put(content.getId(), journal);
 
         List<ImageFile> pagesToParse = new ArrayList<>();
         List<ImageFile> ugoirasToDownload = new ArrayList<>();
@@ -504,7 +858,7 @@ public class ContentDownloadWorker extends BaseWorker {
                         Observable.fromIterable(ugoirasToDownload)
                                 .observeOn(Schedulers.io())
                                 .subscribe(
-                                        img -> downloadAndUnzipUgoira(img, dir, siteFinal),
+                                        img -> downloadAndAssembleUgoira(img, dir, siteFinal),
                                         t -> {
                                             // Nothing; just exit the Rx chain
                                         }
@@ -521,7 +875,7 @@ public class ContentDownloadWorker extends BaseWorker {
 
         EventBus.getDefault().post(DownloadEvent.fromPreparationStep(DownloadEvent.Step.START_DOWNLOAD));
 
-        return new ImmutablePair<>(QueuingResult.CONTENT_FOUND, content);
+        return QueuingResult.CONTENT_FOUND;
     }
 
     private void enrichImageDownloadParams(@NonNull ImageFile img, @NonNull Content content) {
@@ -542,66 +896,84 @@ public class ContentDownloadWorker extends BaseWorker {
     }
 
     /**
-     * Watch download progress
-     * <p>
-     * NB : download pause is managed at the Volley queue level (see RequestQueueManager.pauseQueue / startQueue)
+     * Initialize the progress counters of the given book
+     * NB : Processed pages are counted from the DB to take resumed downloads into account
+     *
+     * @param content Content to initialize progress counters for
+     * @return Progress counters of the given book
+     */
+    private DownloadProgress initProgress(@NonNull Content content) {
+        List<ImageFile> images = content.getImageFiles();
+        // Compute total downloadable pages; online (stream) pages do not count
+        int totalPages = (null == images) ? 0 : (int) Stream.of(images).filter(i -> !i.getStatus().equals(StatusContent.ONLINE)).count();
+
+        long[][] statuses = dao.countProcessedImagesById(content.getId(), new StatusContent[]{StatusContent.DOWNLOADED, StatusContent.ERROR});
+        int pagesOK = (int) statuses[0][0];
+        int pagesKO = (int) statuses[0][1];
+        long downloadedBytes = statuses[1][0];
+
+        return new DownloadProgress(content, totalPages, pagesOK, pagesKO, downloadedBytes);
+    }
+
+    /**
+     * Log the network statistics of every host the downloads have requested
      *
-     * @param content Content to watch (1st book of the download queue)
+     * @param trafficMonitor Monitor to get the statistics from
      */
-    private void watchProgress(@NonNull Content content) {
-        boolean isDone;
-        int pagesOK = 0;
-        int pagesKO = 0;
-        long downloadedBytes = 0;
+    private static void logHostStats(@NonNull DownloadTrafficMonitor trafficMonitor) {
+        long now = Instant.now().toEpochMilli();
+        for (Map.Entry<String, DownloadTrafficMonitor.HostStats> entry : trafficMonitor.getHostStats().entrySet()) {
+            DownloadTrafficMonitor.HostStats stats = entry.getValue();
+            Timber.d("Host %s : %d bytes - OK:%d KO:%d - avg TTFB %d ms - avg duration %d ms - idle for %d ms",
+                    entry.getKey(), stats.getBytesReceived(), stats.getNbSucceeded(), stats.getNbFailed(),
+                    stats.getAvgTtfbMs(), stats.getAvgDurationMs(), now - stats.getLastActivityMs());
+        }
+    }
+
+    /**
+     * Watch the progress of the books being downloaded until at least one of them has been completed
+     * <p>
+     * NB : download pause is managed at the request queue level (see RequestQueueManager.cancelQueue)
+     * NB2 : progress counters are updated by the download callbacks; this loop only watches network activity
+     * NB3 : only the progress of the 1st book being downloaded is notified to the UI
+     */
+    private void watchProgress() {
+        List<DownloadProgress> completed = new ArrayList<>();
+        int previousPagesOK = countPagesOK();
 
         boolean firstPageDownloaded = false;
-        int deltaPages = 0;
+        int deltaPages;
         int nbDeltaZeroPages = 0;
-        long networkBytes = 0;
+        DownloadTrafficMonitor trafficMonitor = requestQueueManager.getTrafficMonitor();
+        long networkBytes = trafficMonitor.getBytesReceived();
         long deltaNetworkBytes;
         int nbDeltaLowNetwork = 0;
 
-        List<ImageFile> images = content.getImageFiles();
-        // Compute total downloadable pages; online (stream) pages do not count
-        int totalPages = (null == images) ? 0 : (int) Stream.of(images).filter(i -> !i.getStatus().equals(StatusContent.ONLINE)).count();
-
         ContentQueueManager contentQueueManager = ContentQueueManager.getInstance();
         do {
-            Map<StatusContent, ImmutablePair<Integer, Long>> statuses = dao.countProcessedImagesById(content.getId());
-            ImmutablePair<Integer, Long> status = statuses.get(StatusContent.DOWNLOADED);
-
             // Measure idle time since last iteration
-            if (status != null) {
-                deltaPages = status.left - pagesOK;
-                if (deltaPages == 0) nbDeltaZeroPages++;
-                else {
-                    firstPageDownloaded = true;
-                    nbDeltaZeroPages = 0;
-                }
-                pagesOK = status.left;
-                downloadedBytes = status.right;
+            int pagesOK = countPagesOK();
+            deltaPages = pagesOK - previousPagesOK;
+            if (deltaPages == 0) nbDeltaZeroPages++;
+            else {
+                firstPageDownloaded = true;
+                nbDeltaZeroPages = 0;
             }
-            status = statuses.get(StatusContent.ERROR);
-            if (status != null)
-                pagesKO = status.left;
+            previousPagesOK = pagesOK;
 
-            double downloadedMB = downloadedBytes / (1024.0 * 1024);
-            int progress = pagesOK + pagesKO;
-            isDone = progress == totalPages;
-            Timber.d("Progress: OK:%d size:%dMB - KO:%d - Total:%d", pagesOK, (int) downloadedMB, pagesKO, totalPages);
-
-            // Download speed and size estimation
-            long networkBytesNow = NetworkHelper.getIncomingNetworkUsage(getApplicationContext());
+            // Download speed and size estimation, based on the traffic of the downloads only
+            long networkBytesNow = trafficMonitor.getBytesReceived();
             deltaNetworkBytes = networkBytesNow - networkBytes;
-            if (deltaNetworkBytes < 1024 * LOW_NETWORK_THRESHOLD && firstPageDownloaded)
+            // NB : Requests waiting for their turn (e.g. rate-limited hosts) aren't stalled
+            if (deltaNetworkBytes < 1024 * LOW_NETWORK_THRESHOLD && firstPageDownloaded && trafficMonitor.getNbRunningCalls() > 0)
                 nbDeltaLowNetwork++; // LOW_NETWORK_THRESHOLD KBps threshold once download has started
             else nbDeltaLowNetwork = 0;
             networkBytes = networkBytesNow;
             downloadSpeedCalculator.addSampleNow(networkBytes);
-            int avgSpeedKbps = (int) downloadSpeedCalculator.getAvgSpeedKbps();
+            avgSpeedKbps = (int) downloadSpeedCalculator.getAvgSpeedKbps();
 
             Timber.d("deltaPages: %d / deltaNetworkBytes: %s", deltaPages, FileHelper.formatHumanReadableSize(deltaNetworkBytes, getApplicationContext().getResources()));
-            Timber.d("nbDeltaZeroPages: %d / nbDeltaLowNetwork: %d", nbDeltaZeroPages, nbDeltaLowNetwork);
+            Timber.d("nbDeltaZeroPages: %d / nbDeltaLowNetwork: %d / running requests: %d", nbDeltaZeroPages, nbDeltaLowNetwork, trafficMonitor.getNbRunningCalls());
 
             // Restart request queue when the queue has idled for too long
             // Idle = very low download speed _AND_ no new pages downloaded
@@ -609,46 +981,134 @@ public class ContentDownloadWorker extends BaseWorker {
                 nbDeltaLowNetwork = 0;
                 nbDeltaZeroPages = 0;
                 Timber.d("Inactivity detected ====> restarting request queue");
-                //requestQueueManager.restartRequestQueue();
+                logHostStats(trafficMonitor);
                 requestQueueManager.resetRequestQueue(getApplicationContext(), false);
             }
 
-            double estimateBookSizeMB = -1;
-            if (pagesOK > 3 && progress > 0 && totalPages > 0) {
-                estimateBookSizeMB = downloadedMB / (progress * 1.0 / totalPages);
-                Timber.v("Estimate book size calculated for wifi check : %s MB", estimateBookSizeMB);
-            }
+            dropRemovedDownloads();
+
+            // Refresh download speed even when no page has been processed
+            DownloadProgress lead = getLeadDownload();
+            if (lead != null) publishProgress(lead, true);
+
+            for (DownloadProgress progress : activeDownloads) {
+                Timber.d("Progress [%s]: OK:%d size:%dMB - KO:%d - Total:%d", progress.getContent().getId(), progress.getPagesOK(), (int) progress.getDownloadedMB(), progress.getPagesKO(), progress.getTotalPages());
+                // Interrupted books (e.g. canceled or skipped) stop without waiting for their remaining pages
+                if (progress.isDone() || isBookInterrupted(progress.getContent().getId())) {
+                    completed.add(progress);
+                    continue;
+                }
 
-            notificationManager.notify(new DownloadProgressNotification(content.getTitle(), progress, totalPages, (int) downloadedMB, (int) estimateBookSizeMB, avgSpeedKbps));
-            EventBus.getDefault().post(new DownloadEvent(content, DownloadEvent.Type.EV_PROGRESS, pagesOK, pagesKO, totalPages, downloadedBytes));
-
-            // If the "skip large downloads on mobile data" is on, skip if needed
-            if (Preferences.isDownloadLargeOnlyWifi() &&
-                    (estimateBookSizeMB > Preferences.getDownloadLargeOnlyWifiThresholdMB()
-                            || totalPages > Preferences.getDownloadLargeOnlyWifiThresholdPages()
-                    )
-            ) {
-                @NetworkHelper.Connectivity int connectivity = NetworkHelper.getConnectivity(getApplicationContext());
-                if (NetworkHelper.Connectivity.WIFI != connectivity) {
-                    // Move the book to the errors queue and signal it as skipped
-                    logErrorRecord(content.getId(), ErrorType.WIFI, content.getUrl(), "Book", "");
-                    moveToErrors(content.getId());
-                    EventBus.getDefault().post(new DownloadEvent(DownloadEvent.Type.EV_SKIP));
+                // If the "skip large downloads on mobile data" is on, skip if needed
+                double estimateBookSizeMB = progress.getEstimatedBookSizeMB();
+                if (Preferences.isDownloadLargeOnlyWifi() &&
+                        (estimateBookSizeMB > Preferences.getDownloadLargeOnlyWifiThresholdMB()
+                                || progress.getTotalPages() > Preferences.getDownloadLargeOnlyWifiThresholdPages()
+                        )
+                ) {
+                    @NetworkHelper.Connectivity int connectivity = NetworkHelper.getConnectivity(getApplicationContext());
+                    if (NetworkHelper.Connectivity.WIFI != connectivity) {
+                        // Move the book to the errors queue and signal it as skipped
+                        Content content = progress.getContent();
+                        logErrorRecord(content.getId(), ErrorType.WIFI, content.getUrl(), "Book", "");
+                        moveToErrors(content.getId());
+                        interruptBook(content.getId(), false);
+                        EventBus.getDefault().post(new DownloadEvent(DownloadEvent.Type.EV_SKIP));
+                    }
                 }
             }
 
-            // We're polling the DB because we can't observe LiveData from a background service
-            Helper.pause(1000);
+            // Wake up right away when the 1st book has been completed
+            if (completed.isEmpty() && lead != null) lead.awaitCompletion(1000);
         }
-        while (!isDone && !downloadInterrupted.get() && !contentQueueManager.isQueuePaused());
+        while (completed.isEmpty() && !activeDownloads.isEmpty() && !downloadInterrupted.get() && !contentQueueManager.isQueuePaused());
 
         if (contentQueueManager.isQueuePaused()) {
-            Timber.d("Content download paused : %s [%s]", content.getTitle(), content.getId());
+            for (DownloadProgress progress : activeDownloads)
+                Timber.d("Content download paused : %s [%s]", progress.getContent().getTitle(), progress.getContent().getId());
             if (downloadCanceled.get()) notificationManager.cancel();
+            activeDownloads.clear();
+            // Journals are kept to resume the downloads later
+            closeJournals();
         } else {
-            // NB : no need to supply the Content itself as it has not been updated during the loop
-            completeDownload(content.getId(), content.getTitle(), pagesOK, pagesKO, downloadedBytes);
+            // Stopping the whole download stops every book that is being downloaded
+            if (downloadInterrupted.get()) completed = new ArrayList<>(activeDownloads);
+            for (DownloadProgress progress : completed) {
+                activeDownloads.remove(progress);
+                // NB : no need to supply the Content itself as it has not been updated during the loop
+                Content content = progress.getContent();
+                completeDownload(content.getId(), content.getTitle(), progress.getPagesOK(), progress.getPagesKO(), progress.getDownloadedBytes());
+            }
+        }
+    }
+
+    /**
+     * Stop following the books that have been removed from the queue while being downloaded
+     * (e.g. books that have been canceled without being 1st of the queue)
+     */
+    private void dropRemovedDownloads() {
+        // The 1st book of the queue is canceled with an event
+        if (activeDownloads.size() < 2) {
+            checkedQueueSize = -1;
+            return;
         }
+        // Removing books from the queue shrinks it; don't read the whole queue until that happens
+        long queueSize = dao.countQueue();
+        if (queueSize == checkedQueueSize) return;
+        checkedQueueSize = queueSize;
+
+        Set<Long> queuedIds = new HashSet<>();
+        for (QueueRecord record : dao.selectQueue()) queuedIds.add(record.getContent().getTargetId());
+        for (DownloadProgress progress : activeDownloads) {
+            long contentId = progress.getContent().getId();
+            // Books that have already been interrupted (e.g. moved to the errors queue) are left as they are
+            if (!queuedIds.contains(contentId) && !isBookInterrupted(contentId)) {
+                Timber.d("Content removed from the queue : %s [%s]", progress.getContent().getTitle(), contentId);
+                interruptBook(contentId, true);
+            }
+        }
+    }
+
+    private int countPagesOK() {
+        int result = 0;
+        for (DownloadProgress progress : activeDownloads) result += progress.getPagesOK();
+        return result;
+    }
+
+    /**
+     * Get the book that has been downloading for the longest time
+     *
+     * @return Progress of the book that has been downloading for the longest time; null if no book is being downloaded
+     */
+    @Nullable
+    private DownloadProgress getLeadDownload() {
+        return Stream.of(activeDownloads).findFirst().orElse(null);
+    }
+
+    /**
+     * Get the progress of the given book, if it is being downloaded
+     *
+     * @param contentId ID of the book to get the progress for
+     * @return Progress of the given book; null if it isn't being downloaded
+     */
+    @Nullable
+    private DownloadProgress getActiveDownload(long contentId) {
+        return Stream.of(activeDownloads).filter(p -> p.getContent().getId() == contentId).findFirst().orElse(null);
+    }
+
+    /**
+     * Notify the progress of the given download to the UI (notification + event)
+     *
+     * @param progress Progress to notify
+     * @param force    True to notify right away; false to skip notifying if the last notification is too recent
+     */
+    private void publishProgress(@NonNull DownloadProgress progress, boolean force) {
+        if (!progress.tryStartPublishing(Instant.now().toEpochMilli(), force ? 0 : PROGRESS_PUBLISH_INTERVAL_MS))
+            return;
+
+        Content content = progress.getContent();
+        notificationManager.notify(new DownloadProgressNotification(content.getTitle(), progress.getProgress(), progress.getTotalPages(), (int) progress.getDownloadedMB(), (int) progress.getEstimatedBookSizeMB(), avgSpeedKbps));
+        EventBus.getDefault().post(new DownloadEvent(content, DownloadEvent.Type.EV_PROGRESS, progress.getPagesOK(), progress.getPagesKO(), progress.getTotalPages(), progress.getDownloadedBytes()));
     }
 
     /**
@@ -660,6 +1120,12 @@ public class ContentDownloadWorker extends BaseWorker {
     private void completeDownload(final long contentId, @NonNull final String title,
                                   final int pagesOK, final int pagesKO, final long sizeDownloadedBytes) {
         ContentQueueManager contentQueueManager = ContentQueueManager.getInstance();
+        boolean isInterrupted = isBookInterrupted(contentId);
+        boolean isCanceled = isBookCanceled(contentId);
+        // Make sure the DB contains the latest status of every image
+        imageWriteBuffer.flush();
+        // Skipped books are still in the queue; their journal is kept to resume their download later
+        closeJournal(contentId, !isInterrupted || isCanceled);
         // Get the latest value of Content
         Content content = dao.selectContent(contentId);
         if (null == content) {
@@ -669,7 +1135,7 @@ public class ContentDownloadWorker extends BaseWorker {
 
         EventBus.getDefault().post(DownloadEvent.fromPreparationStep(DownloadEvent.Step.COMPLETE_DOWNLOAD));
 
-        if (!downloadInterrupted.get()) {
+        if (!isInterrupted) {
             List<ImageFile> images = content.getImageFiles();
             if (null == images) images = Collections.emptyList();
             int nbImages = (int) Stream.of(images).filter(i -> !i.isCover()).count(); // Don't count the cover
@@ -804,7 +1270,7 @@ public class ContentDownloadWorker extends BaseWorker {
             } else {
                 Timber.w("completeDownload : Directory %s does not exist - JSON not saved", content.getStorageUri());
             }
-        } else if (downloadCanceled.get()) {
+        } else if (isCanceled) {
             Timber.d("Content download canceled: %s [%s]", title, contentId);
             notificationManager.cancel();
         } else {
@@ -866,11 +1332,22 @@ public class ContentDownloadWorker extends BaseWorker {
         // Apply image download parameters
         Map<String, String> requestHeaders = getRequestHeaders(imageUrl, img.getDownloadParams());
 
+        // Revalidate the file that is already there instead of downloading it again (answered with a 304 if it hasn't changed)
+        if (!img.getFileUri().isEmpty() && img.hasValidators()) {
+            if (!img.getEtag().isEmpty())
+                requestHeaders.put(HttpHelper.HEADER_IF_NONE_MATCH, img.getEtag());
+            if (!img.getLastModified().isEmpty())
+                requestHeaders.put(HttpHelper.HEADER_IF_MODIFIED_SINCE, img.getLastModified());
+        }
+
         final String backupUrlFinal = HttpHelper.fixUrl(img.getBackupUrl(), site.getUrl());
 
         return new RequestOrder(
-                Request.Method.GET,
+                RequestOrder.HttpMethod.GET,
                 imageUrl,
+                site,
+                img.isCover() ? RequestOrder.Priority.PREVIEW : RequestOrder.Priority.BACKGROUND,
+                content.getId(),
                 requestHeaders,
                 site.useHentoidAgent(),
                 site.useWebviewAgent(),
@@ -879,20 +1356,34 @@ public class ContentDownloadWorker extends BaseWorker {
     }
 
     private void onImageRequestSuccess(
-            Map.Entry<byte[], Map<String, String>> result,
+            Map.Entry<InputStream, Map<String, String>> result,
             @NonNull ImageFile img,
             @NonNull DocumentFile dir,
             @NonNull String backupUrl,
             @NonNull Map<String, String> requestHeaders) {
         try {
             if (result != null) {
-                DocumentFile imgFile = processAndSaveImage(img, dir, result.getValue().get(HttpHelper.HEADER_CONTENT_TYPE), result.getKey());
-                if (imgFile != null)
-                    updateImageProperties(img, true, imgFile.getUri().toString());
+                Map<String, String> responseHeaders = result.getValue();
+                String previousUri = img.getFileUri();
+                DocumentFile imgFile = DownloadHelper.saveImage(getApplicationContext(), img, dir, responseHeaders.get(HttpHelper.HEADER_CONTENT_TYPE), result.getKey(),
+                        bufferPool, () -> isDownloadStopped(img.getContent().getTargetId()));
+                if (imgFile != null) {
+                    // Keep the validators of the file to be able to revalidate it when redownloading
+                    img.setEtag(StringHelper.protect(responseHeaders.get(HttpHelper.HEADER_ETAG)));
+                    img.setLastModified(StringHelper.protect(responseHeaders.get(HttpHelper.HEADER_LAST_MODIFIED)));
+                    String uri = imgFile.getUri().toString();
+                    // The revalidated file has been replaced by a file with another name (e.g. new format)
+                    if (!previousUri.isEmpty() && !previousUri.equals(uri))
+                        FileHelper.removeFile(getApplicationContext(), Uri.parse(previousUri));
+                    updateImageProperties(img, true, uri);
+                }
             } else {
                 updateImageProperties(img, false, "");
                 logErrorRecord(img.getContent().getTargetId(), ErrorType.NETWORKING, img.getUrl(), img.getName(), "No picture (result is null)");
             }
+        } catch (DownloadInterruptedException e) {
+            // Not an error; the image will be downloaded again when the queue resumes
+            Timber.d("Download interrupted - Image %s not saved", img.getUrl());
         } catch (UnsupportedContentException e) {
             Timber.i(e);
             if (!backupUrl.isEmpty() && !img.isBackup())
@@ -907,6 +1398,11 @@ public class ContentDownloadWorker extends BaseWorker {
             updateImageProperties(img, false, "");
             logErrorRecord(img.getContent().getTargetId(), ErrorType.IMG_PROCESSING, img.getUrl(), "Picture " + img.getName(), "Download params : " + img.getDownloadParams());
         } catch (IOException | IllegalArgumentException e) {
+            // Stopping the download cancels its requests, which closes the streams being read
+            if (isDownloadStopped(img.getContent().getTargetId())) {
+                Timber.d("Download interrupted - Image %s not saved", img.getUrl());
+                return;
+            }
             Timber.i(e, "I/O error - Image %s not saved in dir %s", img.getUrl(), dir.getUri());
             updateImageProperties(img, false, "");
             logErrorRecord(img.getContent().getTargetId(), ErrorType.IO, img.getUrl(), "Picture " + img.getName(), "Save failed in dir " + dir.getUri() + " " + e.getMessage());
@@ -914,15 +1410,21 @@ public class ContentDownloadWorker extends BaseWorker {
     }
 
     private void onRequestError(
-            VolleyError error,
+            @NonNull RequestOrder.NetworkError error,
             @NonNull Content content,
             @NonNull ImageFile img,
             @NonNull DocumentFile dir,
             @NonNull String backupUrl,
             @NonNull Map<String, String> requestHeaders) {
 
-        // If the queue is being reset, ignore the error
-        if (requestQueueManager.hasRemainingIgnorableErrors()) return;
+        // If the download has been stopped, ignore the error
+        if (isDownloadStopped(content.getId())) return;
+
+        // Answer to a conditional request : the file that is already there hasn't changed
+        if (304 == error.statusCode && !img.getFileUri().isEmpty()) {
+            updateImageProperties(img, true, img.getFileUri());
+            return;
+        }
 
         // Try with the backup URL, if it exists and if the current image isn't a backup itself
         if (!img.isBackup() && !backupUrl.isEmpty()) {
@@ -931,25 +1433,34 @@ public class ContentDownloadWorker extends BaseWorker {
         }
 
         // If no backup, then process the error
-        int statusCode = (error.networkResponse != null) ? error.networkResponse.statusCode : -1;
-        String message = error.getMessage() + (img.isBackup() ? " (from backup URL)" : "");
+        int statusCode = error.statusCode;
+        String message = error.message + (img.isBackup() ? " (from backup URL)" : "");
         String cause = "";
 
-        if (error instanceof TimeoutError) {
-            cause = "Timeout";
-        } else if (error instanceof NoConnectionError) {
-            cause = "No connection";
-        } else if (error instanceof AuthFailureError) { // 403's fall in this category
-            cause = "Auth failure";
-        } else if (error instanceof ServerError) { // 404's fall in this category
-            cause = "Server error";
-        } else if (error instanceof NetworkError) {
-            cause = "Network error";
-        } else if (error instanceof ParseError) {
-            cause = "Network parse error";
+        switch (error.type) {
+            case RequestOrder.NetworkError.Type.TIMEOUT:
+                cause = "Timeout";
+                break;
+            case RequestOrder.NetworkError.Type.NO_CONNECTION:
+                cause = "No connection";
+                break;
+            case RequestOrder.NetworkError.Type.AUTH_FAILURE: // 403's fall in this category
+                cause = "Auth failure";
+                break;
+            case RequestOrder.NetworkError.Type.SERVER: // 404's fall in this category
+                cause = "Server error";
+                break;
+            case RequestOrder.NetworkError.Type.NETWORK:
+                cause = "Network error";
+                break;
+            case RequestOrder.NetworkError.Type.PARSE:
+                cause = "Network parse error";
+                break;
+            default:
+                // Nothing
         }
 
-        Timber.d(error);
+        Timber.d("%s : %s", cause, message);
 
         updateImageProperties(img, false, "");
         logErrorRecord(content.getId(), ErrorType.NETWORKING, img.getUrl(), img.getName(), cause + "; HTTP statusCode=" + statusCode + "; message=" + message);
@@ -980,8 +1491,8 @@ public class ContentDownloadWorker extends BaseWorker {
         ImageListParser parser = ContentParserFactory.getInstance().getImageListParser(site);
         Chapter chp = img.getLinkedChapter();
 
-        // per Volley behaviour, this method is called on the UI thread
-        // -> need to create a new thread to do a network call
+        // this method is called on one of the download engine's threads
+        // -> need to create a new thread to do a network call without holding a download slot
         compositeDisposable.add(
                 Single.fromCallable(() -> parser.parseBackupUrl(backupUrl, requestHeaders, img.getOrder(), content.getQtyPages(), chp))
                         .subscribeOn(Schedulers.io())
@@ -1011,17 +1522,26 @@ public class ContentDownloadWorker extends BaseWorker {
         } else Timber.w("Failed to parse backup URL");
     }
 
-    // TODO doc
-    private void downloadAndUnzipUgoira(
+    /**
+     * Download the given ugoira (Pixiv animation) and assemble its frames into an animated GIF or WEBP
+     * NB : Frames are read straight from the downloaded archive; they're never extracted to storage
+     *
+     * @param img  Ugoira to download
+     * @param dir  Folder of the book to save the animation to
+     * @param site Site to download the ugoira from
+     */
+    private void downloadAndAssembleUgoira(
             @NonNull final ImageFile img,
             @NonNull final DocumentFile dir,
             @NonNull final Site site) {
         boolean isError = false;
+        boolean isResumable = false;
         String errorMsg = "";
 
         File ugoiraCacheFolder = FileHelper.getOrCreateCacheFolder(getApplicationContext(), Consts.UGOIRA_CACHE_FOLDER + File.separator + img.getId());
         if (ugoiraCacheFolder != null) {
             String targetFileName = img.getName();
+            AtomicBoolean interruption = getBookInterruption(img.getContent().getTargetId());
             try {
                 // == Download archive
                 ImmutablePair<File, String> result = DownloadHelper.downloadToFile(
@@ -1032,67 +1552,60 @@ public class ContentDownloadWorker extends BaseWorker {
                         ugoiraCacheFolder,
                         targetFileName,
                         ArchiveHelper.ZIP_MIME_TYPE,
-                        downloadInterrupted,
-                        null
-                );
-
-                // == Extract all frames
-                ArchiveHelper.extractArchiveEntries(
-                        getApplicationContext(),
-                        Uri.fromFile(result.left),
-                        ugoiraCacheFolder,
-                        null, // Extract everything; keep original names
-                        downloadInterrupted,
+                        interruption,
                         null
                 );
 
-                // == Build the GIF using download params and extracted pics
-                List<ImmutablePair<Uri, Integer>> frames = new ArrayList<>();
-
                 // Get frame information
                 Map<String, String> downloadParams = ContentHelper.parseDownloadParams(img.getDownloadParams());
                 String ugoiraFramesStr = downloadParams.get(ContentHelper.KEY_DL_PARAMS_UGOIRA_FRAMES);
                 List<Pair<String, Integer>> ugoiraFrames = JsonHelper.jsonToObject(ugoiraFramesStr, PixivIllustMetadata.UGOIRA_FRAMES_TYPE);
-
-                // Map frame name to the downloaded file
-                if (ugoiraFrames != null) {
-                    for (Pair<String, Integer> frame : ugoiraFrames) {
-                        File[] files = ugoiraCacheFolder.listFiles(pathname -> pathname.getName().endsWith(frame.first));
-                        if (files != null && files.length > 0) {
-                            frames.add(new ImmutablePair<>(Uri.fromFile(files[0]), frame.second));
-                        }
-                    }
-                }
-
-                // Assemble the GIF
-                Uri ugoiraGifFile = ImageHelper.assembleGif(
-                        getApplicationContext(),
+                if (null == ugoiraFrames) throw new IOException("No ugoira frames information");
+
+                // == Build the animation straight from the archive, using download params
+                boolean asWebp = (Preferences.Constant.UGOIRA_FORMAT_WEBP == Preferences.getUgoiraFormat());
+                String mimeType = asWebp ? ImageHelper.MIME_IMAGE_WEBP : ImageHelper.MIME_IMAGE_GIF;
+                File ugoiraFile = ImageHelper.assembleAnimationFromArchive(
+                        result.left,
+                        ugoiraFrames,
                         ugoiraCacheFolder,
-                        frames
+                        asWebp,
+                        interruption
                 );
 
                 // Save it to the book folder
                 Uri finalImgUri = FileHelper.copyFile(
                         getApplicationContext(),
-                        ugoiraGifFile,
+                        Uri.fromFile(ugoiraFile),
                         dir.getUri(),
-                        ImageHelper.MIME_IMAGE_GIF,
-                        img.getName() + ".gif"
+                        mimeType,
+                        img.getName() + (asWebp ? ".webp" : ".gif")
                 );
                 if (finalImgUri != null) {
-                    img.setMimeType(ImageHelper.MIME_IMAGE_GIF);
-                    img.setSize(FileHelper.fileSizeFromUri(getApplicationContext(), ugoiraGifFile));
+                    img.setMimeType(mimeType);
+                    img.setSize(ugoiraFile.length());
                     updateImageProperties(img, true, finalImgUri.toString());
                 } else
                     throw new IOException("Couldn't copy result ugoira file");
+            } catch (DownloadInterruptedException e) {
+                // Not an error; the partially downloaded archive is kept to resume its download later
+                Timber.d("Download interrupted - Ugoira %s not saved", img.getUrl());
+                return;
+            } catch (IOException e) {
+                // Network errors included; the partially downloaded archive is kept to resume its download later
+                Timber.w(e);
+                isError = true;
+                isResumable = true;
+                errorMsg = e.getMessage();
             } catch (Exception e) {
                 Timber.w(e);
                 isError = true;
                 errorMsg = e.getMessage();
-            } finally {
-                if (!ugoiraCacheFolder.delete())
-                    Timber.w("Couldn't delete ugoira folder %s", ugoiraCacheFolder.getAbsolutePath());
             }
+            if (isResumable)
+                DownloadHelper.removeAllButPartialDownloads(ugoiraCacheFolder);
+            else if (!FileUtils.deleteQuietly(ugoiraCacheFolder))
+                Timber.w("Couldn't delete ugoira folder %s", ugoiraCacheFolder.getAbsolutePath());
             if (isError) {
                 updateImageProperties(img, false, "");
                 logErrorRecord(img.getContent().getTargetId(), ErrorType.IMG_PROCESSING, img.getUrl(), img.getName(), errorMsg);
@@ -1101,102 +1614,86 @@ public class ContentDownloadWorker extends BaseWorker {
     }
 
     /**
-     * Create the given file in the given destination folder, and write binary data to it
+     * Indicate if the download of the given book has been interrupted or paused
      *
-     * @param img           ImageFile that is being processed
-     * @param dir           Destination folder
-     * @param contentType   Content type of the image (because some sources don't serve images with extensions)
-     * @param binaryContent Binary content of the image
-     * @throws IOException IOException if image cannot be saved at given location
+     * @param contentId ID of the book to test
+     * @return True if the download of the given book has been interrupted or paused
      */
-    @Nullable
-    private DocumentFile processAndSaveImage(@NonNull ImageFile img,
-                                             @NonNull DocumentFile dir,
-                                             @Nullable String contentType,
-                                             byte[] binaryContent) throws IOException, UnsupportedContentException {
-
-        if (!dir.exists()) {
-            // NB : Should not raise an exception here because that's what happens when some previously queued downloads are completed
-            // after a queued book has been manually deleted (and its folder with it)
-            Timber.w("processAndSaveImage : Directory %s does not exist - image not saved", dir.getUri().toString());
-            return null;
-        }
-
-        img.setSize((null == binaryContent) ? 0 : binaryContent.length);
-
-        // Determine the extension of the file
-        String fileExt = null;
-        String mimeType = null;
+    private boolean isDownloadStopped(long contentId) {
+        return isBookInterrupted(contentId) || ContentQueueManager.getInstance().isQueuePaused();
+    }
 
-        // Check for picture validity if it's < 1KB (might be plain text or HTML if things have gone wrong... or a small GIF! )
-        if (img.getSize() < 1024 && binaryContent != null) {
-            mimeType = ImageHelper.getMimeTypeFromPictureBinary(binaryContent);
-            if (mimeType.isEmpty() || mimeType.equals(ImageHelper.MIME_IMAGE_GENERIC)) {
-                Timber.i("Small non-image data received from %s", img.getUrl());
-                throw new UnsupportedContentException(String.format("Small non-image data received from %s - data not processed", img.getUrl()));
-            }
-            fileExt = FileHelper.getExtensionFromMimeType(mimeType);
+    /**
+     * Get the interruption flag of the given book
+     *
+     * @param contentId ID of the book to get the interruption flag for
+     * @return Interruption flag of the given book
+     */
+    private AtomicBoolean getBookInterruption(long contentId) {
+        AtomicBoolean result = bookInterruptions.get(contentId);
+        if (null == result) {
+            bookInterruptions.putIfAbsent(contentId, new AtomicBoolean(downloadInterrupted.get()));
+            result = bookInterruptions.get(contentId);
         }
+        return result;
+    }
 
-        // Use the Content-type contained in the HTTP headers of the response
-        if (null != contentType) {
-            mimeType = HttpHelper.cleanContentType(contentType).first;
-            // Ignore neutral binary content-type
-            if (!contentType.equalsIgnoreCase(FileHelper.DEFAULT_MIME_TYPE)) {
-                fileExt = FileHelper.getExtensionFromMimeType(contentType);
-                Timber.v("Using content-type %s to determine file extension -> %s", contentType, fileExt);
-            }
-        }
-        // Content-type has not been useful to determine the extension => See if the URL contains an extension
-        if (null == fileExt || fileExt.isEmpty() || fileExt.equalsIgnoreCase("bin")) {
-            fileExt = HttpHelper.getExtensionFromUri(img.getUrl());
-            mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(fileExt);
-            Timber.v("Using url to determine file extension (content-type was %s) for %s -> %s", contentType, img.getUrl(), fileExt);
-        }
-        // No extension detected in the URL => Read binary header of the file to detect known formats
-        // If PNG, peek into the file to see if it is an animated PNG or not (no other way to do that)
-        if (binaryContent != null && (fileExt.isEmpty() || fileExt.equals("png"))) {
-            mimeType = ImageHelper.getMimeTypeFromPictureBinary(binaryContent);
-            fileExt = FileHelper.getExtensionFromMimeType(mimeType);
-            Timber.v("Reading headers to determine file extension for %s -> %s (from detected mime-type %s)", img.getUrl(), fileExt, mimeType);
-        }
-        // If all else fails, fall back to jpg as default
-        if (null == fileExt || fileExt.isEmpty()) {
-            fileExt = "jpg";
-            mimeType = ImageHelper.MIME_IMAGE_JPEG;
-            Timber.d("Using default extension for %s -> %s", img.getUrl(), fileExt);
-        }
-        if (null == mimeType) mimeType = ImageHelper.MIME_IMAGE_GENERIC;
-        img.setMimeType(mimeType);
+    private boolean isBookInterrupted(long contentId) {
+        if (downloadInterrupted.get()) return true;
+        AtomicBoolean interruption = bookInterruptions.get(contentId);
+        return interruption != null && interruption.get();
+    }
 
-        if (!ImageHelper.isImageExtensionSupported(fileExt))
-            throw new UnsupportedContentException(String.format("Unsupported extension %s for %s - data not processed", fileExt, img.getUrl()));
+    private boolean isBookCanceled(long contentId) {
+        return downloadCanceled.get() || canceledBooks.contains(contentId);
+    }
 
-        return saveImage(dir, img.getName() + "." + fileExt, mimeType, binaryContent);
+    /**
+     * Interrupt the download of the given book and cancel its requests, leaving the other books untouched
+     *
+     * @param contentId ID of the book to interrupt
+     * @param cancel    True if the book is canceled; false if it is skipped (i.e. still in the queue)
+     */
+    private void interruptBook(long contentId, boolean cancel) {
+        if (cancel) canceledBooks.add(contentId);
+        getBookInterruption(contentId).set(true);
+        requestQueueManager.cancelRequests(contentId);
+    }
+
+    private void resetBookInterruption(long contentId) {
+        canceledBooks.remove(contentId);
+        bookInterruptions.put(contentId, new AtomicBoolean(downloadInterrupted.get()));
     }
 
     /**
-     * Create the given file in the given destination folder, and write binary data to it
+     * Get the books being downloaded that aren't among the first books of the queue anymore
+     * (e.g. the queue has been reordered)
      *
-     * @param dir           Destination folder
-     * @param fileName      Name of the file to write (with the extension)
-     * @param binaryContent Binary content of the image
-     * @throws IOException IOException if image cannot be saved at given location
+     * @return Progress of the books being downloaded that aren't among the first books of the queue
      */
-    private DocumentFile saveImage(
-            @NonNull DocumentFile dir,
-            @NonNull String fileName,
-            @NonNull String mimeType,
-            byte[] binaryContent) throws IOException {
-        DocumentFile file = FileHelper.findOrCreateDocumentFile(getApplicationContext(), dir, mimeType, fileName);
-        if (null == file)
-            throw new IOException(String.format("Failed to create document %s under %s", fileName, dir.getUri().toString()));
-        FileHelper.saveBinary(getApplicationContext(), file.getUri(), binaryContent);
-        return file;
+    private List<DownloadProgress> getDownloadsOutOfFirstPlaces() {
+        int maxParallelBooks = Math.max(1, Preferences.getDownloadParallelBooks());
+        Set<Long> firstIds = new HashSet<>();
+        for (QueueRecord record : dao.selectQueue()) {
+            if (firstIds.size() >= maxParallelBooks) break;
+            firstIds.add(record.getContent().getTargetId());
+        }
+        List<DownloadProgress> result = new ArrayList<>();
+        for (DownloadProgress progress : activeDownloads)
+            if (!firstIds.contains(progress.getContent().getId())) result.add(progress);
+        return result;
+    }
+
+    private void pauseBook(long contentId) {
+        Content content = dao.selectContent(contentId);
+        if (content != null && StatusContent.DOWNLOADING == content.getStatus()) {
+            content.setStatus(StatusContent.PAUSED);
+            dao.insertContentCore(content);
+        }
     }
 
     /**
-     * Update given image properties in DB
+     * Update given image properties in DB (through the write-behind buffer) and in the progress counters
      *
      * @param img     Image to update
      * @param success True if download is successful; false if download failed
@@ -1206,8 +1703,20 @@ public class ContentDownloadWorker extends BaseWorker {
         img.setStatus(success ? StatusContent.DOWNLOADED : StatusContent.ERROR);
         img.setFileUri(uriStr);
         if (success) img.setDownloadParams("");
-        if (img.getId() > 0)
-            dao.updateImageFileStatusParamsMimeTypeUriSize(img); // because thumb image isn't in the DB
+        if (img.getId() > 0) { // because thumb image isn't in the DB
+            imageWriteBuffer.add(img);
+            DownloadJournal journal = journals.get(img.getContent().getTargetId());
+            if (journal != null) {
+                if (success) journal.recordDone(img);
+                else journal.recordFailed(img.getId());
+            }
+
+            DownloadProgress progress = getActiveDownload(img.getContent().getTargetId());
+            if (progress != null) {
+                progress.recordPage(success, success ? img.getSize() : 0);
+                if (progress == getLeadDownload()) publishProgress(progress, false);
+            }
+        }
     }
 
     /**
@@ -1221,21 +1730,26 @@ public class ContentDownloadWorker extends BaseWorker {
             case DownloadEvent.Type.EV_PAUSE:
                 dao.updateContentStatus(StatusContent.DOWNLOADING, StatusContent.PAUSED);
                 requestQueueManager.cancelQueue();
+                imageWriteBuffer.flush();
                 ContentQueueManager.getInstance().pauseQueue();
                 notificationManager.cancel();
                 break;
             case DownloadEvent.Type.EV_CANCEL:
-                requestQueueManager.cancelQueue();
-                downloadCanceled.set(true);
-                downloadInterrupted.set(true);
+                // Only the canceled book stops; the others go on downloading
+                DownloadProgress lead = getLeadDownload();
+                if (event.content != null) interruptBook(event.content.getId(), true);
+                else if (lead != null) interruptBook(lead.getContent().getId(), true);
+                imageWriteBuffer.flush();
                 // Tracking Event (Download Canceled)
                 HentoidApp.trackDownloadEvent("Cancelled");
                 break;
             case DownloadEvent.Type.EV_SKIP:
-                dao.updateContentStatus(StatusContent.DOWNLOADING, StatusContent.PAUSED);
-                requestQueueManager.cancelQueue();
-                downloadSkipped.set(true);
-                downloadInterrupted.set(true);
+                // Only the books that have left the first places of the queue stop; the others go on downloading
+                for (DownloadProgress progress : getDownloadsOutOfFirstPlaces()) {
+                    pauseBook(progress.getContent().getId());
+                    interruptBook(progress.getContent().getId(), false);
+                }
+                imageWriteBuffer.flush();
                 // Tracking Event (Download Skipped)
                 HentoidApp.trackDownloadEvent("Skipped");
                 break;
@@ -0,0 +1,243 @@
+package me.devsaki.hentoid.workers;
+
+import android.content.Context;
+import android.util.Log;
+import android.webkit.CookieManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.work.Data;
+import androidx.work.WorkerParameters;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.Completable;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.schedulers.Schedulers;
+import me.devsaki.hentoid.R;
+import me.devsaki.hentoid.database.CollectionDAO;
+import me.devsaki.hentoid.database.ObjectBoxDAO;
+import me.devsaki.hentoid.database.domains.Attribute;
+import me.devsaki.hentoid.database.domains.Content;
+import me.devsaki.hentoid.enums.Site;
+import me.devsaki.hentoid.json.sources.EHentaiGalleriesMetadata;
+import me.devsaki.hentoid.json.sources.EHentaiGalleryQuery;
+import me.devsaki.hentoid.notification.import_.MetadataRefreshCompleteNotification;
+import me.devsaki.hentoid.notification.import_.MetadataRefreshProgressNotification;
+import me.devsaki.hentoid.notification.import_.MetadataRefreshStartNotification;
+import me.devsaki.hentoid.retrofit.sources.EHentaiServer;
+import me.devsaki.hentoid.util.ContentHelper;
+import me.devsaki.hentoid.util.Helper;
+import me.devsaki.hentoid.util.notification.Notification;
+import retrofit2.Response;
+
+
+/**
+ * Worker responsible for refreshing the metadata of the E(x)-Hentai books of the library
+ * <p>
+ * Books are described by batches of EHentaiGalleryQuery.MAX_GALLERIES through E-Hentai's gdata API,
+ * instead of parsing their gallery pages one by one
+ * <p>
+ * Title, upload date and attributes are refreshed; only the books whose metadata have actually
+ * changed are saved (one DB transaction per batch) and have their JSON file rewritten
+ */
+public class MetadataRefreshWorker extends BaseWorker {
+
+    // E-Hentai API guidelines : bursts of 4-5 sequential requests, then wait ~5 seconds
+    private static final int API_BURST_SIZE = 4;
+    private static final int API_BURST_PAUSE_MS = 5000;
+
+    private CollectionDAO dao;
+    private int totalItems = 0;
+    private int nbUpdated = 0;
+    private int nbUnchanged = 0;
+    private int nbKO = 0;
+    private int nbRequests = 0;
+
+    private final CompositeDisposable notificationDisposables = new CompositeDisposable();
+
+
+    public MetadataRefreshWorker(
+            @NonNull Context context,
+            @NonNull WorkerParameters parameters) {
+        super(context, parameters, R.id.metadata_refresh_service, "metadata-refresh");
+    }
+
+    public static boolean isRunning(@NonNull Context context) {
+        return isRunning(context, R.id.metadata_refresh_service);
+    }
+
+    @Override
+    Notification getStartNotification() {
+        return new MetadataRefreshStartNotification();
+    }
+
+    @Override
+    void onInterrupt() {
+        notificationDisposables.clear();
+    }
+
+    @Override
+    void onClear() {
+        notificationDisposables.clear();
+        if (dao != null) dao.cleanup();
+    }
+
+    @Override
+    void getToWork(@NonNull Data input) {
+        Context context = getApplicationContext();
+        dao = new ObjectBoxDAO(context);
+
+        List<Long> ehentaiIds = dao.selectStoredContentIdsFromSites(Collections.singletonList(Site.EHENTAI));
+        List<Long> exhentaiIds = dao.selectStoredContentIdsFromSites(Collections.singletonList(Site.EXHENTAI));
+        totalItems = ehentaiIds.size() + exhentaiIds.size();
+        trace(Log.INFO, "Books to refresh : %d", totalItems);
+
+        refreshSite(context, Site.EHENTAI, ehentaiIds, EHentaiServer.ehentaiApi, null);
+        if (!isStopped())
+            refreshSite(context, Site.EXHENTAI, exhentaiIds, EHentaiServer.exentaiApi, CookieManager.getInstance().getCookie(".exhentai.org"));
+
+        trace(Log.INFO, "Refresh complete : %d updated, %d unchanged, %d failed (%d requests)", nbUpdated, nbUnchanged, nbKO, nbRequests);
+        notificationManager.notify(new MetadataRefreshCompleteNotification(nbUpdated, nbUnchanged, nbKO));
+    }
+
+    private void refreshSite(
+            @NonNull Context context,
+            @NonNull Site site,
+            @NonNull List<Long> contentIds,
+            @NonNull EHentaiServer.Api api,
+            @Nullable String cookies) {
+        for (int i = 0; i < contentIds.size(); i += EHentaiGalleryQuery.MAX_GALLERIES) {
+            if (isStopped()) return;
+            List<Long> batchIds = contentIds.subList(i, Math.min(i + EHentaiGalleryQuery.MAX_GALLERIES, contentIds.size()));
+            refreshBatch(context, site, dao.selectContent(Helper.getPrimitiveArrayFromList(batchIds)), api, cookies);
+            notifyProcessProgress(context);
+        }
+    }
+
+    private void refreshBatch(
+            @NonNull Context context,
+            @NonNull Site site,
+            @NonNull List<Content> contents,
+            @NonNull EHentaiServer.Api api,
+            @Nullable String cookies) {
+        // Index the books by gallery ID
+        Map<String, Content> contentByGid = new HashMap<>();
+        List<ImmutablePair<String, String>> galleries = new ArrayList<>();
+        for (Content c : contents) {
+            ImmutablePair<String, String> gallery = getGallery(c);
+            if (null == gallery) {
+                trace(Log.WARN, "Unexpected URL for book %d : %s", c.getId(), c.getUrl());
+                nbKO++;
+                continue;
+            }
+            contentByGid.put(gallery.left, c);
+            galleries.add(gallery);
+        }
+        if (galleries.isEmpty()) return;
+
+        EHentaiGalleriesMetadata metadata;
+        try {
+            if (nbRequests > 0 && 0 == nbRequests % API_BURST_SIZE) Helper.pause(API_BURST_PAUSE_MS);
+            nbRequests++;
+            Response<EHentaiGalleriesMetadata> response = api.getGalleryMetadata(new EHentaiGalleryQuery(galleries), cookies).execute();
+            metadata = response.body();
+            if (!response.isSuccessful() || null == metadata)
+                throw new IOException("Unexpected API response : " + response.code());
+        } catch (IOException e) {
+            trace(Log.WARN, "Metadata of %d %s books couldn't be retrieved : %s", galleries.size(), site.getDescription(), e.getMessage());
+            nbKO += galleries.size();
+            return;
+        }
+
+        List<Content> updatedContents = new ArrayList<>();
+        for (EHentaiGalleriesMetadata.EHentaiGalleryMetadata gallery : metadata.getGalleries()) {
+            Content c = contentByGid.remove(gallery.getGid());
+            if (null == c) continue;
+            if (gallery.isError()) {
+                trace(Log.WARN, "Gallery not found for book %d : %s", c.getId(), c.getUrl());
+                nbKO++;
+                continue;
+            }
+            if (applyMetadata(c, gallery.update(new Content(), c.getGalleryUrl(), site, false))) {
+                updatedContents.add(c);
+                nbUpdated++;
+            } else {
+                nbUnchanged++;
+            }
+        }
+        // Galleries the API didn't answer for
+        nbKO += contentByGid.size();
+
+        if (updatedContents.isEmpty()) return;
+        dao.insertContents(updatedContents);
+        for (Content c : updatedContents) ContentHelper.persistJson(context, c);
+    }
+
+    /**
+     * Get the gallery ID and key of the given E(x)-Hentai book
+     *
+     * @param content Book to get the gallery ID and key of (URL format : /[gid]/[key])
+     * @return Gallery ID and key of the given book; null if its URL has an unexpected format
+     */
+    @Nullable
+    private static ImmutablePair<String, String> getGallery(@NonNull Content content) {
+        String[] parts = content.getUrl().split("/");
+        if (parts.length < 3 || parts[1].isEmpty() || parts[2].isEmpty()) return null;
+        return new ImmutablePair<>(parts[1], parts[2]);
+    }
+
+    /**
+     * Copy the refreshed metadata of the given book into it
+     *
+     * @param content   Book to update
+     * @param refreshed Book built from the latest metadata
+     * @return True if the book has been modified; false if its metadata were already up to date
+     */
+    private static boolean applyMetadata(@NonNull Content content, @NonNull Content refreshed) {
+        boolean changed = false;
+        if (!refreshed.getTitle().isEmpty() && !refreshed.getTitle().equals(content.getTitle())) {
+            content.setTitle(refreshed.getTitle());
+            changed = true;
+        }
+        if (refreshed.getUploadDate() > 0 && refreshed.getUploadDate() != content.getUploadDate()) {
+            content.setUploadDate(refreshed.getUploadDate());
+            changed = true;
+        }
+        if (!getAttributeKeys(refreshed.getAttributes()).equals(getAttributeKeys(content.getAttributes()))) {
+            content.putAttributes(refreshed.getAttributeMap());
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static Set<String> getAttributeKeys(@Nullable List<Attribute> attributes) {
+        Set<String> result = new HashSet<>();
+        if (attributes != null)
+            for (Attribute a : attributes)
+                result.add(a.getType().getCode() + "/" + a.getName().toLowerCase().trim());
+        return result;
+    }
+
+    private void notifyProcessProgress(@NonNull Context context) {
+        notificationDisposables.add(Completable.fromRunnable(() -> doNotifyProcessProgress(context))
+                .subscribeOn(Schedulers.computation())
+                .subscribe(
+                        notificationDisposables::clear
+                )
+        );
+    }
+
+    private void doNotifyProcessProgress(@NonNull Context context) {
+        notificationManager.notify(new MetadataRefreshProgressNotification(context.getResources().getString(R.string.metadata_refresh_progress, nbUpdated), nbUpdated + nbUnchanged + nbKO, totalItems));
+    }
+}
@@ -18,6 +18,7 @@ public class DeleteData {
     private static final String KEY_CONTENT_IDS = "contentIds";
     private static final String KEY_CONTENT_PURGE_IDS = "contentPurgeIds";
     private static final String KEY_CONTENT_PURGE_KEEPCOVERS = "contentPurgeKeepCovers";
+    private static final String KEY_CONTENT_PURGE_KEEP_REVALIDATABLE = "contentPurgeKeepRevalidatable";
     private static final String KEY_GROUP_IDS = "groupIds";
     private static final String KEY_QUEUE_IDS = "queueIds";
     private static final String KEY_DELETE_GROUPS_ONLY = "deleteGroupsOnly";
@@ -43,6 +44,10 @@ public class DeleteData {
             builder.putBoolean(KEY_CONTENT_PURGE_KEEPCOVERS, value);
         }
 
+        public void setContentPurgeKeepRevalidatable(boolean value) {
+            builder.putBoolean(KEY_CONTENT_PURGE_KEEP_REVALIDATABLE, value);
+        }
+
         public void setGroupIds(List<Long> value) {
             builder.putLongArray(KEY_GROUP_IDS, Helper.getPrimitiveArrayFromList(value));
         }
@@ -88,6 +93,10 @@ public class DeleteData {
             return data.getBoolean(KEY_CONTENT_PURGE_KEEPCOVERS, false);
         }
 
+        public boolean getContentPurgeKeepRevalidatable() {
+            return data.getBoolean(KEY_CONTENT_PURGE_KEEP_REVALIDATABLE, false);
+        }
+
         public long[] getGroupIds() {
             long[] storedValue = data.getLongArray(KEY_GROUP_IDS);
             if (null != storedValue) return storedValue;
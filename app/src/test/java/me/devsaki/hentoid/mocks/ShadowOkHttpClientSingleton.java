@@ -0,0 +1,60 @@
+package me.devsaki.hentoid.mocks;
+
+import androidx.annotation.NonNull;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.Resetter;
+
+import java.util.concurrent.TimeUnit;
+
+import me.devsaki.hentoid.util.network.OkHttpClientSingleton;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Shadow of OkHttpClientSingleton that sends every request to a local MockWebServer, whatever its host
+ * <p>
+ * Use with @Config(shadows = ShadowOkHttpClientSingleton.class, instrumentedPackages = "me.devsaki.hentoid.util.network")
+ * and call {@link #serveFrom(MockWebServer)} before running the code under test
+ */
+@Implements(OkHttpClientSingleton.class)
+public class ShadowOkHttpClientSingleton {
+
+    private static OkHttpClient client = null;
+
+
+    /**
+     * Send all requests to the given server
+     *
+     * @param server Server to send requests to
+     */
+    public static synchronized void serveFrom(@NonNull MockWebServer server) {
+        client = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    Request request = chain.request();
+                    HttpUrl local = request.url().newBuilder().scheme("http").host(server.getHostName()).port(server.getPort()).build();
+                    return chain.proceed(request.newBuilder().url(local).build());
+                })
+                .build();
+    }
+
+    @Resetter
+    public static synchronized void clearServer() {
+        client = null;
+    }
+
+    @Implementation
+    protected static synchronized OkHttpClient getInstance(int connectTimeout, int ioTimeout, boolean followRedirects) {
+        if (null == client)
+            throw new IllegalStateException("No server to send requests to; call serveFrom first");
+        return client.newBuilder()
+                .followRedirects(followRedirects)
+                .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(ioTimeout, TimeUnit.MILLISECONDS)
+                .writeTimeout(ioTimeout, TimeUnit.MILLISECONDS)
+                .build();
+    }
+}
@@ -0,0 +1,131 @@
+package me.devsaki.hentoid.parsers;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.threeten.bp.Instant;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.devsaki.hentoid.database.domains.ImageFile;
+import me.devsaki.hentoid.enums.StatusContent;
+import me.devsaki.hentoid.parsers.images.EHentaiParser;
+import me.devsaki.hentoid.parsers.images.HitomiParser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ParsedImageListCacheTest {
+
+    private static final String GALLERY_URL = "https://e-hentai.org/g/1234/abcdef/";
+
+    private Context context;
+    private long now;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        now = Instant.now().toEpochMilli();
+        ParsedImageListCache.invalidate(context, GALLERY_URL);
+    }
+
+    private static List<ImageFile> buildImages() {
+        List<ImageFile> result = new ArrayList<>();
+        result.add(new ImageFile().setOrder(0).setUrl("https://ehgt.org/cover.jpg").setName("thumb").setIsCover(true).setStatus(StatusContent.SAVED));
+        for (int i = 1; i <= 3; i++) {
+            ImageFile img = new ImageFile().setOrder(i).setUrl("").setName(String.valueOf(i)).setStatus(StatusContent.SAVED).setDownloadParams("{\"p\":\"" + i + "\"}");
+            img.setPageUrl("https://e-hentai.org/s/" + i);
+            result.add(img);
+        }
+        return result;
+    }
+
+    @Test
+    public void putAndGet() {
+        ParsedImageListCache.put(context, GALLERY_URL, EHentaiParser.class, buildImages(), now);
+
+        List<ImageFile> cached = ParsedImageListCache.get(context, GALLERY_URL, EHentaiParser.class, 3, now);
+        assertNotNull(cached);
+        assertEquals(4, cached.size());
+        assertTrue(cached.get(0).isCover());
+        assertEquals("https://ehgt.org/cover.jpg", cached.get(0).getUrl());
+        assertEquals(Integer.valueOf(2), cached.get(2).getOrder());
+        assertEquals("https://e-hentai.org/s/2", cached.get(2).getPageUrl());
+        assertEquals("{\"p\":\"2\"}", cached.get(2).getDownloadParams());
+        assertEquals(StatusContent.SAVED, cached.get(2).getStatus());
+
+        // Unknown number of pages
+        assertNotNull(ParsedImageListCache.get(context, GALLERY_URL, EHentaiParser.class, 0, now));
+    }
+
+    @Test
+    public void key() {
+        ParsedImageListCache.put(context, GALLERY_URL, EHentaiParser.class, buildImages(), now);
+
+        // Other gallery
+        assertNull(ParsedImageListCache.get(context, GALLERY_URL + "other/", EHentaiParser.class, 3, now));
+        // Other parser
+        assertNull(ParsedImageListCache.get(context, GALLERY_URL, HitomiParser.class, 3, now));
+        // The entry is obsolete once another parser has asked for it
+        assertNull(ParsedImageListCache.get(context, GALLERY_URL, EHentaiParser.class, 3, now));
+    }
+
+    @Test
+    public void pagesChanged() {
+        ParsedImageListCache.put(context, GALLERY_URL, EHentaiParser.class, buildImages(), now);
+
+        assertNull(ParsedImageListCache.get(context, GALLERY_URL, EHentaiParser.class, 4, now));
+        assertNull(ParsedImageListCache.get(context, GALLERY_URL, EHentaiParser.class, 3, now));
+    }
+
+    @Test
+    public void ttl() {
+        ParsedImageListCache.put(context, GALLERY_URL, EHentaiParser.class, buildImages(), now);
+
+        assertNotNull(ParsedImageListCache.get(context, GALLERY_URL, EHentaiParser.class, 3, now + ParsedImageListCache.TTL_MS));
+        assertNull(ParsedImageListCache.get(context, GALLERY_URL, EHentaiParser.class, 3, now + ParsedImageListCache.TTL_MS + 1));
+        // Expired entries are removed
+        assertNull(ParsedImageListCache.get(context, GALLERY_URL, EHentaiParser.class, 3, now));
+    }
+
+    @Test
+    public void retry() {
+        ParsedImageListCache.put(context, GALLERY_URL, EHentaiParser.class, buildImages(), now);
+
+        // The 1st retry is served from the cache...
+        ParsedImageListCache.recordRetry(context, GALLERY_URL);
+        List<ImageFile> cached = ParsedImageListCache.get(context, GALLERY_URL, EHentaiParser.class, 3, now);
+        assertNotNull(cached);
+        assertEquals(4, cached.size());
+
+        // ...but not the 2nd one, as the cached pages have failed again
+        ParsedImageListCache.recordRetry(context, GALLERY_URL);
+        assertNull(ParsedImageListCache.get(context, GALLERY_URL, EHentaiParser.class, 3, now));
+
+        // A new parsing can be retried from the cache again
+        ParsedImageListCache.put(context, GALLERY_URL, EHentaiParser.class, buildImages(), now);
+        ParsedImageListCache.recordRetry(context, GALLERY_URL);
+        assertNotNull(ParsedImageListCache.get(context, GALLERY_URL, EHentaiParser.class, 3, now));
+
+        // Retrying an uncached gallery doesn't do anything
+        ParsedImageListCache.recordRetry(context, GALLERY_URL + "other/");
+        assertNull(ParsedImageListCache.get(context, GALLERY_URL + "other/", EHentaiParser.class, 3, now));
+    }
+
+    @Test
+    public void invalidate() {
+        ParsedImageListCache.put(context, GALLERY_URL, EHentaiParser.class, buildImages(), now);
+        ParsedImageListCache.invalidate(context, GALLERY_URL);
+
+        assertNull(ParsedImageListCache.get(context, GALLERY_URL, EHentaiParser.class, 3, now));
+    }
+}
@@ -0,0 +1,328 @@
+package me.devsaki.hentoid.parsers;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.firebase.FirebaseApp;
+import com.squareup.moshi.Types;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import me.devsaki.hentoid.database.domains.Content;
+import me.devsaki.hentoid.database.domains.ImageFile;
+import me.devsaki.hentoid.enums.Site;
+import me.devsaki.hentoid.mocks.ShadowOkHttpClientSingleton;
+import me.devsaki.hentoid.parsers.content.ContentParser;
+import me.devsaki.hentoid.parsers.content.ContentParserBinder;
+import me.devsaki.hentoid.retrofit.sources.LusciousServer;
+import me.devsaki.hentoid.retrofit.sources.PixivServer;
+import me.devsaki.hentoid.util.JsonHelper;
+import me.devsaki.hentoid.util.Preferences;
+import me.devsaki.hentoid.util.file.FileHelper;
+import me.devsaki.hentoid.util.network.HttpHelper;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Offline checks of the parsers against recorded site responses
+ * <p>
+ * Fixtures are listed in resources/parsers/fixtures.json; each of them describes a book, the responses
+ * the site serves for it (by path) and the expected parsing results. Requests of the parsers are
+ * redirected to a local MockWebServer, whatever their host (see ShadowOkHttpClientSingleton).
+ * - Content parsers run on the gallery page of the fixture, if any
+ * - Image list parsers run on the resulting book
+ * - Responses are served to requests with the same path and at least the same query parameters;
+ * the most specific one wins
+ * - Expected image URLs starting with ^ are regular expressions (e.g. for randomly picked servers)
+ * <p>
+ * Every supported site must have at least one fixture
+ * <p>
+ * Correctness is checked by default; parse latency and allocated bytes are only measured
+ * with : ./gradlew testDebugUnitTest -Pbenchmark --tests "*ParserFixtureTest"
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = ShadowOkHttpClientSingleton.class, instrumentedPackages = "me.devsaki.hentoid.util.network")
+public class ParserFixtureTest {
+
+    private static final String FIXTURES_FOLDER = "parsers/";
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int BENCHMARK_ITERATIONS = 20;
+
+    private MockWebServer server;
+    private final List<String> unservedRequests = Collections.synchronizedList(new ArrayList<>());
+
+    @SuppressWarnings({"unused", "MismatchedQueryAndUpdateOfCollection"})
+    private static class Fixture {
+        private String name;
+        private Site site;
+        private String url;
+        // Page the content parser runs on; the book is built from url and coverImageUrl if none
+        private String galleryPage;
+        private String coverImageUrl;
+        private Map<String, String> responses;
+        private Expected expected;
+    }
+
+    @SuppressWarnings({"unused", "MismatchedQueryAndUpdateOfCollection"})
+    private static class Expected {
+        private String title;
+        private Integer qtyPages;
+        private String coverImageUrl;
+        // URL of each image (page URL if the image URL is unknown yet), cover included
+        private List<String> images;
+    }
+
+    private static class Measure {
+        private final List<Long> durationsNs = new ArrayList<>();
+        private long allocatedBytes = 0;
+
+        void add(long durationNs, long allocated) {
+            durationsNs.add(durationNs);
+            allocatedBytes += allocated;
+        }
+
+        double getMedianMs() {
+            List<Long> sorted = new ArrayList<>(durationsNs);
+            Collections.sort(sorted);
+            return sorted.isEmpty() ? 0 : sorted.get(sorted.size() / 2) / 1e6;
+        }
+
+        double getAllocatedKbPerParse() {
+            return durationsNs.isEmpty() ? 0 : allocatedBytes / 1024.0 / durationsNs.size();
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        FirebaseApp.initializeApp(context);
+        Preferences.init(context);
+        HttpHelper.initUserAgents(context);
+
+        server = new MockWebServer();
+        server.start();
+        ShadowOkHttpClientSingleton.serveFrom(server);
+        // API clients keep the HTTP client they've been created with
+        LusciousServer.INSTANCE.init();
+        PixivServer.INSTANCE.init();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (server != null) server.shutdown();
+    }
+
+    @Test
+    public void parseFixtures() throws Exception {
+        List<String> diffs = new ArrayList<>();
+        for (Fixture f : loadFixtures()) {
+            serve(f);
+            Content content = parseContent(f);
+            List<ImageFile> images = parseImages(content);
+            for (String diff : compare(f, content, images)) diffs.add(f.name + " : " + diff);
+            for (String request : unservedRequests) diffs.add(f.name + " : unserved request " + request);
+            unservedRequests.clear();
+        }
+        assertTrue(diffs.size() + " parsing differences :\n" + TextUtils.join("\n", diffs), diffs.isEmpty());
+    }
+
+    @Test
+    public void everySiteHasFixtures() throws Exception {
+        Set<Site> sites = EnumSet.noneOf(Site.class);
+        for (Site s : Site.values()) if (s.isVisible()) sites.add(s);
+        for (Fixture f : loadFixtures()) sites.remove(f.site);
+        assertTrue("No fixture for " + sites, sites.isEmpty());
+    }
+
+    @Test
+    public void benchmarkFixtures() throws Exception {
+        Assume.assumeTrue("Benchmarks are only run with -Pbenchmark", Boolean.getBoolean("hentoid.benchmark"));
+
+        System.out.printf("%-30s %-12s %12s %16s%n", "Fixture", "Parser", "Median (ms)", "Allocated (KB)");
+        for (Fixture f : loadFixtures()) {
+            serve(f);
+            Measure contentMeasure = new Measure();
+            Measure imagesMeasure = new Measure();
+            for (int i = 0; i < WARMUP_ITERATIONS + BENCHMARK_ITERATIONS; i++) {
+                boolean record = i >= WARMUP_ITERATIONS;
+
+                long allocated = getAllocatedBytes();
+                long start = System.nanoTime();
+                Content content = parseContent(f);
+                if (record && f.galleryPage != null)
+                    contentMeasure.add(System.nanoTime() - start, getAllocatedBytes() - allocated);
+
+                allocated = getAllocatedBytes();
+                start = System.nanoTime();
+                parseImages(content);
+                if (record) imagesMeasure.add(System.nanoTime() - start, getAllocatedBytes() - allocated);
+            }
+            if (f.galleryPage != null)
+                System.out.printf("%-30s %-12s %12.2f %16.1f%n", f.name, "content", contentMeasure.getMedianMs(), contentMeasure.getAllocatedKbPerParse());
+            System.out.printf("%-30s %-12s %12.2f %16.1f%n", f.name, "image list", imagesMeasure.getMedianMs(), imagesMeasure.getAllocatedKbPerParse());
+        }
+        // NB : Allocations made by worker threads (e.g. parallel page crawling) aren't accounted for
+    }
+
+    private List<Fixture> loadFixtures() throws IOException {
+        List<Fixture> result = JsonHelper.jsonToObject(readResource("fixtures.json"), Types.newParameterizedType(List.class, Fixture.class));
+        assertTrue("No fixture found", result != null && !result.isEmpty());
+        return result;
+    }
+
+    private void serve(@NonNull Fixture f) throws IOException {
+        Map<HttpUrl, String> resources = new LinkedHashMap<>();
+        Map<String, String> bodies = new HashMap<>();
+        for (Map.Entry<String, String> entry : f.responses.entrySet()) {
+            resources.put(toUrl(entry.getKey()), entry.getValue());
+            bodies.put(entry.getValue(), readResource(entry.getValue()));
+        }
+
+        server.setDispatcher(new Dispatcher() {
+            @NonNull
+            @Override
+            public MockResponse dispatch(@NonNull RecordedRequest request) {
+                String path = normalizePath(request.getPath());
+                String resource = findResource(resources, toUrl(path));
+                if (null == resource) {
+                    unservedRequests.add(path);
+                    return new MockResponse().setResponseCode(404);
+                }
+                return new MockResponse().setHeader(HttpHelper.HEADER_CONTENT_TYPE, getMimeType(resource) + "; charset=utf-8").setBody(bodies.get(resource));
+            }
+        });
+    }
+
+    /**
+     * Find the resource to serve to the given request
+     *
+     * @param resources Resources to serve, by the URL they answer to
+     * @param request   URL of the request
+     * @return Resource with the same path as the request and the most query parameters the request has; null if none
+     */
+    @Nullable
+    private static String findResource(@NonNull Map<HttpUrl, String> resources, @NonNull HttpUrl request) {
+        String result = null;
+        int bestParams = -1;
+        for (Map.Entry<HttpUrl, String> entry : resources.entrySet()) {
+            HttpUrl url = entry.getKey();
+            if (!url.encodedPath().equals(request.encodedPath()) || url.querySize() <= bestParams) continue;
+            boolean matches = true;
+            for (String name : url.queryParameterNames())
+                if (!request.queryParameterValues(name).containsAll(url.queryParameterValues(name))) {
+                    matches = false;
+                    break;
+                }
+            if (matches) {
+                result = entry.getValue();
+                bestParams = url.querySize();
+            }
+        }
+        return result;
+    }
+
+    private static HttpUrl toUrl(@NonNull String path) {
+        return HttpUrl.get("http://localhost" + normalizePath(path));
+    }
+
+    private static String getMimeType(@NonNull String resource) {
+        if (resource.endsWith(".js")) return "application/javascript";
+        if (resource.endsWith(".json")) return "application/json";
+        if (resource.endsWith(".xml")) return "text/xml";
+        return "text/html";
+    }
+
+    private Content parseContent(@NonNull Fixture f) throws IOException {
+        if (null == f.galleryPage)
+            return new Content().setSite(f.site).setUrl(f.url).setCoverImageUrl(f.coverImageUrl);
+
+        Class<? extends ContentParser> c = ContentParserFactory.getInstance().getContentParserClass(f.site);
+        try (InputStream input = new ByteArrayInputStream(readResource(f.galleryPage).getBytes(StandardCharsets.UTF_8))) {
+            return ContentParserBinder.fromInputStream(c, input, f.url).toContent(f.url);
+        }
+    }
+
+    private List<ImageFile> parseImages(@NonNull Content content) throws Exception {
+        return ContentParserFactory.getInstance().getImageListParser(content).parseImageList(content);
+    }
+
+    private static List<String> compare(@NonNull Fixture f, @NonNull Content content, @NonNull List<ImageFile> images) {
+        List<String> result = new ArrayList<>();
+        Expected expected = f.expected;
+        if (expected.title != null && !expected.title.equals(content.getTitle()))
+            result.add(diff("title", expected.title, content.getTitle()));
+        if (expected.qtyPages != null && expected.qtyPages != content.getQtyPages())
+            result.add(diff("qtyPages", expected.qtyPages, content.getQtyPages()));
+        if (expected.coverImageUrl != null && !expected.coverImageUrl.equals(content.getCoverImageUrl()))
+            result.add(diff("coverImageUrl", expected.coverImageUrl, content.getCoverImageUrl()));
+        if (expected.images != null) {
+            List<String> actual = new ArrayList<>();
+            for (ImageFile img : images)
+                actual.add(img.getUrl().isEmpty() ? img.getPageUrl() : img.getUrl());
+            if (expected.images.size() != actual.size())
+                result.add(diff("number of images", expected.images.size(), actual.size()));
+            for (int i = 0; i < Math.min(expected.images.size(), actual.size()); i++)
+                if (!matches(expected.images.get(i), actual.get(i)))
+                    result.add(diff("image " + i, expected.images.get(i), actual.get(i)));
+        }
+        return result;
+    }
+
+    private static boolean matches(@NonNull String expected, @Nullable String actual) {
+        if (null == actual) return false;
+        if (expected.startsWith("^")) return actual.matches(expected);
+        return expected.equals(actual);
+    }
+
+    private static String diff(@NonNull String field, @Nullable Object expected, @Nullable Object actual) {
+        return String.format("%s expected [%s] but was [%s]", field, expected, actual);
+    }
+
+    private static String normalizePath(@Nullable String path) {
+        return (null == path) ? "" : path.replaceAll("/{2,}", "/");
+    }
+
+    private String readResource(@NonNull String name) throws IOException {
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream(FIXTURES_FOLDER + name)) {
+            if (null == input) throw new IOException("Missing fixture " + name);
+            return FileHelper.readStreamAsString(input);
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+}
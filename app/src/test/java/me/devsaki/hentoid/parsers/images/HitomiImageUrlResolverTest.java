@@ -0,0 +1,53 @@
+package me.devsaki.hentoid.parsers.images;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import me.devsaki.hentoid.json.sources.HitomiGalleryInfo;
+import me.devsaki.hentoid.util.JsonHelper;
+import me.devsaki.hentoid.util.exception.EmptyResultException;
+
+public class HitomiImageUrlResolverTest {
+
+    private static final String GG_JS = "'use strict';\n" +
+            "gg = {\n" +
+            "m: function(g) {\n" +
+            "var o = 0;\n" +
+            "switch (g) {\n" +
+            "case 1342:\n" +
+            "case 2817:\n" +
+            "o = 1; break;\n" +
+            "}\n" +
+            "return o;\n" +
+            "},\n" +
+            "s: function(h) { var m = /(..)(.)$/.exec(h); return parseInt(m[2]+m[1], 16).toString(10); },\n" +
+            "b: '1654321098/'\n" +
+            "};";
+
+    private static final String HASH_1 = "00000000000000000000000000000000000000000000000000000000000003e5";
+    private static final String HASH_2 = "0000000000000000000000000000000000000000000000000000000000000000";
+
+    @Test
+    public void getImageUrls() throws IOException, EmptyResultException {
+        String galleryJson = "{\"title\":\"test\",\"files\":[" +
+                "{\"hash\":\"" + HASH_1 + "\",\"name\":\"01.jpg\",\"haswebp\":1}," +
+                "{\"hash\":\"" + HASH_2 + "\",\"name\":\"02.png\",\"haswebp\":0}]}";
+        HitomiGalleryInfo gallery = JsonHelper.jsonToObject(galleryJson, HitomiGalleryInfo.class);
+
+        List<String> urls = HitomiImageUrlResolver.getImageUrls(gallery, HitomiImageUrlResolver.parseGgJs(GG_JS));
+
+        assertEquals(2, urls.size());
+        // 0x53e = 1342 is a listed case
+        assertEquals("https://ba.hitomi.la/webp/1654321098/1342/" + HASH_1 + ".webp", urls.get(0));
+        assertEquals("https://ab.hitomi.la/images/1654321098/0/" + HASH_2 + ".png", urls.get(1));
+    }
+
+    @Test(expected = EmptyResultException.class)
+    public void rejectUnknownGgJs() throws EmptyResultException {
+        HitomiImageUrlResolver.parseGgJs("gg = { m: function(g) { return g % 3; } };");
+    }
+}
@@ -0,0 +1,170 @@
+package me.devsaki.hentoid.util;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.firebase.FirebaseApp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.devsaki.hentoid.enums.Site;
+import me.devsaki.hentoid.util.network.HttpHelper;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class AdBlockerTest {
+
+    private static final int NB_CALLERS = 8;
+
+    // The verdicts cache outlives tests; make each test use its own URLs
+    private static final AtomicInteger testIndex = new AtomicInteger(0);
+
+    private MockWebServer server;
+    private AdBlocker adBlocker;
+    private String prefix;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        FirebaseApp.initializeApp(context);
+        Preferences.init(context);
+        HttpHelper.initUserAgents(context);
+
+        prefix = "/t" + testIndex.incrementAndGet() + "-" + System.currentTimeMillis();
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (null == path) return new MockResponse().setResponseCode(404);
+                if (path.endsWith("/moved.js"))
+                    return new MockResponse().setResponseCode(302).setHeader("Location", prefix + "/target.js");
+                if (path.endsWith("/evil.js"))
+                    return new MockResponse().setHeader("Content-Type", "application/javascript").setBody("var popunder = 'EVIL';");
+                return new MockResponse()
+                        .setHeader("Content-Type", "application/javascript")
+                        .setHeader("Set-Cookie", "session=abc")
+                        .setBody("var ok = true;")
+                        .setBodyDelay(500, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+
+        adBlocker = new AdBlocker(Site.NONE);
+        adBlocker.addJsContentBlacklist("evil");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private String url(String path) {
+        return server.url(prefix + path).toString();
+    }
+
+    /**
+     * Examine the given URL outside of the main thread, where the AdBlocker doesn't download anything
+     */
+    private AdBlocker.Verdict examine(String url) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(() -> adBlocker.examine(url, null)).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void singleSharedFetch() throws Exception {
+        final String url = url("/Script.js");
+        ExecutorService executor = Executors.newFixedThreadPool(NB_CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<AdBlocker.Verdict>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < NB_CALLERS; i++)
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return adBlocker.examine(url, null);
+                }));
+            start.countDown();
+
+            int nbResources = 0;
+            for (Future<AdBlocker.Verdict> result : results) {
+                AdBlocker.Verdict verdict = result.get(10, TimeUnit.SECONDS);
+                assertFalse(verdict.isBlocked());
+                if (verdict.getResource() != null) nbResources++;
+            }
+            // Concurrent requests for the same file share the same download...
+            assertEquals(1, server.getRequestCount());
+            assertTrue(nbResources > 0);
+        } finally {
+            executor.shutdown();
+        }
+
+        // ...and later ones use the cached verdict
+        AdBlocker.Verdict verdict = examine(url);
+        assertFalse(verdict.isBlocked());
+        assertNull(verdict.getResource());
+        assertEquals(1, server.getRequestCount());
+
+        // The cache key keeps the URL's case
+        examine(url("/script.js"));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void servedResource() throws Exception {
+        AdBlocker.Verdict verdict = examine(url("/Script.js"));
+        assertFalse(verdict.isBlocked());
+        assertNotNull(verdict.getResource());
+        assertEquals("session=abc", verdict.getResource().getResponseHeaders().get("set-cookie"));
+    }
+
+    @Test
+    public void redirectedResource() throws Exception {
+        AdBlocker.Verdict verdict = examine(url("/moved.js"));
+        assertFalse(verdict.isBlocked());
+        // The WebView has to request redirected files by itself
+        assertNull(verdict.getResource());
+    }
+
+    @Test
+    public void hiddenJsResource() throws Exception {
+        AdBlocker.Verdict verdict = examine(url("/script"));
+        assertFalse(verdict.isBlocked());
+        // Files without extension may not be JS files at all
+        assertNull(verdict.getResource());
+    }
+
+    @Test
+    public void blockedResource() throws Exception {
+        AdBlocker.Verdict verdict = examine(url("/evil.js"));
+        assertTrue(verdict.isBlocked());
+        assertNull(verdict.getResource());
+    }
+}
@@ -1,10 +1,18 @@
 package me.devsaki.hentoid.util;
 
+import org.jsoup.nodes.Document;
 import org.junit.Test;
 
+import java.io.IOException;
+
 import me.devsaki.hentoid.util.network.HttpHelper;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class HttpHelperTest {
 
@@ -43,4 +51,26 @@ public class HttpHelperTest {
     public void cleanWebViewAgent() {
         assertEquals("Mozilla/5.0 (Linux; Android 10; AAA-BBB) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4444.75 Mobile Safari/537.36", HttpHelper.cleanWebViewAgent("Mozilla/5.0 (Linux; Android 10; AAA-BBB; wv) AppleWebKit/537.36 (KHTML, like Gecko) Version/4.0 Chrome/91.0.4444.75 Mobile Safari/537.36"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void parseDocumentUntilTarget() throws IOException {
+        StringBuilder html = new StringBuilder("<html><body><div id=\"i3\"><img id=\"img\" src=\"http://abc.com/1.jpg\"></div>");
+        for (int i = 0; i < 5000; i++) html.append("<p>filler paragraph ").append(i).append("</p>");
+        html.append("<div id=\"end\">end</div></body></html>");
+        MediaType type = MediaType.get("text/html; charset=utf-8");
+
+        // Reading stops before the end of the resource
+        Document doc = HttpHelper.parseDocument(ResponseBody.create(html.toString(), type), "http://abc.com", "img#img");
+        assertEquals("http://abc.com/1.jpg", doc.select("img#img").attr("src"));
+        assertNull(doc.selectFirst("#end"));
+
+        // Whole resource is read when the target can't be found
+        doc = HttpHelper.parseDocument(ResponseBody.create(html.toString(), type), "http://abc.com", "#absent");
+        assertNotNull(doc.selectFirst("#end"));
+
+        // Incomplete script blocks aren't considered found
+        String script = "<html><head><script>var pagecount = 2;" + html + "</script></head></html>";
+        doc = HttpHelper.parseDocument(ResponseBody.create(script, type), "http://abc.com", "script:containsData(pagecount)");
+        assertTrue(doc.select("script").first().data().contains("<div id=\"end\">"));
+    }
+}
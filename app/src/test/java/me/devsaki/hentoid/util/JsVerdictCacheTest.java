@@ -0,0 +1,119 @@
+package me.devsaki.hentoid.util;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import me.devsaki.hentoid.util.file.FileHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class JsVerdictCacheTest {
+
+    private static final String KEY = "1 https://example.com/js/Main.js";
+    private static final long RULES = 123;
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        file = new File(context.getCacheDir(), "js_verdicts_test.json");
+        FileHelper.removeFile(file);
+    }
+
+    @After
+    public void tearDown() {
+        FileHelper.removeFile(file);
+    }
+
+    @Test
+    public void putAndGet() {
+        JsVerdictCache cache = new JsVerdictCache(file);
+        cache.put(KEY, RULES, true, "\"abc\"");
+
+        JsVerdictCache.Entry entry = cache.get(KEY, RULES);
+        assertNotNull(entry);
+        assertTrue(entry.isBlocked());
+        assertTrue(entry.isFresh());
+        assertEquals("\"abc\"", entry.getEtag());
+
+        // Keys are case-sensitive
+        assertNull(cache.get(KEY.toLowerCase(), RULES));
+    }
+
+    @Test
+    public void rulesChanged() {
+        JsVerdictCache cache = new JsVerdictCache(file);
+        cache.put(KEY, RULES, false, "");
+
+        // Verdicts given with other keywords are invalid...
+        assertNull(cache.get(KEY, RULES + 1));
+        // ...and removed
+        assertNull(cache.get(KEY, RULES));
+    }
+
+    @Test
+    public void leastRecentlyUsedAreEvicted() {
+        JsVerdictCache cache = new JsVerdictCache(file);
+        for (int i = 0; i < JsVerdictCache.MAX_ENTRIES; i++) cache.put(KEY + i, RULES, false, "");
+        // Use the oldest entry
+        assertNotNull(cache.get(KEY + 0, RULES));
+
+        cache.put(KEY, RULES, false, "");
+        assertNotNull(cache.get(KEY, RULES));
+        assertNotNull(cache.get(KEY + 0, RULES));
+        // The least recently used entry has been evicted
+        assertNull(cache.get(KEY + 1, RULES));
+        assertNotNull(cache.get(KEY + 2, RULES));
+    }
+
+    @Test
+    public void saveAndLoad() {
+        JsVerdictCache cache = new JsVerdictCache(file);
+        cache.put(KEY, RULES, true, "\"abc\"");
+        cache.put(KEY + 2, RULES, false, "");
+        cache.save();
+        assertTrue(file.exists());
+
+        JsVerdictCache loaded = new JsVerdictCache(file);
+        JsVerdictCache.Entry entry = loaded.get(KEY, RULES);
+        assertNotNull(entry);
+        assertTrue(entry.isBlocked());
+        assertTrue(entry.isFresh());
+        assertEquals("\"abc\"", entry.getEtag());
+        entry = loaded.get(KEY + 2, RULES);
+        assertNotNull(entry);
+        assertFalse(entry.isBlocked());
+        assertNull(loaded.get(KEY + 3, RULES));
+    }
+
+    @Test
+    public void loadCorruptedFile() throws IOException {
+        try (OutputStream output = new FileOutputStream(file)) {
+            output.write("{\"entries\":[{\"key\":".getBytes(StandardCharsets.UTF_8));
+        }
+
+        JsVerdictCache cache = new JsVerdictCache(file);
+        assertNull(cache.get(KEY, RULES));
+        // Corrupted files are removed
+        assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,52 @@
+package me.devsaki.hentoid.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class MultiSubstringMatcherTest {
+
+    @Test
+    public void find() {
+        MultiSubstringMatcher matcher = MultiSubstringMatcher.compile(Arrays.asList("exoclick", "ads.", "popunder.js", "click.php"));
+        assertEquals("ads.", matcher.find("https://ads.example.com/banner.png"));
+        assertEquals("popunder.js", matcher.find("https://cdn.example.com/popunder.js?v=2"));
+        // Overlapping patterns ("exoclick" vs. "click.php")
+        assertEquals("click.php", matcher.find("https://exoclic.com/click.php"));
+        assertNull(matcher.find("https://hitomi.la/galleries/123.html"));
+
+        assertTrue(MultiSubstringMatcher.compile(Collections.singletonList("")).matches("anything"));
+        assertFalse(MultiSubstringMatcher.empty().matches("anything"));
+    }
+
+    @Test
+    public void sameAsContains() {
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            List<String> patterns = new ArrayList<>();
+            for (int j = random.nextInt(6); j > 0; j--) patterns.add(randomString(random, 1 + random.nextInt(4)));
+            String text = randomString(random, random.nextInt(16));
+
+            boolean expected = false;
+            for (String p : patterns) expected |= text.contains(p);
+            String found = MultiSubstringMatcher.compile(patterns).find(text);
+            assertEquals(patterns + " in " + text, expected, found != null);
+            if (found != null) assertTrue(text.contains(found));
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) sb.append((char) ('a' + random.nextInt(3)));
+        return sb.toString();
+    }
+}
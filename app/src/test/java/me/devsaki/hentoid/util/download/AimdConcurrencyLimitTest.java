@@ -0,0 +1,62 @@
+package me.devsaki.hentoid.util.download;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AimdConcurrencyLimitTest {
+
+    @Test
+    public void slowStartUpToMaxLimit() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(4);
+        assertEquals(2, limit.getLimit());
+        limit.onSuccess(100, 2, 0);
+        assertEquals(3, limit.getLimit());
+        // Limit isn't reached -> no increase
+        limit.onSuccess(100, 1, 0);
+        assertEquals(3, limit.getLimit());
+        limit.onSuccess(100, 3, 0);
+        limit.onSuccess(100, 4, 0);
+        assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    public void throttlingHalvesLimitOncePerCooldown() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(8);
+        for (int i = 0; i < 6; i++) limit.onSuccess(100, limit.getLimit(), 0);
+        assertEquals(8, limit.getLimit());
+        limit.onThrottled(10000);
+        assertEquals(4, limit.getLimit());
+        // Requests that were running at the same time don't count
+        limit.onThrottled(10500);
+        assertEquals(4, limit.getLimit());
+        limit.onThrottled(13000);
+        assertEquals(2, limit.getLimit());
+        limit.onThrottled(16000);
+        limit.onThrottled(19000);
+        assertEquals(1, limit.getLimit());
+    }
+
+    @Test
+    public void additiveIncreaseAfterCongestion() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(8);
+        for (int i = 0; i < 6; i++) limit.onSuccess(100, limit.getLimit(), 0);
+        limit.onThrottled(10000);
+        assertEquals(4, limit.getLimit());
+        // Roughly one unit per [limit] successful requests
+        for (int i = 0; i < 4; i++) limit.onSuccess(100, 4, 10000);
+        assertEquals(4, limit.getLimit());
+        limit.onSuccess(100, 4, 10000);
+        assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    public void latencyIncreaseReducesLimit() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(8);
+        for (int i = 0; i < 6; i++) limit.onSuccess(100, limit.getLimit(), 0);
+        assertEquals(8, limit.getLimit());
+        // Smoothed latency goes above twice the best one
+        for (int i = 0; i < 10; i++) limit.onSuccess(1000, 8, 10000);
+        assertEquals(6, limit.getLimit());
+    }
+}
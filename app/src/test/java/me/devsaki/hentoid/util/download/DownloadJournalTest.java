@@ -0,0 +1,156 @@
+package me.devsaki.hentoid.util.download;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import me.devsaki.hentoid.database.domains.ImageFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class DownloadJournalTest {
+
+    private static final long CONTENT_ID = 42;
+    private static final String URI_1 = "content://downloads/book/001.jpg";
+    private static final String URI_2 = "content://downloads/book/002 #2.png";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        DownloadJournal.delete(context, CONTENT_ID);
+    }
+
+    @After
+    public void tearDown() {
+        DownloadJournal.delete(context, CONTENT_ID);
+    }
+
+    private static Map<Long, DownloadJournal.Entry> replay(String journal) throws IOException {
+        return DownloadJournal.replay(new BufferedReader(new StringReader(journal)), CONTENT_ID);
+    }
+
+    private static String doneLine(long imageId, long size, String mimeType, String fileUri) {
+        return DownloadJournal.toLine("D " + imageId + " " + size + " " + mimeType + " " + fileUri);
+    }
+
+    @Test
+    public void replayRecords() throws IOException {
+        Map<Long, DownloadJournal.Entry> result = replay(
+                doneLine(1, 1000, "image/jpeg", URI_1)
+                        + doneLine(2, 2000, "image/png", URI_2)
+                        + DownloadJournal.toLine("E 3"));
+
+        assertEquals(3, result.size());
+        DownloadJournal.Entry entry = result.get(1L);
+        assertNotNull(entry);
+        assertEquals(DownloadJournal.State.DONE, entry.state);
+        assertEquals(1000, entry.size);
+        assertEquals("image/jpeg", entry.mimeType);
+        assertEquals(URI_1, entry.fileUri);
+
+        // File URIs may contain spaces and checksum separators
+        entry = result.get(2L);
+        assertNotNull(entry);
+        assertEquals(URI_2, entry.fileUri);
+
+        entry = result.get(3L);
+        assertNotNull(entry);
+        assertEquals(DownloadJournal.State.FAILED, entry.state);
+    }
+
+    @Test
+    public void latestRecordWins() throws IOException {
+        Map<Long, DownloadJournal.Entry> result = replay(
+                DownloadJournal.toLine("E 1")
+                        + doneLine(1, 1000, "image/jpeg", URI_1)
+                        + doneLine(2, 2000, "image/png", URI_2)
+                        + DownloadJournal.toLine("E 2"));
+
+        assertEquals(DownloadJournal.State.DONE, result.get(1L).state);
+        assertEquals(DownloadJournal.State.FAILED, result.get(2L).state);
+    }
+
+    @Test
+    public void truncatedLines() throws IOException {
+        String line = doneLine(1, 1000, "image/jpeg", URI_1);
+        // Every truncation of a record is rejected, including those that still look complete
+        for (int length = 1; length < line.length() - 1; length++) {
+            Map<Long, DownloadJournal.Entry> result = replay(doneLine(2, 2000, "image/png", URI_2) + line.substring(0, length));
+            assertNull("Truncated at " + length + " : " + line.substring(0, length), result.get(1L));
+            assertNotNull(result.get(2L));
+        }
+        // Without its line feed, the last record is complete
+        assertNotNull(replay(line.substring(0, line.length() - 1)).get(1L));
+    }
+
+    @Test
+    public void garbledLines() throws IOException {
+        String line = doneLine(1, 1000, "image/jpeg", URI_1);
+        Map<Long, DownloadJournal.Entry> result = replay(
+                line.replace("1000", "1001") // Altered record
+                        + "D 2 2000 image/png " + URI_2 + "\n" // No checksum
+                        + "\u0000\u0000\u0000\n" // Garbage
+                        + DownloadJournal.toLine("D 3 abc image/png " + URI_2) // Valid checksum, invalid record
+                        + DownloadJournal.toLine("D 4") // Valid checksum, incomplete record
+                        + DownloadJournal.toLine("X 5") // Unknown record
+                        + "\n"
+                        + DownloadJournal.toLine("E 6"));
+
+        assertEquals(1, result.size());
+        assertTrue(result.containsKey(6L));
+    }
+
+    @Test
+    public void writeAndReplay() {
+        assertNull(DownloadJournal.replay(context, CONTENT_ID));
+
+        ImageFile img = new ImageFile().setMimeType("image/jpeg").setSize(1000);
+        img.setId(1);
+        img.setFileUri(URI_1);
+
+        DownloadJournal journal = DownloadJournal.open(context, CONTENT_ID);
+        assertNotNull(journal);
+        journal.recordDone(img);
+        journal.recordFailed(2);
+        journal.close();
+        // Closed journals don't record anything anymore
+        journal.recordFailed(1);
+
+        Map<Long, DownloadJournal.Entry> result = DownloadJournal.replay(context, CONTENT_ID);
+        assertNotNull(result);
+        assertEquals(2, result.size());
+        assertEquals(DownloadJournal.State.DONE, result.get(1L).state);
+        assertEquals(URI_1, result.get(1L).fileUri);
+        assertEquals(1000, result.get(1L).size);
+        assertEquals(DownloadJournal.State.FAILED, result.get(2L).state);
+
+        // New records are appended to existing ones
+        journal = DownloadJournal.open(context, CONTENT_ID);
+        assertNotNull(journal);
+        journal.recordFailed(1);
+        journal.close();
+        result = DownloadJournal.replay(context, CONTENT_ID);
+        assertNotNull(result);
+        assertEquals(DownloadJournal.State.FAILED, result.get(1L).state);
+
+        DownloadJournal.delete(context, CONTENT_ID);
+        assertNull(DownloadJournal.replay(context, CONTENT_ID));
+    }
+}
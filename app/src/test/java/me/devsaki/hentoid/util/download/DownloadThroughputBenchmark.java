@@ -0,0 +1,366 @@
+package me.devsaki.hentoid.util.download;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.documentfile.provider.DocumentFile;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.objectbox.BoxStore;
+import io.reactivex.Scheduler;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+import me.devsaki.hentoid.database.ObjectBoxDAO;
+import me.devsaki.hentoid.database.domains.Content;
+import me.devsaki.hentoid.database.domains.ImageFile;
+import me.devsaki.hentoid.enums.Site;
+import me.devsaki.hentoid.enums.StatusContent;
+import me.devsaki.hentoid.mocks.AbstractObjectBoxTest;
+import me.devsaki.hentoid.util.Preferences;
+import me.devsaki.hentoid.util.exception.DownloadInterruptedException;
+import me.devsaki.hentoid.util.exception.UnsupportedContentException;
+import me.devsaki.hentoid.util.file.FileHelper;
+import me.devsaki.hentoid.util.network.HttpHelper;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Offline benchmark of the download pipeline : RequestQueueManager -> response streaming -> file writing (DownloadHelper.saveImage) -> DB updates
+ * <p>
+ * Synthetic galleries are served by a local MockWebServer with configurable image size, latency,
+ * error rate and throttling (HTTP 429); each scenario reports pages/s, MB/s, peak heap,
+ * GC count and DB transactions per book
+ * <p>
+ * Skipped by default; run with : ./gradlew testDebugUnitTest -Pbenchmark --tests "*DownloadThroughputBenchmark"
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DownloadThroughputBenchmark extends AbstractObjectBoxTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_POOLED_BUFFERS = 8;
+
+    private Context context;
+    private File workDir;
+    private CountingDAO dao;
+    private BufferPool bufferPool;
+    private MockWebServer server;
+
+    @BeforeClass
+    public static void setUpTimers() {
+        // Delays (throttling back-offs, write buffer flushes) are part of what is measured; don't run them immediately
+        Scheduler timers = Schedulers.from(Executors.newScheduledThreadPool(2));
+        RxJavaPlugins.setComputationSchedulerHandler(scheduler -> timers);
+        RxJavaPlugins.setIoSchedulerHandler(scheduler -> timers);
+    }
+
+    @AfterClass
+    public static void tearDownTimers() {
+        RxJavaPlugins.setComputationSchedulerHandler(null);
+        RxJavaPlugins.setIoSchedulerHandler(null);
+    }
+
+    @Before
+    public void prepareBenchmark() throws IOException {
+        Assume.assumeTrue("Benchmarks are only run with -Pbenchmark", Boolean.getBoolean("hentoid.benchmark"));
+
+        context = ApplicationProvider.getApplicationContext();
+        Preferences.init(context);
+
+        workDir = new File(context.getCacheDir(), "benchmark");
+        FileHelper.removeFile(workDir);
+        assertTrue(workDir.mkdirs());
+
+        dao = new CountingDAO(store);
+        bufferPool = new BufferPool(FileHelper.FILE_IO_BUFFER_SIZE, MAX_POOLED_BUFFERS);
+
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void cleanUpBenchmark() throws IOException {
+        if (server != null) server.shutdown();
+        if (dao != null) dao.cleanup();
+        if (workDir != null) FileHelper.removeFile(workDir);
+    }
+
+    @Test
+    public void baseline() throws InterruptedException {
+        run(new Scenario("Baseline", 4, 100, 300, 0, 0, 0, 4));
+    }
+
+    @Test
+    public void highLatency() throws InterruptedException {
+        run(new Scenario("High latency", 4, 100, 300, 250, 0, 0, 4));
+    }
+
+    @Test
+    public void largeImages() throws InterruptedException {
+        run(new Scenario("Large images", 2, 50, 3000, 50, 0, 0, 4));
+    }
+
+    @Test
+    public void unreliableHost() throws InterruptedException {
+        run(new Scenario("Errors and throttling", 4, 100, 300, 50, 0.05, 0.1, 8));
+    }
+
+    private void run(@NonNull Scenario scenario) throws InterruptedException {
+        List<Content> books = createBooks(scenario);
+        server.setDispatcher(new GalleryDispatcher(scenario));
+
+        RequestQueueManager queueManager = RequestQueueManager.getInstance(context);
+        queueManager.setDownloadThreadCount(context, scenario.nbThreads);
+        ImageFileWriteBuffer writeBuffer = new ImageFileWriteBuffer(dao, 50, 1000);
+
+        int nbPages = scenario.nbBooks * scenario.nbPages;
+        CountDownLatch remainingPages = new CountDownLatch(nbPages);
+        AtomicInteger nbErrors = new AtomicInteger(0);
+        AtomicLong nbBytes = new AtomicLong(0);
+        HeapSampler heapSampler = new HeapSampler();
+
+        long gcCountBefore = getGcCount();
+        long gcTimeBefore = getGcTimeMs();
+        dao.nbTransactions.set(0);
+        heapSampler.start();
+        long startNs = System.nanoTime();
+
+        for (Content book : books) {
+            File bookDir = new File(workDir, "book" + book.getId());
+            assertTrue(bookDir.mkdirs());
+            DocumentFile dir = DocumentFile.fromFile(bookDir);
+            for (ImageFile img : book.getImageFiles())
+                queueManager.queueRequest(buildOrder(queueManager, dir, img, writeBuffer, remainingPages, nbErrors, nbBytes, 1));
+        }
+
+        assertTrue("Benchmark timed out", remainingPages.await(10, TimeUnit.MINUTES));
+        writeBuffer.flush();
+        long durationNs = System.nanoTime() - startNs;
+        heapSampler.interrupt();
+
+        double durationS = durationNs / 1e9;
+        System.out.printf("== %s : %d books x %d pages of %d KB; latency %d ms; %.0f%% errors; %.0f%% throttled; %d threads%n",
+                scenario.name, scenario.nbBooks, scenario.nbPages, scenario.imageSizeKb, scenario.latencyMs,
+                scenario.errorRate * 100, scenario.throttleRate * 100, scenario.nbThreads);
+        System.out.printf("Duration      : %.2f s%n", durationS);
+        System.out.printf("Pages         : %.1f pages/s (%d failed)%n", (nbPages - nbErrors.get()) / durationS, nbErrors.get());
+        System.out.printf("Throughput    : %.2f MB/s%n", nbBytes.get() / (1024.0 * 1024.0) / durationS);
+        System.out.printf("Peak heap     : %.1f MB%n", heapSampler.peakBytes / (1024.0 * 1024.0));
+        System.out.printf("GC            : %d collections (%d ms)%n", getGcCount() - gcCountBefore, getGcTimeMs() - gcTimeBefore);
+        System.out.printf("DB            : %.1f transactions/book%n", dao.nbTransactions.get() / (double) scenario.nbBooks);
+
+        if (0 == scenario.errorRate && 0 == scenario.throttleRate)
+            assertEquals(0, nbErrors.get());
+    }
+
+    private List<Content> createBooks(@NonNull Scenario scenario) {
+        List<Content> result = new ArrayList<>();
+        for (int b = 0; b < scenario.nbBooks; b++) {
+            Content book = new Content().setSite(Site.NONE).setTitle("Book " + b).setStatus(StatusContent.DOWNLOADING);
+            List<ImageFile> images = new ArrayList<>();
+            for (int p = 0; p < scenario.nbPages; p++)
+                images.add(ImageFile.fromImageUrl(p + 1, server.url("/book/" + b + "/page/" + p + ".jpg").toString(), StatusContent.SAVED, scenario.nbPages));
+            book.setImageFiles(images);
+            dao.insertContent(book);
+            result.add(book);
+        }
+        return result;
+    }
+
+    private RequestOrder buildOrder(
+            @NonNull RequestQueueManager queueManager,
+            @NonNull DocumentFile dir,
+            @NonNull ImageFile img,
+            @NonNull ImageFileWriteBuffer writeBuffer,
+            @NonNull CountDownLatch remainingPages,
+            @NonNull AtomicInteger nbErrors,
+            @NonNull AtomicLong nbBytes,
+            int attempt) {
+        return new RequestOrder(
+                RequestOrder.HttpMethod.GET,
+                img.getUrl(),
+                Site.NONE,
+                RequestOrder.Priority.BACKGROUND,
+                0,
+                new HashMap<>(),
+                false,
+                false,
+                result -> {
+                    try {
+                        // Same save path as the download worker
+                        DocumentFile file = DownloadHelper.saveImage(context, img, dir, result.getValue().get(HttpHelper.HEADER_CONTENT_TYPE), result.getKey(), bufferPool, () -> false);
+                        if (null == file) throw new IOException("Book folder not found");
+                        nbBytes.addAndGet(img.getSize());
+                        img.setStatus(StatusContent.DOWNLOADED).setFileUri(file.getUri().toString());
+                    } catch (IOException | UnsupportedContentException | DownloadInterruptedException e) {
+                        nbErrors.incrementAndGet();
+                        img.setStatus(StatusContent.ERROR);
+                    }
+                    writeBuffer.add(img);
+                    remainingPages.countDown();
+                },
+                error -> {
+                    // Throttled requests are tried again, like the download queue does with its retries
+                    if ((429 == error.statusCode || 503 == error.statusCode) && attempt < MAX_ATTEMPTS) {
+                        queueManager.queueRequest(buildOrder(queueManager, dir, img, writeBuffer, remainingPages, nbErrors, nbBytes, attempt + 1));
+                        return;
+                    }
+                    nbErrors.incrementAndGet();
+                    img.setStatus(StatusContent.ERROR);
+                    writeBuffer.add(img);
+                    remainingPages.countDown();
+                });
+    }
+
+    private static long getGcCount() {
+        long result = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            result += Math.max(0, gc.getCollectionCount());
+        return result;
+    }
+
+    private static long getGcTimeMs() {
+        long result = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            result += Math.max(0, gc.getCollectionTime());
+        return result;
+    }
+
+    /**
+     * Parameters of a benchmark run
+     */
+    private static class Scenario {
+        final String name;
+        final int nbBooks;
+        final int nbPages;
+        final int imageSizeKb;
+        final long latencyMs;   // Delay before the headers of each response
+        final double errorRate; // Share of the requests answered with HTTP 500
+        final double throttleRate; // Share of the requests answered with HTTP 429
+        final int nbThreads;
+
+        Scenario(@NonNull String name, int nbBooks, int nbPages, int imageSizeKb, long latencyMs, double errorRate, double throttleRate, int nbThreads) {
+            this.name = name;
+            this.nbBooks = nbBooks;
+            this.nbPages = nbPages;
+            this.imageSizeKb = imageSizeKb;
+            this.latencyMs = latencyMs;
+            this.errorRate = errorRate;
+            this.throttleRate = throttleRate;
+            this.nbThreads = nbThreads;
+        }
+    }
+
+    /**
+     * Serves synthetic pictures according to the given scenario
+     */
+    private static class GalleryDispatcher extends Dispatcher {
+        private final Scenario scenario;
+        private final byte[] picture;
+        private final Random random = new Random(42); // Same answers from one run to another
+
+        GalleryDispatcher(@NonNull Scenario scenario) {
+            this.scenario = scenario;
+            picture = new byte[scenario.imageSizeKb * 1024];
+            new Random(0).nextBytes(picture);
+            // JPEG signature
+            picture[0] = (byte) 0xFF;
+            picture[1] = (byte) 0xD8;
+            picture[2] = (byte) 0xFF;
+        }
+
+        @NonNull
+        @Override
+        public MockResponse dispatch(@NonNull RecordedRequest request) {
+            double draw;
+            synchronized (random) {
+                draw = random.nextDouble();
+            }
+            MockResponse response;
+            if (draw < scenario.throttleRate)
+                response = new MockResponse().setResponseCode(429);
+            else if (draw < scenario.throttleRate + scenario.errorRate)
+                response = new MockResponse().setResponseCode(500);
+            else
+                response = new MockResponse()
+                        .setHeader("Content-Type", "image/jpeg")
+                        .setBody(new Buffer().write(picture));
+            return response.setHeadersDelay(scenario.latencyMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Samples the heap usage until interrupted
+     */
+    private static class HeapSampler extends Thread {
+        private volatile long peakBytes = 0;
+
+        HeapSampler() {
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Runtime runtime = Runtime.getRuntime();
+            while (!isInterrupted()) {
+                peakBytes = Math.max(peakBytes, runtime.totalMemory() - runtime.freeMemory());
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * DAO that counts the DB transactions used to update images
+     */
+    private static class CountingDAO extends ObjectBoxDAO {
+        private final AtomicInteger nbTransactions = new AtomicInteger(0);
+
+        CountingDAO(@NonNull BoxStore store) {
+            super(store);
+        }
+
+        @Override
+        public void updateImageFileStatusParamsMimeTypeUriSize(@NonNull ImageFile image) {
+            nbTransactions.incrementAndGet();
+            super.updateImageFileStatusParamsMimeTypeUriSize(image);
+        }
+
+        @Override
+        public void updateImageFileStatusParamsMimeTypeUriSize(@NonNull List<ImageFile> images) {
+            nbTransactions.incrementAndGet();
+            super.updateImageFileStatusParamsMimeTypeUriSize(images);
+        }
+    }
+}
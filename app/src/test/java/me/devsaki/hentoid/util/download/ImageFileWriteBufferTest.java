@@ -0,0 +1,162 @@
+package me.devsaki.hentoid.util.download;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.objectbox.BoxStore;
+import io.reactivex.Scheduler;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+import me.devsaki.hentoid.database.ObjectBoxDAO;
+import me.devsaki.hentoid.database.domains.Content;
+import me.devsaki.hentoid.database.domains.ImageFile;
+import me.devsaki.hentoid.enums.Site;
+import me.devsaki.hentoid.enums.StatusContent;
+import me.devsaki.hentoid.mocks.AbstractObjectBoxTest;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class ImageFileWriteBufferTest extends AbstractObjectBoxTest {
+
+    private static final int NB_PAGES = 5;
+    private static final int MAX_ITEMS = 3;
+    private static final long MAX_DELAY_MS = 200;
+
+    private CountingDAO dao;
+    private Content book;
+    private List<ImageFile> images;
+
+    @BeforeClass
+    public static void setUpTimers() {
+        // Timed flushes are what is tested; don't run them immediately
+        Scheduler timers = Schedulers.from(Executors.newScheduledThreadPool(1));
+        RxJavaPlugins.setComputationSchedulerHandler(scheduler -> timers);
+        RxJavaPlugins.setIoSchedulerHandler(scheduler -> timers);
+    }
+
+    @AfterClass
+    public static void tearDownTimers() {
+        RxJavaPlugins.setComputationSchedulerHandler(null);
+        RxJavaPlugins.setIoSchedulerHandler(null);
+    }
+
+    @Before
+    public void prepareBook() {
+        dao = new CountingDAO(store);
+
+        book = new Content().setSite(Site.NONE).setTitle("Book").setStatus(StatusContent.DOWNLOADING);
+        images = new ArrayList<>();
+        for (int p = 0; p < NB_PAGES; p++)
+            images.add(ImageFile.fromImageUrl(p + 1, "https://example.com/" + p + ".jpg", StatusContent.SAVED, NB_PAGES));
+        book.setImageFiles(images);
+        dao.insertContent(book);
+    }
+
+    @After
+    public void cleanUpBook() {
+        if (dao != null) {
+            if (book != null) dao.deleteContent(book);
+            dao.cleanup();
+        }
+    }
+
+    private void add(@NonNull ImageFileWriteBuffer buffer, int index) {
+        ImageFile img = images.get(index);
+        img.setStatus(StatusContent.DOWNLOADED);
+        buffer.add(img);
+    }
+
+    private int countDownloaded() {
+        int result = 0;
+        for (ImageFile img : images)
+            if (StatusContent.DOWNLOADED == dao.selectImageFile(img.getId()).getStatus()) result++;
+        return result;
+    }
+
+    @Test
+    public void flushOnSize() {
+        ImageFileWriteBuffer buffer = new ImageFileWriteBuffer(dao, MAX_ITEMS, 60000);
+
+        for (int i = 0; i < MAX_ITEMS - 1; i++) add(buffer, i);
+        assertEquals(0, countDownloaded());
+        assertEquals(0, dao.nbTransactions.get());
+
+        // Images are written all at once when the buffer is full
+        add(buffer, MAX_ITEMS - 1);
+        assertEquals(MAX_ITEMS, countDownloaded());
+        assertEquals(1, dao.nbTransactions.get());
+
+        // ...and the buffer starts again from empty
+        add(buffer, MAX_ITEMS);
+        assertEquals(MAX_ITEMS, countDownloaded());
+        assertEquals(1, dao.nbTransactions.get());
+    }
+
+    @Test
+    public void flushOnTimeout() throws InterruptedException {
+        ImageFileWriteBuffer buffer = new ImageFileWriteBuffer(dao, NB_PAGES, MAX_DELAY_MS);
+
+        add(buffer, 0);
+        add(buffer, 1);
+        assertEquals(0, countDownloaded());
+
+        // Images are written once the first of them has stayed in the buffer long enough
+        Thread.sleep(MAX_DELAY_MS * 5);
+        assertEquals(2, countDownloaded());
+        assertEquals(1, dao.nbTransactions.get());
+
+        // The next image schedules a new flush
+        add(buffer, 2);
+        Thread.sleep(MAX_DELAY_MS * 5);
+        assertEquals(3, countDownloaded());
+        assertEquals(2, dao.nbTransactions.get());
+    }
+
+    @Test
+    public void flushOnClose() throws InterruptedException {
+        ImageFileWriteBuffer buffer = new ImageFileWriteBuffer(dao, NB_PAGES, MAX_DELAY_MS);
+
+        add(buffer, 0);
+        add(buffer, 1);
+
+        // The final flush writes the remaining images right away...
+        buffer.flush();
+        assertEquals(2, countDownloaded());
+        assertEquals(1, dao.nbTransactions.get());
+
+        // ...and cancels the scheduled one
+        Thread.sleep(MAX_DELAY_MS * 5);
+        assertEquals(1, dao.nbTransactions.get());
+
+        // Flushing an empty buffer doesn't write anything
+        buffer.flush();
+        assertEquals(1, dao.nbTransactions.get());
+    }
+
+    private static class CountingDAO extends ObjectBoxDAO {
+        private final AtomicInteger nbTransactions = new AtomicInteger(0);
+
+        CountingDAO(@NonNull BoxStore store) {
+            super(store);
+        }
+
+        @Override
+        public void updateImageFileStatusParamsMimeTypeUriSize(@NonNull List<ImageFile> images) {
+            nbTransactions.incrementAndGet();
+            super.updateImageFileStatusParamsMimeTypeUriSize(images);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package me.devsaki.hentoid.util.download;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+    @Test
+    public void burstThenWait() {
+        TokenBucket bucket = new TokenBucket(2, 2, 0);
+        assertEquals(0, bucket.tryConsume(1, 0));
+        assertEquals(0, bucket.tryConsume(1, 0));
+        // Bucket is empty; next token arrives after 500ms
+        assertEquals(500, bucket.tryConsume(1, 0));
+        assertEquals(250, bucket.tryConsume(1, 250));
+        assertEquals(0, bucket.tryConsume(1, 500));
+    }
+
+    @Test
+    public void refillIsCappedToCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 2, 0);
+        assertEquals(0, bucket.tryConsume(2, 0));
+        // Way more than needed to fill the bucket
+        assertEquals(0, bucket.tryConsume(2, 10000));
+        assertTrue(bucket.tryConsume(1, 10000) > 0);
+    }
+
+    @Test
+    public void setRate() {
+        TokenBucket bucket = new TokenBucket(1, 1, 0);
+        assertEquals(0, bucket.tryConsume(1, 0));
+        assertEquals(1000, bucket.tryConsume(1, 0));
+        bucket.setRate(10, 10);
+        assertEquals(100, bucket.tryConsume(1, 0));
+    }
+
+    @Test
+    public void consumeInAdvance() {
+        TokenBucket bucket = new TokenBucket(1000, 1000, 0);
+        assertEquals(0, bucket.consume(600, 0));
+        // 500 tokens short; refilled after 500ms
+        assertEquals(500, bucket.consume(900, 0));
+        // Debt is carried over
+        assertEquals(200, bucket.consume(200, 500));
+        assertEquals(0, bucket.consume(100, 1000));
+    }
+}
@@ -0,0 +1,74 @@
+package me.devsaki.hentoid.util.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class AnimatedWebpEncoderTest {
+
+    // Still WEBP picture with an odd-sized VP8L chunk (3 bytes + 1 padding byte)
+    private static final byte[] STILL_WEBP = new byte[]{
+            'R', 'I', 'F', 'F', 16, 0, 0, 0, 'W', 'E', 'B', 'P',
+            'V', 'P', '8', 'L', 3, 0, 0, 0, 1, 2, 3, 0
+    };
+
+    @Test
+    public void muxFrames() throws IOException {
+        File file = File.createTempFile("anim", ".webp");
+        try {
+            try (AnimatedWebpEncoder encoder = new AnimatedWebpEncoder(file, 90)) {
+                encoder.addFrame(STILL_WEBP, 10, 20, 100);
+                encoder.addFrame(STILL_WEBP, 10, 20, 250);
+            }
+            byte[] data = Files.readAllBytes(file.toPath());
+
+            // 44 bytes of header + 2 frames x (24 bytes of ANMF header + 12 bytes of VP8L chunk)
+            assertEquals(44 + 2 * 36, data.length);
+            assertEquals("RIFF", new String(data, 0, 4, StandardCharsets.US_ASCII));
+            assertEquals(data.length - 8, readLE(data, 4, 4));
+            assertEquals("VP8X", new String(data, 12, 4, StandardCharsets.US_ASCII));
+            assertEquals(0x12, data[20]); // Animation + alpha (VP8L)
+            assertEquals(9, readLE(data, 24, 3));
+            assertEquals(19, readLE(data, 27, 3));
+            assertEquals("ANIM", new String(data, 30, 4, StandardCharsets.US_ASCII));
+
+            assertEquals("ANMF", new String(data, 44, 4, StandardCharsets.US_ASCII));
+            assertEquals(16 + 12, readLE(data, 48, 4));
+            assertEquals(100, readLE(data, 64, 3));
+            byte[] frameData = new byte[12];
+            System.arraycopy(data, 68, frameData, 0, 12);
+            byte[] expected = new byte[12];
+            System.arraycopy(STILL_WEBP, 12, expected, 0, 12);
+            assertArrayEquals(expected, frameData);
+
+            assertEquals("ANMF", new String(data, 80, 4, StandardCharsets.US_ASCII));
+            assertEquals(250, readLE(data, 100, 3));
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectNonWebp() throws IOException {
+        File file = File.createTempFile("anim", ".webp");
+        try (AnimatedWebpEncoder encoder = new AnimatedWebpEncoder(file, 90)) {
+            encoder.addFrame(new byte[]{'G', 'I', 'F', '8', '9', 'a', 0, 0, 0, 0, 0, 0}, 10, 10, 100);
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private static long readLE(byte[] data, int offset, int length) {
+        long result = 0;
+        for (int i = length - 1; i >= 0; i--) result = (result << 8) | (data[offset + i] & 0xFF);
+        return result;
+    }
+}
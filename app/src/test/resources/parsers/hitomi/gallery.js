@@ -0,0 +1 @@
+var galleryinfo = {"id":"1234567","title":"Fixture Book","japanese_title":null,"language":"english","language_localname":"English","language_url":"/index-english.html","type":"doujinshi","date":"2022-03-20 10:00:00-05","tags":[{"tag":"sample","url":"/tag/sample-all.html","female":"1","male":""}],"artists":[{"artist":"fixture artist","url":"/artist/fixture%20artist-all.html"}],"files":[{"hash":"00000000000000000000000000000000000000000000000000000000000003e5","name":"01.jpg","width":1280,"height":1810,"haswebp":1,"hasavif":1},{"hash":"0000000000000000000000000000000000000000000000000000000000000000","name":"02.png","width":1280,"height":1810,"haswebp":0,"hasavif":0}]}